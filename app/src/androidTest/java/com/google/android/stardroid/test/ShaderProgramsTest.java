@@ -0,0 +1,68 @@
+package com.google.android.stardroid.test;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Compiles and links the OpenGL ES 2.0 backend's shaders with the device's
+ * driver, on a small offscreen surface.  The unit tests can only check the
+ * calls that build them.
+ */
+public class ShaderProgramsTest {
+  private EGLDisplay display;
+  private EGLContext context;
+  private EGLSurface surface;
+
+  @Before
+  public void setUp() {
+    display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+    int[] version = new int[2];
+    assertThat(EGL14.eglInitialize(display, version, 0, version, 1), is(true));
+
+    int[] configAttributes = {
+        EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+        EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+        EGL14.EGL_NONE
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] numConfigs = new int[1];
+    assertThat(EGL14.eglChooseConfig(
+        display, configAttributes, 0, configs, 0, 1, numConfigs, 0), is(true));
+    assertThat(numConfigs[0], is(1));
+
+    int[] contextAttributes = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE};
+    context = EGL14.eglCreateContext(
+        display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+    int[] surfaceAttributes = {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE};
+    surface = EGL14.eglCreatePbufferSurface(display, configs[0], surfaceAttributes, 0);
+    assertThat(EGL14.eglMakeCurrent(display, surface, surface, context), is(true));
+  }
+
+  @After
+  public void tearDown() {
+    EGL14.eglMakeCurrent(
+        display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+    EGL14.eglDestroySurface(display, surface);
+    EGL14.eglDestroyContext(display, context);
+    EGL14.eglTerminate(display);
+  }
+
+  @Test
+  public void testShadersCompileAndLink() {
+    // The driver's errors are in the log if not.
+    assertThat(ShaderPrograms.create(), notNullValue());
+  }
+}
@@ -0,0 +1,235 @@
+package com.google.android.stardroid.test;
+
+import android.content.res.Resources;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.stardroid.math.CoordinateManipulationsKt;
+import com.google.android.stardroid.renderables.LinePrimitive;
+import com.google.android.stardroid.renderables.PointPrimitive;
+import com.google.android.stardroid.renderables.TextPrimitive;
+import com.google.android.stardroid.renderer.LabelObjectManager;
+import com.google.android.stardroid.renderer.PointObjectManager;
+import com.google.android.stardroid.renderer.PolyLineObjectManager;
+import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
+import com.google.android.stardroid.renderer.SkyRenderer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Times frames of the same sky, panning once round the horizon, with each
+ * backend, on an offscreen surface, and the first frame after resuming with
+ * the GL context kept and with a new one.  Each frame is finished before the
+ * next, so the times include the GPU's work.  This is a benchmark rather than
+ * a test: nothing is checked but that the backends start, and the times are
+ * logged under the tag SkyRendererFrameTime.  Run it with
+ * <pre>
+ *   adb shell am instrument -w -e class \
+ *       com.google.android.stardroid.test.SkyRendererFrameTimeTest \
+ *       com.google.android.stardroid.test/androidx.test.runner.AndroidJUnitRunner
+ *   adb logcat -d -s SkyRendererFrameTime
+ * </pre>
+ */
+public class SkyRendererFrameTimeTest {
+  private static final String TAG = "SkyRendererFrameTime";
+  private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+  private static final int EGL_OPENGL_ES2_BIT = 4;
+  private static final int WIDTH = 720;
+  private static final int HEIGHT = 1280;
+  private static final int NUM_STARS = 5000;
+  private static final int NUM_LINES = 300;
+  private static final int NUM_LABELS = 100;
+  private static final int FRAMES = 90;
+  private static final int RESUMES = 10;
+
+  private final EGL10 egl = (EGL10) EGLContext.getEGL();
+  private EGLDisplay display;
+  private EGLContext context;
+  private EGLSurface surface;
+
+  // Makes an offscreen surface current, with an OpenGL ES context of the given version.
+  private GL10 createContext(int version) {
+    display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+    assertThat(egl.eglInitialize(display, new int[2]), is(true));
+    int[] configAttributes = {
+        EGL10.EGL_RED_SIZE, 8, EGL10.EGL_GREEN_SIZE, 8, EGL10.EGL_BLUE_SIZE, 8,
+        EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+        EGL10.EGL_RENDERABLE_TYPE, version == 2 ? EGL_OPENGL_ES2_BIT : 1,
+        EGL10.EGL_NONE
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] numConfigs = new int[1];
+    assertThat(egl.eglChooseConfig(display, configAttributes, configs, 1, numConfigs), is(true));
+    assertThat(numConfigs[0], is(1));
+    context = egl.eglCreateContext(display, configs[0], EGL10.EGL_NO_CONTEXT,
+        new int[] {EGL_CONTEXT_CLIENT_VERSION, version, EGL10.EGL_NONE});
+    surface = egl.eglCreatePbufferSurface(display, configs[0],
+        new int[] {EGL10.EGL_WIDTH, WIDTH, EGL10.EGL_HEIGHT, HEIGHT, EGL10.EGL_NONE});
+    assertThat(egl.eglMakeCurrent(display, surface, surface, context), is(true));
+    return (GL10) context.getGL();
+  }
+
+  @After
+  public void tearDown() {
+    egl.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+        EGL10.EGL_NO_CONTEXT);
+    egl.eglDestroySurface(display, surface);
+    egl.eglDestroyContext(display, context);
+    egl.eglTerminate(display);
+  }
+
+  private void addScene(SkyRenderer renderer) {
+    int white = 0xffffffff;
+    EnumSet<UpdateType> reset = EnumSet.of(UpdateType.Reset);
+    Random random = new Random(42);
+    List<PointPrimitive> stars = new ArrayList<>();
+    for (int i = 0; i < NUM_STARS; i++) {
+      stars.add(new PointPrimitive(random.nextFloat() * 360, random.nextFloat() * 180 - 90,
+          white, 1 + random.nextInt(4)));
+    }
+    PointObjectManager points = renderer.createPointManager(0);
+    renderer.addObjectManager(points);
+    points.updateObjects(stars, reset);
+
+    List<LinePrimitive> lines = new ArrayList<>();
+    for (int i = 0; i < NUM_LINES; i++) {
+      float ra = random.nextFloat() * 360;
+      float dec = random.nextFloat() * 170 - 85;
+      lines.add(new LinePrimitive(white, Arrays.asList(
+          CoordinateManipulationsKt.getGeocentricCoords(ra, dec),
+          CoordinateManipulationsKt.getGeocentricCoords(ra + 3, dec + 2)), 1.5f));
+    }
+    PolyLineObjectManager lineManager = renderer.createPolyLineManager(1);
+    renderer.addObjectManager(lineManager);
+    lineManager.updateObjects(lines, reset);
+
+    List<TextPrimitive> labels = new ArrayList<>();
+    for (int i = 0; i < NUM_LABELS; i++) {
+      labels.add(new TextPrimitive(random.nextFloat() * 360, random.nextFloat() * 180 - 90,
+          "Star " + i, white));
+    }
+    LabelObjectManager labelManager = renderer.createLabelManager(2);
+    renderer.addObjectManager(labelManager);
+    labelManager.updateObjects(labels, reset);
+  }
+
+  // Pans once round the horizon, returning how long each frame took in nanoseconds.
+  private static long[] pan(SkyRenderer renderer, GL10 gl) {
+    long[] nanos = new long[FRAMES];
+    for (int i = 0; i < FRAMES; i++) {
+      double radians = Math.toRadians(i * 360.0 / FRAMES);
+      renderer.setViewOrientation(
+          (float) Math.cos(radians), (float) Math.sin(radians), 0, 0, 0, 1);
+      long start = System.nanoTime();
+      renderer.onDrawFrame(gl);
+      gl.glFinish();
+      nanos[i] = System.nanoTime() - start;
+    }
+    return nanos;
+  }
+
+  // Makes the renderer's surface ready on the current context, as a GLSurfaceView would.
+  private static void startSurface(SkyRenderer renderer, GL10 gl, boolean newContext) {
+    boolean[] shadersFailed = {false};
+    renderer.setGles20FailureListener(() -> shadersFailed[0] = true);
+    if (newContext) {
+      renderer.onSurfaceCreated(gl, null);
+    }
+    renderer.onSurfaceChanged(gl, WIDTH, HEIGHT);
+    assertThat(shadersFailed[0], is(false));
+  }
+
+  // Returns a renderer showing the scene, with everything built and uploaded.
+  private SkyRenderer createRenderer(GL10 gl, boolean useGles20) {
+    Resources res = InstrumentationRegistry.getInstrumentation().getTargetContext().getResources();
+    SkyRenderer renderer = new SkyRenderer(res, useGles20);
+    startSurface(renderer, gl, true);
+    renderer.setRadiusOfView(45);
+    addScene(renderer);
+    // The first time round, the points are built and the buffers uploaded.
+    pan(renderer, gl);
+    return renderer;
+  }
+
+  private void report(String backend, boolean useGles20) {
+    GL10 gl = createContext(useGles20 ? 2 : 1);
+    SkyRenderer renderer = createRenderer(gl, useGles20);
+    renderer.getFrameStats().reset();
+    long[] nanos = pan(renderer, gl);
+    Arrays.sort(nanos);
+    long total = 0;
+    for (long n : nanos) {
+      total += n;
+    }
+    Log.i(TAG, String.format("%s on %s: mean %.2fms, median %.2fms, 90th percentile %.2fms, "
+            + "%.2fms CPU per frame",
+        backend, android.os.Build.MODEL, total / 1e6 / FRAMES, nanos[FRAMES / 2] / 1e6,
+        nanos[FRAMES * 9 / 10] / 1e6, renderer.getFrameStats().getMeanDrawCpuNanos() / 1e6));
+  }
+
+  // Resumes the given number of times, returning the mean time to finish the first frame.
+  private double meanResumeMillis(SkyRenderer renderer, boolean useGles20, boolean newContext) {
+    long total = 0;
+    for (int i = 0; i < RESUMES; i++) {
+      long start = System.nanoTime();
+      GL10 gl;
+      if (newContext) {
+        tearDown();
+        gl = createContext(useGles20 ? 2 : 1);
+      } else {
+        gl = (GL10) context.getGL();
+      }
+      startSurface(renderer, gl, newContext);
+      renderer.onDrawFrame(gl);
+      gl.glFinish();
+      total += System.nanoTime() - start;
+    }
+    return total / 1e6 / RESUMES;
+  }
+
+  private void reportResume(String backend, boolean useGles20) {
+    SkyRenderer renderer = createRenderer(createContext(useGles20 ? 2 : 1), useGles20);
+    double kept = meanResumeMillis(renderer, useGles20, false);
+    double created = meanResumeMillis(renderer, useGles20, true);
+    Log.i(TAG, String.format("%s on %s: first frame %.2fms after resuming with the context "
+            + "kept, %.2fms with a new one", backend, android.os.Build.MODEL, kept, created));
+  }
+
+  @Test
+  public void reportGl10FrameTimes() {
+    report("GL10", false);
+  }
+
+  @Test
+  public void reportGles20FrameTimes() {
+    report("GLES 2.0", true);
+  }
+
+  @Test
+  public void reportGl10ResumeTimes() {
+    reportResume("GL10", false);
+  }
+
+  @Test
+  public void reportGles20ResumeTimes() {
+    reportResume("GLES 2.0", true);
+  }
+}
@@ -56,5 +56,11 @@ object ApplicationConstants {
   const val SENSOR_DAMPING_STANDARD = "STANDARD"
   const val SENSOR_DAMPING_PREF_KEY = "sensor_damping"
   const val REVERSE_MAGNETIC_Z_PREFKEY = "reverse_magnetic_z"
-  const val ROTATE_HORIZON_PREFKEY = "rotate_horizon" // End Preference Keys
+  const val ROTATE_HORIZON_PREFKEY = "rotate_horizon"
+  // Not shown in the UI: when true the raw sensor events are saved for offline replay.
+  const val RECORD_SENSOR_TRACE_PREFKEY = "record_sensor_trace"
+  // Not shown in the UI: when false the sky is redrawn every frame even if nothing changed.
+  const val RENDER_ON_DEMAND_PREFKEY = "render_on_demand"
+  // Not shown in the UI: when true the sky is drawn with the OpenGL ES 2.0 shaders.
+  const val USE_GLES20_PREFKEY = "use_gles20" // End Preference Keys
 }
\ No newline at end of file
@@ -74,7 +74,7 @@ class ApplicationModule(app: StardroidApplication) {
   @Singleton
   @Named("real")
   fun provideRealMagneticDeclinationCalculator(): MagneticDeclinationCalculator {
-    return RealMagneticDeclinationCalculator()
+    return CachedMagneticDeclinationCalculator(RealMagneticDeclinationCalculator::computeDeclination)
   }
 
   @Provides
@@ -127,9 +127,10 @@ class ApplicationModule(app: StardroidApplication) {
   ): LayerManager {
     Log.i(TAG, "Initializing LayerManager")
     val layerManager = LayerManager(preferences)
-    layerManager.addLayer(StarsLayer(assetManager, resources))
-    layerManager.addLayer(MessierLayer(assetManager, resources))
-    layerManager.addLayer(ConstellationsLayer(assetManager, resources))
+    // The file based layers keep their built buffers between runs.
+    layerManager.addLayer(StarsLayer(assetManager, resources, app.cacheDir))
+    layerManager.addLayer(MessierLayer(assetManager, resources, app.cacheDir))
+    layerManager.addLayer(ConstellationsLayer(assetManager, resources, app.cacheDir))
     layerManager.addLayer(SolarSystemLayer(model!!, resources, preferences))
     layerManager.addLayer(MeteorShowerLayer(model, resources))
     layerManager.addLayer(CometsLayer(model, resources))
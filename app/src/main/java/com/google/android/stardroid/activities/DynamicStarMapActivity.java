@@ -14,6 +14,7 @@
 
 package com.google.android.stardroid.activities;
 
+import android.app.ActivityManager;
 import android.app.FragmentManager;
 import android.app.SearchManager;
 import android.content.Intent;
@@ -458,6 +459,7 @@ public class DynamicStarMapActivity extends InjectableActivity
     wakeLock.acquire();
     Log.i(TAG, "Starting view");
     skyView.onResume();
+    rendererController.onResume();
     Log.i(TAG, "Starting controller");
     controller.start();
     activityLightLevelManager.onResume();
@@ -538,6 +540,8 @@ public class DynamicStarMapActivity extends InjectableActivity
     }
     activityLightLevelManager.onPause();
     controller.stop();
+    rendererController.onPause();
+    Log.i(TAG, "Rendering: " + rendererController.getFrameStats());
     skyView.onPause();
     wakeLock.release();
     // Debug.stopMethodTracing();
@@ -633,10 +637,30 @@ public class DynamicStarMapActivity extends InjectableActivity
     skyView = (GLSurfaceView) findViewById(R.id.skyrenderer_view);
     // We don't want a depth buffer.
     skyView.setEGLConfigChooser(false);
-    SkyRenderer renderer = new SkyRenderer(getResources());
+    // Keep the textures and buffers while paused, where the device can, rather than uploading
+    // them all again on resume.
+    skyView.setPreserveEGLContextOnPause(true);
+    ActivityManager activityManager = ContextCompat.getSystemService(this, ActivityManager.class);
+    boolean useGles20 =
+        sharedPreferences.getBoolean(ApplicationConstants.USE_GLES20_PREFKEY, false)
+        && activityManager != null
+        && activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= 0x20000;
+    if (useGles20) {
+      skyView.setEGLContextClientVersion(2);
+    }
+    SkyRenderer renderer = new SkyRenderer(getResources(), useGles20);
+    // If the shaders won't build, go back to the fixed function renderer.
+    renderer.setGles20FailureListener(() -> runOnUiThread(() -> {
+      sharedPreferences.edit().putBoolean(ApplicationConstants.USE_GLES20_PREFKEY, false).apply();
+      recreate();
+    }));
     skyView.setRenderer(renderer);
 
     rendererController = new RendererController(renderer, skyView);
+    rendererController.setRenderOnDemand(
+        sharedPreferences.getBoolean(ApplicationConstants.RENDER_ON_DEMAND_PREFKEY, true));
+    // Every layer updating in a frame sees the time as it was at the start of the frame.
+    rendererController.setTickStartClosure(model::captureTimeSnapshot);
     // The renderer will now call back every frame to get model updates.
     rendererController.addUpdateClosure(
         new RendererModelUpdateClosure(model, rendererController, sharedPreferences));
@@ -0,0 +1,156 @@
+package com.google.android.stardroid.base;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Selects the k entries with the largest keys from a stream of (float key, int
+ * value) pairs. This is the primitive counterpart of
+ * {@link FixedSizePriorityQueue}: the entries are held in a binary min-heap
+ * backed by parallel arrays, so adding a candidate never allocates or boxes.
+ *
+ * <p>As with {@link FixedSizePriorityQueue}, once the selector is full a new
+ * entry is only accepted if its key is strictly greater than the smallest key
+ * currently held, which then gets evicted.  To rank by "smallest is best"
+ * (e.g. angular distance) simply negate the key.
+ *
+ * <p>This class is not thread safe.
+ */
+public class FloatKeyedTopK {
+  private final float[] keys;
+  private final int[] values;
+  private int size = 0;
+
+  public FloatKeyedTopK(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    keys = new float[maxSize];
+    values = new int[maxSize];
+  }
+
+  /**
+   * Offers the given entry.  Returns true if the entry was retained, false if
+   * it was rejected because the selector is full and its key is not larger
+   * than the current minimum.  NaN keys are always rejected.
+   */
+  public boolean add(float key, int value) {
+    if (key != key) {
+      return false;
+    }
+    if (size < keys.length) {
+      siftUp(size++, key, value);
+      return true;
+    }
+    if (key > keys[0]) {
+      siftDown(0, key, value);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if an entry with the given key would be retained by
+   * {@link #add}.  Useful for skipping the work of computing a payload.
+   */
+  public boolean wouldAccept(float key) {
+    return key == key && (size < keys.length || key > keys[0]);
+  }
+
+  /** Returns the smallest key currently held. */
+  public float peekKey() {
+    checkNotEmpty();
+    return keys[0];
+  }
+
+  /** Returns the value associated with the smallest key currently held. */
+  public int peekValue() {
+    checkNotEmpty();
+    return values[0];
+  }
+
+  /** Removes the entry with the smallest key and returns its value. */
+  public int poll() {
+    checkNotEmpty();
+    int result = values[0];
+    --size;
+    if (size > 0) {
+      siftDown(0, keys[size], values[size]);
+    }
+    return result;
+  }
+
+  /**
+   * Copies the values held into {@code out}, ordered from the largest key to
+   * the smallest, and empties the selector.  Returns the number of values
+   * written.
+   */
+  public int drainDescending(int[] out) {
+    int n = size;
+    if (out.length < n) {
+      throw new IllegalArgumentException("Output array too small: " + out.length + " < " + n);
+    }
+    for (int i = n - 1; i >= 0; --i) {
+      out[i] = poll();
+    }
+    return n;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int maxSize() {
+    return keys.length;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean isFull() {
+    return size == keys.length;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  private void checkNotEmpty() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+  }
+
+  private void siftUp(int index, float key, int value) {
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (keys[parent] <= key) {
+        break;
+      }
+      keys[index] = keys[parent];
+      values[index] = values[parent];
+      index = parent;
+    }
+    keys[index] = key;
+    values[index] = value;
+  }
+
+  private void siftDown(int index, float key, int value) {
+    int half = size >>> 1;
+    while (index < half) {
+      int child = 2 * index + 1;
+      int right = child + 1;
+      if (right < size && keys[right] < keys[child]) {
+        child = right;
+      }
+      if (key <= keys[child]) {
+        break;
+      }
+      keys[index] = keys[child];
+      values[index] = values[child];
+      index = child;
+    }
+    keys[index] = key;
+    values[index] = value;
+  }
+}
@@ -0,0 +1,153 @@
+package com.google.android.stardroid.base;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * A drop-in alternative to {@link FixedSizePriorityQueue} for objects which
+ * can be ranked by a float score.  It keeps the same add/filter/isFull
+ * semantics, but ranks objects via a {@link FloatKeyedTopK} so that adding a
+ * candidate involves no comparator calls and no per-element allocation.
+ *
+ * <p>Elements with larger scores have higher priority; {@link #peek()} and
+ * {@link #poll()} return the lowest scoring element retained, just as the
+ * root of a {@link FixedSizePriorityQueue} is its lowest priority element.
+ *
+ * @param <E> type of object contained in the queue
+ */
+public class ScoredFixedSizePriorityQueue<E> {
+  /** Computes the score used to rank an object. */
+  public interface Scorer<E> {
+    float score(E object);
+  }
+
+  private final Scorer<? super E> scorer;
+  private final FloatKeyedTopK heap;
+  // The heap's int payload is an index into this array.  Slots are recycled
+  // through freeSlots so the array never needs to grow.
+  private final Object[] elements;
+  private final int[] freeSlots;
+  private int numFreeSlots;
+
+  /**
+   * Filter used to reject some objects without even checking the number of
+   * objects or priorities of those objects in the queue.
+   */
+  private Filter<? super E> filter = null;
+
+  public ScoredFixedSizePriorityQueue(int maxQueueSize, Scorer<? super E> scorer) {
+    this.scorer = scorer;
+    this.heap = new FloatKeyedTopK(maxQueueSize);
+    this.elements = new Object[maxQueueSize];
+    this.freeSlots = new int[maxQueueSize];
+    resetSlots();
+  }
+
+  /**
+   * Sets the filter used to reject objects (without checking the number of
+   * elements in the queue, or their priorities). Setting the filter to null
+   * removes all filtering.
+   */
+  public void setFilter(@Nullable Filter<? super E> filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Returns the filter that is currently being used to reject elements which
+   * are submitted for addition to the queue. Returns null if not filter has
+   * been set.
+   */
+  public Filter<? super E> getFilter() {
+    return filter;
+  }
+
+  public boolean add(E object) {
+    if (filter != null && !filter.accept(object)) {
+      return false;
+    }
+    float score = scorer.score(object);
+    if (!heap.wouldAccept(score)) {
+      return false;
+    }
+    int slot;
+    if (heap.isFull()) {
+      // The evicted root's slot is reused for the new object.
+      slot = heap.peekValue();
+    } else {
+      slot = freeSlots[--numFreeSlots];
+    }
+    elements[slot] = object;
+    heap.add(score, slot);
+    return true;
+  }
+
+  public boolean addAll(Collection<? extends E> c) {
+    boolean changed = false;
+    for (E e : c) {
+      changed |= add(e);
+    }
+    return changed;
+  }
+
+  /** Returns the lowest scoring element retained, or null if the queue is empty. */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public E peek() {
+    return heap.isEmpty() ? null : (E) elements[heap.peekValue()];
+  }
+
+  /** Removes and returns the lowest scoring element, or null if the queue is empty. */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    if (heap.isEmpty()) {
+      return null;
+    }
+    int slot = heap.poll();
+    E result = (E) elements[slot];
+    elements[slot] = null;
+    freeSlots[numFreeSlots++] = slot;
+    return result;
+  }
+
+  /**
+   * Copies the retained elements into {@code out}, ordered from highest score
+   * to lowest, and empties the queue.  Returns the number of elements written.
+   */
+  public int drainDescending(E[] out) {
+    int n = heap.size();
+    if (out.length < n) {
+      throw new IllegalArgumentException("Output array too small: " + out.length + " < " + n);
+    }
+    for (int i = n - 1; i >= 0; --i) {
+      out[i] = poll();
+    }
+    return n;
+  }
+
+  public void clear() {
+    heap.clear();
+    resetSlots();
+  }
+
+  public int size() {
+    return heap.size();
+  }
+
+  public boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  public boolean isFull() {
+    return heap.isFull();
+  }
+
+  private void resetSlots() {
+    for (int i = 0; i < elements.length; ++i) {
+      elements[i] = null;
+      freeSlots[i] = elements.length - 1 - i;
+    }
+    numFreeSlots = elements.length;
+  }
+}
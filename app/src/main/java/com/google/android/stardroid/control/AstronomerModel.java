@@ -100,6 +100,20 @@ public interface AstronomerModel {
     void updateLineOfSight(Vector3 newLineOfSight) {
       lineOfSight.assign(newLineOfSight);
     }
+
+    /**
+     * Only the AstronomerModel should change this.
+     */
+    void updatePerpendicular(float x, float y, float z) {
+      perpendicular.assign(x, y, z);
+    }
+
+    /**
+     * Only the AstronomerModel should change this.
+     */
+    void updateLineOfSight(float x, float y, float z) {
+      lineOfSight.assign(x, y, z);
+    }
   }
 
   /**
@@ -119,10 +133,23 @@ public interface AstronomerModel {
   float getMagneticCorrection();
 
   /**
-   * Returns the time, as UTC.
+   * Returns the time, as UTC.  This reads the clock afresh each call; code run
+   * as part of drawing a frame should use {@link #getTimeSnapshot} instead.
    */
   Date getTime();
 
+  /**
+   * Returns the time as captured by the last call to {@link #captureTimeSnapshot},
+   * so that everything updated in a frame sees the same instant.  Cheap and
+   * safe to call from any thread.
+   */
+  TimeSnapshot getTimeSnapshot();
+
+  /**
+   * Reads the clock for a new frame.  Called once per tick before the layers update.
+   */
+  void captureTimeSnapshot();
+
   /**
    * Sets the clock that provides the time.
    */
@@ -140,6 +167,11 @@ public interface AstronomerModel {
 
   /**
    * Gets the user's direction of view.
+   *
+   * <p>The pointing is calculated as sensor values arrive, so this is cheap
+   * and safe to call from any thread, including the renderer's.  The
+   * returned object is owned by the calling thread and is overwritten by
+   * that thread's next call.
    */
   Pointing getPointing();
 
@@ -64,6 +64,13 @@ import kotlin.math.abs
  * Implementation note: this class isn't making defensive copies and
  * so is vulnerable to clients changing its internal state.
  *
+ *
+ * Threading: the pointing is recalculated whenever the sensor values (or the
+ * location, clock etc.) change, on the thread making that change, which is
+ * normally the sensor thread.  Those writers are serialized on this object.
+ * The result is published through a [PublishedPointing] so that the renderer
+ * can call [getPointing] every frame without locking or tearing.
+ *
  * @author John Taylor
  */
 class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalculator) :
@@ -75,47 +82,74 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
     private var location = LatLong(0f, 0f)
     private var clock: Clock = RealClock()
     private var celestialCoordsLastUpdated: Long = -1
+    // Replaced, never modified, so readers on other threads need no lock.
+    @Volatile private var timeSnapshot = TimeSnapshot(clock.timeInMillisSinceEpoch, 0f)
 
     /**
      * The pointing comprises a vector into the phone's screen expressed in
      * celestial coordinates combined with a perpendicular vector along the
-     * phone's longer side.
+     * phone's longer side.  Only touched by writers; readers get a copy of
+     * [publishedPointing].
      */
     private val pointing = Pointing()
+    private val publishedPointing = PublishedPointing()
+    private val readerPointing = object : ThreadLocal<Pointing>() {
+        override fun initialValue() = Pointing()
+    }
+    private val readerPhoneUp = object : ThreadLocal<Vector3>() {
+        override fun initialValue() = Vector3.unitZ()
+    }
 
     /** The sensor acceleration in the phone's coordinate system.  */
     private val acceleration = ApplicationConstants.INITIAL_DOWN.copy()
-    private var upPhone = acceleration * -1f
+    private val upPhone = acceleration * -1f
 
     /** The sensor magnetic field in the phone's coordinate system.  */
     private val magneticField = ApplicationConstants.INITIAL_SOUTH.copy()
     private var useRotationVector = false
     private val rotationVector = floatArrayOf(1f, 0f, 0f, 0f)
+    private val phoneRotationMatrix = FloatArray(9)
 
     /** North along the ground in celestial coordinates.  */
-    private var trueNorthCelestial = Vector3.unitX()
+    private val trueNorthCelestial = Vector3.unitX()
 
     /** Up in celestial coordinates.  */
     private var upCelestial = Vector3.unitY()
 
     /** East in celestial coordinates.  */
-    private var trueEastCelestial = AXIS_OF_EARTHS_ROTATION
+    private val trueEastCelestial = AXIS_OF_EARTHS_ROTATION.copy()
 
     /** [North, Up, East]^-1 in phone coordinates.  */
-    private var axesPhoneInverseMatrix = identity
+    private val axesPhoneInverseMatrix = identity.copy()
 
     /** [North, Up, East] in celestial coordinates.  */
-    private var axesMagneticCelestialMatrix = identity
+    private val axesMagneticCelestialMatrix = identity.copy()
+
+    // Scratch space for recalculating the pointing, which happens on every
+    // sensor event, so that it allocates nothing.  Guarded by the lock.
+    private val down = Vector3.zero()
+    private val magneticFieldToNorth = Vector3.zero()
+    private val magneticNorthPhone = Vector3.zero()
+    private val magneticEastPhone = Vector3.zero()
+    private val magneticNorthCelestial = Vector3.zero()
+    private val magneticEastCelestial = Vector3.zero()
+    private val transform = identity.copy()
+    private val viewInSpaceSpace = Vector3.zero()
+    private val screenUpInSpaceSpace = Vector3.zero()
+    @Synchronized
     override fun setHorizontalRotation(value: Boolean) {
         screenInPhoneCoords = if (value) {
             SCREEN_DOWN_IN_PHONE_COORDS
         } else {
             SCREEN_UP_IN_PHONE_COORDS
         }
+        calculatePointing()
     }
 
+    @Synchronized
     override fun setAutoUpdatePointing(autoUpdatePointing: Boolean) {
         this.autoUpdatePointing = autoUpdatePointing
+        calculatePointing()
     }
 
     override fun getFieldOfView(): Float {
@@ -134,19 +168,33 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
         return Date(clock.timeInMillisSinceEpoch)
     }
 
+    override fun getTimeSnapshot(): TimeSnapshot {
+        return timeSnapshot
+    }
+
+    override fun captureTimeSnapshot() {
+        timeSnapshot = TimeSnapshot(clock.timeInMillisSinceEpoch, location.longitude)
+    }
+
     override fun getLocation(): LatLong {
         return location
     }
 
+    @Synchronized
     override fun setLocation(location: LatLong) {
         this.location = location
+        captureTimeSnapshot()
         calculateLocalNorthAndUpInCelestialCoords(true)
+        calculatePointing()
     }
 
     override fun getPhoneUpDirection(): Vector3 {
-        return upPhone
+        val up = readerPhoneUp.get()!!
+        publishedPointing.readPhoneUp(up)
+        return up
     }
 
+    @Synchronized
     override fun setPhoneSensorValues(acceleration: Vector3, magneticField: Vector3) {
         if (magneticField.length2 < TOL || acceleration.length2 < TOL) {
             Log.w(TAG, "Invalid sensor values - ignoring")
@@ -157,8 +205,10 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
         this.acceleration.assign(acceleration)
         this.magneticField.assign(magneticField)
         useRotationVector = false
+        calculatePointing()
     }
 
+    @Synchronized
     override fun setPhoneSensorValues(rotationVector: FloatArray) {
         // TODO(jontayler): What checks do we need for this to be valid?
         // Note on some phones such as the Galaxy S4 this vector is the wrong size and needs to be
@@ -171,41 +221,50 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
             rotationVector.size.coerceAtMost(4)
         )
         useRotationVector = true
+        calculatePointing()
     }
 
+    @Synchronized
     override fun getNorth(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return trueNorthCelestial.copy()
     }
 
+    @Synchronized
     override fun getSouth(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return -trueNorthCelestial
     }
 
+    @Synchronized
     override fun getZenith(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return upCelestial.copy()
     }
 
+    @Synchronized
     override fun getNadir(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return -upCelestial
     }
 
+    @Synchronized
     override fun getEast(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return trueEastCelestial.copy()
     }
 
+    @Synchronized
     override fun getWest(): Vector3 {
         calculateLocalNorthAndUpInCelestialCoords(false)
         return -trueEastCelestial
     }
 
+    @Synchronized
     override fun setMagneticDeclinationCalculator(calculator: MagneticDeclinationCalculator) {
         magneticDeclinationCalculator = calculator
         calculateLocalNorthAndUpInCelestialCoords(true)
+        calculatePointing()
     }
 
     /**
@@ -215,7 +274,8 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
      *
      *
      * This method requires that [.axesMagneticCelestialMatrix] and
-     * [.axesPhoneInverseMatrix] are currently up to date.
+     * [.axesPhoneInverseMatrix] are currently up to date.  Callers must hold
+     * the lock on this object.
      */
     private fun calculatePointing() {
         if (!autoUpdatePointing) {
@@ -223,11 +283,12 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
         }
         calculateLocalNorthAndUpInCelestialCoords(false)
         calculateLocalNorthAndUpInPhoneCoordsFromSensors()
-        val transform = axesMagneticCelestialMatrix * axesPhoneInverseMatrix
-        val viewInSpaceSpace =  transform * POINTING_DIR_IN_PHONE_COORDS
-        val screenUpInSpaceSpace = transform * screenInPhoneCoords
+        transform.assignProduct(axesMagneticCelestialMatrix, axesPhoneInverseMatrix)
+        viewInSpaceSpace.assignProduct(transform, POINTING_DIR_IN_PHONE_COORDS)
+        screenUpInSpaceSpace.assignProduct(transform, screenInPhoneCoords)
         pointing.updateLineOfSight(viewInSpaceSpace)
         pointing.updatePerpendicular(screenUpInSpaceSpace)
+        publishedPointing.publish(pointing, upPhone)
     }
 
     /**
@@ -235,22 +296,25 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
      * coordinate frame.
      */
     private fun calculateLocalNorthAndUpInCelestialCoords(forceUpdate: Boolean) {
-        val currentTime = clock.timeInMillisSinceEpoch
+        // The zenith is worked out for the frame's instant, as the layers are, not the clock's.
+        val time = timeSnapshot
         if (!forceUpdate &&
-            abs(currentTime - celestialCoordsLastUpdated) <
+            abs(time.millis - celestialCoordsLastUpdated) <
             MINIMUM_TIME_BETWEEN_CELESTIAL_COORD_UPDATES_MILLIS
         ) {
             return
         }
-        celestialCoordsLastUpdated = currentTime
-        updateMagneticCorrection()
-        val up = calculateRADecOfZenith(time, location)
+        celestialCoordsLastUpdated = time.millis
+        updateMagneticCorrection(time.millis)
+        // The snapshot's sidereal time is for the current location, as moving recaptures it.
+        val up = RaDec(time.localSiderealTime, location.latitude)
         upCelestial = getGeocentricCoords(up)
         val z = AXIS_OF_EARTHS_ROTATION
         val zDotu = upCelestial dot z
-        trueNorthCelestial = z - upCelestial * zDotu
+        trueNorthCelestial.assign(
+            z.x - upCelestial.x * zDotu, z.y - upCelestial.y * zDotu, z.z - upCelestial.z * zDotu)
         trueNorthCelestial.normalize()
-        trueEastCelestial = trueNorthCelestial * upCelestial
+        trueEastCelestial.assignCross(trueNorthCelestial, upCelestial)
 
         // Apply magnetic correction.  Rather than correct the phone's axes for
         // the magnetic declination, it's more efficient to rotate the
@@ -258,13 +322,9 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
         val rotationMatrix = calculateRotationMatrix(
             magneticDeclinationCalculator!!.declination, upCelestial
         )
-        val magneticNorthCelestial = rotationMatrix * trueNorthCelestial
-        val magneticEastCelestial = magneticNorthCelestial * upCelestial
-        axesMagneticCelestialMatrix = Matrix3x3(
-            magneticNorthCelestial,
-            upCelestial,
-            magneticEastCelestial
-        )
+        magneticNorthCelestial.assignProduct(rotationMatrix, trueNorthCelestial)
+        magneticEastCelestial.assignCross(magneticNorthCelestial, upCelestial)
+        axesMagneticCelestialMatrix.assign(magneticNorthCelestial, upCelestial, magneticEastCelestial)
     }
     // TODO(jontayler): with the switch to using the rotation vector sensor this is rather
     // convoluted and doing too much work.  It can be greatly simplified when we rewrite the
@@ -274,60 +334,66 @@ class AstronomerModelImpl(magneticDeclinationCalculator: MagneticDeclinationCalc
      * frame from the magnetic field and accelerometer sensors.
      */
     private fun calculateLocalNorthAndUpInPhoneCoordsFromSensors() {
-        val magneticNorthPhone: Vector3
-        val magneticEastPhone: Vector3
         if (useRotationVector) {
-            val rotationMatrix = FloatArray(9)
-            SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVector)
+            SensorManager.getRotationMatrixFromVector(phoneRotationMatrix, rotationVector)
             // The up and north vectors are the 2nd and 3rd rows of this matrix.
-            magneticNorthPhone = Vector3(rotationMatrix[3], rotationMatrix[4], rotationMatrix[5])
-            upPhone = Vector3(rotationMatrix[6], rotationMatrix[7], rotationMatrix[8])
-            magneticEastPhone = Vector3(rotationMatrix[0], rotationMatrix[1], rotationMatrix[2])
+            magneticNorthPhone.assign(phoneRotationMatrix[3], phoneRotationMatrix[4], phoneRotationMatrix[5])
+            upPhone.assign(phoneRotationMatrix[6], phoneRotationMatrix[7], phoneRotationMatrix[8])
+            magneticEastPhone.assign(phoneRotationMatrix[0], phoneRotationMatrix[1], phoneRotationMatrix[2])
         } else {
-            // TODO(johntaylor): we can reduce the number of vector copies done in here.
-            val down = acceleration.copy()
+            down.assign(acceleration)
             down.normalize()
             // Magnetic field goes *from* North to South, so reverse it.
-            val magneticFieldToNorth = magneticField.copy()
+            magneticFieldToNorth.assign(magneticField)
             magneticFieldToNorth.timesAssign(-1f)
             magneticFieldToNorth.normalize()
             // This is the vector to magnetic North *along the ground*.
-            magneticNorthPhone =
-                magneticFieldToNorth - down * (magneticFieldToNorth dot down)
+            val fieldDotDown = magneticFieldToNorth dot down
+            magneticNorthPhone.assign(
+                magneticFieldToNorth.x - down.x * fieldDotDown,
+                magneticFieldToNorth.y - down.y * fieldDotDown,
+                magneticFieldToNorth.z - down.z * fieldDotDown)
             magneticNorthPhone.normalize()
-            upPhone = -down
-            magneticEastPhone = magneticNorthPhone * upPhone
+            upPhone.assign(-down.x, -down.y, -down.z)
+            magneticEastPhone.assignCross(magneticNorthPhone, upPhone)
         }
         // The matrix is orthogonal, so transpose it to find its inverse.
-        // Easiest way to do that is to construct it from row vectors instead
+        // Easiest way to do that is to fill it from row vectors instead
         // of column vectors.
-        axesPhoneInverseMatrix = Matrix3x3(magneticNorthPhone, upPhone, magneticEastPhone, false)
+        axesPhoneInverseMatrix.assign(magneticNorthPhone, upPhone, magneticEastPhone, false)
     }
 
     /**
      * Updates the angle between True North and Magnetic North.
      */
-    private fun updateMagneticCorrection() {
+    private fun updateMagneticCorrection(timeMillis: Long) {
         magneticDeclinationCalculator!!.setLocationAndTime(location, timeMillis)
     }
 
     /**
-     * Returns the user's pointing.  Note that clients should not usually modify this
-     * object as it is not defensively copied.
+     * Returns the user's pointing as last published.  This never blocks; the
+     * returned object belongs to the calling thread and is reused on its
+     * next call.
      */
     override fun getPointing(): Pointing {
-        calculatePointing()
-        return pointing
+        val result = readerPointing.get()!!
+        publishedPointing.readPointing(result)
+        return result
     }
 
+    @Synchronized
     override fun setPointing(lineOfSight: Vector3, perpendicular: Vector3) {
         pointing.updateLineOfSight(lineOfSight)
         pointing.updatePerpendicular(perpendicular)
+        publishedPointing.publish(pointing, upPhone)
     }
 
+    @Synchronized
     override fun setClock(clock: Clock) {
         this.clock = clock
+        captureTimeSnapshot()
         calculateLocalNorthAndUpInCelestialCoords(true)
+        calculatePointing()
     }
 
     override fun getTimeMillis(): Long {
@@ -0,0 +1,108 @@
+package com.google.android.stardroid.control;
+
+import com.google.android.stardroid.math.LatLong;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link MagneticDeclinationCalculator} which evaluates the (expensive)
+ * field model only at the corners of a grid and interpolates in between.
+ *
+ * <p>The grid is {@link #GRID_DEGREES} square in latitude and longitude and
+ * {@link #TIME_STEP_MILLIS} long in time.  The declination at a location is
+ * interpolated bilinearly from the four corners around it, at the nearest
+ * grid time; declination drifts by at most a few tenths of a degree a year, so
+ * that's well within what the compass can resolve.  Corner values are kept in
+ * an LRU cache, so moving around, or time travelling back and forth over
+ * years, mostly reuses them.
+ */
+public class CachedMagneticDeclinationCalculator implements MagneticDeclinationCalculator {
+  /** Evaluates the full declination model at a point. */
+  public interface DeclinationModel {
+    float getDeclination(float latitude, float longitude, long timeInMillis);
+  }
+
+  public static final float GRID_DEGREES = 2f;
+  public static final long TIME_STEP_MILLIS = 30L * 24 * 60 * 60 * 1000;
+  /** Enough for a few hundred places at a few years' worth of times. */
+  public static final int MAX_CACHED_CORNERS = 4096;
+
+  private static final int LONGITUDE_CELLS = (int) (360 / GRID_DEGREES);
+
+  private final DeclinationModel model;
+  private final Map<Long, Float> corners = new LinkedHashMap<Long, Float>(256, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Float> eldest) {
+      return size() > MAX_CACHED_CORNERS;
+    }
+  };
+  private float declination = 0;
+  private boolean hasDeclination = false;
+  private int modelEvaluations = 0;
+
+  public CachedMagneticDeclinationCalculator(DeclinationModel model) {
+    this.model = model;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Silently returns zero if the time and location have not been set.
+   */
+  @Override
+  public synchronized float getDeclination() {
+    return hasDeclination ? declination : 0;
+  }
+
+  @Override
+  public synchronized void setLocationAndTime(LatLong location, long timeInMillis) {
+    float latCells = (location.getLatitude() + 90) / GRID_DEGREES;
+    float longCells = (location.getLongitude() + 180) / GRID_DEGREES;
+    // Keep the top row of cells inside the grid at the north pole.
+    int latIndex = Math.min((int) Math.floor(latCells), (int) (180 / GRID_DEGREES) - 1);
+    int longIndex = (int) Math.floor(longCells);
+    long timeIndex = Math.round((double) timeInMillis / TIME_STEP_MILLIS);
+    float u = latCells - latIndex;
+    float v = longCells - longIndex;
+
+    float d00 = corner(latIndex, longIndex, timeIndex);
+    // Near the magnetic poles the corners can straddle +/-180 degrees, so take
+    // the others relative to the first.
+    float d01 = d00 + wrap(corner(latIndex, longIndex + 1, timeIndex) - d00);
+    float d10 = d00 + wrap(corner(latIndex + 1, longIndex, timeIndex) - d00);
+    float d11 = d00 + wrap(corner(latIndex + 1, longIndex + 1, timeIndex) - d00);
+
+    float interpolated = (1 - u) * ((1 - v) * d00 + v * d01) + u * ((1 - v) * d10 + v * d11);
+    declination = wrap(interpolated);
+    hasDeclination = true;
+  }
+
+  /** How many times the full model has been evaluated. */
+  public synchronized int getModelEvaluations() {
+    return modelEvaluations;
+  }
+
+  private float corner(int latIndex, int longIndex, long timeIndex) {
+    longIndex = Math.floorMod(longIndex, LONGITUDE_CELLS);
+    long key = (timeIndex << 32) | ((long) latIndex << 16) | longIndex;
+    Float value = corners.get(key);
+    if (value == null) {
+      value = model.getDeclination(
+          latIndex * GRID_DEGREES - 90, longIndex * GRID_DEGREES - 180,
+          timeIndex * TIME_STEP_MILLIS);
+      modelEvaluations++;
+      corners.put(key, value);
+    }
+    return value;
+  }
+
+  // Wraps an angle difference into [-180, 180).
+  private static float wrap(float degrees) {
+    return degrees - 360 * (float) Math.floor((degrees + 180) / 360);
+  }
+
+  @Override
+  public String toString() {
+    return "Cached Magnetic Correction";
+  }
+}
@@ -0,0 +1,81 @@
+package com.google.android.stardroid.control
+
+import com.google.android.stardroid.control.AstronomerModel.Pointing
+import com.google.android.stardroid.math.Vector3
+
+/**
+ * The most recently calculated pointing, written by whichever thread processes
+ * the sensors and read by the renderer without taking a lock.
+ *
+ * This is a seqlock: writers bump [sequence] to an odd value, write the
+ * components and bump it back to even.  Readers retry if the sequence was odd
+ * or changed while they were copying, so they never see a torn pointing.
+ * Every field is volatile so the reads and writes can't be reordered around
+ * the sequence counter.  Writers are serialized with a lock; readers never block.
+ */
+internal class PublishedPointing {
+    @Volatile private var sequence = 0
+
+    @Volatile private var lineOfSightX = 1f
+    @Volatile private var lineOfSightY = 0f
+    @Volatile private var lineOfSightZ = 0f
+    @Volatile private var perpendicularX = 0f
+    @Volatile private var perpendicularY = 1f
+    @Volatile private var perpendicularZ = 0f
+    @Volatile private var phoneUpX = 0f
+    @Volatile private var phoneUpY = 0f
+    @Volatile private var phoneUpZ = 1f
+
+    @Synchronized
+    fun publish(pointing: Pointing, phoneUp: Vector3) {
+        sequence++
+        lineOfSightX = pointing.lineOfSightX
+        lineOfSightY = pointing.lineOfSightY
+        lineOfSightZ = pointing.lineOfSightZ
+        perpendicularX = pointing.perpendicularX
+        perpendicularY = pointing.perpendicularY
+        perpendicularZ = pointing.perpendicularZ
+        phoneUpX = phoneUp.x
+        phoneUpY = phoneUp.y
+        phoneUpZ = phoneUp.z
+        sequence++
+    }
+
+    /** Copies the latest consistent pointing into the given object.  */
+    fun readPointing(into: Pointing) {
+        while (true) {
+            val before = sequence
+            if (before and 1 == 0) {
+                val lx = lineOfSightX
+                val ly = lineOfSightY
+                val lz = lineOfSightZ
+                val px = perpendicularX
+                val py = perpendicularY
+                val pz = perpendicularZ
+                if (sequence == before) {
+                    into.updateLineOfSight(lx, ly, lz)
+                    into.updatePerpendicular(px, py, pz)
+                    return
+                }
+            }
+            Thread.yield()
+        }
+    }
+
+    /** Copies the latest consistent phone up direction into the given vector.  */
+    fun readPhoneUp(into: Vector3) {
+        while (true) {
+            val before = sequence
+            if (before and 1 == 0) {
+                val x = phoneUpX
+                val y = phoneUpY
+                val z = phoneUpZ
+                if (sequence == before) {
+                    into.assign(x, y, z)
+                    return
+                }
+            }
+            Thread.yield()
+        }
+    }
+}
@@ -50,6 +50,14 @@ public class RealMagneticDeclinationCalculator implements MagneticDeclinationCal
                                             timeInMillis);
   }
 
+  /**
+   * Evaluates the full field model at the given point; a
+   * {@link CachedMagneticDeclinationCalculator.DeclinationModel}.
+   */
+  public static float computeDeclination(float latitude, float longitude, long timeInMillis) {
+    return new GeomagneticField(latitude, longitude, 0, timeInMillis).getDeclination();
+  }
+
   @Override
   public String toString() {
     return "Real Magnetic Correction";
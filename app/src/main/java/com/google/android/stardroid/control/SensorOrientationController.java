@@ -14,18 +14,25 @@
 
 package com.google.android.stardroid.control;
 
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.google.android.stardroid.ApplicationConstants;
+import com.google.android.stardroid.math.LatLong;
+import com.google.android.stardroid.sensors.SensorModelAdaptor;
+import com.google.android.stardroid.sensors.SensorTrace;
 import com.google.android.stardroid.util.MiscUtil;
-import com.google.android.stardroid.util.smoothers.ExponentiallyWeightedSmoother;
-import com.google.android.stardroid.util.smoothers.PlainSmootherModelAdaptor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -34,50 +41,63 @@ import javax.inject.Provider;
 /**
  * Sets the direction of view from the orientation sensors.
  *
+ * <p>Sensor events are delivered to a dedicated thread rather than the main
+ * looper.  There they are fused by the {@link SensorModelAdaptor}'s
+ * orientation filter and the model calculates the pointing, so that neither
+ * the UI nor the GL thread pays for the sensor math.
+ *
  * @author John Taylor
  */
-public class SensorOrientationController extends AbstractController
-    implements SensorEventListener {
-  // TODO(johntaylor): this class needs to be refactored to use the new
-  // sensor API and to behave properly when sensors are not available.
-
-  private static class SensorDampingSettings {
-    public float damping;
-    public int exponent;
-    public SensorDampingSettings(float damping, int exponent) {
-      this.damping = damping;
-      this.exponent = exponent;
-    }
-  }
+public class SensorOrientationController extends AbstractController {
   private final static String TAG = MiscUtil.getTag(SensorOrientationController.class);
+
+  /**
+   * Time constants, in seconds, of the orientation filter when using the
+   * accelerometer and magnetometer without a gyro, indexed by the damping
+   * preference.  Larger values are smoother but lag more.
+   */
+  private static final float[] ACC_MAG_TIME_CONSTANTS = {0.05f, 0.15f, 0.3f, 0.6f};
+  /**
+   * Time constant when a gyro carries the fast motion and the accelerometer
+   * and magnetometer only correct its drift.
+   */
+  private static final float GYRO_DRIFT_TIME_CONSTANT = 0.5f;
+  /**
+   * Time constant applied to the platform's rotation vector.  It is already
+   * fused and smoothed, so by default we pass it straight through.
+   */
+  private static final float ROTATION_VECTOR_TIME_CONSTANT = 0f;
+
+  /**
+   * How far ahead to predict the orientation.  Roughly the time from a sensor
+   * reading to the frame showing it: half the batching latency, up to a frame
+   * waiting for the renderer and a frame or two in the display pipeline.
+   */
+  private static final long PREDICTION_HORIZON_NANOS = 40_000_000L;
+
   /**
-   * Parameters that control the smoothing of the accelerometer and
-   * magnetic sensors.
+   * How long the sensor hub may batch events before waking us.
+   * A little under two frames: enough to halve the number of wake ups at
+   * SENSOR_DELAY_GAME without making the sky visibly lag.
    */
-  private static final SensorDampingSettings[] ACC_DAMPING_SETTINGS = {
-        new SensorDampingSettings(0.7f, 3),
-        new SensorDampingSettings(0.7f, 3),
-        new SensorDampingSettings(0.1f, 3),
-        new SensorDampingSettings(0.1f, 3),
-  };
-  private static final SensorDampingSettings[] MAG_DAMPING_SETTINGS = {
-      new SensorDampingSettings(0.05f, 3),  // Derived for the Nexus One
-      new SensorDampingSettings(0.001f, 4),  // Derived for the unpatched MyTouch Slide
-      new SensorDampingSettings(0.0001f, 5),  // Just guessed for Nexus 6
-      new SensorDampingSettings(0.000001f, 5)  // Just guessed for Nexus 6
-  };
+  private static final int MAX_REPORT_LATENCY_MICROS = 30000;
 
   private SensorManager manager;
-  private SensorListener accelerometerSmoother;
-  private SensorListener compassSmoother;
-  private Provider<PlainSmootherModelAdaptor> modelAdaptorProvider;
+  private HandlerThread sensorThread;
+  private Handler sensorHandler;
+  @Nullable private SensorTrace.Writer traceWriter;
+  private Context context;
+  private SensorModelAdaptor modelAdaptor;
+  private Provider<SensorModelAdaptor> modelAdaptorProvider;
   private Sensor rotationSensor;
   private SharedPreferences sharedPreferences;
 
   @Inject
-  SensorOrientationController(Provider<PlainSmootherModelAdaptor> modelAdaptorProvider,
+  SensorOrientationController(Provider<SensorModelAdaptor> modelAdaptorProvider,
                               @Nullable SensorManager manager,
-                              SharedPreferences sharedPreferences) {
+                              SharedPreferences sharedPreferences,
+                              Context context) {
+    this.context = context;
     this.manager = manager;
     this.modelAdaptorProvider = modelAdaptorProvider;
     this.rotationSensor = manager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
@@ -86,21 +106,43 @@ public class SensorOrientationController extends AbstractController
 
   @Override
   public void start() {
-    PlainSmootherModelAdaptor modelAdaptor = modelAdaptorProvider.get();
+    if (manager == null) {
+      return;
+    }
+    modelAdaptor = modelAdaptorProvider.get();
+    modelAdaptor.reset();
+    sensorThread = new HandlerThread("SensorOrientation", Process.THREAD_PRIORITY_DISPLAY);
+    sensorThread.start();
+    sensorHandler = new Handler(sensorThread.getLooper());
+    if (sharedPreferences.getBoolean(ApplicationConstants.RECORD_SENSOR_TRACE_PREFKEY, false)) {
+      startTrace();
+    }
 
-    if (manager != null) {
-      if (!sharedPreferences.getBoolean(ApplicationConstants.SHARED_PREFERENCE_DISABLE_GYRO,
-          false)) {
-        Log.d(TAG, "Using rotation sensor");
-        manager.registerListener(this, rotationSensor, SensorManager.SENSOR_DELAY_GAME);
+    boolean gyroDisabled = sharedPreferences.getBoolean(
+        ApplicationConstants.SHARED_PREFERENCE_DISABLE_GYRO, false);
+    if (!gyroDisabled && rotationSensor != null) {
+      Log.d(TAG, "Using rotation sensor");
+      modelAdaptor.setUsingGyroscope(false);
+      modelAdaptor.setTimeConstant(ROTATION_VECTOR_TIME_CONSTANT);
+      modelAdaptor.setPredictionHorizon(PREDICTION_HORIZON_NANOS);
+      register(rotationSensor, SensorManager.SENSOR_DELAY_GAME, sensorHandler);
+      // Only used to predict where the rotation vector is heading.
+      register(manager.getDefaultSensor(Sensor.TYPE_GYROSCOPE), SensorManager.SENSOR_DELAY_GAME,
+          sensorHandler);
+    } else {
+      Sensor gyroscope = gyroDisabled ? null : manager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+      int sensorSpeed = SensorManager.SENSOR_DELAY_GAME;
+      if (gyroscope != null) {
+        Log.d(TAG, "Fusing gyro, accelerometer and magnetic field");
+        modelAdaptor.setTimeConstant(GYRO_DRIFT_TIME_CONSTANT);
+        modelAdaptor.setPredictionHorizon(PREDICTION_HORIZON_NANOS);
       } else {
-        // TODO(jontayler): remove this code once enough it's used in few enough phones.
         Log.d(TAG, "Using classic sensors");
-        Log.d(TAG, "Exponentially weighted smoothers used");
         String dampingPreference = sharedPreferences.getString(
             ApplicationConstants.SENSOR_DAMPING_PREF_KEY,
             ApplicationConstants.SENSOR_DAMPING_STANDARD);
-        String speedPreference = sharedPreferences.getString(ApplicationConstants.SENSOR_SPEED_PREF_KEY,
+        String speedPreference = sharedPreferences.getString(
+            ApplicationConstants.SENSOR_SPEED_PREF_KEY,
             ApplicationConstants.SENSOR_SPEED_STANDARD);
         Log.d(TAG, "Sensor damping preference " + dampingPreference);
         Log.d(TAG, "Sensor speed preference " + speedPreference);
@@ -112,51 +154,84 @@ public class SensorOrientationController extends AbstractController
         } else if (ApplicationConstants.SENSOR_DAMPING_REALLY_HIGH.equals(dampingPreference)) {
           dampingIndex = 3;
         }
-        int sensorSpeed = SensorManager.SENSOR_DELAY_GAME;
         if (ApplicationConstants.SENSOR_SPEED_SLOW.equals(speedPreference)) {
           sensorSpeed = SensorManager.SENSOR_DELAY_NORMAL;
         } else if (ApplicationConstants.SENSOR_SPEED_HIGH.equals(speedPreference)) {
           sensorSpeed = SensorManager.SENSOR_DELAY_FASTEST;
         }
-        accelerometerSmoother = new ExponentiallyWeightedSmoother(
-            modelAdaptor,
-            ACC_DAMPING_SETTINGS[dampingIndex].damping,
-            ACC_DAMPING_SETTINGS[dampingIndex].exponent);
-        compassSmoother = new ExponentiallyWeightedSmoother(
-            modelAdaptor,
-            MAG_DAMPING_SETTINGS[dampingIndex].damping,
-            MAG_DAMPING_SETTINGS[dampingIndex].exponent);
-        manager.registerListener(accelerometerSmoother,
-                                 SensorManager.SENSOR_ACCELEROMETER,
-                                 sensorSpeed);
-        manager.registerListener(compassSmoother,
-                                 SensorManager.SENSOR_MAGNETIC_FIELD,
-                                 sensorSpeed);
+        modelAdaptor.setTimeConstant(ACC_MAG_TIME_CONSTANTS[dampingIndex]);
+        modelAdaptor.setPredictionHorizon(0);
+      }
+      modelAdaptor.setUsingGyroscope(gyroscope != null);
+      modelAdaptor.setReverseMagneticZaxis(sharedPreferences.getBoolean(
+          ApplicationConstants.REVERSE_MAGNETIC_Z_PREFKEY, false));
+      if (gyroscope != null) {
+        register(gyroscope, sensorSpeed, sensorHandler);
       }
+      register(manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), sensorSpeed, sensorHandler);
+      register(manager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD), sensorSpeed, sensorHandler);
     }
     Log.d(TAG, "Registered sensor listener");
   }
 
-  @Override
-  public void stop() {
-    Log.d(
-        TAG, "Unregistering sensor listeners: " + accelerometerSmoother + ", "
-            + compassSmoother + ", " + this);
-    manager.unregisterListener(accelerometerSmoother);
-    manager.unregisterListener(compassSmoother);
-    manager.unregisterListener(this);
+  /**
+   * Starts saving the sensor events to the app's external files directory, from
+   * where they can be pulled and replayed.
+   */
+  private void startTrace() {
+    File file = new File(context.getExternalFilesDir(null),
+        "sensors-" + System.currentTimeMillis() + ".trace");
+    try {
+      traceWriter = new SensorTrace.Writer(new FileOutputStream(file));
+      // Sensor event timestamps share the elapsed realtime clock's time base.
+      long now = SystemClock.elapsedRealtimeNanos();
+      traceWriter.writeTime(now, model.getTimeMillis());
+      LatLong location = model.getLocation();
+      traceWriter.writeLocation(now, location.getLatitude(), location.getLongitude());
+      Log.i(TAG, "Recording sensor trace to " + file);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to record sensor trace to " + file, e);
+      traceWriter = null;
+    }
+    final SensorTrace.Writer writer = traceWriter;
+    final SensorModelAdaptor adaptor = modelAdaptor;
+    sensorHandler.post(() -> adaptor.setTraceWriter(writer));
   }
 
-  @Override
-  public void onSensorChanged(SensorEvent event) {
-    if (event.sensor != rotationSensor) {
+  private void register(@Nullable Sensor sensor, int rate, Handler handler) {
+    if (sensor == null) {
       return;
     }
-    model.setPhoneSensorValues(event.values);
+    // Batching only helps if the sensor has a FIFO to batch into.
+    int maxReportLatency = sensor.getFifoMaxEventCount() > 0 ? MAX_REPORT_LATENCY_MICROS : 0;
+    Log.d(TAG, sensor.getName() + " max report latency " + maxReportLatency + "us");
+    manager.registerListener(modelAdaptor, sensor, rate, maxReportLatency, handler);
   }
 
   @Override
-  public void onAccuracyChanged(Sensor sensor, int accuracy) {
-    // Ignore
+  public void stop() {
+    Log.d(TAG, "Unregistering sensor listener: " + modelAdaptor);
+    if (modelAdaptor != null) {
+      manager.unregisterListener(modelAdaptor);
+    }
+    if (traceWriter != null) {
+      // Close on the sensor thread, after any events already queued there.
+      final SensorTrace.Writer writer = traceWriter;
+      final SensorModelAdaptor adaptor = modelAdaptor;
+      sensorHandler.post(() -> {
+        adaptor.setTraceWriter(null);
+        try {
+          writer.close();
+        } catch (IOException e) {
+          Log.e(TAG, "Error closing sensor trace", e);
+        }
+      });
+      traceWriter = null;
+    }
+    if (sensorThread != null) {
+      sensorThread.quitSafely();
+      sensorThread = null;
+      sensorHandler = null;
+    }
   }
 }
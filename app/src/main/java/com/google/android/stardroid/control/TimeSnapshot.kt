@@ -0,0 +1,35 @@
+package com.google.android.stardroid.control
+
+import com.google.android.stardroid.math.julianCenturies
+import com.google.android.stardroid.math.julianDay
+import com.google.android.stardroid.math.meanSiderealTime
+import java.util.*
+
+/**
+ * The time, and the quantities derived from it, as captured once at the start
+ * of a frame.  Everything updated during the frame reads the same snapshot so
+ * that the layers and the model agree on the instant they're drawing, and the
+ * derived values are only calculated once.
+ *
+ * Snapshots are immutable and so can be shared between threads.
+ */
+class TimeSnapshot(
+    /** Milliseconds since the Unix epoch. */
+    val millis: Long,
+    /** The longitude, in degrees, at which [localSiderealTime] is calculated. */
+    longitude: Float
+) {
+    /**
+     * The time as a [Date].  This is shared by all the readers of the snapshot,
+     * so it must not be modified.
+     */
+    val date = Date(millis)
+
+    val julianDay = julianDay(date)
+
+    /** Julian centuries since J2000.0. */
+    val julianCenturies = julianCenturies(julianDay)
+
+    /** Local mean sidereal time, in degrees. */
+    val localSiderealTime = meanSiderealTime(julianDay, longitude)
+}
@@ -88,8 +88,12 @@ enum class SolarSystemBody
     // TODO(serafini): Update the numbers so we can extend the approximation to cover 
     // 3000 BC to 3000 AD.
     fun getOrbitalElements(date: Date): OrbitalElements {
-        // Centuries since J2000
-        val jc = julianCenturies(date).toFloat()
+        return getOrbitalElements(julianCenturies(date))
+    }
+
+    /** Gets the orbital elements at the given number of Julian centuries since J2000. */
+    fun getOrbitalElements(julianCenturies: Double): OrbitalElements {
+        val jc = julianCenturies.toFloat()
         return when (this) {
             Mercury -> {
                 val a = 0.38709927f + 0.00000037f * jc
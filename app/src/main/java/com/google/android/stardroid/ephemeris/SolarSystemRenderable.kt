@@ -18,6 +18,7 @@ import android.content.res.Resources
 import android.graphics.Color
 import com.google.android.stardroid.base.Lists
 import com.google.android.stardroid.control.AstronomerModel
+import com.google.android.stardroid.control.TimeSnapshot
 import com.google.android.stardroid.math.Vector3
 import com.google.android.stardroid.math.heliocentricCoordinatesFromOrbitalElements
 import com.google.android.stardroid.math.updateFromRaDec
@@ -55,12 +56,13 @@ class SolarSystemRenderable(
     override val searchLocation: Vector3
         get() = currentCoords
 
-    private fun updateCoords(time: Date) {
-        lastUpdateTimeMs = time.time
+    private fun updateCoords(time: TimeSnapshot) {
+        lastUpdateTimeMs = time.millis
         // TODO(johntaylor): figure out why we do this - presumably to make sure the images
         // are orientated correctly taking into account the Earth's orbital plane.
         // I'm not sure we're doing this right though.
-        earthCoords = heliocentricCoordinatesFromOrbitalElements(SolarSystemBody.Earth.getOrbitalElements(time))
+        earthCoords = heliocentricCoordinatesFromOrbitalElements(
+            SolarSystemBody.Earth.getOrbitalElements(time.julianCenturies))
         currentCoords.updateFromRaDec(universe.getRaDec(solarSystemBody, time))
         for (imagePrimitives in imagePrimitives) {
             imagePrimitives.setUpVector(earthCoords)
@@ -68,9 +70,9 @@ class SolarSystemRenderable(
     }
 
     override fun initialize(): Renderable {
-        val time = model.time
+        val time = model.timeSnapshot
         updateCoords(time)
-        imageId = solarSystemObject.getImageResourceId(time)
+        imageId = solarSystemObject.getImageResourceId(time.date)
         if (solarSystemBody === SolarSystemBody.Moon) {
             imagePrimitives.add(
                 ImagePrimitive(
@@ -97,8 +99,8 @@ class SolarSystemRenderable(
 
     override fun update(): EnumSet<UpdateType> {
         val updates = EnumSet.noneOf(UpdateType::class.java)
-        val modelTime = model.time
-        if (Math.abs(modelTime.time - lastUpdateTimeMs) > solarSystemObject.getUpdateFrequencyMs()) {
+        val modelTime = model.timeSnapshot
+        if (Math.abs(modelTime.millis - lastUpdateTimeMs) > solarSystemObject.getUpdateFrequencyMs()) {
             updates.add(UpdateType.UpdatePositions)
             // update location
             updateCoords(modelTime)
@@ -109,7 +111,7 @@ class SolarSystemRenderable(
                 imagePrimitives[0].setUpVector(earthCoords)
 
                 // update image:
-                val newImageId = solarSystemObject.getImageResourceId(modelTime)
+                val newImageId = solarSystemObject.getImageResourceId(modelTime.date)
                 if (newImageId != imageId) {
                     imageId = newImageId
                     imagePrimitives[0].setImageId(imageId)
@@ -142,6 +144,6 @@ class SolarSystemRenderable(
         name = resources.getString(solarSystemObject.getNameResourceId())
         preferences = prefs
         earthCoords = heliocentricCoordinatesFromOrbitalElements(
-            SolarSystemBody.Earth.getOrbitalElements(model.time))
+            SolarSystemBody.Earth.getOrbitalElements(model.timeSnapshot.julianCenturies))
     }
 }
\ No newline at end of file
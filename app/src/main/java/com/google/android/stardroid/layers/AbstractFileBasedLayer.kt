@@ -16,36 +16,59 @@ package com.google.android.stardroid.layers
 import android.content.res.AssetManager
 import android.content.res.Resources
 import android.util.Log
-import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType
+import com.google.android.stardroid.BuildConfig
 import com.google.android.stardroid.renderables.AstronomicalRenderable
-import com.google.android.stardroid.renderables.proto.ProtobufAstronomicalRenderable
-import com.google.android.stardroid.source.proto.SourceProto
+import com.google.android.stardroid.renderables.proto.ProtobufSourceDecoder
+import com.google.android.stardroid.renderer.util.BufferCache
+import com.google.android.stardroid.search.SearchResult
 import com.google.android.stardroid.util.MiscUtil
-import com.google.common.io.Closeables
+import java.io.File
 import java.io.IOException
-import java.io.InputStream
 import java.util.*
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
+import java.util.zip.CRC32
+import kotlin.math.min
 
 /**
  * Implementation of the [Layer] interface which reads its data from
  * a file during the [Layer.initialize] method.
  *
+ * Given a directory to cache in, the renderer's buffers for the file are
+ * kept there, and on later runs are drawn from the cache without decoding the
+ * file.  It's decoded afterwards, in the background, for search, which finds
+ * nothing in the layer until that's done.
+ *
  * @author Brent Bryan
  * @author John Taylor
  */
 abstract class AbstractFileBasedLayer(
     private val assetManager: AssetManager,
     resources: Resources,
-    private val fileName: String
+    private val fileName: String,
+    private val cacheDir: File? = null
 ) : AbstractRenderablesLayer(resources, false) {
     private val fileSources: MutableList<AstronomicalRenderable> = ArrayList()
+    @Volatile
+    private var sourcesLoaded = false
+    private var cache: BufferCache? = null
+    // The buffers read from the cache, while they're what's drawn.
+    private var cached: BufferCache.Reader? = null
+    private var savedToCache = false
+
     @Synchronized
     override fun initialize() {
         BACKGROUND_EXECUTOR.execute {
-            readSourceFile(fileName)
-            super@AbstractFileBasedLayer.initialize()
+            val data = readFile() ?: return@execute
+            readCache(data)
+            if (cached == null) {
+                loadSources(data)
+                updateLayerForControllerChange()
+            } else {
+                updateLayerForControllerChange()
+                // Queued behind the other layers, so they're all drawn before any are decoded.
+                BACKGROUND_EXECUTOR.execute { loadSources(data) }
+            }
         }
     }
 
@@ -53,32 +76,96 @@ abstract class AbstractFileBasedLayer(
         sources.addAll(fileSources)
     }
 
-    private fun readSourceFile(sourceFilename: String) {
-        Log.d(TAG, "Loading Proto File: $sourceFilename...")
-        var inputStream: InputStream? = null
-        try {
-            inputStream = assetManager.open(sourceFilename, AssetManager.ACCESS_BUFFER)
-            val parser = SourceProto.AstronomicalSourcesProto.parser()
-            val sources = parser.parseFrom(inputStream)
-            for (proto in sources.sourceList) {
-                fileSources.add(
-                    ProtobufAstronomicalRenderable(
-                        proto,
-                        resources
-                    )
-                )
+    @Synchronized
+    override fun updateLayerForControllerChange() {
+        val reader = cached
+        if (reader != null) {
+            if (redrawFromCache(reader)) return
+            // It was built for the other backend, so build from the file instead.
+            Log.d(TAG, "Cached buffers for $fileName are for another backend")
+            cached = null
+            BACKGROUND_EXECUTOR.execute {
+                loadSources(readFile() ?: return@execute)
+                updateLayerForControllerChange()
             }
-            Log.d(TAG, "Found: " + fileSources.size + " sources")
+            return
+        }
+        super.updateLayerForControllerChange()
+        if (sourcesLoaded && !savedToCache) {
+            savedToCache = cache?.let { saveToCache(it) } ?: true
+        }
+    }
+
+    // The search index is filled in on the background thread, which holds the lock only while
+    // it adds the decoded sources.
+    @Synchronized
+    override fun searchByObjectName(name: String): List<SearchResult> {
+        return super.searchByObjectName(name)
+    }
+
+    @Synchronized
+    override fun getObjectNamesMatchingPrefix(prefix: String): Set<String> {
+        return super.getObjectNamesMatchingPrefix(prefix)
+    }
+
+    private fun readFile(): ByteArray? {
+        return try {
+            assetManager.open(fileName, AssetManager.ACCESS_BUFFER).use { it.readBytes() }
+        } catch (e: IOException) {
+            Log.e(TAG, "Unable to open $fileName")
+            null
+        }
+    }
+
+    @Synchronized
+    private fun readCache(data: ByteArray) {
+        if (cacheDir == null) return
+        val cache = BufferCache(File(cacheDir, "$fileName.cache"), cacheKey(data))
+        this.cache = cache
+        cached = try {
+            cache.read()
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to read the cache for $fileName", e)
+            null
+        }
+        Log.d(TAG, "Cached buffers for $fileName " + if (cached == null) "missing" else "found")
+    }
+
+    // The labels' text and size depend on the language and screen, as well as the file, and
+    // an update can change the translations or how the buffers are built without the file.
+    // Labels are shrunk to fit the screen's narrower side, so turning it doesn't change them.
+    private fun cacheKey(data: ByteArray): Long {
+        val crc = CRC32()
+        crc.update(data)
+        val metrics = resources.displayMetrics
+        val config = "${BuildConfig.VERSION_CODE} ${metrics.density} " +
+                "${min(metrics.widthPixels, metrics.heightPixels)} " +
+                "${resources.configuration.locales[0]}"
+        return (crc.value shl 32) or (config.hashCode().toLong() and 0xffffffffL)
+    }
+
+    private fun loadSources(data: ByteArray) {
+        // Both the search and a backend change may ask for them.
+        if (sourcesLoaded) return
+        Log.d(TAG, "Loading Proto File: $fileName...")
+        // The sources are decoded one by one, so the whole file's protos are never held at once.
+        val sources = ArrayList<AstronomicalRenderable>()
+        try {
+            ProtobufSourceDecoder(resources).decode(data, sources)
+        } catch (e: IOException) {
+            Log.e(TAG, "Unable to parse $fileName", e)
+            return
+        }
+        synchronized(this) {
+            if (sourcesLoaded) return
+            fileSources.addAll(sources)
             val s = String.format(
                 "Finished Loading: %s | Found %s sourcs.\n",
-                sourceFilename, fileSources.size
+                fileName, fileSources.size
             )
             Log.d(TAG, s)
-            refreshSources(EnumSet.of(UpdateType.Reset))
-        } catch (e: IOException) {
-            Log.e(TAG, "Unable to open $sourceFilename")
-        } finally {
-            Closeables.closeQuietly(inputStream)
+            sourcesLoaded = true
+            loadRenderables()
         }
     }
 
@@ -86,4 +173,4 @@ abstract class AbstractFileBasedLayer(
         private val TAG = MiscUtil.getTag(AbstractFileBasedLayer::class.java)
         private val BACKGROUND_EXECUTOR: Executor = Executors.newFixedThreadPool(1)
     }
-}
\ No newline at end of file
+}
@@ -15,11 +15,14 @@ package com.google.android.stardroid.layers
 
 import android.content.res.Resources
 import com.google.android.stardroid.renderables.*
+import com.google.android.stardroid.renderer.ChangeSet
 import com.google.android.stardroid.renderer.RendererController
 import com.google.android.stardroid.renderer.RendererController.AtomicSection
 import com.google.android.stardroid.renderer.RendererControllerBase
+import com.google.android.stardroid.renderer.RendererControllerBase.CachedRenderManager
 import com.google.android.stardroid.renderer.RendererControllerBase.RenderManager
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType
+import com.google.android.stardroid.renderer.util.BufferCache
 import com.google.android.stardroid.search.SearchResult
 import com.google.android.stardroid.util.MiscUtil
 import java.util.*
@@ -91,6 +94,70 @@ abstract class AbstractLayer(protected val resources: Resources) : Layer {
         }
     }
 
+    /**
+     * Updates the renderer with just the given changes to the UI elements, which must be the
+     * same lists as last sent with [redraw].  Kinds of element without changes aren't sent.
+     */
+    protected fun redrawChanges(
+        textPrimitives: List<TextPrimitive>,
+        pointPrimitives: List<PointPrimitive>,
+        linePrimitives: List<LinePrimitive>,
+        imagePrimitives: List<ImagePrimitive>,
+        changes: PrimitiveChanges
+    ) {
+        if (renderer == null || changes.isEmpty) return
+        renderMapLock.lock()
+        try {
+            val atomic = renderer?.createAtomic()
+            setChanges(textPrimitives, changes.labels, TextPrimitive::class.java, atomic!!)
+            setChanges(pointPrimitives, changes.points, PointPrimitive::class.java, atomic)
+            setChanges(linePrimitives, changes.lines, LinePrimitive::class.java, atomic)
+            setChanges(imagePrimitives, changes.images, ImagePrimitive::class.java, atomic)
+            renderer?.queueAtomic(atomic)
+        } finally {
+            renderMapLock.unlock()
+        }
+    }
+
+    /**
+     * Sends the renderer points, lines and labels read from a [BufferCache], in place of the
+     * primitives they were built from.  Returns false, sending nothing, if they were built for
+     * the other backend.
+     */
+    protected fun redrawFromCache(cached: BufferCache.Reader): Boolean {
+        if (renderer == null) return true
+        if (!cached.matchesBackend()) return false
+        renderMapLock.lock()
+        try {
+            val atomic = renderer?.createAtomic()
+            setCachedBuffers(cached, TextPrimitive::class.java, atomic!!)
+            setCachedBuffers(cached, PointPrimitive::class.java, atomic)
+            setCachedBuffers(cached, LinePrimitive::class.java, atomic)
+            renderer?.queueAtomic(atomic)
+        } finally {
+            renderMapLock.unlock()
+        }
+        return true
+    }
+
+    /**
+     * Asks the renderer to write the points, lines and labels last sent to it to the cache, once
+     * they're built.  Returns false if there's no renderer to ask.
+     */
+    protected fun saveToCache(cache: BufferCache): Boolean {
+        if (renderer == null) return false
+        renderMapLock.lock()
+        try {
+            val managers = listOf(
+                TextPrimitive::class.java, PointPrimitive::class.java, LinePrimitive::class.java
+            ).mapNotNull { renderMap[it] as CachedRenderManager<*>? }
+            renderer?.queueSaveToCache(cache, *managers.toTypedArray())
+        } finally {
+            renderMapLock.unlock()
+        }
+        return true
+    }
+
     /**
      * Sets the objects on the [RenderManager] to the given values,
      * creating (or disabling) the [RenderManager] if necessary.
@@ -108,6 +175,32 @@ abstract class AbstractLayer(protected val resources: Resources) : Layer {
         manager.queueObjects(sources, updateType, atomic)
     }
 
+    private inline fun <reified E : AbstractPrimitive> setCachedBuffers(
+        cached: BufferCache.Reader, clazz: Class<E>, atomic: AtomicSection
+    ) {
+        @Suppress("UNCHECKED_CAST")
+        var manager = renderMap[clazz] as CachedRenderManager<E>?
+        if (manager == null) {
+            manager = createRenderManager<E>(atomic) as CachedRenderManager<E>
+            renderMap[clazz] = manager
+        }
+        manager.queueCachedBuffers(cached, atomic)
+    }
+
+    private inline fun <reified E : AbstractPrimitive> setChanges(
+        sources: List<E>, changes: ChangeSet, clazz: Class<E>, atomic: AtomicSection
+    ) {
+        if (changes.isEmpty) return
+        @Suppress("UNCHECKED_CAST")
+        val manager = renderMap[clazz] as RenderManager<E>?
+        if (manager == null) {
+            // Nothing's been sent for this kind yet, so send everything.
+            setSources(sources, EnumSet.of(UpdateType.Reset), clazz, atomic)
+            return
+        }
+        manager.queueChanges(sources, changes, atomic)
+    }
+
     private inline fun <reified E : AbstractPrimitive> createRenderManager(
         controller: RendererControllerBase
     ) : RenderManager<E> =
@@ -30,24 +30,35 @@ import java.util.*
 // TODO(brent): merge with AbstractLayer?
 abstract class AbstractRenderablesLayer(resources: Resources, private val shouldUpdate: Boolean) :
   AbstractLayer(resources) {
-  private val textPrimitives = ArrayList<TextPrimitive>()
-  private val imagePrimitives = ArrayList<ImagePrimitive>()
-  private val pointPrimitives = ArrayList<PointPrimitive>()
-  private val linePrimitives = ArrayList<LinePrimitive>()
+  // The primitives sent to the renderer.  Once sent, the GL thread and the renderer's workers
+  // may still be reading these lists, so they're replaced rather than changed.
+  private var textPrimitives: List<TextPrimitive> = emptyList()
+  private var imagePrimitives: List<ImagePrimitive> = emptyList()
+  private var pointPrimitives: List<PointPrimitive> = emptyList()
+  private var linePrimitives: List<LinePrimitive> = emptyList()
   private val astroRenderables = ArrayList<AstronomicalRenderable>()
+  private val renderables = ArrayList<Renderable>()
+  // Where each renderable's primitives start in the lists above.
+  private var primitiveOffsets: List<PrimitiveOffsets> = emptyList()
   private val searchIndex = HashMap<String, SearchResult>()
   private val prefixStore = PrefixStore()
 
   @Synchronized
   override fun initialize() {
+    loadRenderables()
+
+    // update the renderer
+    updateLayerForControllerChange()
+  }
+
+  /** Initializes the renderables, and indexes them for search, without updating the renderer. */
+  @Synchronized
+  protected fun loadRenderables() {
     astroRenderables.clear()
+    renderables.clear()
     initializeAstroSources(astroRenderables)
     for (astroRenderable in astroRenderables) {
-      val renderables = astroRenderable.initialize()
-      textPrimitives.addAll(renderables.labels)
-      imagePrimitives.addAll(renderables.images)
-      pointPrimitives.addAll(renderables.points)
-      linePrimitives.addAll(renderables.lines)
+      renderables.add(astroRenderable.initialize())
       val names = astroRenderable.names
       if (names.isNotEmpty()) {
         for (name in names) {
@@ -57,8 +68,28 @@ abstract class AbstractRenderablesLayer(resources: Resources, private val should
       }
     }
 
-    // update the renderer
-    updateLayerForControllerChange()
+    collectPrimitives()
+  }
+
+  // Gathers all the renderables' primitives into new lists to send to the renderer.
+  private fun collectPrimitives() {
+    val texts = ArrayList<TextPrimitive>()
+    val images = ArrayList<ImagePrimitive>()
+    val points = ArrayList<PointPrimitive>()
+    val lines = ArrayList<LinePrimitive>()
+    val offsets = ArrayList<PrimitiveOffsets>(renderables.size)
+    for (renderable in renderables) {
+      offsets.add(PrimitiveOffsets(texts.size, points.size, lines.size, images.size))
+      texts.addAll(renderable.labels)
+      images.addAll(renderable.images)
+      points.addAll(renderable.points)
+      lines.addAll(renderable.lines)
+    }
+    textPrimitives = texts
+    imagePrimitives = images
+    pointPrimitives = points
+    linePrimitives = lines
+    primitiveOffsets = offsets
   }
 
   override fun updateLayerForControllerChange() {
@@ -90,11 +121,30 @@ abstract class AbstractRenderablesLayer(resources: Resources, private val should
    */
   @Synchronized
   protected fun refreshSources(updateTypes: EnumSet<UpdateType>) {
-    for (astroRenderable in astroRenderables) {
-      updateTypes.addAll(astroRenderable.update())
+    // Unless we're asked for more, only the primitives which the renderables report
+    // changing need to be sent to the renderer again.
+    val onlyChanges = updateTypes.isEmpty()
+    val changes = PrimitiveChanges()
+    val renderableChanges = PrimitiveChanges()
+    for ((i, astroRenderable) in astroRenderables.withIndex()) {
+      renderableChanges.clear()
+      updateTypes.addAll(astroRenderable.update(renderableChanges))
+      val offsets = primitiveOffsets[i]
+      changes.labels.addAll(renderableChanges.labels, offsets.text)
+      changes.points.addAll(renderableChanges.points, offsets.points)
+      changes.lines.addAll(renderableChanges.lines, offsets.lines)
+      changes.images.addAll(renderableChanges.images, offsets.images)
     }
-    if (!updateTypes.isEmpty()) {
-      redraw(updateTypes)
+    when {
+      updateTypes.isEmpty() -> return
+      changes.changesSize() || updateTypes.contains(UpdateType.Reset) -> {
+        // Primitives may have come or gone, so everything after them may have moved along.
+        collectPrimitives()
+        updateTypes.add(UpdateType.Reset)
+        redraw(updateTypes)
+      }
+      !onlyChanges -> redraw(updateTypes)
+      else -> redrawChanges(textPrimitives, pointPrimitives, linePrimitives, imagePrimitives, changes)
     }
   }
 
@@ -102,6 +152,8 @@ abstract class AbstractRenderablesLayer(resources: Resources, private val should
     super.redraw(textPrimitives, pointPrimitives, linePrimitives, imagePrimitives, updateTypes)
   }
 
+  private class PrimitiveOffsets(val text: Int, val points: Int, val lines: Int, val images: Int)
+
   override fun searchByObjectName(name: String): List<SearchResult> {
     Log.d(TAG, "Search planets layer for $name")
     val matches = ArrayList<SearchResult>()
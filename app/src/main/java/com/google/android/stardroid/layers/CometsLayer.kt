@@ -293,9 +293,10 @@ class CometsLayer(private val model: AstronomerModel, resources: Resources) :
       private set
 
     private fun updateComets() {
-      lastUpdateTimeMs = model.time.time
+      val time = model.timeSnapshot
+      lastUpdateTimeMs = time.millis
       // We will only show the comet between certain times.
-      val now = model.time
+      val now = time.date
       theImage.setUpVector(UP)
       if (now.after(comet.start) && now.before(comet.end)) {
         label.text = name
@@ -321,7 +322,7 @@ class CometsLayer(private val model: AstronomerModel, resources: Resources) :
 
     override fun update(): EnumSet<UpdateType> {
       val updateTypes = EnumSet.noneOf(UpdateType::class.java)
-      if (abs(model.time.time - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
+      if (abs(model.timeSnapshot.millis - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
         updateComets()
         updateTypes.add(UpdateType.UpdateImages)
         updateTypes.add(UpdateType.Reset)
@@ -347,7 +348,7 @@ class CometsLayer(private val model: AstronomerModel, resources: Resources) :
       // appears to be a bug in the renderer/layer interface in that Update values are not
       // respected.  Ditto the label.
       // TODO(johntaylor): fix the bug and remove this blank image
-      coords = comet.pos(model.time)
+      coords = comet.pos(model.timeSnapshot.date)
       theImage = ImagePrimitive(coords, resources, R.drawable.blank, UP, SCALE_FACTOR)
       images.add(theImage)
       label = TextPrimitive(coords, name, LABEL_COLOR)
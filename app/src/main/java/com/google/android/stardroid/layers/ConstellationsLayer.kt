@@ -16,6 +16,7 @@ package com.google.android.stardroid.layers
 import android.content.res.AssetManager
 import android.content.res.Resources
 import com.google.android.stardroid.R
+import java.io.File
 
 /**
  * An implementation of the [AbstractFileBasedLayer] to display
@@ -24,8 +25,8 @@ import com.google.android.stardroid.R
  * @author John Taylor
  * @author Brent Bryan
  */
-class ConstellationsLayer(assetManager: AssetManager, resources: Resources) :
-    AbstractFileBasedLayer(assetManager, resources, "constellations.binary") {
+class ConstellationsLayer(assetManager: AssetManager, resources: Resources, cacheDir: File? = null) :
+    AbstractFileBasedLayer(assetManager, resources, "constellations.binary", cacheDir) {
     override val layerDepthOrder = 10
 
     // TODO(johntaylor): rename this string id.
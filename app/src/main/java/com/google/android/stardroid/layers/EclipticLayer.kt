@@ -16,7 +16,8 @@ package com.google.android.stardroid.layers
 import android.content.res.Resources
 import android.graphics.Color
 import com.google.android.stardroid.R
-import com.google.android.stardroid.math.Vector3
+import com.google.android.stardroid.math.PI
+import com.google.android.stardroid.math.SkyCircle
 import com.google.android.stardroid.math.getGeocentricCoords
 import com.google.android.stardroid.renderables.AbstractAstronomicalRenderable
 import com.google.android.stardroid.renderables.AstronomicalRenderable
@@ -54,14 +55,10 @@ class EclipticLayer(resources: Resources) : AbstractRenderablesLayer(resources,
             labels.add(TextPrimitive(90.0f, EARTHS_ANGULAR_TILT, title, LINE_COLOR))
             labels.add(TextPrimitive(270f, -EARTHS_ANGULAR_TILT, title, LINE_COLOR))
 
-            // Create line source.
-            val ra = floatArrayOf(0f, 90f, 180f, 270f, 0f)
-            val dec = floatArrayOf(0f, EARTHS_ANGULAR_TILT, 0f, -EARTHS_ANGULAR_TILT, 0f)
-            val vertices = ArrayList<Vector3>()
-            for (i in ra.indices) {
-                vertices.add(getGeocentricCoords(ra[i], dec[i]))
-            }
-            lines.add(LinePrimitive(LINE_COLOR, vertices, 1.5f))
+            // Create line source: the great circle about the ecliptic pole.
+            val pole = getGeocentricCoords(270f, 90f - EARTHS_ANGULAR_TILT)
+            val circle = SkyCircle(pole, PI / 2, getGeocentricCoords(0f, 0f))
+            lines.add(LinePrimitive(LINE_COLOR, circle, 1.5f))
         }
     }
 }
\ No newline at end of file
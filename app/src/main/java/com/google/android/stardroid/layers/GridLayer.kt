@@ -16,7 +16,10 @@ package com.google.android.stardroid.layers
 import android.content.res.Resources
 import android.graphics.Color
 import com.google.android.stardroid.R
-import com.google.android.stardroid.math.RaDec
+import com.google.android.stardroid.math.DEGREES_TO_RADIANS
+import com.google.android.stardroid.math.PI
+import com.google.android.stardroid.math.SkyCircle
+import com.google.android.stardroid.math.Vector3
 import com.google.android.stardroid.math.getGeocentricCoords
 import com.google.android.stardroid.renderables.AbstractAstronomicalRenderable
 import com.google.android.stardroid.renderables.AstronomicalRenderable
@@ -67,42 +70,20 @@ class GridLayer
          * the south pole at fixed Right Ascensions.
          */
         private fun createRaLine(index: Int, numRaSources: Int): LinePrimitive {
-            val line = LinePrimitive(LINE_COLOR)
             val ra = index * 360.0f / numRaSources
-            for (i in 0 until NUM_DEC_VERTICES - 1) {
-                val dec = 90.0f - i * 180.0f / (NUM_DEC_VERTICES - 1)
-                val raDec = RaDec(ra, dec)
-                line.raDecs.add(raDec)
-                line.vertices.add(getGeocentricCoords(raDec))
-            }
-            val raDec = RaDec(0.0f, -90.0f)
-            line.raDecs.add(raDec)
-            line.vertices.add(getGeocentricCoords(raDec))
-            return line
+            // Half a great circle, about the axis a quarter turn of RA on, from the north pole.
+            val circle = SkyCircle(getGeocentricCoords(ra + 90f, 0f), PI / 2, NORTH_POLE, PI)
+            return LinePrimitive(LINE_COLOR, circle, 1.5f)
         }
 
         private fun createDecLine(dec: Float): LinePrimitive {
-            val line = LinePrimitive(LINE_COLOR)
-            for (i in 0 until NUM_RA_VERTICES) {
-                val ra = i * 360.0f / NUM_RA_VERTICES
-                val raDec = RaDec(ra, dec)
-                line.raDecs.add(raDec)
-                line.vertices.add(getGeocentricCoords(raDec))
-            }
-            val raDec = RaDec(0.0f, dec)
-            line.raDecs.add(raDec)
-            line.vertices.add(getGeocentricCoords(raDec))
-            return line
+            val circle = SkyCircle(NORTH_POLE, (90f - dec) * DEGREES_TO_RADIANS, Vector3.unitX())
+            return LinePrimitive(LINE_COLOR, circle, 1.5f)
         }
 
         companion object {
             private val LINE_COLOR = Color.argb(20, 248, 239, 188)
-
-            /** These are great (semi)circles, so only need 3 points.  */
-            private const val NUM_DEC_VERTICES = 3
-
-            /** every 10 degrees  */
-            private const val NUM_RA_VERTICES = 36
+            private val NORTH_POLE = Vector3.unitZ()
         }
 
         init {
@@ -16,9 +16,10 @@ package com.google.android.stardroid.layers
 import android.content.res.Resources
 import android.graphics.Color
 import com.google.android.stardroid.R
-import com.google.android.stardroid.base.Lists
 import com.google.android.stardroid.base.TimeConstants
 import com.google.android.stardroid.control.AstronomerModel
+import com.google.android.stardroid.math.PI
+import com.google.android.stardroid.math.SkyCircle
 import com.google.android.stardroid.math.Vector3
 import com.google.android.stardroid.renderables.*
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType
@@ -56,16 +57,18 @@ class HorizonLayer(private val model: AstronomerModel, resources: Resources) :
         private val south = Vector3(0f, 0f, 0f)
         private val east = Vector3(0f, 0f, 0f)
         private val west = Vector3(0f, 0f, 0f)
+        private val horizon = SkyCircle(Vector3.unitZ(), PI / 2, Vector3.unitX())
         private var lastUpdateTimeMs = 0L
         private fun updateCoords() {
             // Blog.d(this, "Updating Coords: " + (model.getTime().getTime() - lastUpdateTimeMs));
-            lastUpdateTimeMs = model.time.time
+            lastUpdateTimeMs = model.timeSnapshot.millis
             zenith.assign(model.zenith)
             nadir.assign(model.nadir)
             north.assign(model.north)
             south.assign(model.south)
             east.assign(model.east)
             west.assign(model.west)
+            horizon.set(zenith, PI / 2, north)
         }
 
         override fun initialize(): Renderable {
@@ -77,7 +80,7 @@ class HorizonLayer(private val model: AstronomerModel, resources: Resources) :
             val updateTypes = EnumSet.noneOf(UpdateType::class.java)
 
             // TODO(brent): Add distance here.
-            if (abs(model.time.time - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
+            if (abs(model.timeSnapshot.millis - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
                 updateCoords()
                 updateTypes.add(UpdateType.UpdatePositions)
             }
@@ -96,8 +99,7 @@ class HorizonLayer(private val model: AstronomerModel, resources: Resources) :
         }
 
         init {
-            val vertices = Lists.asList(north, east, south, west, north)
-            lines.add(LinePrimitive(LINE_COLOR, vertices, 1.5f))
+            lines.add(LinePrimitive(LINE_COLOR, horizon, 1.5f))
             labels.add(TextPrimitive(zenith, resources.getString(R.string.zenith), LABEL_COLOR))
             labels.add(TextPrimitive(nadir, resources.getString(R.string.nadir), LABEL_COLOR))
             labels.add(TextPrimitive(north, resources.getString(R.string.north), LABEL_COLOR))
@@ -152,14 +152,14 @@ class IssLayer(resources: Resources, model: AstronomerModel) :
         }
 
         override fun initialize(): Renderable {
-            updateCoords(model.time)
+            updateCoords(model.timeSnapshot.date)
             return this
         }
 
         @Synchronized
         override fun update(): EnumSet<UpdateType> {
             val updateTypes = EnumSet.noneOf(UpdateType::class.java)
-            val modelTime = model.time
+            val modelTime = model.timeSnapshot.date
             if (orbitalElementsChanged ||
                 Math.abs(modelTime.time - lastUpdateTimeMs) > UPDATE_FREQ_MS
             ) {
@@ -170,9 +170,10 @@ class MeteorShowerLayer(private val model: AstronomerModel, resources: Resources
       get() = shower.radiant
 
     private fun updateShower() {
-      lastUpdateTimeMs = model.time.time
+      val time = model.timeSnapshot
+      lastUpdateTimeMs = time.millis
       // We will only show the shower if it's the right time of year.
-      val localDate = model.time.toInstant()
+      val localDate = time.date.toInstant()
         .atZone(ZoneId.of("UTC"))
         .toLocalDate();
       // Standardize on the same year as we stored for the showers.
@@ -211,7 +212,7 @@ class MeteorShowerLayer(private val model: AstronomerModel, resources: Resources
 
     override fun update(): EnumSet<UpdateType> {
       val updateTypes = EnumSet.noneOf(UpdateType::class.java)
-      if (abs(model.time.time - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
+      if (abs(model.timeSnapshot.millis - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
         updateShower()
         updateTypes.add(UpdateType.Reset)
       }
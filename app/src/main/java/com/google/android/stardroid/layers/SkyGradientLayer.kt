@@ -60,9 +60,9 @@ class SkyGradientLayer(private val model: AstronomerModel, resources: Resources)
 
     /** Redraws the sky shading gradient using the model's current time.  */
     protected fun redraw() {
-        val modelTime = model.time
-        if (abs(modelTime.time - lastUpdateTimeMs) > UPDATE_FREQUENCY_MS) {
-            lastUpdateTimeMs = modelTime.time
+        val modelTime = model.timeSnapshot
+        if (abs(modelTime.millis - lastUpdateTimeMs) > UPDATE_FREQUENCY_MS) {
+            lastUpdateTimeMs = modelTime.millis
             val sunPosition = universe.solarSystemObjectFor(SolarSystemBody.Sun).getRaDec(modelTime)
             // Log.d(TAG, "Enabling sky gradient with sun position " + sunPosition);
             rendererLock.lock()
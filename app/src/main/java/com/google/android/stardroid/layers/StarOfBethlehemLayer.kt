@@ -55,10 +55,10 @@ class StarOfBethlehemLayer(private val model: AstronomerModel, resources: Resour
             ImagePrimitive(coords, resources, R.drawable.blank, UP, SCALE_FACTOR)
 
         private fun updateStar() {
-            lastUpdateTimeMs = model.time.time
+            lastUpdateTimeMs = model.timeSnapshot.millis
             // We will only show the star if it's Christmas Eve.
             val calendar = Calendar.getInstance()
-            calendar.timeInMillis = model.time.time
+            calendar.timeInMillis = lastUpdateTimeMs
             theImage.setUpVector(UP)
             // TODO(johntaylor): consider varying the sizes by scaling factor as time progresses.
             if (calendar[Calendar.MONTH] == Calendar.DECEMBER
@@ -86,7 +86,7 @@ class StarOfBethlehemLayer(private val model: AstronomerModel, resources: Resour
 
         override fun update(): EnumSet<UpdateType> {
             val updateTypes = EnumSet.noneOf(UpdateType::class.java)
-            if (abs(model.time.time - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
+            if (abs(model.timeSnapshot.millis - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
                 updateStar()
                 updateTypes.add(UpdateType.UpdateImages)
                 updateTypes.add(UpdateType.UpdatePositions)
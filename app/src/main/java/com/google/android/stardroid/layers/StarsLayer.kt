@@ -16,6 +16,7 @@ package com.google.android.stardroid.layers
 import android.content.res.AssetManager
 import android.content.res.Resources
 import com.google.android.stardroid.R
+import java.io.File
 
 /**
  * An implementation of the [AbstractFileBasedLayer] for displaying stars
@@ -24,8 +25,8 @@ import com.google.android.stardroid.R
  * @author John Taylor
  * @author Brent Bryan
  */
-class StarsLayer(assetManager: AssetManager, resources: Resources) :
-    AbstractFileBasedLayer(assetManager, resources, "stars.binary") {
+class StarsLayer(assetManager: AssetManager, resources: Resources, cacheDir: File? = null) :
+    AbstractFileBasedLayer(assetManager, resources, "stars.binary", cacheDir) {
     override val layerDepthOrder = 30
 
     // TODO(johntaylor): rename this Id
@@ -47,6 +47,16 @@ data class Matrix3x3(
     @JvmOverloads
     constructor(v1: Vector3, v2: Vector3, v3: Vector3, columnVectors: Boolean = true) : this(
         0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f) {
+        assign(v1, v2, v3, columnVectors)
+    }
+
+    /**
+     * Assigns three vectors to the matrix, in place.
+     * @param columnVectors true if the vectors are column vectors, otherwise
+     * they're row vectors.
+     */
+    @JvmOverloads
+    fun assign(v1: Vector3, v2: Vector3, v3: Vector3, columnVectors: Boolean = true) {
         if (columnVectors) {
             xx = v1.x
             yx = v1.y
@@ -107,6 +117,30 @@ data class Matrix3x3(
         zy = tmp
     }
 
+    /**
+     * Sets the matrix to the product m1 * m2, in place.  Either may be this matrix.
+     */
+    fun assignProduct(m1: Matrix3x3, m2: Matrix3x3) {
+        val pxx = m1.xx * m2.xx + m1.xy * m2.yx + m1.xz * m2.zx
+        val pxy = m1.xx * m2.xy + m1.xy * m2.yy + m1.xz * m2.zy
+        val pxz = m1.xx * m2.xz + m1.xy * m2.yz + m1.xz * m2.zz
+        val pyx = m1.yx * m2.xx + m1.yy * m2.yx + m1.yz * m2.zx
+        val pyy = m1.yx * m2.xy + m1.yy * m2.yy + m1.yz * m2.zy
+        val pyz = m1.yx * m2.xz + m1.yy * m2.yz + m1.yz * m2.zz
+        val pzx = m1.zx * m2.xx + m1.zy * m2.yx + m1.zz * m2.zx
+        val pzy = m1.zx * m2.xy + m1.zy * m2.yy + m1.zz * m2.zy
+        val pzz = m1.zx * m2.xz + m1.zy * m2.yz + m1.zz * m2.zz
+        xx = pxx
+        xy = pxy
+        xz = pxz
+        yx = pyx
+        yy = pyy
+        yz = pyz
+        zx = pzx
+        zy = pzy
+        zz = pzz
+    }
+
     operator fun times(m : Matrix3x3) = Matrix3x3(
             this.xx * m.xx + this.xy * m.yx + this.xz * m.zx,
             this.xx * m.xy + this.xy * m.yy + this.xz * m.zy,
@@ -0,0 +1,187 @@
+package com.google.android.stardroid.math
+
+import kotlin.math.acos
+import kotlin.math.ceil
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * A circle on the unit sphere: the points [angularRadius] radians from [axis], which is a great
+ * circle when that's a right angle.  Optionally only an arc of it, starting at the point nearest
+ * [reference] and sweeping [sweep] radians anticlockwise about the axis.
+ *
+ * Lines described like this are tessellated to suit the view as it's drawn, rather than up
+ * front, so they're smooth when zoomed in and cheap when zoomed out.
+ */
+class SkyCircle(axis: Vector3, angularRadius: Float, reference: Vector3, sweep: Float = TWO_PI) {
+    val axis = Vector3.zero()
+    var angularRadius = 0f
+        private set
+    var sweep = TWO_PI
+        private set
+
+    // The directions to the points at angle 0 and a quarter turn around the circle.
+    private val u = Vector3.zero()
+    private val v = Vector3.zero()
+
+    init {
+        set(axis, angularRadius, reference, sweep)
+    }
+
+    constructor(other: SkyCircle) : this(other.axis, other.angularRadius, other.u, other.sweep)
+
+    /** Moves the circle, such as when the horizon moves with the observer. */
+    fun set(axis: Vector3, angularRadius: Float, reference: Vector3, sweep: Float = TWO_PI) {
+        this.axis.assign(axis.normalizedCopy())
+        this.angularRadius = angularRadius
+        this.sweep = min(sweep, TWO_PI)
+        u.assign((reference - this.axis * (reference dot this.axis)).normalizedCopy())
+        v.assign(this.axis * u)
+    }
+
+    /** Sets out to the point at the given angle around the circle. */
+    fun pointAt(angle: Float, out: Vector3) {
+        val r = sin(angularRadius)
+        val a = cos(angularRadius)
+        val c = cos(angle) * r
+        val s = sin(angle) * r
+        out.x = a * axis.x + c * u.x + s * v.x
+        out.y = a * axis.y + c * u.y + s * v.y
+        out.z = a * axis.z + c * u.z + s * v.z
+    }
+
+    /**
+     * The angle between points which keeps each chord within maxError radians of the circle.
+     * It's always a whole fraction of a turn, a power of two, so that points stay put while the
+     * view moves and only change when the tolerance crosses a power of two.
+     */
+    fun angleStep(maxError: Float): Float {
+        val radius = sin(angularRadius)
+        // A chord spanning angle d strays radius * (1 - cos(d / 2)) from the circle.
+        val ideal = if (maxError >= radius) PI else 2 * acos(1 - maxError / radius)
+        val segments = 1 shl ceil(ln(TWO_PI / ideal) / ln(2f)).toInt()
+            .coerceIn(MIN_SEGMENTS_LOG2, MAX_SEGMENTS_LOG2)
+        return TWO_PI / segments
+    }
+
+    /**
+     * Replaces the contents of out with polylines along the parts of the circle within viewAngle
+     * radians of lookDir, with chords no more than maxError radians from the circle.  There can
+     * be up to two, when the view covers both ends of an arc.
+     */
+    fun tessellate(lookDir: Vector3, viewAngle: Float, maxError: Float, out: Polylines) {
+        out.clear()
+        val step = angleStep(maxError)
+        // Points at angle t are cos(r) axis.L + sin(r) (cos(t) u.L + sin(t) v.L) along lookDir,
+        // which is amplitude * cos(t - center) + offset.
+        val offset = cos(angularRadius) * (axis dot lookDir)
+        val uL = u dot lookDir
+        val vL = v dot lookDir
+        val amplitude = sin(angularRadius) * sqrt(uL * uL + vL * vL)
+        val threshold = cos(min(viewAngle, PI))
+        val center = MathUtils.atan2(vL, uL)
+        val halfWidth: Float = when {
+            viewAngle >= PI || offset - amplitude >= threshold -> PI
+            offset + amplitude < threshold -> return
+            else -> acos(((threshold - offset) / amplitude).coerceIn(-1f, 1f))
+        }
+
+        if (halfWidth >= PI) {
+            addRun(0f, sweep, step, out)
+            return
+        }
+        // Widen by a step so the chords reach the edge of the view.
+        val start = center - halfWidth - step
+        val end = center + halfWidth + step
+        if (sweep >= TWO_PI) {
+            addRun(start, end, step, out)
+            return
+        }
+        // Clip the window to the arc, either side of where the arc starts.
+        val windowStart = flooredMod(start, TWO_PI)
+        for (shift in floatArrayOf(0f, -TWO_PI)) {
+            val lo = max(windowStart + shift, 0f)
+            val hi = min(windowStart + shift + (end - start), sweep)
+            if (lo < hi) {
+                addRun(lo, hi, step, out)
+            }
+        }
+    }
+
+    // Adds a polyline from angle lo to hi, through the multiples of step in between.
+    private fun addRun(lo: Float, hi: Float, step: Float, out: Polylines) {
+        out.startRun()
+        val point = Vector3.zero()
+        pointAt(lo, point)
+        out.add(point)
+        var k = floor(lo / step) + 1
+        while (k * step < hi) {
+            pointAt(k * step, point)
+            out.add(point)
+            k++
+        }
+        pointAt(hi, point)
+        out.add(point)
+    }
+
+    /** Reusable storage for a few polylines' points. */
+    class Polylines {
+        var coords = FloatArray(3 * 64)
+            private set
+        var numPoints = 0
+            private set
+        // The index of the first point of each polyline.
+        private var runStarts = IntArray(2)
+        var numRuns = 0
+            private set
+
+        fun clear() {
+            numPoints = 0
+            numRuns = 0
+        }
+
+        /** The number of points in the given polyline. */
+        fun runLength(run: Int) =
+            (if (run + 1 < numRuns) runStarts[run + 1] else numPoints) - runStarts[run]
+
+        fun runStart(run: Int) = runStarts[run]
+
+        /** The number of line segments in all the polylines. */
+        val numSegments: Int
+            get() {
+                var segments = 0
+                for (run in 0 until numRuns) {
+                    segments += max(0, runLength(run) - 1)
+                }
+                return segments
+            }
+
+        internal fun startRun() {
+            if (numRuns == runStarts.size) {
+                runStarts = runStarts.copyOf(2 * numRuns)
+            }
+            runStarts[numRuns++] = numPoints
+        }
+
+        internal fun add(p: Vector3) {
+            if (3 * numPoints + 3 > coords.size) {
+                coords = coords.copyOf(2 * coords.size)
+            }
+            coords[3 * numPoints] = p.x
+            coords[3 * numPoints + 1] = p.y
+            coords[3 * numPoints + 2] = p.z
+            numPoints++
+        }
+    }
+
+    companion object {
+        // Between 16 and 4096 segments for the full circle.
+        private const val MIN_SEGMENTS_LOG2 = 4
+        private const val MAX_SEGMENTS_LOG2 = 12
+    }
+}
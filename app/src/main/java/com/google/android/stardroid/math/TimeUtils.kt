@@ -34,8 +34,15 @@ public const val HOURS_TO_DEGREES = 360.0f / 24.0f
  * (equivalent to Julian Day 2451545.0).
  */
 fun julianCenturies(date: Date): Double {
-    val jd = julianDay(date)
-    val delta = jd - 2451545.0
+    return julianCenturies(julianDay(date))
+}
+
+/**
+ * Calculates the number of Julian Centuries from the epoch 2000.0 for the
+ * given Julian Day.
+ */
+fun julianCenturies(julianDay: Double): Double {
+    val delta = julianDay - 2451545.0
     return delta / 36525.0
 }
 
@@ -93,9 +100,15 @@ fun gregorianDate(julianDay: Double): Date {
  * negative for western longitude values.
  */
 fun meanSiderealTime(date: Date, longitude: Float): Float {
+    return meanSiderealTime(julianDay(date), longitude)
+}
+
+/**
+ * Calculates local mean sidereal time in degrees for the given Julian Day.
+ */
+fun meanSiderealTime(julianDay: Double, longitude: Float): Float {
     // First, calculate number of Julian days since J2000.0.
-    val jd = julianDay(date)
-    val delta = jd - 2451545.0f
+    val delta = julianDay - 2451545.0f
 
     // Calculate the global and local sidereal times
     val gst = 280.461f + 360.98564737f * delta
@@ -102,6 +102,28 @@ data class Vector3(@JvmField var x : Float, @JvmField var y : Float, @JvmField v
         )
     }
 
+    /**
+     * Sets the vector to the cross product v1 * v2, in place.  Either may be this vector.
+     */
+    fun assignCross(v1: Vector3, v2: Vector3) {
+        assign(
+            v1.y * v2.z - v1.z * v2.y,
+            -v1.x * v2.z + v1.z * v2.x,
+            v1.x * v2.y - v1.y * v2.x
+        )
+    }
+
+    /**
+     * Sets the vector to the product m * v, in place.  v may be this vector.
+     */
+    fun assignProduct(m: Matrix3x3, v: Vector3) {
+        assign(
+            m.xx * v.x + m.xy * v.y + m.xz * v.z,
+            m.yx * v.x + m.yy * v.y + m.yz * v.z,
+            m.zx * v.x + m.zy * v.y + m.zz * v.z
+        )
+    }
+
     /**
      * Returns the distance between one vector and the next.
      */
@@ -14,6 +14,7 @@
 package com.google.android.stardroid.renderables
 
 import com.google.android.stardroid.math.Vector3
+import com.google.android.stardroid.renderer.ChangeSet
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType
 import java.util.*
 
@@ -69,4 +70,21 @@ interface AstronomicalRenderable : Renderable {
      * UpdateType required to enact the changes required by this update.
      */
     fun update(): EnumSet<UpdateType>
+
+    /**
+     * As [update], also recording in [changes] which of this object's primitives changed and
+     * how, indexed within its own lists, so that only those need be sent to the renderer.
+     * By default every primitive is assumed to have moved on UpdatePositions, and every
+     * image to have changed on UpdateImages; override this to be more precise.
+     */
+    fun update(changes: PrimitiveChanges): EnumSet<UpdateType> {
+        val updateTypes = update()
+        if (updateTypes.contains(UpdateType.UpdatePositions)) {
+            changes.addAll(ChangeSet.Change.MOVED, this)
+        }
+        if (updateTypes.contains(UpdateType.UpdateImages)) {
+            changes.images.addRange(ChangeSet.Change.IMAGE_CHANGED, 0, images.size)
+        }
+        return updateTypes
+    }
 }
\ No newline at end of file
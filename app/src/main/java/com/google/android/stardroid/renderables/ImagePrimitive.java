@@ -15,9 +15,6 @@
 package com.google.android.stardroid.renderables;
 
 import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapFactory.Options;
 import android.graphics.Color;
 
 import com.google.android.stardroid.math.CoordinateManipulationsKt;
@@ -48,7 +45,7 @@ public class ImagePrimitive extends AbstractPrimitive {
   public float ux, uy, uz;
   public float vx, vy, vz;
 
-  public Bitmap image;
+  private int imageId;
 
   public boolean requiresBlending = false;
 
@@ -74,29 +71,19 @@ public class ImagePrimitive extends AbstractPrimitive {
     super(coords, Color.WHITE);
     this.imageScale = imageScale;
 
-    // TODO(jpowell): We're never freeing this resource, so we leak it every
-    // time we create a new ImagePrimitive and garbage collect an old one.
-    // We need to make sure it gets freed.
-    // We should also cache this so we don't have to keep reloading these
-    // which is really slow and adds noticeable lag to the application when it
-    // happens.
+    // The image itself is decoded, cached and shared by the renderer.
     this.resources = res;
     setUpVector(upVec);
     setImageId(id);
   }
 
   public void setImageId(int imageId) {
-    Options opts = new Options();
-    opts.inScaled = false;
-
-    this.image = BitmapFactory.decodeResource(resources, imageId, opts);
-    if (image == null) {
-      throw new RuntimeException("Coud not decode image " + imageId);
-    }
+    this.imageId = imageId;
   }
 
-  public Bitmap getImage() {
-    return image;
+  /** The drawable resource id of the image. */
+  public int getImageId() {
+    return imageId;
   }
 
   public float[] getHorizontalCorner() {
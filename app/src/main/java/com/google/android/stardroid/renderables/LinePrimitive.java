@@ -21,6 +21,7 @@ import java.util.List;
 import android.graphics.Color;
 
 import com.google.android.stardroid.math.RaDec;
+import com.google.android.stardroid.math.SkyCircle;
 import com.google.android.stardroid.math.Vector3;
 
 /**
@@ -31,6 +32,8 @@ public class LinePrimitive extends AbstractPrimitive {
   public final List<Vector3> vertices;
   public final List<RaDec> raDecs;
   public final float lineWidth;
+  // If set, the line is this circle, tessellated as it's drawn, rather than the vertices.
+  public final SkyCircle circle;
 
   public LinePrimitive() {
     this(Color.WHITE, new ArrayList<Vector3>(), 1.5f);
@@ -46,6 +49,20 @@ public class LinePrimitive extends AbstractPrimitive {
     this.vertices = vertices;
     this.raDecs = new ArrayList<RaDec>();
     this.lineWidth = lineWidth;
+    this.circle = null;
+  }
+
+  public LinePrimitive(int color, SkyCircle circle, float lineWidth) {
+    super(color);
+
+    this.vertices = new ArrayList<Vector3>();
+    this.raDecs = new ArrayList<RaDec>();
+    this.lineWidth = lineWidth;
+    this.circle = circle;
+  }
+
+  public SkyCircle getCircle() {
+    return circle;
   }
 
   public float getLineWidth() {
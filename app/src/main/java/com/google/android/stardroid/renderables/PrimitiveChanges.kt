@@ -0,0 +1,36 @@
+package com.google.android.stardroid.renderables
+
+import com.google.android.stardroid.renderer.ChangeSet
+
+/**
+ * The changes to each kind of primitive in a [Renderable], or a layer's worth of them, since
+ * they were last sent to the renderer.
+ */
+class PrimitiveChanges {
+    val labels = ChangeSet()
+    val points = ChangeSet()
+    val lines = ChangeSet()
+    val images = ChangeSet()
+
+    val isEmpty: Boolean
+        get() = labels.isEmpty && points.isEmpty && lines.isEmpty && images.isEmpty
+
+    /** True if any primitives were added or removed. */
+    fun changesSize() =
+        labels.changesSize() || points.changesSize() || lines.changesSize() || images.changesSize()
+
+    /** Records the same change to every primitive of the renderable. */
+    fun addAll(change: ChangeSet.Change, renderable: Renderable) {
+        labels.addRange(change, 0, renderable.labels.size)
+        points.addRange(change, 0, renderable.points.size)
+        lines.addRange(change, 0, renderable.lines.size)
+        images.addRange(change, 0, renderable.images.size)
+    }
+
+    fun clear() {
+        labels.clear()
+        points.clear()
+        lines.clear()
+        images.clear()
+    }
+}
@@ -29,6 +29,8 @@ public class TextPrimitive extends AbstractPrimitive {
   public String label;
   public final float offset;
   public final int fontSize;
+  // Where labels would overlap, those with the higher priority are drawn.
+  public int priority = 0;
 
   public TextPrimitive(float ra, float dec, String label, int color) {
     this(CoordinateManipulationsKt.getGeocentricCoords(ra, dec), label, color);
@@ -61,6 +63,10 @@ public class TextPrimitive extends AbstractPrimitive {
     return offset;
   }
 
+  public int getPriority() {
+    return priority;
+  }
+
   public void setText(String newText) {
     label = newText;
   }
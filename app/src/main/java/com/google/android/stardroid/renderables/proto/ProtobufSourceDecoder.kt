@@ -0,0 +1,203 @@
+package com.google.android.stardroid.renderables.proto
+
+import android.content.res.Resources
+import com.google.android.stardroid.R
+import com.google.android.stardroid.math.Vector3
+import com.google.android.stardroid.math.getGeocentricCoords
+import com.google.android.stardroid.renderables.AstronomicalRenderable
+import com.google.android.stardroid.renderables.LinePrimitive
+import com.google.android.stardroid.renderables.PointPrimitive
+import com.google.android.stardroid.renderables.TextPrimitive
+import com.google.android.stardroid.source.proto.SourceProto
+import com.google.protobuf.CodedInputStream
+import com.google.protobuf.WireFormat
+
+/**
+ * Reads a serialized [SourceProto.AstronomicalSourcesProto] a source at a
+ * time, turning each straight into a [ProtobufAstronomicalRenderable].  None
+ * of the protos are built, so loading a file needs little more memory than
+ * the primitives it holds.
+ *
+ * The fields are decoded here by hand, so must be kept in step with
+ * source.proto.  Fields which aren't drawn, such as the levels, are skipped.
+ */
+class ProtobufSourceDecoder(private val resources: Resources) {
+    /** Decodes every source in the data, adding them to the list in order. */
+    fun decode(data: ByteArray, sources: MutableList<AstronomicalRenderable>) {
+        val input = CodedInputStream.newInstance(data)
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> return
+                SOURCES_SOURCE -> sources.add(input.readMessage { readSource(input) })
+                else -> input.skipField(tag)
+            }
+        }
+    }
+
+    private fun readSource(input: CodedInputStream): ProtobufAstronomicalRenderable {
+        val nameIds = ArrayList<Int>(1)
+        var searchLocation = origin()
+        val points = ArrayList<PointPrimitive>(1)
+        val labels = ArrayList<TextPrimitive>(1)
+        val lines = ArrayList<LinePrimitive>(0)
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> break
+                SOURCE_NAME_INT_ID -> nameIds.add(input.readUInt32())
+                SOURCE_NAME_INT_IDS_PACKED -> input.readMessage {
+                    while (!input.isAtEnd) nameIds.add(input.readUInt32())
+                }
+                // The data files only have the names' string ids, which are expensive to look up,
+                // so they're turned into the integer ids once here.
+                SOURCE_NAME_STR_ID -> nameIds.add(stringId(input.readString()))
+                SOURCE_SEARCH_LOCATION -> searchLocation = input.readMessage { readCoords(input) }
+                SOURCE_POINT -> points.add(input.readMessage { readPoint(input) })
+                SOURCE_LABEL -> labels.add(input.readMessage { readLabel(input) })
+                SOURCE_LINE -> lines.add(input.readMessage { readLine(input) })
+                else -> input.skipField(tag)
+            }
+        }
+        // Labels of brighter objects, which are drawn bigger, are preferred.
+        val priority = points.maxOfOrNull { it.size } ?: 0
+        for (label in labels) {
+            label.priority = priority
+        }
+        return ProtobufAstronomicalRenderable(
+            nameIds.mapTo(ArrayList(nameIds.size)) { resources.getString(it) }, searchLocation,
+            points.ifEmpty { emptyList() }, labels.ifEmpty { emptyList() },
+            lines.ifEmpty { emptyList() })
+    }
+
+    private fun readCoords(input: CodedInputStream): Vector3 {
+        var rightAscension = 0f
+        var declination = 0f
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> break
+                COORDS_RIGHT_ASCENSION -> rightAscension = input.readFloat()
+                COORDS_DECLINATION -> declination = input.readFloat()
+                else -> input.skipField(tag)
+            }
+        }
+        return getGeocentricCoords(rightAscension, declination)
+    }
+
+    private fun readPoint(input: CodedInputStream): PointPrimitive {
+        var location = origin()
+        var color = DEFAULT_COLOR
+        var size = 3
+        var shape = SourceProto.Shape.CIRCLE
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> break
+                POINT_LOCATION -> location = input.readMessage { readCoords(input) }
+                POINT_COLOR -> color = input.readUInt32()
+                POINT_SIZE -> size = input.readInt32()
+                // As with the generated code, an unknown shape leaves the default.
+                POINT_SHAPE -> shape = SourceProto.Shape.forNumber(input.readEnum()) ?: shape
+                else -> input.skipField(tag)
+            }
+        }
+        return PointPrimitive(location, color, size, SHAPES[shape])
+    }
+
+    private fun readLabel(input: CodedInputStream): TextPrimitive {
+        var location = origin()
+        var color = DEFAULT_COLOR
+        var stringId = ""
+        var fontSize = 15
+        var offset = 0.02f
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> break
+                LABEL_LOCATION -> location = input.readMessage { readCoords(input) }
+                LABEL_COLOR -> color = input.readUInt32()
+                // Any integer id is replaced by the string id's, as it always was.
+                LABEL_STRINGS_STR_ID -> stringId = input.readString()
+                LABEL_FONT_SIZE -> fontSize = input.readInt32()
+                LABEL_OFFSET -> offset = input.readFloat()
+                else -> input.skipField(tag)
+            }
+        }
+        return TextPrimitive(
+            location, resources.getString(stringId(stringId)), color, offset, fontSize)
+    }
+
+    private fun readLine(input: CodedInputStream): LinePrimitive {
+        var color = DEFAULT_COLOR
+        var lineWidth = 1.5f
+        val vertices = ArrayList<Vector3>()
+        while (true) {
+            when (val tag = input.readTag()) {
+                0 -> break
+                LINE_COLOR -> color = input.readUInt32()
+                LINE_WIDTH -> lineWidth = input.readFloat()
+                LINE_VERTEX -> vertices.add(input.readMessage { readCoords(input) })
+                else -> input.skipField(tag)
+            }
+        }
+        return LinePrimitive(color, vertices, lineWidth)
+    }
+
+    private fun stringId(name: String): Int {
+        val resourceId = resources.getIdentifier(name, "string", PACKAGE)
+        return if (resourceId == 0) R.string.missing_label else resourceId
+    }
+
+    companion object {
+        // The package whose string resources the ids name.
+        const val PACKAGE = "com.google.android.stardroid"
+
+        private const val DEFAULT_COLOR = 0xFFFFFFFF.toInt()
+        // Where a missing location puts things.  Vectors are mutable, so each gets its own.
+        private fun origin() = getGeocentricCoords(0f, 0f)
+
+        private const val VARINT = WireFormat.WIRETYPE_VARINT
+        private const val FIXED32 = WireFormat.WIRETYPE_FIXED32
+        private const val DELIMITED = WireFormat.WIRETYPE_LENGTH_DELIMITED
+
+        // The tags of the fields read, each its field number and wire type.
+        private const val SOURCES_SOURCE = 1 shl 3 or DELIMITED
+        private const val SOURCE_NAME_INT_ID = 1 shl 3 or VARINT
+        private const val SOURCE_NAME_INT_IDS_PACKED = 1 shl 3 or DELIMITED
+        private const val SOURCE_SEARCH_LOCATION = 2 shl 3 or DELIMITED
+        private const val SOURCE_POINT = 5 shl 3 or DELIMITED
+        private const val SOURCE_LABEL = 6 shl 3 or DELIMITED
+        private const val SOURCE_LINE = 7 shl 3 or DELIMITED
+        private const val SOURCE_NAME_STR_ID = 8 shl 3 or DELIMITED
+        private const val COORDS_RIGHT_ASCENSION = 1 shl 3 or FIXED32
+        private const val COORDS_DECLINATION = 2 shl 3 or FIXED32
+        private const val POINT_LOCATION = 1 shl 3 or DELIMITED
+        private const val POINT_COLOR = 2 shl 3 or VARINT
+        private const val POINT_SIZE = 3 shl 3 or VARINT
+        private const val POINT_SHAPE = 4 shl 3 or VARINT
+        private const val LABEL_LOCATION = 1 shl 3 or DELIMITED
+        private const val LABEL_COLOR = 2 shl 3 or VARINT
+        private const val LABEL_FONT_SIZE = 4 shl 3 or VARINT
+        private const val LABEL_OFFSET = 5 shl 3 or FIXED32
+        private const val LABEL_STRINGS_STR_ID = 6 shl 3 or DELIMITED
+        private const val LINE_COLOR = 1 shl 3 or VARINT
+        private const val LINE_WIDTH = 2 shl 3 or FIXED32
+        private const val LINE_VERTEX = 3 shl 3 or DELIMITED
+
+        private val SHAPES = mapOf(
+            SourceProto.Shape.CIRCLE to PointPrimitive.Shape.CIRCLE,
+            SourceProto.Shape.STAR to PointPrimitive.Shape.CIRCLE,
+            SourceProto.Shape.ELLIPTICAL_GALAXY to PointPrimitive.Shape.ELLIPTICAL_GALAXY,
+            SourceProto.Shape.SPIRAL_GALAXY to PointPrimitive.Shape.SPIRAL_GALAXY,
+            SourceProto.Shape.IRREGULAR_GALAXY to PointPrimitive.Shape.IRREGULAR_GALAXY,
+            SourceProto.Shape.LENTICULAR_GALAXY to PointPrimitive.Shape.LENTICULAR_GALAXY,
+            SourceProto.Shape.GLOBULAR_CLUSTER to PointPrimitive.Shape.GLOBULAR_CLUSTER,
+            SourceProto.Shape.OPEN_CLUSTER to PointPrimitive.Shape.OPEN_CLUSTER,
+            SourceProto.Shape.NEBULA to PointPrimitive.Shape.NEBULA,
+            SourceProto.Shape.HUBBLE_DEEP_FIELD to PointPrimitive.Shape.HUBBLE_DEEP_FIELD)
+
+        // Reads a length delimited message, stopping at its end.
+        private inline fun <T> CodedInputStream.readMessage(read: () -> T): T {
+            val oldLimit = pushLimit(readRawVarint32())
+            val result = read()
+            popLimit(oldLimit)
+            return result
+        }
+    }
+}
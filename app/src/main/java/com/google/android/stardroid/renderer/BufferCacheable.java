@@ -0,0 +1,23 @@
+package com.google.android.stardroid.renderer;
+
+import com.google.android.stardroid.renderer.util.BufferCache;
+
+import java.io.IOException;
+
+/**
+ * An object manager whose built buffers can be kept in a {@link BufferCache},
+ * and drawn from it on a later run instead of being built again.
+ */
+interface BufferCacheable {
+  /** Whether the manager's buffers are all built, so that writeBuffers can save them. */
+  boolean canWriteBuffers();
+
+  /** Writes the manager's built buffers to a section of a cache.  Call on the GL thread. */
+  void writeBuffers(BufferCache.Writer out);
+
+  /**
+   * Replaces the manager's objects with the buffers written by writeBuffers on
+   * an earlier run, in place of building them.  Call on the GL thread.
+   */
+  void readBuffers(BufferCache.Reader in) throws IOException;
+}
@@ -0,0 +1,108 @@
+package com.google.android.stardroid.renderer;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * The changes to a list of primitives since it was last sent to the
+ * renderer, as a compact buffer of commands each naming a change and the
+ * index of the primitive it applies to.  Managers replay these rather than
+ * being handed, and comparing, the whole list.
+ *
+ * <p>Layers collect one of these per kind of primitive each time they update.
+ * Once queued it belongs to the renderer and mustn't be changed.
+ */
+public final class ChangeSet {
+  public enum Change {
+    MOVED,          // The primitive's position, or orientation, has changed.
+    RECOLORED,      // Its color has changed.
+    IMAGE_CHANGED,  // Its image has changed.
+    ADDED,          // It's new.  Indices of those after it have shifted.
+    REMOVED         // It's gone.  Indices of those after it have shifted.
+  }
+
+  // Each command is (index << INDEX_SHIFT) | change ordinal.
+  private static final int INDEX_SHIFT = 3;
+  private static final int CHANGE_MASK = (1 << INDEX_SHIFT) - 1;
+  private static final Change[] CHANGES = Change.values();
+
+  private int[] mCommands = new int[8];
+  private int mSize = 0;
+  // One bit for each kind of change in the set.
+  private int mChangeBits = 0;
+
+  public void add(Change change, int index) {
+    if (mSize == mCommands.length) {
+      mCommands = Arrays.copyOf(mCommands, 2 * mSize);
+    }
+    mCommands[mSize++] = (index << INDEX_SHIFT) | change.ordinal();
+    mChangeBits |= 1 << change.ordinal();
+  }
+
+  /** Adds the same change for each of the primitives from start up to, but not including, end. */
+  public void addRange(Change change, int start, int end) {
+    for (int i = start; i < end; i++) {
+      add(change, i);
+    }
+  }
+
+  /** Adds all the commands in another set, with their indices shifted by offset. */
+  public void addAll(ChangeSet other, int offset) {
+    for (int i = 0; i < other.mSize; i++) {
+      add(other.getChange(i), other.getIndex(i) + offset);
+    }
+  }
+
+  public void clear() {
+    mSize = 0;
+    mChangeBits = 0;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  public Change getChange(int command) {
+    return CHANGES[mCommands[command] & CHANGE_MASK];
+  }
+
+  public int getIndex(int command) {
+    return mCommands[command] >>> INDEX_SHIFT;
+  }
+
+  public boolean contains(Change change) {
+    return (mChangeBits & (1 << change.ordinal())) != 0;
+  }
+
+  /**
+   * Whether primitives were added or removed, in which case the list can't be
+   * patched by index and has to be replaced.
+   */
+  public boolean changesSize() {
+    return contains(Change.ADDED) || contains(Change.REMOVED);
+  }
+
+  /** The indices with any of the given changes, in increasing order and without repeats. */
+  public int[] getIndices(Change first, Change... rest) {
+    EnumSet<Change> changes = EnumSet.of(first, rest);
+    int[] indices = new int[mSize];
+    int count = 0;
+    for (int i = 0; i < mSize; i++) {
+      if (changes.contains(getChange(i))) {
+        indices[count++] = getIndex(i);
+      }
+    }
+    Arrays.sort(indices, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || indices[unique - 1] != indices[i]) {
+        indices[unique++] = indices[i];
+      }
+    }
+    return Arrays.copyOf(indices, unique);
+  }
+}
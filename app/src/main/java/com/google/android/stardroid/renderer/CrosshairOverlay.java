@@ -17,11 +17,15 @@ package com.google.android.stardroid.renderer;
 import static com.google.android.stardroid.math.MathUtilsKt.TWO_PI;
 
 import android.content.res.Resources;
+import android.opengl.GLES20;
 
 import com.google.android.stardroid.R;
 import com.google.android.stardroid.math.MathUtils;
+import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.SearchHelper;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderer.util.TexturedQuad;
@@ -54,9 +58,7 @@ public class CrosshairOverlay {
     
     gl.glTranslatef(position.x, position.y, 0);
     
-    int period = 1000;
-    long time = System.currentTimeMillis();
-    float intensity = 0.7f + 0.3f * MathUtils.sin((time % period) * TWO_PI / period);
+    float intensity = getIntensity();
     if (nightVisionMode) {
       gl.glColor4f(intensity, 0, 0, 0.7f);
     } else {
@@ -73,6 +75,42 @@ public class CrosshairOverlay {
     gl.glPopMatrix();
   }
   
+  public void drawWithShaders(GL10 gl, ShaderPrograms shaders, SearchHelper searchHelper,
+                              boolean nightVisionMode) {
+    // Return if the label has a negative z.
+    Vector3 position = searchHelper.getTransformedPosition();
+    if (position.z < 0) {
+      return;
+    }
+
+    // The colors are already red in night vision mode.
+    shaders.useTextured(false);
+    // The position is already in device coordinates.
+    shaders.setTransform(
+        Matrix4x4.createTranslation(position.x, position.y, 0).getFloatArray());
+
+    float intensity = getIntensity();
+    if (nightVisionMode) {
+      shaders.setColor(intensity, 0, 0, 0.7f);
+    } else {
+      shaders.setColor(intensity, intensity, 0, 0.7f);
+    }
+
+    GLES20Calls.glEnable(GLES20.GL_BLEND);
+    GLES20Calls.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+    mQuad.drawWithShaders(gl);
+
+    GLES20Calls.glDisable(GLES20.GL_BLEND);
+  }
+
+  // The crosshair pulses once a second.
+  private static float getIntensity() {
+    int period = 1000;
+    long time = System.currentTimeMillis();
+    return 0.7f + 0.3f * MathUtils.sin((time % period) * TWO_PI / period);
+  }
+  
   private TexturedQuad mQuad = null;
   private TextureReference mTex = null;
 }
@@ -0,0 +1,193 @@
+package com.google.android.stardroid.renderer;
+
+import java.util.Locale;
+
+/**
+ * Counters describing the renderer's work over a session: how many frames
+ * were drawn, what they cost in CPU time on the GL thread, how many were
+ * skipped because nothing visible had changed, the longest the GL thread
+ * was kept from drawing, and how soon a new surface got its first frame.
+ *
+ * <p>Only the GL thread writes to these; other threads may read them at any
+ * time and see a slightly stale but consistent-enough view.
+ */
+public class FrameStats {
+  private volatile long framesDrawn;
+  private volatile long drawCpuNanos;
+  private volatile long framesSkipped;
+  private volatile long savedCpuNanos;
+  private volatile int qualityLevel;
+  private volatile int qualityDowngrades;
+  private volatile int qualityUpgrades;
+  private volatile String lastQualityDecision = "none";
+  private volatile long longestStallNanos;
+  private volatile String backend = "GL10";
+  private volatile long glCountedFrames;
+  private volatile long glCallsIssued;
+  private volatile long glCallsSkipped;
+  private volatile long surfaceToFirstFrameNanos = -1;
+  private volatile boolean surfaceKeptContext;
+
+  /** Sets the name of the GL backend drawing the frames, so reports from each can be told apart. */
+  void setBackend(String name) {
+    backend = name;
+  }
+
+  public String getBackend() {
+    return backend;
+  }
+
+  /** Records a drawn frame that took the given GL thread CPU time. */
+  void frameDrawn(long cpuNanos) {
+    framesDrawn++;
+    drawCpuNanos += cpuNanos;
+  }
+
+  /**
+   * Records the number of GL calls a frame made, and how many more were
+   * dropped as redundant state changes.
+   */
+  void glCalls(int issued, int skipped) {
+    glCountedFrames++;
+    glCallsIssued += issued;
+    glCallsSkipped += skipped;
+  }
+
+  /**
+   * Records the first frame on a new or resized surface finishing the given
+   * time after the surface was ready, and whether the GL context (and so its
+   * textures and buffers) had survived.
+   */
+  void firstFrameOnSurface(long nanos, boolean keptContext) {
+    surfaceToFirstFrameNanos = nanos;
+    surfaceKeptContext = keptContext;
+  }
+
+  /**
+   * Records the GL thread being busy for the given wall time, either drawing a
+   * frame or running a task queued for it such as a manager update.
+   */
+  void glThreadBusy(long nanos) {
+    if (nanos > longestStallNanos) {
+      longestStallNanos = nanos;
+    }
+  }
+
+  /**
+   * Records a display frame that wasn't drawn.  What it would have cost is
+   * estimated from the mean of the frames that were.
+   */
+  void frameSkipped() {
+    framesSkipped++;
+    savedCpuNanos += getMeanDrawCpuNanos();
+  }
+
+  /**
+   * Records the {@link QualityController} moving to a new level because of
+   * the given mean frame interval.
+   */
+  void qualityChanged(int newLevel, long meanIntervalNanos) {
+    if (newLevel > qualityLevel) {
+      qualityDowngrades++;
+    } else {
+      qualityUpgrades++;
+    }
+    lastQualityDecision = String.format(Locale.US, "level %d -> %d at %.1f ms/frame",
+        qualityLevel, newLevel, meanIntervalNanos / 1e6);
+    qualityLevel = newLevel;
+  }
+
+  public long getFramesDrawn() {
+    return framesDrawn;
+  }
+
+  public long getFramesSkipped() {
+    return framesSkipped;
+  }
+
+  public long getDrawCpuNanos() {
+    return drawCpuNanos;
+  }
+
+  public long getMeanDrawCpuNanos() {
+    long drawn = framesDrawn;
+    return drawn == 0 ? 0 : drawCpuNanos / drawn;
+  }
+
+  /** An estimate of the GL thread CPU time saved by skipping frames. */
+  public long getSavedCpuNanos() {
+    return savedCpuNanos;
+  }
+
+  /** The longest single frame or queued task on the GL thread. */
+  public long getLongestStallNanos() {
+    return longestStallNanos;
+  }
+
+  /** The mean number of GL calls made per frame, or 0 if they aren't counted. */
+  public long getMeanGlCallsPerFrame() {
+    long counted = glCountedFrames;
+    return counted == 0 ? 0 : glCallsIssued / counted;
+  }
+
+  /** The mean number of redundant GL calls dropped per frame. */
+  public long getMeanGlCallsSkippedPerFrame() {
+    long counted = glCountedFrames;
+    return counted == 0 ? 0 : glCallsSkipped / counted;
+  }
+
+  /** How long the last new surface waited for its first frame, or -1 if there hasn't been one. */
+  public long getSurfaceToFirstFrameNanos() {
+    return surfaceToFirstFrameNanos;
+  }
+
+  /** Whether the GL context survived for the last new surface. */
+  public boolean getSurfaceKeptContext() {
+    return surfaceKeptContext;
+  }
+
+  public int getQualityLevel() {
+    return qualityLevel;
+  }
+
+  public int getQualityDowngrades() {
+    return qualityDowngrades;
+  }
+
+  public int getQualityUpgrades() {
+    return qualityUpgrades;
+  }
+
+  public String getLastQualityDecision() {
+    return lastQualityDecision;
+  }
+
+  /** Resets the counters; the current quality level and the last surface's timing are kept. */
+  public void reset() {
+    framesDrawn = 0;
+    drawCpuNanos = 0;
+    framesSkipped = 0;
+    savedCpuNanos = 0;
+    qualityDowngrades = 0;
+    qualityUpgrades = 0;
+    lastQualityDecision = "none";
+    longestStallNanos = 0;
+    glCountedFrames = 0;
+    glCallsIssued = 0;
+    glCallsSkipped = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US,
+        "%s: %d frames drawn (%.2f ms CPU each, %d GL calls, %d redundant dropped), "
+            + "%d skipped (%.0f ms CPU saved), longest GL stall %.1f ms; "
+            + "first frame %.1f ms after the surface (context %s); "
+            + "quality level %d, %d downgrades, %d upgrades, last %s",
+        backend, framesDrawn, getMeanDrawCpuNanos() / 1e6, getMeanGlCallsPerFrame(),
+        getMeanGlCallsSkippedPerFrame(), framesSkipped, savedCpuNanos / 1e6,
+        longestStallNanos / 1e6, surfaceToFirstFrameNanos / 1e6,
+        surfaceKeptContext ? "kept" : "new",
+        qualityLevel, qualityDowngrades, qualityUpgrades, lastQualityDecision);
+  }
+}
@@ -13,19 +13,21 @@
 // limitations under the License.
 
 package com.google.android.stardroid.renderer;
-import android.graphics.Bitmap;
-import android.opengl.GLUtils;
 
+import android.opengl.GLES20;
+
+import com.google.android.stardroid.R;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
+import com.google.android.stardroid.renderer.util.IndexBuffer;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TexCoordBuffer;
+import com.google.android.stardroid.renderer.util.TextureAtlas;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderer.util.VertexBuffer;
 import com.google.android.stardroid.math.Vector3;
 import com.google.android.stardroid.renderables.ImagePrimitive;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.IntBuffer;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -35,15 +37,39 @@ import javax.microedition.khronos.opengles.GL11;
 /**
  * Manages the rendering of image objects.
  *
+ * <p>Images in the texture atlas are all drawn with one texture and one draw
+ * call, and changing between them only changes texture coordinates.  Any
+ * others are drawn one at a time with their own textures.
+ *
  * @author James Powell
  *
  */
 public class ImageObjectManager extends RendererObjectManager {
+  /** The images which go in the shared texture atlas. */
+  public static final int[] ATLAS_IMAGES = {
+      R.drawable.blank,
+      R.drawable.sun, R.drawable.mercury, R.drawable.venus, R.drawable.earth,
+      R.drawable.mars, R.drawable.jupiter, R.drawable.saturn, R.drawable.uranus,
+      R.drawable.neptune, R.drawable.pluto,
+      R.drawable.moon0, R.drawable.moon1, R.drawable.moon2, R.drawable.moon3,
+      R.drawable.moon4, R.drawable.moon5, R.drawable.moon6, R.drawable.moon7,
+      R.drawable.meteor1_screen, R.drawable.meteor2_screen, R.drawable.comet,
+      R.drawable.star_of_b,
+  };
+
   private VertexBuffer mVertexBuffer = new VertexBuffer(false);
   private TexCoordBuffer mTexCoordBuffer = new TexCoordBuffer(false);
+  // Two triangles for each image in the atlas.
+  private IndexBuffer mAtlasIndexBuffer = new IndexBuffer(false);
   private Image[] mImages = new Image[0];
+  // The textures for each image not in the atlas, and which image resource each
+  // one currently holds (0 for none).  They're shared through the TextureManager
+  // and only acquired when first drawn.
   private TextureReference[] mTextures = new TextureReference[0];
+  private int[] mTextureIds = new int[0];
   private TextureReference[] mRedTextures = new TextureReference[0];
+  private int[] mRedTextureIds = new int[0];
+  private final float[] mAtlasTexCoords = new float[4];
 
   EnumSet<UpdateType> mUpdates = EnumSet.noneOf(UpdateType.class);
 
@@ -52,6 +78,32 @@ public class ImageObjectManager extends RendererObjectManager {
   }
 
   public void updateObjects(List<ImagePrimitive> imageSources, EnumSet<UpdateType> type) {
+    update(imageSources, type, null, null);
+  }
+
+  /** Applies changes to the images last given to updateObjects. */
+  public void applyChanges(List<ImagePrimitive> imageSources, ChangeSet changes) {
+    if (changes.changesSize()) {
+      updateObjects(imageSources, EnumSet.of(UpdateType.Reset));
+      return;
+    }
+    EnumSet<UpdateType> type = EnumSet.noneOf(UpdateType.class);
+    if (changes.contains(ChangeSet.Change.MOVED)) {
+      type.add(UpdateType.UpdatePositions);
+    }
+    if (changes.contains(ChangeSet.Change.IMAGE_CHANGED)) {
+      type.add(UpdateType.UpdateImages);
+    }
+    if (!type.isEmpty()) {
+      update(imageSources, type, changes.getIndices(ChangeSet.Change.MOVED),
+          changes.getIndices(ChangeSet.Change.IMAGE_CHANGED));
+    }
+  }
+
+  // Updates the images.  If moved or changedImages are non-null, only the
+  // images at those indices are rewritten.
+  private void update(List<ImagePrimitive> imageSources, EnumSet<UpdateType> type,
+                      int[] moved, int[] changedImages) {
     if (!type.contains(UpdateType.Reset) && imageSources.size() != mImages.length) {
       logUpdateMismatch("ImageObjectManager", imageSources.size(), mImages.length, type);
       return;
@@ -59,75 +111,76 @@ public class ImageObjectManager extends RendererObjectManager {
     mUpdates.addAll(type);
 
     int numVertices = imageSources.size() * 4;
-    VertexBuffer vertexBuffer = mVertexBuffer;
-    vertexBuffer.reset(numVertices);
-
-    TexCoordBuffer texCoordBuffer = mTexCoordBuffer;
-    texCoordBuffer.reset(numVertices);
-
-    Image[] images;
-    boolean reset = type.contains(UpdateType.Reset) || type.contains(UpdateType.UpdateImages);
+    boolean reset = type.contains(UpdateType.Reset);
+    boolean newPositions = reset || type.contains(UpdateType.UpdatePositions);
+    boolean newImages = reset || type.contains(UpdateType.UpdateImages);
     if (reset) {
-      images = new Image[imageSources.size()];
-    } else {
-      images = mImages;
+      moved = null;
+      changedImages = null;
     }
 
+    Image[] images;
     if (reset) {
+      images = new Image[imageSources.size()];
       for (int i = 0; i < imageSources.size(); i++) {
-        ImagePrimitive is = imageSources.get(i);
-
         images[i] = new Image();
         //TODO(brent): Fix this method.
         images[i].name = "no url";
         images[i].useBlending = false;
-        images[i].bitmap = is.getImage();
       }
+    } else {
+      images = mImages;
     }
 
-    // Update the positions in the position and tex coord buffers.
-    if (reset || type.contains(UpdateType.UpdatePositions)) {
-      for (int i = 0; i < imageSources.size(); i++) {
-        ImagePrimitive is = imageSources.get(i);
-        Vector3 xyz = is.getLocation();
-        float px = xyz.x;
-        float py = xyz.y;
-        float pz = xyz.z;
-
-        float[] u = is.getHorizontalCorner();
-        float ux = u[0];
-        float uy = u[1];
-        float uz = u[2];
-
-        float[] v = is.getVerticalCorner();
-        float vx = v[0];
-        float vy = v[1];
-        float vz = v[2];
-
-        // lower left
-        vertexBuffer.addPoint(px - ux - vx, py - uy - vy, pz - uz - vz);
-        texCoordBuffer.addTexCoords(0, 1);
-
-        // upper left
-        vertexBuffer.addPoint(px - ux + vx, py - uy + vy, pz - uz + vz);
-        texCoordBuffer.addTexCoords(0, 0);
-
-        // lower right
-        vertexBuffer.addPoint(px + ux - vx, py + uy - vy, pz + uz - vz);
-        texCoordBuffer.addTexCoords(1, 1);
-
-        // upper right
-        vertexBuffer.addPoint(px + ux + vx, py + uy + vy, pz + uz + vz);
-        texCoordBuffer.addTexCoords(1, 0);
+    // Update the positions in the vertex buffer.
+    if (newPositions) {
+      if (moved == null) {
+        mVertexBuffer.reset(numVertices);
+        for (int i = 0; i < imageSources.size(); i++) {
+          setPositions(i, imageSources.get(i));
+        }
+      } else {
+        for (int i : moved) {
+          setPositions(i, imageSources.get(i));
+        }
       }
     }
 
-    // We already set the image in reset, so only set them here if we're
-    // not doing a reset.
-    if (type.contains(UpdateType.UpdateImages)) {
-      for (int i = 0; i < imageSources.size(); i++) {
-        ImagePrimitive is = imageSources.get(i);
-        images[i].bitmap = is.getImage();
+    // Update the images, which for those in the atlas just means their tex coords.
+    if (newImages) {
+      TextureAtlas atlas = textureManager().getImageAtlas();
+      boolean atlasChanged = changedImages == null;
+      if (changedImages == null) {
+        mTexCoordBuffer.reset(numVertices);
+        for (int i = 0; i < imageSources.size(); i++) {
+          setImage(i, images[i], imageSources.get(i), atlas);
+        }
+      } else {
+        for (int i : changedImages) {
+          atlasChanged |= setImage(i, images[i], imageSources.get(i), atlas);
+        }
+      }
+
+      if (atlasChanged) {
+        int numInAtlas = 0;
+        for (Image image : images) {
+          if (image.inAtlas) {
+            numInAtlas++;
+          }
+        }
+        IndexBuffer indexBuffer = mAtlasIndexBuffer;
+        indexBuffer.reset(6 * numInAtlas);
+        for (int i = 0; i < images.length; i++) {
+          if (images[i].inAtlas) {
+            short base = (short) (4 * i);
+            indexBuffer.addIndex(base);
+            indexBuffer.addIndex((short) (base + 1));
+            indexBuffer.addIndex((short) (base + 2));
+            indexBuffer.addIndex((short) (base + 2));
+            indexBuffer.addIndex((short) (base + 1));
+            indexBuffer.addIndex((short) (base + 3));
+          }
+        }
       }
     }
 
@@ -135,59 +188,131 @@ public class ImageObjectManager extends RendererObjectManager {
     queueForReload(false);
   }
 
+  // Writes the corners of the index'th image's quad.
+  private void setPositions(int index, ImagePrimitive is) {
+    Vector3 xyz = is.getLocation();
+    float px = xyz.x;
+    float py = xyz.y;
+    float pz = xyz.z;
+
+    float[] u = is.getHorizontalCorner();
+    float ux = u[0];
+    float uy = u[1];
+    float uz = u[2];
+
+    float[] v = is.getVerticalCorner();
+    float vx = v[0];
+    float vy = v[1];
+    float vz = v[2];
+
+    VertexBuffer vertexBuffer = mVertexBuffer;
+    int base = 4 * index;
+    // lower left
+    vertexBuffer.setPoint(base, px - ux - vx, py - uy - vy, pz - uz - vz);
+    // upper left
+    vertexBuffer.setPoint(base + 1, px - ux + vx, py - uy + vy, pz - uz + vz);
+    // lower right
+    vertexBuffer.setPoint(base + 2, px + ux - vx, py + uy - vy, pz + uz - vz);
+    // upper right
+    vertexBuffer.setPoint(base + 3, px + ux + vx, py + uy + vy, pz + uz + vz);
+  }
+
+  // Sets the index'th image and its tex coords, returning whether it moved
+  // into or out of the atlas.
+  private boolean setImage(int index, Image image, ImagePrimitive is, TextureAtlas atlas) {
+    boolean wasInAtlas = image.inAtlas;
+    image.imageId = is.getImageId();
+    image.inAtlas = !image.useBlending && atlas.contains(image.imageId);
+    float left = 0;
+    float top = 0;
+    float right = 1;
+    float bottom = 1;
+    if (image.inAtlas) {
+      atlas.getTexCoords(image.imageId, mAtlasTexCoords);
+      left = mAtlasTexCoords[0];
+      top = mAtlasTexCoords[1];
+      right = mAtlasTexCoords[2];
+      bottom = mAtlasTexCoords[3];
+    } else {
+      textureManager().getImageCache().prefetch(image.imageId);
+    }
+    TexCoordBuffer texCoordBuffer = mTexCoordBuffer;
+    int base = 4 * index;
+    texCoordBuffer.setTexCoords(base, left, bottom);
+    texCoordBuffer.setTexCoords(base + 1, left, top);
+    texCoordBuffer.setTexCoords(base + 2, right, bottom);
+    texCoordBuffer.setTexCoords(base + 3, right, top);
+    return image.inAtlas != wasInAtlas;
+  }
+
   @Override
   public void reload(GL10 gl, boolean fullReload) {
-    Image[] images = mImages;
-    boolean reloadBuffers = false;
-    boolean reloadImages = false;
-
+    boolean reloadPositions;
+    boolean reloadImages;
     if (fullReload) {
-      reloadBuffers = true;
+      reloadPositions = true;
       reloadImages = true;
       // If this is a full reload, all the textures were automatically deleted,
-      // so just create new arrays so we won't try to delete the old ones again.
-      mTextures = new TextureReference[images.length];
-      mRedTextures = new TextureReference[images.length];
+      // so just forget them rather than trying to release them.
+      mTextures = new TextureReference[0];
+      mTextureIds = new int[0];
+      mRedTextures = new TextureReference[0];
+      mRedTextureIds = new int[0];
     } else {
-      // Process any queued updates.
-      boolean reset = mUpdates.contains(UpdateType.Reset);
-      reloadBuffers |=  reset || mUpdates.contains(UpdateType.UpdatePositions);
-      reloadImages |= reset || mUpdates.contains(UpdateType.UpdateImages);
-      mUpdates.clear();
+      // Process any queued updates.  Changed textures are picked up when drawn.
+      reloadPositions = mUpdates.contains(UpdateType.Reset)
+          || mUpdates.contains(UpdateType.UpdatePositions);
+      reloadImages = mUpdates.contains(UpdateType.Reset)
+          || mUpdates.contains(UpdateType.UpdateImages);
     }
+    mUpdates.clear();
 
-    if (reloadBuffers) {
+    if (reloadPositions) {
       mVertexBuffer.reload();
-      mTexCoordBuffer.reload();
     }
     if (reloadImages) {
-      for (int i = 0; i < mTextures.length; i++) {
-        // If the image is already allocated, delete it.
-        if (mTextures[i] != null) {
-          mTextures[i].delete(gl);
-          mRedTextures[i].delete(gl);
-        }
+      mTexCoordBuffer.reload();
+      mAtlasIndexBuffer.reload();
+    }
+  }
 
-        Bitmap bmp = mImages[i].bitmap;
-        mTextures[i] = textureManager().createTexture(gl);
-        mTextures[i].bind(gl);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-        GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bmp, 0);
-
-        IntBuffer redPixels = createRedImage(bmp);
-        mRedTextures[i] = textureManager().createTexture(gl);
-        mRedTextures[i].bind(gl);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
-        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-        gl.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GL10.GL_RGBA, bmp.getWidth(), bmp.getHeight(),
-            0, GL10.GL_RGBA, GL10.GL_UNSIGNED_BYTE, redPixels);
+  /**
+   * Makes sure each image not in the atlas has the right texture of the given
+   * kind, swapping only those whose image has changed.  Textures whose images
+   * are still being decoded are left null; we'll try again on the next frame.
+   */
+  private TextureReference[] updateTextures(GL10 gl, boolean red) {
+    Image[] images = mImages;
+    TextureReference[] textures = red ? mRedTextures : mTextures;
+    int[] textureIds = red ? mRedTextureIds : mTextureIds;
+    if (textures.length != images.length) {
+      for (int i = 0; i < textures.length; i++) {
+        if (textures[i] != null) {
+          textureManager().releaseImageTexture(gl, textureIds[i], red);
+        }
+      }
+      textures = new TextureReference[images.length];
+      textureIds = new int[images.length];
+      if (red) {
+        mRedTextures = textures;
+        mRedTextureIds = textureIds;
+      } else {
+        mTextures = textures;
+        mTextureIds = textureIds;
       }
     }
+    for (int i = 0; i < images.length; i++) {
+      int wanted = images[i].inAtlas ? 0 : images[i].imageId;
+      if (textureIds[i] == wanted && (textures[i] != null || wanted == 0)) {
+        continue;
+      }
+      if (textures[i] != null) {
+        textureManager().releaseImageTexture(gl, textureIds[i], red);
+      }
+      textures[i] = wanted == 0 ? null : textureManager().acquireImageTexture(gl, wanted, red);
+      textureIds[i] = textures[i] == null ? 0 : wanted;
+    }
+    return textures;
   }
 
   @Override
@@ -205,9 +330,22 @@ public class ImageObjectManager extends RendererObjectManager {
     mVertexBuffer.set(gl);
     mTexCoordBuffer.set(gl);
 
-    TextureReference[] textures = mTextures;
-    TextureReference[] redTextures = mRedTextures;
+    boolean red = getRenderState().getNightVisionMode();
+    TextureReference atlasTexture = mAtlasIndexBuffer.size() == 0
+        ? null : textureManager().getAtlasTexture(gl, red);
+    if (atlasTexture != null) {
+      gl.glEnable(GL10.GL_ALPHA_TEST);
+      gl.glAlphaFunc(GL10.GL_GREATER, 0.5f);
+      atlasTexture.bind(gl);
+      mAtlasIndexBuffer.draw(gl, GL10.GL_TRIANGLES);
+      gl.glDisable(GL10.GL_ALPHA_TEST);
+    }
+
+    TextureReference[] textures = updateTextures(gl, red);
     for (int i = 0; i < textures.length; i++) {
+      if (textures[i] == null) {
+        continue;
+      }
       if (mImages[i].useBlending) {
         gl.glEnable(GL10.GL_BLEND);
         gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
@@ -216,11 +354,7 @@ public class ImageObjectManager extends RendererObjectManager {
         gl.glAlphaFunc(GL10.GL_GREATER, 0.5f);
       }
 
-      if (getRenderState().getNightVisionMode()) {
-        redTextures[i].bind(gl);
-      } else {
-        textures[i].bind(gl);
-      }
+      textures[i].bind(gl);
       ((GL11) gl).glDrawArrays(GL10.GL_TRIANGLE_STRIP, 4 * i, 4);
 
       if (mImages[i].useBlending) {
@@ -233,32 +367,53 @@ public class ImageObjectManager extends RendererObjectManager {
     gl.glDisable(GL10.GL_TEXTURE_2D);
   }
 
-  private IntBuffer createRedImage(Bitmap bmp) {
-    int width = bmp.getWidth();
-    int height = bmp.getHeight();
-    int numPixels = width * height;
-    int[] pixels = new int[numPixels];
-    bmp.getPixels(pixels, 0, width, 0, 0, width, height);
-
-    ByteBuffer redPixelsBB = ByteBuffer.allocateDirect(4 * numPixels);
-    IntBuffer redPixels = redPixelsBB.order(ByteOrder.nativeOrder()).asIntBuffer();
-    for (int j = 0; j < numPixels; j++) {
-      int r = pixels[j] & 0xff;
-      int g = (pixels[j] >> 8) & 0xff;
-      int b = (pixels[j] >> 16) & 0xff;
-      int alphaMask = pixels[j] & 0xff000000;
-
-      redPixels.put(alphaMask | ((r + g + b) / 3));
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    if (mVertexBuffer.size() == 0) {
+      return;
+    }
+
+    // Night vision is done by the shader, so only the normal textures are needed.
+    shaders.useTextured(getRenderState().getNightVisionMode());
+    shaders.setTransform(getRenderState().getTransformToDeviceMatrix().getFloatArray());
+
+    mVertexBuffer.setAttribute(ShaderPrograms.POSITION);
+    mTexCoordBuffer.setAttribute(ShaderPrograms.TEX_COORD);
+
+    TextureReference atlasTexture = mAtlasIndexBuffer.size() == 0
+        ? null : textureManager().getAtlasTexture(gl, false);
+    if (atlasTexture != null) {
+      shaders.setAlphaTest(true);
+      atlasTexture.bind(gl);
+      mAtlasIndexBuffer.draw(GLES20.GL_TRIANGLES);
     }
 
-    redPixels.position(0);
-    return redPixels;
+    TextureReference[] textures = updateTextures(gl, false);
+    for (int i = 0; i < textures.length; i++) {
+      if (textures[i] == null) {
+        continue;
+      }
+      if (mImages[i].useBlending) {
+        shaders.setAlphaTest(false);
+        GLES20Calls.glEnable(GLES20.GL_BLEND);
+        GLES20Calls.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+      } else {
+        shaders.setAlphaTest(true);
+      }
+
+      textures[i].bind(gl);
+      GLES20Calls.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 4 * i, 4);
+
+      if (mImages[i].useBlending) {
+        GLES20Calls.glDisable(GLES20.GL_BLEND);
+      }
+    }
   }
 
   private static class Image {
     String name;
-    Bitmap bitmap;
-    int textureID;
+    int imageId;
+    boolean inAtlas;
     boolean useBlending;
   }
 }
@@ -0,0 +1,221 @@
+package com.google.android.stardroid.renderer;
+
+import java.util.Arrays;
+
+/**
+ * Chooses which of a frame's labels to draw so that none of them overlap.
+ *
+ * <p>Each frame the caller adds the labels that are on screen, with their
+ * screen position, size and priority, and then calls {@link #resolve}.  The
+ * labels are taken in order of priority, and each is accepted unless it
+ * overlaps one already accepted.  Accepted labels are entered in a uniform
+ * grid over the screen, so each test only looks at the few labels nearby.
+ *
+ * <p>Between labels of equal priority, those shown in the previous frame are
+ * preferred, and then those with the lower id, so that the choice doesn't
+ * flicker as the view moves.  The ids must therefore identify the same labels
+ * from frame to frame; call {@link #forget} if they change.
+ *
+ * <p>Nothing is allocated per frame once the arrays have grown to fit.
+ */
+final class LabelDeclutterer {
+  // Roughly the height of a label, so that most only cover a few cells.
+  private static final int CELL_SIZE = 32;
+  // The gap to leave between labels, in pixels.
+  private static final float PADDING = 2;
+  // The sort keys' bits, from the top: priority, whether shown last frame,
+  // id and the candidate's index.
+  private static final int MAX_PRIORITY = (1 << 15) - 1;
+  private static final int INDEX_BITS = 23;
+  private static final int ID_BITS = 24;
+  private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+  // The candidates, in the order they were added.
+  private int mNumCandidates = 0;
+  private int[] mIds = new int[0];
+  private float[] mCenterX = new float[0];
+  private float[] mCenterY = new float[0];
+  private float[] mHalfWidth = new float[0];
+  private float[] mHalfHeight = new float[0];
+  // Sorting these gives the order in which to place the candidates.
+  private long[] mSortKeys = new long[0];
+
+  // The accepted candidates' indices, in the order they were accepted.
+  private int[] mAccepted = new int[0];
+  private int mNumAccepted = 0;
+
+  // Whether each id was shown last frame.
+  private boolean[] mShown = new boolean[0];
+  private int[] mShownIds = new int[0];
+  private int mNumShownIds = 0;
+
+  // The grid: each cell has a list, threaded through mNextEntry, of the
+  // accepted candidates covering it.  Cells with an old stamp are empty.
+  private int mGridWidth = 0;
+  private int mGridHeight = 0;
+  private int[] mCellHead = new int[0];
+  private int[] mCellStamp = new int[0];
+  private int mStamp = 0;
+  private int[] mEntryCandidate = new int[0];
+  private int[] mNextEntry = new int[0];
+  private int mNumEntries = 0;
+
+  /** Starts a new frame with a screen of the given size in pixels. */
+  void begin(int screenWidth, int screenHeight) {
+    mNumCandidates = 0;
+    mNumAccepted = 0;
+    mNumEntries = 0;
+    mGridWidth = Math.max(1, (screenWidth + CELL_SIZE - 1) / CELL_SIZE);
+    mGridHeight = Math.max(1, (screenHeight + CELL_SIZE - 1) / CELL_SIZE);
+    int numCells = mGridWidth * mGridHeight;
+    if (mCellHead.length < numCells) {
+      mCellHead = new int[numCells];
+      mCellStamp = new int[numCells];
+    }
+    // Rather than clearing the grid, mark everything in it as stale.
+    mStamp++;
+  }
+
+  /**
+   * Adds a label centered at the given screen position.  Higher priorities
+   * are placed first.  Ids must be non-negative and less than 2^24.
+   */
+  void add(int id, float centerX, float centerY, float width, float height, int priority) {
+    if (mNumCandidates == mIds.length) {
+      grow(Math.max(16, 2 * mNumCandidates));
+    }
+    int i = mNumCandidates++;
+    mIds[i] = id;
+    mCenterX[i] = centerX;
+    mCenterY[i] = centerY;
+    mHalfWidth[i] = 0.5f * width + PADDING;
+    mHalfHeight[i] = 0.5f * height + PADDING;
+
+    int clampedPriority = Math.max(0, Math.min(MAX_PRIORITY, priority));
+    boolean shown = id < mShown.length && mShown[id];
+    // Sorting ascending puts the highest priority first, then those shown last time.
+    mSortKeys[i] = (long) (MAX_PRIORITY - clampedPriority) << (1 + ID_BITS + INDEX_BITS)
+        | (shown ? 0L : 1L) << (ID_BITS + INDEX_BITS)
+        | (long) id << INDEX_BITS
+        | i;
+  }
+
+  /** Chooses the labels to show, returning how many there are. */
+  int resolve() {
+    Arrays.sort(mSortKeys, 0, mNumCandidates);
+
+    for (int k = 0; k < mNumCandidates; k++) {
+      int i = (int) (mSortKeys[k] & INDEX_MASK);
+      if (!overlapsAccepted(i)) {
+        accept(i);
+      }
+    }
+    rememberShown();
+    return mNumAccepted;
+  }
+
+  /** The id of the nth label to show, in order of priority. */
+  int getAcceptedId(int n) {
+    return mIds[mAccepted[n]];
+  }
+
+  float getAcceptedX(int n) {
+    return mCenterX[mAccepted[n]];
+  }
+
+  float getAcceptedY(int n) {
+    return mCenterY[mAccepted[n]];
+  }
+
+  /** Forgets which labels were shown, for when the ids are reassigned. */
+  void forget() {
+    Arrays.fill(mShown, false);
+    mNumShownIds = 0;
+  }
+
+  private boolean overlapsAccepted(int i) {
+    int minCellX = cellX(mCenterX[i] - mHalfWidth[i]);
+    int maxCellX = cellX(mCenterX[i] + mHalfWidth[i]);
+    int minCellY = cellY(mCenterY[i] - mHalfHeight[i]);
+    int maxCellY = cellY(mCenterY[i] + mHalfHeight[i]);
+    for (int cy = minCellY; cy <= maxCellY; cy++) {
+      for (int cx = minCellX; cx <= maxCellX; cx++) {
+        int cell = cy * mGridWidth + cx;
+        if (mCellStamp[cell] != mStamp) {
+          continue;
+        }
+        for (int e = mCellHead[cell]; e != -1; e = mNextEntry[e]) {
+          int j = mEntryCandidate[e];
+          if (Math.abs(mCenterX[i] - mCenterX[j]) < mHalfWidth[i] + mHalfWidth[j]
+              && Math.abs(mCenterY[i] - mCenterY[j]) < mHalfHeight[i] + mHalfHeight[j]) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void accept(int i) {
+    mAccepted[mNumAccepted++] = i;
+    int minCellX = cellX(mCenterX[i] - mHalfWidth[i]);
+    int maxCellX = cellX(mCenterX[i] + mHalfWidth[i]);
+    int minCellY = cellY(mCenterY[i] - mHalfHeight[i]);
+    int maxCellY = cellY(mCenterY[i] + mHalfHeight[i]);
+    for (int cy = minCellY; cy <= maxCellY; cy++) {
+      for (int cx = minCellX; cx <= maxCellX; cx++) {
+        int cell = cy * mGridWidth + cx;
+        if (mCellStamp[cell] != mStamp) {
+          mCellStamp[cell] = mStamp;
+          mCellHead[cell] = -1;
+        }
+        if (mNumEntries == mEntryCandidate.length) {
+          int size = Math.max(64, 2 * mNumEntries);
+          mEntryCandidate = Arrays.copyOf(mEntryCandidate, size);
+          mNextEntry = Arrays.copyOf(mNextEntry, size);
+        }
+        int e = mNumEntries++;
+        mEntryCandidate[e] = i;
+        mNextEntry[e] = mCellHead[cell];
+        mCellHead[cell] = e;
+      }
+    }
+  }
+
+  private void rememberShown() {
+    for (int n = 0; n < mNumShownIds; n++) {
+      mShown[mShownIds[n]] = false;
+    }
+    if (mShownIds.length < mNumAccepted) {
+      mShownIds = new int[mAccepted.length];
+    }
+    mNumShownIds = 0;
+    for (int n = 0; n < mNumAccepted; n++) {
+      int id = mIds[mAccepted[n]];
+      if (id >= mShown.length) {
+        mShown = Arrays.copyOf(mShown, Math.max(2 * mShown.length, id + 1));
+      }
+      mShown[id] = true;
+      mShownIds[mNumShownIds++] = id;
+    }
+  }
+
+  // Labels partly off screen go in the edge cells.
+  private int cellX(float x) {
+    return Math.max(0, Math.min(mGridWidth - 1, (int) (x / CELL_SIZE)));
+  }
+
+  private int cellY(float y) {
+    return Math.max(0, Math.min(mGridHeight - 1, (int) (y / CELL_SIZE)));
+  }
+
+  private void grow(int size) {
+    mIds = Arrays.copyOf(mIds, size);
+    mCenterX = Arrays.copyOf(mCenterX, size);
+    mCenterY = Arrays.copyOf(mCenterY, size);
+    mHalfWidth = Arrays.copyOf(mHalfWidth, size);
+    mHalfHeight = Arrays.copyOf(mHalfHeight, size);
+    mSortKeys = Arrays.copyOf(mSortKeys, size);
+    mAccepted = Arrays.copyOf(mAccepted, size);
+  }
+}
@@ -19,22 +19,30 @@ import static com.google.android.stardroid.math.MathUtilsKt.RADIANS_TO_DEGREES;
 
 import android.graphics.Paint;
 import android.graphics.Typeface;
+import android.opengl.GLES20;
 
 import com.google.android.stardroid.math.MathUtils;
 import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.BatchProjector;
+import com.google.android.stardroid.renderer.util.BufferCache;
 import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.LabelMaker;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderables.TextPrimitive;
 import com.google.android.stardroid.util.FixedPoint;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -47,15 +55,28 @@ import javax.microedition.khronos.opengles.GL11;
  * @author James Powell
  *
  */
-public class LabelObjectManager extends RendererObjectManager {
+public class LabelObjectManager extends RendererObjectManager implements BufferCacheable {
   // Should we compute the regions for the labels?
   // If false, we just put them in the catchall region.
   private static final boolean COMPUTE_REGIONS = true;
   
   private Paint mLabelPaint = null;
   private LabelMaker mLabelMaker = null;
+  // Labels read from a cache come already drawn, waiting for reload to upload them.
+  private LabelMaker mCachedLabelMaker = null;
+  // Whether the labels have been reset since they were last drawn.
+  private boolean mLabelsChanged = false;
   private Label[] mLabels = new Label[0];
-  private SkyRegionMap<ArrayList<Label>> mSkyRegions = new SkyRegionMap<ArrayList<Label>>(); 
+  private SkyRegionMap<RegionLabels> mSkyRegions = new SkyRegionMap<RegionLabels>();
+  // The labels which have moved since the last reset, which are always
+  // considered for drawing rather than being put in sky regions.
+  private boolean[] mDynamic = new boolean[0];
+  private final RegionLabels mDynamicLabels = new RegionLabels();
+  // Projects a region's labels in one go, and keeps where they were projected
+  // to until the next frame.
+  private final BatchProjector mProjector = new BatchProjector();
+  // Drops the labels which would overlap more prominent ones.
+  private final LabelDeclutterer mDeclutterer = new LabelDeclutterer();
   
   private IntBuffer mQuadBuffer;
   
@@ -65,6 +86,8 @@ public class LabelObjectManager extends RendererObjectManager {
   private float mDotProductThreshold;
   
   private TextureReference mTexture = null;
+  // Each label's transformation when drawing with shaders, reused between labels.
+  private final float[] mLabelTransform = new float[16];
   
   public LabelObjectManager(int layer, TextureManager textureManager) {
     super(layer, textureManager);
@@ -86,12 +109,12 @@ public class LabelObjectManager extends RendererObjectManager {
          0.5f, -0.5f,   // lower right
          0.5f,  0.5f};  // upper right
     for (float f : vertices) {
-      mQuadBuffer.put(FixedPoint.floatToFixedPoint(f));
+      mQuadBuffer.put(GLBuffer.encodeCoordinate(f));
     }
     mQuadBuffer.position(0);
     
     // We want to initialize the labels of a sky region to an empty list.
-    mSkyRegions.setRegionDataFactory(ArrayList::new);
+    mSkyRegions.setRegionDataFactory(RegionLabels::new);
   }
   
   @Override
@@ -109,6 +132,22 @@ public class LabelObjectManager extends RendererObjectManager {
     // since they were originally created, and I feel like it might not make
     // sense for it to own the texture anymore.  I should see if I can just
     // let it create but not own it.
+    if (mCachedLabelMaker != null) {
+      if (!fullReload && mLabelMaker != null) {
+        mLabelMaker.shutdown(gl);
+      }
+      mLabelMaker = mCachedLabelMaker;
+      mCachedLabelMaker = null;
+      mTexture = mLabelMaker.reupload(gl, textureManager());
+      return;
+    }
+    if (mLabelMaker != null && !mLabelsChanged) {
+      if (fullReload) {
+        // Only the texture went with the surface; the labels drawn into it are kept.
+        mTexture = mLabelMaker.reupload(gl, textureManager());
+      }
+      return;
+    }
     if (!fullReload && mLabelMaker != null) {
       mLabelMaker.shutdown(gl);
     }
@@ -117,14 +156,52 @@ public class LabelObjectManager extends RendererObjectManager {
     mTexture = mLabelMaker.initialize(gl, mLabelPaint, mLabels,
                                       getRenderState().getResources(),
                                       textureManager());
+    mLabelsChanged = false;
+  }
+
+  // Labels which have moved have to be given again, so only unmoved ones are cached.
+  @Override
+  public boolean canWriteBuffers() {
+    return mLabelMaker != null && !mLabelsChanged && mCachedLabelMaker == null
+        && mDynamicLabels.size() == 0;
+  }
+
+  @Override
+  public void writeBuffers(BufferCache.Writer out) {
+    out.beginSection(BufferCache.LABELS);
+    out.writeInt(mLabels.length);
+    for (Label label : mLabels) {
+      label.write(out);
+    }
+    mLabelMaker.write(mLabels, out);
+  }
+
+  @Override
+  public void readBuffers(BufferCache.Reader in) throws IOException {
+    BufferCache.Reader labels = in.section(BufferCache.LABELS);
+    if (labels == null) {
+      return;
+    }
+    mLabels = new Label[labels.readInt()];
+    for (int i = 0; i < mLabels.length; i++) {
+      mLabels[i] = new Label(labels, i);
+    }
+    mCachedLabelMaker = LabelMaker.read(mLabels, labels);
+    mLabelsChanged = false;
+    mDeclutterer.forget();
+    queueForReload(false);
+    mDynamic = new boolean[mLabels.length];
+    assignRegions();
   }
 
   public void updateObjects(List<TextPrimitive> labels, EnumSet<UpdateType> updateType) {
     if (updateType.contains(UpdateType.Reset)) {
       mLabels = new Label[labels.size()];
       for (int i = 0; i < labels.size(); i++) {
-        mLabels[i] = new Label(labels.get(i));
+        mLabels[i] = new Label(labels.get(i), i);
       }
+      mDeclutterer.forget();
+      mLabelsChanged = true;
       queueForReload(false);
     } else if (updateType.contains(UpdateType.UpdatePositions)) {
       if (labels.size() != mLabels.length) {
@@ -135,28 +212,123 @@ public class LabelObjectManager extends RendererObjectManager {
       // transformations manually, we can just update the positions stored
       // on the label objects.
       for (int i = 0; i < mLabels.length; i++) {
-        Vector3 pos = labels.get(i).getLocation();
-        mLabels[i].x = pos.x;
-        mLabels[i].y = pos.y;
-        mLabels[i].z = pos.z;
+        mLabels[i].setPosition(labels.get(i).getLocation());
       }
+    } else {
+      return;
     }
-    
-    // Put all of the labels in their sky regions.
+    mDynamic = new boolean[mLabels.length];
+    assignRegions();
+  }
+
+  /** Applies changes to the labels last given to updateObjects. */
+  public void applyChanges(List<TextPrimitive> labels, ChangeSet changes) {
+    if (changes.changesSize()) {
+      updateObjects(labels, EnumSet.of(UpdateType.Reset));
+      return;
+    }
+    // Labels which have moved before are already out of the sky regions,
+    // so only need their positions updating.
+    boolean newlyDynamic = false;
+    for (int command = 0; command < changes.size(); command++) {
+      int i = changes.getIndex(command);
+      switch (changes.getChange(command)) {
+        case MOVED:
+          mLabels[i].setPosition(labels.get(i).getLocation());
+          newlyDynamic |= !mDynamic[i];
+          mDynamic[i] = true;
+          break;
+        case RECOLORED:
+          mLabels[i].setColor(labels.get(i).getColor());
+          break;
+        default:
+          break;
+      }
+    }
+    if (newlyDynamic) {
+      assignRegions();
+    } else {
+      mDynamicLabels.copyPositions();
+    }
+  }
+
+  private void assignRegions() {
+    // Put all of the labels that haven't moved in their sky regions.
     // TODO(jpowell): Get this from the label source itself once it supports
     // this.
     mSkyRegions.clear();
-    for (Label l : mLabels) {
+    mDynamicLabels.labels.clear();
+    for (int i = 0; i < mLabels.length; i++) {
+      Label l = mLabels[i];
+      if (mDynamic[i]) {
+        mDynamicLabels.labels.add(l);
+        continue;
+      }
       int region;
       if (COMPUTE_REGIONS) {
         region = SkyRegionMap.getObjectRegion(new Vector3(l.x, l.y, l.z));
       } else {
         region = SkyRegionMap.CATCHALL_REGION_ID;
       }
-      mSkyRegions.getRegionData(region).add(l);
+      mSkyRegions.getRegionData(region).labels.add(l);
+    }
+    for (RegionLabels labelsInRegion : mSkyRegions.getDataForAllRegions()) {
+      labelsInRegion.finish();
+    }
+    mDynamicLabels.finish();
+  }
+
+  /**
+   * The labels in a sky region, with their positions copied into parallel
+   * arrays to be projected in a batch.
+   */
+  private static class RegionLabels {
+    final ArrayList<Label> labels = new ArrayList<Label>();
+    int[] ids = new int[0];
+    float[] x = new float[0];
+    float[] y = new float[0];
+    float[] z = new float[0];
+    float[] offset = new float[0];
+
+    int size() {
+      return labels.size();
+    }
+
+    // Highest priority, then largest, first, so that when drawing only some of them it's the
+    // most prominent that stay.
+    void finish() {
+      Collections.sort(labels, MOST_PROMINENT_FIRST);
+      int n = labels.size();
+      if (ids.length != n) {
+        ids = new int[n];
+        x = new float[n];
+        y = new float[n];
+        z = new float[n];
+        offset = new float[n];
+      }
+      for (int i = 0; i < n; i++) {
+        Label l = labels.get(i);
+        ids[i] = l.index;
+        offset[i] = l.offset;
+      }
+      copyPositions();
+    }
+
+    // Called when the labels have moved.
+    void copyPositions() {
+      for (int i = 0; i < labels.size(); i++) {
+        Label l = labels.get(i);
+        x[i] = l.x;
+        y[i] = l.y;
+        z[i] = l.z;
+      }
     }
   }
 
+  private static final Comparator<Label> MOST_PROMINENT_FIRST = (a, b) -> a.priority != b.priority
+      ? Integer.compare(b.priority, a.priority)
+      : Integer.compare(b.getFontSize(), a.getFontSize());
+
   @Override
   protected void drawInternal(GL10 gl) {
     gl.glTexEnvx(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, 
@@ -173,18 +345,105 @@ public class LabelObjectManager extends RendererObjectManager {
 
     beginDrawing(gl);
     
-    // Draw the labels for the active sky regions.
-    SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
-    ArrayList<ArrayList<Label>> allActiveLabels =
-        mSkyRegions.getDataForActiveRegions(activeRegions);
+    int numToDraw = chooseLabels();
+    for (int i = 0; i < numToDraw; i++) {
+      drawLabel(gl, mLabels[mDeclutterer.getAcceptedId(i)],
+          mDeclutterer.getAcceptedX(i), mDeclutterer.getAcceptedY(i));
+    }
     
-    for (ArrayList<Label> labelsInRegion : allActiveLabels) {
-      for (Label l : labelsInRegion) {
-        drawLabel(gl, l);
+    endDrawing(gl);
+  }
+
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    mTexture.bind(gl);
+    GLES20Calls.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
+    GLES20Calls.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
+
+    prepareProjection();
+    int numToDraw = chooseLabels();
+
+    boolean nightVision = getRenderState().getNightVisionMode();
+    shaders.useTextured(nightVision);
+    shaders.setAlphaTest(true);
+    shaders.setAlphaOnlyTexture(true);
+
+    GLBuffer.unbind();
+    mQuadBuffer.position(0);
+    GLES20Calls.glVertexAttribPointer(ShaderPrograms.POSITION, 2, GLES20.GL_FLOAT, false, 0,
+        mQuadBuffer);
+    GLES20Calls.glEnableVertexAttribArray(ShaderPrograms.POSITION);
+    GLES20Calls.glEnableVertexAttribArray(ShaderPrograms.TEX_COORD);
+
+    RenderStateInterface rs = getRenderState();
+    float scaleX = 2.0f / rs.getScreenWidth();
+    float scaleY = 2.0f / rs.getScreenHeight();
+    float cosUp = MathUtils.cos(rs.getUpAngle());
+    float sinUp = MathUtils.sin(rs.getUpAngle());
+    // The same as drawLabel's transformations, after an orthographic
+    // projection of the screen, with the rotation and scaling multiplied out.
+    float[] m = mLabelTransform;
+    m[10] = -1;
+    m[15] = 1;
+    for (int i = 0; i < numToDraw; i++) {
+      Label label = mLabels[mDeclutterer.getAcceptedId(i)];
+      float width = label.getWidthInPixels();
+      float height = label.getHeightInPixels();
+      m[0] = scaleX * cosUp * width;
+      m[1] = -scaleY * sinUp * width;
+      m[4] = scaleX * sinUp * height;
+      m[5] = scaleY * cosUp * height;
+      m[12] = scaleX * mDeclutterer.getAcceptedX(i) - 1;
+      m[13] = scaleY * mDeclutterer.getAcceptedY(i) - 1;
+      shaders.setTransform(m);
+
+      GLES20Calls.glVertexAttribPointer(ShaderPrograms.TEX_COORD, 2, GLES20.GL_FLOAT, false, 0,
+          label.getTexCoords());
+      // Night vision turns white red.
+      if (nightVision) {
+        shaders.setColor(1, 1, 1, (float) label.fixedA / FixedPoint.ONE);
+      } else {
+        shaders.setColor((float) label.fixedR / FixedPoint.ONE,
+            (float) label.fixedG / FixedPoint.ONE, (float) label.fixedB / FixedPoint.ONE,
+            (float) label.fixedA / FixedPoint.ONE);
       }
+      GLES20Calls.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
     }
+  }
+
+  /**
+   * Projects the labels in the active sky regions and picks those to draw,
+   * which are then the declutterer's accepted labels.  Returns how many there
+   * are.
+   */
+  private int chooseLabels() {
+    // Project the labels for the active sky regions.
+    SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
+    ArrayList<RegionLabels> allActiveLabels = mSkyRegions.getDataForActiveRegions(activeRegions);
+    allActiveLabels.add(mDynamicLabels);
     
-    endDrawing(gl);
+    RenderStateInterface rs = getRenderState();
+    mProjector.clear();
+    float density = rs.getLabelDensity();
+    for (RegionLabels labelsInRegion : allActiveLabels) {
+      int numToDraw = density >= 1 ? labelsInRegion.size()
+          : (int) Math.ceil(density * labelsInRegion.size());
+      mProjector.project(labelsInRegion.ids, labelsInRegion.x, labelsInRegion.y,
+          labelsInRegion.z, labelsInRegion.offset, numToDraw);
+    }
+
+    // Offer those in view for drawing.  The labels are turned with the screen, so
+    // take their bounding boxes.
+    mDeclutterer.begin(rs.getScreenWidth(), rs.getScreenHeight());
+    float cosUp = Math.abs(MathUtils.cos(rs.getUpAngle()));
+    float sinUp = Math.abs(MathUtils.sin(rs.getUpAngle()));
+    for (int i = 0; i < mProjector.size(); i++) {
+      addCandidate(mLabels[mProjector.getId(i)], mProjector.getX(i), mProjector.getY(i),
+          cosUp, sinUp);
+    }
+
+    // Then those which don't overlap, most prominent first.
+    return mDeclutterer.resolve();
   }
   
   /**
@@ -216,11 +475,18 @@ public class LabelObjectManager extends RendererObjectManager {
     gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
     gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
 
+    prepareProjection();
+  }
+
+  // Sets the projector up for this frame's view.
+  private void prepareProjection() {
     RenderStateInterface rs = super.getRenderState();
     
     float viewWidth = rs.getScreenWidth();
     float viewHeight = rs.getScreenHeight();
     
+    // Labels are offset to be underneath their positions (so a label will
+    // always appear underneath a star no matter how the phone is rotated).
     Matrix4x4 rotation = Matrix4x4.createRotation(rs.getUpAngle(), rs.getLookDir());
     mLabelOffset = Matrix4x4.multiplyMV(rotation, rs.getUpDir());
 
@@ -229,6 +495,10 @@ public class LabelObjectManager extends RendererObjectManager {
     // TODO(jpowell): I know I can make this tighter - do so.
     mDotProductThreshold = MathUtils.cos(rs.getRadiusOfView() * DEGREES_TO_RADIANS *
         (1 + viewWidth / viewHeight) * 0.5f); 
+
+    mProjector.setTransform(rs.getTransformToScreenMatrix());
+    mProjector.setOffsetDirection(mLabelOffset);
+    mProjector.setCulling(rs.getLookDir(), mDotProductThreshold);
   }
 
   /**
@@ -253,19 +523,56 @@ public class LabelObjectManager extends RendererObjectManager {
    * the label than to have two textures, one with red labels and one without. 
    */
   private static class Label extends LabelMaker.LabelData {
-    public Label(TextPrimitive ts) {
+    public Label(TextPrimitive ts, int index) {
       super(ts.getText(), 0xffffffff, ts.getFontSize());
+      this.index = index;
+      priority = ts.getPriority();
       if (ts.getText() == null || ts.getText().isEmpty()) {
         throw new RuntimeException("Bad Label: " + ts.getClass());
       }
       
-      x = ts.getLocation().x;
-      y = ts.getLocation().y;
-      z = ts.getLocation().z;
+      setPosition(ts.getLocation());
       
       offset = ts.getOffset();
       
-      int rgb = ts.getColor();
+      setColor(ts.getColor());
+    }
+
+    // Reads a label written by write.  Its text isn't kept, having already been drawn.
+    Label(BufferCache.Reader in, int index) {
+      super("", 0xffffffff, in.readInt());
+      this.index = index;
+      priority = in.readInt();
+      x = in.readFloat();
+      y = in.readFloat();
+      z = in.readFloat();
+      offset = in.readFloat();
+      fixedR = in.readInt();
+      fixedG = in.readInt();
+      fixedB = in.readInt();
+      fixedA = in.readInt();
+    }
+
+    void write(BufferCache.Writer out) {
+      out.writeInt(getFontSize());
+      out.writeInt(priority);
+      out.writeFloat(x);
+      out.writeFloat(y);
+      out.writeFloat(z);
+      out.writeFloat(offset);
+      out.writeInt(fixedR);
+      out.writeInt(fixedG);
+      out.writeInt(fixedB);
+      out.writeInt(fixedA);
+    }
+
+    void setPosition(Vector3 location) {
+      x = location.x;
+      y = location.y;
+      z = location.z;
+    }
+
+    void setColor(int rgb) {
       int a = 0xff;
       int r = (rgb >> 16) & 0xff;
       int g = (rgb >> 8) & 0xff;
@@ -276,6 +583,10 @@ public class LabelObjectManager extends RendererObjectManager {
       fixedR = FixedPoint.floatToFixedPoint(r / 255.0f);
     }
     
+    // Where it is in mLabels.
+    public final int index;
+    public final int priority;
+
     public float x;
     public float y;
     public float z;
@@ -291,35 +602,33 @@ public class LabelObjectManager extends RendererObjectManager {
   }
   
 
-  private void drawLabel(GL10 gl, Label label) {
-    Vector3 lookDir = getRenderState().getLookDir();
-    if (lookDir.x * label.x + lookDir.y * label.y + lookDir.z * label.z < mDotProductThreshold) {
-      return;
-    }
-    
-    // Offset the label to be underneath the given position (so a label will 
-    // always appear underneath a star no matter how the phone is rotated) 
-    Vector3 v = new Vector3(
-        label.x - mLabelOffset.x * label.offset,
-        label.y - mLabelOffset.y * label.offset,
-        label.z - mLabelOffset.z * label.offset);
-    
-    Vector3 screenPos = Matrix4x4.transformVector(
-        getRenderState().getTransformToScreenMatrix(),
-        v);
-    
+  // Projects the label to the screen and, if it's on it, offers it for drawing.
+  private void addCandidate(Label label, float screenX, float screenY, float cosUp, float sinUp) {
     // We want this to align consistently with the pixels on the screen, so we
     // snap to the nearest x/y coordinate, and add a magic offset of less than
     // half a pixel.  Without this, rounding error can cause the bottom and
     // top of a label to be one pixel off, which results in a noticeable
     // distortion in the text.
     final float MAGIC_OFFSET = 0.25f;
-    screenPos.x = (int)screenPos.x + MAGIC_OFFSET;
-    screenPos.y = (int)screenPos.y + MAGIC_OFFSET;
+    float x = (int)screenX + MAGIC_OFFSET;
+    float y = (int)screenY + MAGIC_OFFSET;
+
+    int width = label.getWidthInPixels();
+    int height = label.getHeightInPixels();
+    float boundsWidth = width * cosUp + height * sinUp;
+    float boundsHeight = width * sinUp + height * cosUp;
+    RenderStateInterface rs = getRenderState();
+    if (x + boundsWidth / 2 < 0 || x - boundsWidth / 2 > rs.getScreenWidth()
+        || y + boundsHeight / 2 < 0 || y - boundsHeight / 2 > rs.getScreenHeight()) {
+      return;
+    }
+    mDeclutterer.add(label.index, x, y, boundsWidth, boundsHeight, label.priority);
+  }
 
+  private void drawLabel(GL10 gl, Label label, float x, float y) {
     gl.glPushMatrix();
     
-    gl.glTranslatef(screenPos.x, screenPos.y, 0);
+    gl.glTranslatef(x, y, 0);
     gl.glRotatef(RADIANS_TO_DEGREES * getRenderState().getUpAngle(), 0, 0, -1);
     gl.glScalef(label.getWidthInPixels(), label.getHeightInPixels(), 1);
    
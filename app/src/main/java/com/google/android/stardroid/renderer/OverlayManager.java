@@ -23,6 +23,7 @@ import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
 import com.google.android.stardroid.renderer.util.ColoredQuad;
 import com.google.android.stardroid.renderer.util.SearchHelper;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TextureManager;
 
 import javax.microedition.khronos.opengles.GL10;
@@ -107,6 +108,33 @@ public class OverlayManager extends RendererObjectManager {
     restoreMatrices(gl);
   }
 
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    updateTransformedOrientationIfNecessary();
+
+    if (mSearching) {
+      mSearchHelper.setTransform(getRenderState().getTransformToDeviceMatrix());
+      mSearchHelper.checkState();
+
+      // The same projection as setupMatrices.
+      Matrix4x4 projection = Matrix4x4.createScaling(-2.0f / mWidth, -2.0f / mHeight, 1);
+
+      // Darken the background.
+      shaders.useColored(false, false);
+      shaders.setTransform(projection.getFloatArray());
+      mDarkQuad.drawWithShaders();
+
+      // Draw the crosshair.
+      mCrosshair.drawWithShaders(gl, shaders, mSearchHelper,
+                                 getRenderState().getNightVisionMode());
+
+      // Draw the search arrow.
+      mSearchArrow.drawWithShaders(gl, shaders, projection, mTransformedLookDir,
+                                   mTransformedUpDir, mSearchHelper,
+                                   getRenderState().getNightVisionMode());
+    }
+  }
+
   // viewerUp MUST be normalized.
   public void setViewerUpDirection(Vector3 viewerUp) {
     // Log.d("OverlayManager", "Setting viewer up " + viewerUp);
@@ -120,6 +148,12 @@ public class OverlayManager extends RendererObjectManager {
     mMustUpdateTransformedOrientation = true;
   }
 
+  /** Whether what's drawn changes from frame to frame even if nothing else does. */
+  public boolean isAnimating() {
+    // The crosshair pulses.
+    return mSearching;
+  }
+
   public void enableSearchOverlay(Vector3 target, String targetName) {
     Log.d("OverlayManager", "Searching for " + target);
     mSearching = true;
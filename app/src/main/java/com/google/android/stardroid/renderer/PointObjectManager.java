@@ -16,28 +16,45 @@ package com.google.android.stardroid.renderer;
 
 import static com.google.android.stardroid.math.MathUtilsKt.DEGREES_TO_RADIANS;
 
+import android.opengl.GLES20;
 import android.util.Log;
 
 import com.google.android.stardroid.R;
+import com.google.android.stardroid.base.VisibleForTesting;
 import com.google.android.stardroid.math.MathUtils;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.BufferCache;
+import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.IndexBuffer;
 import com.google.android.stardroid.renderer.util.NightVisionColorBuffer;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TexCoordBuffer;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderer.util.VertexBuffer;
+import com.google.android.stardroid.renderer.util.VertexBuilders;
 import com.google.android.stardroid.renderables.PointPrimitive;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.microedition.khronos.opengles.GL10;
 
-public class PointObjectManager extends RendererObjectManager {
+public class PointObjectManager extends RendererObjectManager implements BufferCacheable {
   private static final int NUM_STARS_IN_TEXTURE = 2;
+  // The size factor at which a size of 1 is 1 pixel: see buildBuffers.
+  private static final float SIZE_FACTOR = MathUtils.tan(60 * DEGREES_TO_RADIANS * 0.5f) / 480;
   // Small sets of point aren't worth breaking up into regions.
   // Right now, I'm arbitrarily setting the threshold to 200.
   private static final int MINIMUM_NUM_POINTS_FOR_REGIONS = 200;
@@ -46,161 +63,429 @@ public class PointObjectManager extends RendererObjectManager {
     // TODO(jpowell): This is a convenient hack until the catalog tells us the
     // region for all of its sources.  Remove this once we add that.
     List<PointPrimitive> sources = new ArrayList<PointPrimitive>();
+    // The points' sizes, largest first, in the same order as the vertices.
+    int[] sizes = new int[0];
 
-    private VertexBuffer mVertexBuffer = new VertexBuffer(true);
-    private NightVisionColorBuffer mColorBuffer = new NightVisionColorBuffer(true);
-    private TexCoordBuffer mTexCoordBuffer = new TexCoordBuffer(true);
-    private IndexBuffer mIndexBuffer = new IndexBuffer(true);
+    private final VertexBuffer mVertexBuffer;
+    private final NightVisionColorBuffer mColorBuffer;
+    private final TexCoordBuffer mTexCoordBuffer;
+    private final IndexBuffer mIndexBuffer;
+
+    RegionData() {
+      this(true);
+    }
+
+    RegionData(boolean useVBO) {
+      mVertexBuffer = new VertexBuffer(useVBO);
+      mColorBuffer = new NightVisionColorBuffer(useVBO);
+      mTexCoordBuffer = new TexCoordBuffer(useVBO);
+      mIndexBuffer = new IndexBuffer(useVBO);
+    }
+  }
+
+  // Buffers being built by the workers, to be swapped in once they're done.
+  private class PendingBuild {
+    // The new static regions, or null if they're unchanged.
+    final CompletableFuture<SkyRegionMap<RegionData>> regions;
+    final RegionData dynamicData;
+    final CompletableFuture<Void> done;
+
+    PendingBuild(CompletableFuture<SkyRegionMap<RegionData>> regions, RegionData dynamicData,
+                 CompletableFuture<Void> done) {
+      this.regions = regions;
+      this.dynamicData = dynamicData;
+      this.done = done;
+    }
   }
   // Should we compute the regions for the points?
   // If false, we just put them in the catchall region.
   private static final boolean COMPUTE_REGIONS = true;
   private int mNumPoints = 0;
 
-  private SkyRegionMap<RegionData> mSkyRegions = new SkyRegionMap<RegionData>();
+  private SkyRegionMap<RegionData> mSkyRegions = newRegionMap();
+
+  // The points which have changed since the last reset.  They're kept out of
+  // the regions and in their own small buffers, so that moving them again,
+  // as planets and satellites do, only means rebuilding those.  The flags are
+  // as of the latest update, which may still be building.
+  private boolean[] mDynamic = new boolean[0];
+  private RegionData mDynamicData = new RegionData(false);
+
+  // Big rebuilds happen on the workers, leaving the GL thread to swap in the
+  // results, oldest first, as they finish.
+  private final Executor mBuildExecutor;
+  private final ArrayDeque<PendingBuild> mPendingBuilds = new ArrayDeque<>();
+
+  // The number of vertices generated so far, so tests can check how much
+  // work an update did.  Added to once per region built, not per vertex.
+  @VisibleForTesting
+  final AtomicInteger mNumVerticesBuilt = new AtomicInteger();
 
   private TextureReference mTextureRef = null;
 
   public PointObjectManager(int layer, TextureManager textureManager) {
+    this(layer, textureManager, VertexBuilders.getExecutor());
+  }
+
+  PointObjectManager(int layer, TextureManager textureManager, Executor buildExecutor) {
     super(layer, textureManager);
+    mBuildExecutor = buildExecutor;
+  }
+
+  private SkyRegionMap<RegionData> newRegionMap() {
+    SkyRegionMap<RegionData> regions = new SkyRegionMap<RegionData>();
     // We want to initialize the labels of a sky region to an empty set of data.
-    mSkyRegions.setRegionDataFactory(RegionData::new);
+    regions.setRegionDataFactory(RegionData::new);
+    return regions;
   }
 
   public void updateObjects(List<PointPrimitive> points, EnumSet<UpdateType> updateType) {
-    boolean onlyUpdatePoints = true;
     // We only care about updates to positions, ignore any other updates.
-    if (updateType.contains(UpdateType.Reset)) {
-      onlyUpdatePoints = false;
-    } else if (updateType.contains(UpdateType.UpdatePositions)) {
-      // Sanity check: make sure the number of points is unchanged.
-      if (points.size() != mNumPoints) {
-        Log.e("PointObjectManager",
-              "Updating PointObjectManager a different number of points: update had " +
-              points.size() + " vs " + mNumPoints + " before");
-        return;
-      }
-    } else {
+    boolean reset = updateType.contains(UpdateType.Reset);
+    if (!reset && !updateType.contains(UpdateType.UpdatePositions)) {
+      return;
+    }
+    // Sanity check: make sure the number of points is unchanged.
+    if (!reset && points.size() != mNumPoints) {
+      Log.e("PointObjectManager",
+            "Updating PointObjectManager a different number of points: update had " +
+            points.size() + " vs " + mNumPoints + " before");
       return;
     }
 
+    // Without knowing which have moved, start again with them all static.
+    installFinishedBuilds();
     mNumPoints = points.size();
+    mDynamic = new boolean[mNumPoints];
+    queueBuild(points, true);
+  }
+
+  /** Applies changes to the points last given to updateObjects. */
+  public void applyChanges(List<PointPrimitive> points, ChangeSet changes) {
+    if (changes.changesSize()) {
+      updateObjects(points, EnumSet.of(UpdateType.Reset));
+      return;
+    }
+    int[] changed = changes.getIndices(ChangeSet.Change.MOVED, ChangeSet.Change.RECOLORED);
+    if (changed.length == 0) {
+      return;
+    }
+
+    // Points changing for the first time have to be taken out of the static
+    // buffers, which is the only time those are rebuilt.
+    installFinishedBuilds();
+    boolean newlyDynamic = false;
+    for (int i : changed) {
+      newlyDynamic |= !mDynamic[i];
+      mDynamic[i] = true;
+    }
+    if (newlyDynamic || !mPendingBuilds.isEmpty()) {
+      // Either way the result has to wait its turn behind the static regions.
+      queueBuild(points, newlyDynamic);
+    } else {
+      // Few enough to do here, and the sooner a moving point is drawn the better.
+      buildDynamicRegion(mDynamicData, points, mDynamic);
+    }
+  }
+
+  /**
+   * Starts building buffers for the points on the workers.  They're swapped
+   * in on the GL thread when done, in the order they were queued.
+   */
+  private void queueBuild(List<PointPrimitive> points, boolean rebuildStatic) {
+    // The layer is free to change its list once we return.
+    final List<PointPrimitive> pointsCopy = new ArrayList<>(points);
+    final boolean[] dynamic = mDynamic.clone();
+
+    CompletableFuture<SkyRegionMap<RegionData>> regions = null;
+    if (rebuildStatic) {
+      // Nothing queued before a new set of static regions will be wanted.
+      mPendingBuilds.clear();
+      regions = CompletableFuture
+          .supplyAsync(() -> assignStaticRegions(pointsCopy, dynamic), mBuildExecutor)
+          .thenCompose(this::buildRegions);
+    } else {
+      // Nor will any dynamic points that haven't been swapped in yet.
+      while (!mPendingBuilds.isEmpty() && mPendingBuilds.peekLast().regions == null) {
+        mPendingBuilds.removeLast();
+      }
+    }
+    final RegionData dynamicData = new RegionData(false);
+    CompletableFuture<Void> dynamicBuilt = CompletableFuture.runAsync(
+        () -> buildDynamicRegion(dynamicData, pointsCopy, dynamic), mBuildExecutor);
+
+    PendingBuild build = new PendingBuild(regions, dynamicData,
+        regions == null ? dynamicBuilt : CompletableFuture.allOf(regions, dynamicBuilt));
+    mPendingBuilds.add(build);
+    build.done.thenRun(this::requestRedraw);
+  }
+
+  /** Swaps in the buffers which have finished building.  Must be called on the GL thread. */
+  void installFinishedBuilds() {
+    while (!mPendingBuilds.isEmpty() && mPendingBuilds.peekFirst().done.isDone()) {
+      PendingBuild build = mPendingBuilds.removeFirst();
+      if (build.done.isCompletedExceptionally()) {
+        Log.e("PointObjectManager", "Failed to build points; keeping the old ones");
+        continue;
+      }
+      if (build.regions != null) {
+        mSkyRegions = build.regions.join();
+      }
+      mDynamicData = build.dynamicData;
+    }
+  }
+
+  boolean hasPendingBuilds() {
+    return !mPendingBuilds.isEmpty();
+  }
+
+  // Points which have moved have to be given again, so only the static ones are cached.
+  @Override
+  public boolean canWriteBuffers() {
+    installFinishedBuilds();
+    return mPendingBuilds.isEmpty() && mDynamicData.sizes.length == 0;
+  }
+
+  @Override
+  public void writeBuffers(BufferCache.Writer out) {
+    out.beginSection(BufferCache.POINTS);
+    out.writeInt(mNumPoints);
+    out.writeInt(mSkyRegions.getRegions().size());
+    for (int region : mSkyRegions.getRegions()) {
+      RegionData data = mSkyRegions.getRegionData(region);
+      out.writeInt(region);
+      out.writeIntArray(data.sizes);
+      data.mVertexBuffer.write(out);
+      data.mColorBuffer.write(out);
+      data.mTexCoordBuffer.write(out);
+      data.mIndexBuffer.write(out);
+    }
+  }
+
+  @Override
+  public void readBuffers(BufferCache.Reader in) throws IOException {
+    BufferCache.Reader points = in.section(BufferCache.POINTS);
+    if (points == null) {
+      return;
+    }
+    mPendingBuilds.clear();
+    SkyRegionMap<RegionData> regions = newRegionMap();
+    mNumPoints = points.readInt();
+    int numRegions = points.readInt();
+    for (int i = 0; i < numRegions; i++) {
+      RegionData data = regions.getRegionData(points.readInt());
+      data.sources = null;
+      data.sizes = points.readIntArray();
+      data.mVertexBuffer.read(points);
+      data.mColorBuffer.read(points);
+      data.mTexCoordBuffer.read(points);
+      data.mIndexBuffer.read(points);
+    }
+    mSkyRegions = regions;
+    mDynamic = new boolean[mNumPoints];
+    mDynamicData = new RegionData(false);
+  }
 
-    mSkyRegions.clear();
+  private SkyRegionMap<RegionData> assignStaticRegions(
+      List<PointPrimitive> points, boolean[] dynamic) {
+    SkyRegionMap<RegionData> regions = newRegionMap();
 
     if (COMPUTE_REGIONS) {
       // Find the region for each point, and put it in a separate list
       // for that region.
-      for (PointPrimitive point : points) {
+      for (int i = 0; i < points.size(); i++) {
+        if (dynamic[i]) {
+          continue;
+        }
+        PointPrimitive point = points.get(i);
         int region = points.size() < MINIMUM_NUM_POINTS_FOR_REGIONS
             ? SkyRegionMap.CATCHALL_REGION_ID
             : SkyRegionMap.getObjectRegion(point.getLocation());
-        mSkyRegions.getRegionData(region).sources.add(point);
+        regions.getRegionData(region).sources.add(point);
       }
     } else {
-      mSkyRegions.getRegionData(SkyRegionMap.CATCHALL_REGION_ID).sources = points;
+      RegionData data = regions.getRegionData(SkyRegionMap.CATCHALL_REGION_ID);
+      for (int i = 0; i < points.size(); i++) {
+        if (!dynamic[i]) {
+          data.sources.add(points.get(i));
+        }
+      }
+    }
+    return regions;
+  }
+
+  // Generates the resources for all of the regions, each on its own worker.
+  private CompletableFuture<SkyRegionMap<RegionData>> buildRegions(
+      SkyRegionMap<RegionData> regions) {
+    Collection<RegionData> allRegionData = regions.getDataForAllRegions();
+    CompletableFuture<?>[] built = new CompletableFuture<?>[allRegionData.size()];
+    int i = 0;
+    for (RegionData data : allRegionData) {
+      built[i++] = CompletableFuture.runAsync(() -> buildBuffers(data), mBuildExecutor);
+    }
+    return CompletableFuture.allOf(built).thenApply(unused -> regions);
+  }
+
+  private void buildDynamicRegion(
+      RegionData dynamicData, List<PointPrimitive> points, boolean[] dynamic) {
+    dynamicData.sources = new ArrayList<PointPrimitive>();
+    for (int i = 0; i < points.size(); i++) {
+      if (dynamic[i]) {
+        dynamicData.sources.add(points.get(i));
+      }
+    }
+    buildBuffers(dynamicData);
+  }
+
+  private void buildBuffers(RegionData data) {
+    // Largest (brightest) first, so the faintest can be left off the end when drawing.
+    Collections.sort(data.sources, LARGEST_FIRST);
+    data.sizes = new int[data.sources.size()];
+    for (int i = 0; i < data.sizes.length; i++) {
+      data.sizes[i] = data.sources.get(i).getSize();
+    }
+
+    if (GLBuffer.useGles20()) {
+      buildPointSprites(data);
+      data.sources = null;
+      return;
     }
 
-    // Generate the resources for all of the regions.
-    for (RegionData data : mSkyRegions.getDataForAllRegions()) {
-      int numVertices = 4 * data.sources.size();
-      int numIndices = 6 * data.sources.size();
+    int numVertices = 4 * data.sources.size();
+    mNumVerticesBuilt.addAndGet(numVertices);
+    int numIndices = 6 * data.sources.size();
 
-      data.mVertexBuffer.reset(numVertices);
-      data.mColorBuffer.reset(numVertices);
-      data.mTexCoordBuffer.reset(numVertices);
-      data.mIndexBuffer.reset(numIndices);
+    data.mVertexBuffer.reset(numVertices);
+    data.mColorBuffer.reset(numVertices);
+    data.mTexCoordBuffer.reset(numVertices);
+    data.mIndexBuffer.reset(numIndices);
 
-      Vector3 up = new Vector3(0, 1, 0);
+    Vector3 up = new Vector3(0, 1, 0);
 
-      // By inspecting the perspective projection matrix, you can show that,
-      // to have a quad at the center of the screen to be of size k by k
-      // pixels, the width and height are both:
-      // k * tan(fovy / 2) / screenHeight
-      // This is not difficult to derive.  Look at the transformation matrix
-      // in SkyRenderer if you're interested in seeing why this is true.
-      // I'm arbitrarily deciding that at a 60 degree field of view, and 480
-      // pixels high, a size of 1 means "1 pixel," so calculate sizeFactor
-      // based on this.  These numbers mostly come from the fact that that's
-      // what I think looks reasonable.
-      float fovyInRadians = 60 * DEGREES_TO_RADIANS;
-      float sizeFactor = MathUtils.tan(fovyInRadians * 0.5f) / 480;
+    // By inspecting the perspective projection matrix, you can show that,
+    // to have a quad at the center of the screen to be of size k by k
+    // pixels, the width and height are both:
+    // k * tan(fovy / 2) / screenHeight
+    // This is not difficult to derive.  Look at the transformation matrix
+    // in SkyRenderer if you're interested in seeing why this is true.
+    // I'm arbitrarily deciding that at a 60 degree field of view, and 480
+    // pixels high, a size of 1 means "1 pixel," so calculate sizeFactor
+    // based on this.  These numbers mostly come from the fact that that's
+    // what I think looks reasonable.
+    float sizeFactor = SIZE_FACTOR;
 
-      Vector3 bottomLeftPos = new Vector3(0, 0, 0);
-      Vector3 topLeftPos = new Vector3(0, 0, 0);
-      Vector3 bottomRightPos = new Vector3(0, 0, 0);
-      Vector3 topRightPos = new Vector3(0, 0, 0);
+    Vector3 bottomLeftPos = new Vector3(0, 0, 0);
+    Vector3 topLeftPos = new Vector3(0, 0, 0);
+    Vector3 bottomRightPos = new Vector3(0, 0, 0);
+    Vector3 topRightPos = new Vector3(0, 0, 0);
 
-      Vector3 su = new Vector3(0, 0, 0);
-      Vector3 sv = new Vector3(0, 0, 0);
+    Vector3 su = new Vector3(0, 0, 0);
+    Vector3 sv = new Vector3(0, 0, 0);
 
-      short index = 0;
+    short index = 0;
 
-      float starWidthInTexels = 1.0f / NUM_STARS_IN_TEXTURE;
+    float starWidthInTexels = 1.0f / NUM_STARS_IN_TEXTURE;
 
-      for (PointPrimitive p : data.sources) {
-        int color = 0xff000000 | p.getColor();  // Force alpha to 0xff
-        short bottomLeft = index++;
-        short topLeft = index++;
-        short bottomRight = index++;
-        short topRight = index++;
+    for (PointPrimitive p : data.sources) {
+      int color = 0xff000000 | p.getColor();  // Force alpha to 0xff
+      short bottomLeft = index++;
+      short topLeft = index++;
+      short bottomRight = index++;
+      short topRight = index++;
 
-        // First triangle
-        data.mIndexBuffer.addIndex(bottomLeft);
-        data.mIndexBuffer.addIndex(topLeft);
-        data.mIndexBuffer.addIndex(bottomRight);
+      // First triangle
+      data.mIndexBuffer.addIndex(bottomLeft);
+      data.mIndexBuffer.addIndex(topLeft);
+      data.mIndexBuffer.addIndex(bottomRight);
 
-        // Second triangle
-        data.mIndexBuffer.addIndex(topRight);
-        data.mIndexBuffer.addIndex(bottomRight);
-        data.mIndexBuffer.addIndex(topLeft);
+      // Second triangle
+      data.mIndexBuffer.addIndex(topRight);
+      data.mIndexBuffer.addIndex(bottomRight);
+      data.mIndexBuffer.addIndex(topLeft);
 
-        int starIndex = p.getPointShape().getImageIndex();
+      int starIndex = p.getPointShape().getImageIndex();
 
-        float texOffsetU = starWidthInTexels * starIndex;
+      float texOffsetU = starWidthInTexels * starIndex;
 
-        data.mTexCoordBuffer.addTexCoords(texOffsetU, 1);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU, 0);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 1);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 0);
+      data.mTexCoordBuffer.addTexCoords(texOffsetU, 1);
+      data.mTexCoordBuffer.addTexCoords(texOffsetU, 0);
+      data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 1);
+      data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 0);
 
-        Vector3 pos = p.getLocation();
-        Vector3 u = pos.times(up).normalizedCopy();
-        Vector3 v = u.times(pos);
+      Vector3 pos = p.getLocation();
+      Vector3 u = pos.times(up).normalizedCopy();
+      Vector3 v = u.times(pos);
 
-        float s = p.getSize() * sizeFactor;
+      float s = p.getSize() * sizeFactor;
 
-        su.assign(s*u.x, s*u.y, s*u.z);
-        sv.assign(s*v.x, s*v.y, s*v.z);
+      su.assign(s*u.x, s*u.y, s*u.z);
+      sv.assign(s*v.x, s*v.y, s*v.z);
 
-        bottomLeftPos.assign(pos.x - su.x - sv.x, pos.y - su.y - sv.y, pos.z - su.z - sv.z);
-        topLeftPos.assign(pos.x - su.x + sv.x, pos.y - su.y + sv.y, pos.z - su.z + sv.z);
-        bottomRightPos.assign(pos.x + su.x - sv.x, pos.y + su.y - sv.y, pos.z + su.z - sv.z);
-        topRightPos.assign(pos.x + su.x + sv.x, pos.y + su.y + sv.y, pos.z + su.z + sv.z);
+      bottomLeftPos.assign(pos.x - su.x - sv.x, pos.y - su.y - sv.y, pos.z - su.z - sv.z);
+      topLeftPos.assign(pos.x - su.x + sv.x, pos.y - su.y + sv.y, pos.z - su.z + sv.z);
+      bottomRightPos.assign(pos.x + su.x - sv.x, pos.y + su.y - sv.y, pos.z + su.z - sv.z);
+      topRightPos.assign(pos.x + su.x + sv.x, pos.y + su.y + sv.y, pos.z + su.z + sv.z);
 
-        // Add the vertices
-        data.mVertexBuffer.addPoint(bottomLeftPos);
-        data.mColorBuffer.addColor(color);
+      // Add the vertices
+      data.mVertexBuffer.addPoint(bottomLeftPos);
+      data.mColorBuffer.addColor(color);
 
-        data.mVertexBuffer.addPoint(topLeftPos);
-        data.mColorBuffer.addColor(color);
+      data.mVertexBuffer.addPoint(topLeftPos);
+      data.mColorBuffer.addColor(color);
 
-        data.mVertexBuffer.addPoint(bottomRightPos);
-        data.mColorBuffer.addColor(color);
+      data.mVertexBuffer.addPoint(bottomRightPos);
+      data.mColorBuffer.addColor(color);
 
-        data.mVertexBuffer.addPoint(topRightPos);
-        data.mColorBuffer.addColor(color);
+      data.mVertexBuffer.addPoint(topRightPos);
+      data.mColorBuffer.addColor(color);
+    }
+    //Log.i("PointObjectManager",
+    //      "Vertices: " + data.mVertexBuffer.size() + ", Indices: " + data.mIndexBuffer.size());
+    data.sources = null;
+  }
+
+  // With OpenGL ES 2.0 each point is a single vertex, drawn as a sprite, with
+  // its size and shape where the texture coordinates would be.
+  private void buildPointSprites(RegionData data) {
+    int numVertices = data.sources.size();
+    mNumVerticesBuilt.addAndGet(numVertices);
+
+    data.mVertexBuffer.reset(numVertices);
+    data.mColorBuffer.reset(numVertices);
+    data.mTexCoordBuffer.reset(numVertices);
+    data.mIndexBuffer.reset(0);
+
+    for (PointPrimitive p : data.sources) {
+      data.mVertexBuffer.addPoint(p.getLocation());
+      data.mColorBuffer.addColor(0xff000000 | p.getColor());  // Force alpha to 0xff
+      data.mTexCoordBuffer.addTexCoords(p.getSize(), p.getPointShape().getImageIndex());
+    }
+  }
+
+  private static final Comparator<PointPrimitive> LARGEST_FIRST =
+      (a, b) -> Integer.compare(b.getSize(), a.getSize());
+
+  // The number of points at least minSize in size.
+  private static int countAtLeast(int[] sizesLargestFirst, int minSize) {
+    int low = 0;
+    int high = sizesLargestFirst.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sizesLargestFirst[mid] >= minSize) {
+        low = mid + 1;
+      } else {
+        high = mid;
       }
-      //Log.i("PointObjectManager",
-      //      "Vertices: " + data.mVertexBuffer.size() + ", Indices: " + data.mIndexBuffer.size());
-      data.sources = null;
     }
+    return low;
   }
 
   @Override
   public void reload(GL10 gl, boolean fullReload) {
     mTextureRef = textureManager().getTextureFromResource(gl, R.drawable.stars_texture);
-    for (RegionData data : mSkyRegions.getDataForAllRegions()) {
+    ArrayList<RegionData> allRegionData = new ArrayList<>(mSkyRegions.getDataForAllRegions());
+    allRegionData.add(mDynamicData);
+    for (RegionData data : allRegionData) {
       data.mVertexBuffer.reload();
       data.mColorBuffer.reload();
       data.mTexCoordBuffer.reload();
@@ -210,6 +495,8 @@ public class PointObjectManager extends RendererObjectManager {
 
   @Override
   protected void drawInternal(GL10 gl) {
+    installFinishedBuilds();
+
     gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
     gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
     gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
@@ -230,6 +517,8 @@ public class PointObjectManager extends RendererObjectManager {
     // Render all of the active sky regions.
     SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
     ArrayList<RegionData> activeRegionData = mSkyRegions.getDataForActiveRegions(activeRegions);
+    activeRegionData.add(mDynamicData);
+    int minSize = getRenderState().getMinPointSize();
     for (RegionData data : activeRegionData) {
       if (data.mVertexBuffer.size() == 0) {
         continue;
@@ -238,11 +527,41 @@ public class PointObjectManager extends RendererObjectManager {
       data.mVertexBuffer.set(gl);
       data.mColorBuffer.set(gl, getRenderState().getNightVisionMode());
       data.mTexCoordBuffer.set(gl);
-      data.mIndexBuffer.draw(gl, GL10.GL_TRIANGLES);
+      data.mIndexBuffer.draw(gl, GL10.GL_TRIANGLES, 6 * countAtLeast(data.sizes, minSize));
     }
 
     gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
     gl.glDisable(GL10.GL_TEXTURE_2D);
     gl.glDisable(GL10.GL_ALPHA_TEST);
   }
+
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    installFinishedBuilds();
+
+    mTextureRef.bind(gl);
+
+    // The quads are 2 * size * SIZE_FACTOR across, which the projection (see
+    // SkyRenderer) makes this many pixels per unit of size.
+    float radiusOfViewInRadians = getRenderState().getRadiusOfView() * DEGREES_TO_RADIANS;
+    float pointScale = SIZE_FACTOR * getRenderState().getScreenHeight()
+        / MathUtils.tan(radiusOfViewInRadians * 0.5f);
+    shaders.usePoints(pointScale, NUM_STARS_IN_TEXTURE, getRenderState().getNightVisionMode());
+    shaders.setTransform(getRenderState().getTransformToDeviceMatrix().getFloatArray());
+
+    SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
+    ArrayList<RegionData> activeRegionData = mSkyRegions.getDataForActiveRegions(activeRegions);
+    activeRegionData.add(mDynamicData);
+    int minSize = getRenderState().getMinPointSize();
+    for (RegionData data : activeRegionData) {
+      if (data.mVertexBuffer.size() == 0) {
+        continue;
+      }
+
+      data.mVertexBuffer.setAttribute(ShaderPrograms.POSITION);
+      data.mColorBuffer.setAttribute(ShaderPrograms.COLOR);
+      data.mTexCoordBuffer.setAttribute(ShaderPrograms.SIZE_AND_SHAPE);
+      GLES20Calls.glDrawArrays(GLES20.GL_POINTS, 0, countAtLeast(data.sizes, minSize));
+    }
+  }
 }
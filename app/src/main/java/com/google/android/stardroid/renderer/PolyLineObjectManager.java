@@ -16,57 +16,274 @@ package com.google.android.stardroid.renderer;
 
 import static com.google.android.stardroid.math.MathUtilsKt.DEGREES_TO_RADIANS;
 
+import android.opengl.GLES20;
+
 import com.google.android.stardroid.R;
+import com.google.android.stardroid.base.VisibleForTesting;
 import com.google.android.stardroid.math.MathUtils;
+import com.google.android.stardroid.math.SkyCircle;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.BufferCache;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.IndexBuffer;
 import com.google.android.stardroid.renderer.util.NightVisionColorBuffer;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
+import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TexCoordBuffer;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderer.util.VertexBuffer;
 import com.google.android.stardroid.renderables.LinePrimitive;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.microedition.khronos.opengles.GL10;
 
-public class PolyLineObjectManager extends RendererObjectManager {
-  private VertexBuffer mVertexBuffer = new VertexBuffer(true);
-  private NightVisionColorBuffer mColorBuffer = new NightVisionColorBuffer(true);
-  private TexCoordBuffer mTexCoordBuffer = new TexCoordBuffer(true);
-  private IndexBuffer mIndexBuffer = new IndexBuffer(true);
+/**
+ * Draws lines as textured quads, one per segment.
+ *
+ * <p>Segments are bucketed by sky region, so that regions off screen aren't
+ * drawn.  When only positions are updated, only the regions containing lines
+ * whose vertices actually changed are rebuilt.
+ *
+ * <p>Lines given as {@link SkyCircle}s are instead tessellated every frame,
+ * only where they're on screen, finely enough to be within the render
+ * state's line tolerance of the true curve.
+ */
+public class PolyLineObjectManager extends RendererObjectManager implements BufferCacheable {
+  // Small sets of segments aren't worth breaking up into regions.
+  private static final int MINIMUM_NUM_SEGMENTS_FOR_REGIONS = 200;
+  // Segments which would need a region larger than this go in the catchall region.
+  private static final float MAX_REGION_COVERAGE_ANGLE_IN_RADIANS = 0.5f * (float) Math.PI;
+
+  private class RegionData {
+    // The lines with segments in this region.
+    Set<Integer> lines = new TreeSet<>();
+    boolean opaque = true;
+
+    private VertexBuffer mVertexBuffer = new VertexBuffer(true);
+    private NightVisionColorBuffer mColorBuffer = new NightVisionColorBuffer(true);
+    private TexCoordBuffer mTexCoordBuffer = new TexCoordBuffer(true);
+    private IndexBuffer mIndexBuffer = new IndexBuffer(true);
+  }
+
+  // What we last built for each line, to tell which have changed.
+  private static class LineData {
+    float[] coords;
+    int color;
+    float width;
+    // The region of each segment.
+    int[] segmentRegions;
+  }
+
+  private static class CircleLine {
+    SkyCircle circle;
+    int color;
+    float width;
+    // Scratch space for its points, kept between frames.
+    final SkyCircle.Polylines points = new SkyCircle.Polylines();
+  }
+
+  private SkyRegionMap<RegionData> mSkyRegions = new SkyRegionMap<RegionData>();
+  private LineData[] mLines = new LineData[0];
+  private boolean mUseRegions = false;
   private TextureReference mTexRef = null;
-  private boolean mOpaque = true;
-  
+  private final ArrayList<CircleLine> mCircles = new ArrayList<>();
+  private boolean mCirclesOpaque = true;
+  // Rebuilt every frame, so client side rather than VBOs.
+  private final VertexBuffer mCircleVertexBuffer = new VertexBuffer(false);
+  private final NightVisionColorBuffer mCircleColorBuffer = new NightVisionColorBuffer(false);
+  private final TexCoordBuffer mCircleTexCoordBuffer = new TexCoordBuffer(false);
+  private final IndexBuffer mCircleIndexBuffer = new IndexBuffer(false);
+  // Segments built since this was created, so tests can check updates are partial.
+  // Counted once per region, from the tally the buffers are sized by.
+  @VisibleForTesting
+  int mNumSegmentsBuilt = 0;
+
   public PolyLineObjectManager(int layer, TextureManager textureManager) {
     super(layer, textureManager);
+    mSkyRegions.setRegionDataFactory(RegionData::new);
   }
-  
+
   public void updateObjects(List<LinePrimitive> lines, EnumSet<UpdateType> updateType) {
+    update(lines, updateType, null);
+  }
+
+  /** Applies changes to the lines last given to updateObjects. */
+  public void applyChanges(List<LinePrimitive> lines, ChangeSet changes) {
+    if (changes.changesSize()) {
+      updateObjects(lines, EnumSet.of(UpdateType.Reset));
+      return;
+    }
+    int[] changed = changes.getIndices(ChangeSet.Change.MOVED, ChangeSet.Change.RECOLORED);
+    if (changed.length > 0) {
+      update(lines, EnumSet.of(UpdateType.UpdatePositions), changed);
+    }
+  }
+
+  // If changed isn't null, only the lines at those indices need checking for changes.
+  private void update(List<LinePrimitive> lines, EnumSet<UpdateType> updateType, int[] changed) {
     // We only care about updates to positions, ignore any other updates.
     if (!updateType.contains(UpdateType.Reset) && 
         !updateType.contains(UpdateType.UpdatePositions)) {
       return;
     }
-    int numLineSegments = 0;
+
+    Set<Integer> dirtyRegions = new TreeSet<>();
+    if (updateType.contains(UpdateType.Reset) || lines.size() != mLines.length) {
+      int numSegments = 0;
+      for (LinePrimitive l : lines) {
+        numSegments += Math.max(0, l.getVertices().size() - 1);
+      }
+      mUseRegions = numSegments >= MINIMUM_NUM_SEGMENTS_FOR_REGIONS;
+      mSkyRegions.clear();
+      mLines = new LineData[lines.size()];
+      for (int i = 0; i < lines.size(); i++) {
+        mLines[i] = buildLineData(lines.get(i));
+        addLineToRegions(i, dirtyRegions);
+      }
+    } else {
+      int numToCheck = changed == null ? lines.size() : changed.length;
+      for (int j = 0; j < numToCheck; j++) {
+        int i = changed == null ? j : changed[j];
+        if (!hasChanged(mLines[i], lines.get(i))) {
+          continue;
+        }
+        // The line's old regions need rebuilding without it, and its new ones with it.
+        for (int region : mLines[i].segmentRegions) {
+          mSkyRegions.getRegionData(region).lines.remove(i);
+          dirtyRegions.add(region);
+        }
+        mLines[i] = buildLineData(lines.get(i));
+        addLineToRegions(i, dirtyRegions);
+      }
+    }
+
+    for (int region : dirtyRegions) {
+      buildRegion(region, lines);
+    }
+    updateCircles(lines);
+  }
+
+  // Copies the circles, which need nothing else until they are drawn.
+  private void updateCircles(List<LinePrimitive> lines) {
+    int numCircles = 0;
+    boolean opaque = true;
     for (LinePrimitive l : lines) {
-      numLineSegments += l.getVertices().size() - 1;
+      if (l.getCircle() == null) {
+        continue;
+      }
+      if (numCircles == mCircles.size()) {
+        mCircles.add(new CircleLine());
+      }
+      CircleLine circle = mCircles.get(numCircles++);
+      circle.circle = new SkyCircle(l.getCircle());
+      circle.color = l.getColor();
+      circle.width = l.getLineWidth();
+      opaque &= (circle.color & 0xff000000) == 0xff000000;
     }
-    
+    while (mCircles.size() > numCircles) {
+      mCircles.remove(mCircles.size() - 1);
+    }
+    mCirclesOpaque = opaque;
+  }
+
+  private void addLineToRegions(int line, Set<Integer> dirtyRegions) {
+    for (int region : mLines[line].segmentRegions) {
+      mSkyRegions.getRegionData(region).lines.add(line);
+      dirtyRegions.add(region);
+    }
+  }
+
+  private static boolean hasChanged(LineData data, LinePrimitive line) {
+    List<Vector3> coords = line.getVertices();
+    if (data.color != line.getColor() || data.width != line.getLineWidth()
+        || data.coords.length != 3 * coords.size()) {
+      return true;
+    }
+    for (int i = 0; i < coords.size(); i++) {
+      Vector3 p = coords.get(i);
+      if (data.coords[3 * i] != p.x || data.coords[3 * i + 1] != p.y
+          || data.coords[3 * i + 2] != p.z) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Records the line's vertices and finds the region for each segment,
+  // growing the regions' coverage angles to contain them.
+  private LineData buildLineData(LinePrimitive line) {
+    List<Vector3> coords = line.getVertices();
+    LineData data = new LineData();
+    data.color = line.getColor();
+    data.width = line.getLineWidth();
+    data.coords = new float[3 * coords.size()];
+    for (int i = 0; i < coords.size(); i++) {
+      Vector3 p = coords.get(i);
+      data.coords[3 * i] = p.x;
+      data.coords[3 * i + 1] = p.y;
+      data.coords[3 * i + 2] = p.z;
+    }
+    data.segmentRegions = new int[Math.max(0, coords.size() - 1)];
+    for (int i = 0; i < data.segmentRegions.length; i++) {
+      data.segmentRegions[i] = mUseRegions
+          ? getSegmentRegion(coords.get(i), coords.get(i + 1))
+          : SkyRegionMap.CATCHALL_REGION_ID;
+    }
+    return data;
+  }
+
+  private int getSegmentRegion(Vector3 p1, Vector3 p2) {
+    Vector3 mid = p1.plus(p2);
+    if (mid.getLength() < 1e-3f) {
+      return SkyRegionMap.CATCHALL_REGION_ID;
+    }
+    int region = SkyRegionMap.getObjectRegion(mid.normalizedCopy());
+    // A cap smaller than a hemisphere contains the arc between any two points in it.
+    Vector3 center = SkyRegionMap.REGION_CENTERS[region];
+    float angle = Math.max(
+        MathUtils.acos(Math.min(1, center.dot(p1.normalizedCopy()))),
+        MathUtils.acos(Math.min(1, center.dot(p2.normalizedCopy()))));
+    if (angle > MAX_REGION_COVERAGE_ANGLE_IN_RADIANS) {
+      return SkyRegionMap.CATCHALL_REGION_ID;
+    }
+    if (angle > mSkyRegions.getRegionCoverageAngle(region)) {
+      mSkyRegions.setRegionCoverageAngle(region, angle);
+    }
+    return region;
+  }
+
+  // Regenerates the buffers for one region from the segments of its lines.
+  private void buildRegion(int region, List<LinePrimitive> lines) {
+    RegionData data = mSkyRegions.getRegionData(region);
+    int numLineSegments = 0;
+    for (int line : data.lines) {
+      for (int segmentRegion : mLines[line].segmentRegions) {
+        if (segmentRegion == region) {
+          numLineSegments++;
+        }
+      }
+    }
+
     // To render everything in one call, we render everything as a line list
     // rather than a series of line strips.
     int numVertices = 4 * numLineSegments;
     int numIndices = 6 * numLineSegments;
+    mNumSegmentsBuilt += numLineSegments;
     
-    VertexBuffer vb = mVertexBuffer;
-    vb.reset(4 * numLineSegments);
-    NightVisionColorBuffer cb = mColorBuffer;
-    cb.reset(4 * numLineSegments);
-    TexCoordBuffer tb = mTexCoordBuffer;
+    VertexBuffer vb = data.mVertexBuffer;
+    vb.reset(numVertices);
+    NightVisionColorBuffer cb = data.mColorBuffer;
+    cb.reset(numVertices);
+    TexCoordBuffer tb = data.mTexCoordBuffer;
     tb.reset(numVertices);
-    IndexBuffer ib = mIndexBuffer;
+    IndexBuffer ib = data.mIndexBuffer;
     ib.reset(numIndices);
     
     // See comment in PointObjectManager for justification of this calculation.
@@ -76,10 +293,10 @@ public class PolyLineObjectManager extends RendererObjectManager {
     boolean opaque = true;
     
     short vertexIndex = 0;
-    for (LinePrimitive l : lines) {
+    for (int line : data.lines) {
+      LinePrimitive l = lines.get(line);
       List<Vector3> coords = l.getVertices();
-      if (coords.size() < 2)
-        continue;
+      int[] segmentRegions = mLines[line].segmentRegions;
 
       // If the color isn't fully opaque, set opaque to false.
       int color = l.getColor();
@@ -87,73 +304,202 @@ public class PolyLineObjectManager extends RendererObjectManager {
       
       // Add the vertices.
       for (int i = 0; i < coords.size() - 1; i++) {
+        if (segmentRegions[i] != region) {
+          continue;
+        }
         Vector3 p1 = coords.get(i);
         Vector3 p2 = coords.get(i+1);
-        Vector3 u = p2.minus(p1);
-        // The normal to the quad should face the origin at its midpoint.
-        Vector3 avg = p1.plus(p2);
-        avg.timesAssign(0.5f);
-        // I'm assuming that the points will already be on a unit sphere.  If this is not the case,
-        // then we should normalize it here.
-        Vector3 v = u.times(avg).normalizedCopy();
-        v.timesAssign(sizeFactor * l.getLineWidth());
-        
-        
-        // Add the vertices
-        
-        // Lower left corner
-        vb.addPoint(p1.minus(v));
-        cb.addColor(color);
-        tb.addTexCoords(0, 1);
-        
-        // Upper left corner
-        vb.addPoint(p1.plus(v));
-        cb.addColor(color);
-        tb.addTexCoords(0, 0);
-        
-        // Lower left corner
-        vb.addPoint(p2.minus(v));
-        cb.addColor(color);
-        tb.addTexCoords(1, 1);
-        
-        // Upper left corner
-        vb.addPoint(p2.plus(v));
-        cb.addColor(color);
-        tb.addTexCoords(1, 0);
-        
-        
-        // Add the indices
-        short bottomLeft = vertexIndex++;
-        short topLeft = vertexIndex++;
-        short bottomRight = vertexIndex++;
-        short topRight = vertexIndex++;
-        
-        // First triangle
-        ib.addIndex(bottomLeft);
-        ib.addIndex(topLeft);
-        ib.addIndex(bottomRight);
-
-        // Second triangle
-        ib.addIndex(bottomRight);
-        ib.addIndex(topLeft);
-        ib.addIndex(topRight);
+        vertexIndex = addSegment(vb, cb, tb, ib, p1.x, p1.y, p1.z, p2.x, p2.y, p2.z,
+            color, sizeFactor * l.getLineWidth(), vertexIndex);
+      }
+    }
+    data.opaque = opaque;
+  }
+
+  /**
+   * Adds a quad for the segment from p1 to p2, as wide as twice halfWidth,
+   * returning the index of the next vertex.
+   */
+  private static short addSegment(VertexBuffer vb, NightVisionColorBuffer cb, TexCoordBuffer tb,
+                                  IndexBuffer ib, float x1, float y1, float z1,
+                                  float x2, float y2, float z2,
+                                  int color, float halfWidth, short vertexIndex) {
+    // The normal to the quad should face the origin at its midpoint.  I'm
+    // assuming that the points will already be on a unit sphere.  If this is
+    // not the case, then we should normalize it here.
+    float ux = x2 - x1;
+    float uy = y2 - y1;
+    float uz = z2 - z1;
+    float ax = x1 + x2;
+    float ay = y1 + y2;
+    float az = z1 + z2;
+    float vx = uy * az - uz * ay;
+    float vy = uz * ax - ux * az;
+    float vz = ux * ay - uy * ax;
+    float length = MathUtils.sqrt(vx * vx + vy * vy + vz * vz);
+    float scale = length < 1e-6f ? 0 : halfWidth / length;
+    vx *= scale;
+    vy *= scale;
+    vz *= scale;
+
+    // Lower left corner
+    vb.addPoint(x1 - vx, y1 - vy, z1 - vz);
+    cb.addColor(color);
+    tb.addTexCoords(0, 1);
+
+    // Upper left corner
+    vb.addPoint(x1 + vx, y1 + vy, z1 + vz);
+    cb.addColor(color);
+    tb.addTexCoords(0, 0);
+
+    // Lower right corner
+    vb.addPoint(x2 - vx, y2 - vy, z2 - vz);
+    cb.addColor(color);
+    tb.addTexCoords(1, 1);
+
+    // Upper right corner
+    vb.addPoint(x2 + vx, y2 + vy, z2 + vz);
+    cb.addColor(color);
+    tb.addTexCoords(1, 0);
+
+    // Add the indices
+    short bottomLeft = vertexIndex++;
+    short topLeft = vertexIndex++;
+    short bottomRight = vertexIndex++;
+    short topRight = vertexIndex++;
+
+    // First triangle
+    ib.addIndex(bottomLeft);
+    ib.addIndex(topLeft);
+    ib.addIndex(bottomRight);
+
+    // Second triangle
+    ib.addIndex(bottomRight);
+    ib.addIndex(topLeft);
+    ib.addIndex(topRight);
+    return vertexIndex;
+  }
+
+  /** Tessellates the visible parts of the circles into the circle buffers. */
+  private void tessellateCircles() {
+    RenderStateInterface state = getRenderState();
+    float fovyInRadians = state.getRadiusOfView() * DEGREES_TO_RADIANS;
+    float aspect = (float) state.getScreenWidth() / Math.max(1, state.getScreenHeight());
+    // The angle from the look direction to the corners of the screen.
+    float viewAngle = MathUtils.asin(Math.min(1,
+        MathUtils.sin(fovyInRadians / 2) * MathUtils.sqrt(1 + aspect * aspect)));
+    float maxError = state.getLineTolerancePixels() * fovyInRadians
+        / Math.max(1, state.getScreenHeight());
+
+    int numSegments = 0;
+    for (CircleLine circle : mCircles) {
+      circle.circle.tessellate(state.getLookDir(), viewAngle, maxError, circle.points);
+      numSegments += circle.points.getNumSegments();
+    }
+    // Vertex indices are shorts.
+    numSegments = Math.min(numSegments, Short.MAX_VALUE / 4);
+
+    VertexBuffer vb = mCircleVertexBuffer;
+    vb.reset(4 * numSegments);
+    NightVisionColorBuffer cb = mCircleColorBuffer;
+    cb.reset(4 * numSegments);
+    TexCoordBuffer tb = mCircleTexCoordBuffer;
+    tb.reset(4 * numSegments);
+    IndexBuffer ib = mCircleIndexBuffer;
+    ib.reset(6 * numSegments);
+
+    // See comment in PointObjectManager for justification of this calculation.
+    float sizeFactor = MathUtils.tan(60 * DEGREES_TO_RADIANS * 0.5f) / 480;
+    short vertexIndex = 0;
+    int segments = 0;
+    for (CircleLine circle : mCircles) {
+      SkyCircle.Polylines points = circle.points;
+      float[] coords = points.getCoords();
+      for (int run = 0; run < points.getNumRuns(); run++) {
+        int first = points.runStart(run);
+        int last = first + points.runLength(run) - 1;
+        for (int i = first; i < last && segments < numSegments; i++, segments++) {
+          vertexIndex = addSegment(vb, cb, tb, ib,
+              coords[3 * i], coords[3 * i + 1], coords[3 * i + 2],
+              coords[3 * i + 3], coords[3 * i + 4], coords[3 * i + 5],
+              circle.color, sizeFactor * circle.width, vertexIndex);
+        }
       }
     }
-    mOpaque = opaque;
   }
   
+  // Circles are tessellated as they're drawn, so there's nothing to cache for them.
+  @Override
+  public boolean canWriteBuffers() {
+    return mCircles.isEmpty();
+  }
+
+  @Override
+  public void writeBuffers(BufferCache.Writer out) {
+    out.beginSection(BufferCache.LINES);
+    float[] angles = mSkyRegions.mRegionCoverageAngles;
+    out.writeInt(angles == null ? -1 : angles.length);
+    if (angles != null) {
+      for (float angle : angles) {
+        out.writeFloat(angle);
+      }
+    }
+    out.writeInt(mSkyRegions.getRegions().size());
+    for (int region : mSkyRegions.getRegions()) {
+      RegionData data = mSkyRegions.getRegionData(region);
+      out.writeInt(region);
+      out.writeBoolean(data.opaque);
+      data.mVertexBuffer.write(out);
+      data.mColorBuffer.write(out);
+      data.mTexCoordBuffer.write(out);
+      data.mIndexBuffer.write(out);
+    }
+  }
+
+  // The lines themselves aren't cached, so the next update will be taken as a reset.
+  @Override
+  public void readBuffers(BufferCache.Reader in) throws IOException {
+    BufferCache.Reader lines = in.section(BufferCache.LINES);
+    if (lines == null) {
+      return;
+    }
+    mSkyRegions.clear();
+    int numAngles = lines.readInt();
+    if (numAngles >= 0) {
+      float[] angles = new float[numAngles];
+      for (int i = 0; i < numAngles; i++) {
+        angles[i] = lines.readFloat();
+      }
+      mSkyRegions.mRegionCoverageAngles = angles;
+    }
+    int numRegions = lines.readInt();
+    for (int i = 0; i < numRegions; i++) {
+      RegionData data = mSkyRegions.getRegionData(lines.readInt());
+      data.opaque = lines.readBoolean();
+      data.mVertexBuffer.read(lines);
+      data.mColorBuffer.read(lines);
+      data.mTexCoordBuffer.read(lines);
+      data.mIndexBuffer.read(lines);
+    }
+    mLines = new LineData[0];
+    mCircles.clear();
+  }
+
   @Override
   public void reload(GL10 gl, boolean fullReload) {
     mTexRef = textureManager().getTextureFromResource(gl, R.drawable.line);
-    mVertexBuffer.reload();
-    mColorBuffer.reload();
-    mTexCoordBuffer.reload();
-    mIndexBuffer.reload();
+    for (RegionData data : mSkyRegions.getDataForAllRegions()) {
+      data.mVertexBuffer.reload();
+      data.mColorBuffer.reload();
+      data.mTexCoordBuffer.reload();
+      data.mIndexBuffer.reload();
+    }
   }
   
   @Override
   protected void drawInternal(GL10 gl) {
-    if (mIndexBuffer.size() == 0)
+    ArrayList<RegionData> activeRegionData = prepareActiveRegions();
+    if (activeRegionData == null)
       return;
     
     gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
@@ -166,25 +512,96 @@ public class PolyLineObjectManager extends RendererObjectManager {
     gl.glEnable(GL10.GL_CULL_FACE);
     gl.glFrontFace(GL10.GL_CW);
     gl.glCullFace(GL10.GL_BACK);
+
+    gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
+
+    for (RegionData data : activeRegionData) {
+      drawBuffers(gl, data.mVertexBuffer, data.mColorBuffer, data.mTexCoordBuffer,
+          data.mIndexBuffer, data.opaque);
+    }
+    drawBuffers(gl, mCircleVertexBuffer, mCircleColorBuffer, mCircleTexCoordBuffer,
+        mCircleIndexBuffer, mCirclesOpaque);
     
-    if (!mOpaque) {
+    gl.glDisable(GL10.GL_TEXTURE_2D);
+    gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+  }
+
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    ArrayList<RegionData> activeRegionData = prepareActiveRegions();
+    if (activeRegionData == null)
+      return;
+
+    mTexRef.bind(gl);
+
+    GLES20Calls.glEnable(GLES20.GL_CULL_FACE);
+    GLES20Calls.glFrontFace(GLES20.GL_CW);
+    GLES20Calls.glCullFace(GLES20.GL_BACK);
+
+    shaders.useColored(true, getRenderState().getNightVisionMode());
+    shaders.setTransform(getRenderState().getTransformToDeviceMatrix().getFloatArray());
+
+    for (RegionData data : activeRegionData) {
+      drawBuffers(data.mVertexBuffer, data.mColorBuffer, data.mTexCoordBuffer,
+          data.mIndexBuffer, data.opaque);
+    }
+    drawBuffers(mCircleVertexBuffer, mCircleColorBuffer, mCircleTexCoordBuffer,
+        mCircleIndexBuffer, mCirclesOpaque);
+  }
+
+  // Tessellates the circles, and returns the regions to draw, or null if there's nothing to draw.
+  private ArrayList<RegionData> prepareActiveRegions() {
+    SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
+    ArrayList<RegionData> activeRegionData = mSkyRegions.getDataForActiveRegions(activeRegions);
+    if (!mCircles.isEmpty()) {
+      tessellateCircles();
+    }
+    boolean any = mCircleIndexBuffer.size() > 0;
+    for (RegionData data : activeRegionData) {
+      any |= data.mIndexBuffer.size() > 0;
+    }
+    return any ? activeRegionData : null;
+  }
+
+  private void drawBuffers(GL10 gl, VertexBuffer vb, NightVisionColorBuffer cb,
+                           TexCoordBuffer tb, IndexBuffer ib, boolean opaque) {
+    if (ib.size() == 0) {
+      return;
+    }
+    if (!opaque) {
       gl.glEnable(GL10.GL_BLEND);
       gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
     }
 
-    gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
-        
-    mVertexBuffer.set(gl);
-    mColorBuffer.set(gl, getRenderState().getNightVisionMode());
-    mTexCoordBuffer.set(gl);
+    vb.set(gl);
+    cb.set(gl, getRenderState().getNightVisionMode());
+    tb.set(gl);
 
-    mIndexBuffer.draw(gl, GL10.GL_TRIANGLES);
-    
-    if (!mOpaque) {
+    ib.draw(gl, GL10.GL_TRIANGLES);
+
+    if (!opaque) {
       gl.glDisable(GL10.GL_BLEND);
     }
-    
-    gl.glDisable(GL10.GL_TEXTURE_2D);
-    gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+  }
+
+  private void drawBuffers(VertexBuffer vb, NightVisionColorBuffer cb,
+                           TexCoordBuffer tb, IndexBuffer ib, boolean opaque) {
+    if (ib.size() == 0) {
+      return;
+    }
+    if (!opaque) {
+      GLES20Calls.glEnable(GLES20.GL_BLEND);
+      GLES20Calls.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    vb.setAttribute(ShaderPrograms.POSITION);
+    cb.setAttribute(ShaderPrograms.COLOR);
+    tb.setAttribute(ShaderPrograms.TEX_COORD);
+
+    ib.draw(GLES20.GL_TRIANGLES);
+
+    if (!opaque) {
+      GLES20Calls.glDisable(GLES20.GL_BLEND);
+    }
   }
 }
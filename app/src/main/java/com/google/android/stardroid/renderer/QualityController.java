@@ -0,0 +1,157 @@
+package com.google.android.stardroid.renderer;
+
+/**
+ * Picks a rendering quality level from recent frame times, so that slow
+ * devices shed detail rather than frames.
+ *
+ * <p>Level 0 is full quality; each level above it draws less.  The level goes
+ * up (worse) when the mean frame interval over a short window is well over
+ * budget, and only comes back down when a much longer window shows both the
+ * interval on budget and the GL thread mostly idle.  After any change the
+ * windows start afresh, so a change is judged on its own results.  Together
+ * these stop the level flickering between two neighbours.
+ *
+ * <p>The interval between two frames only says how fast the device is if
+ * the second was waiting to be drawn when the first finished, as it always
+ * is when rendering continuously.  When rendering on demand, a frame that
+ * was asked for later counts its busy time as its interval instead, since
+ * the wait before it was idle time.
+ *
+ * <p>Not thread safe; call it from the GL thread.
+ */
+public class QualityController {
+  public static final int MAX_LEVEL = 3;
+
+  // The knobs for each level.
+  // Fraction of the labels in view that are drawn; the largest are kept.
+  private static final float[] LABEL_DENSITY = {1f, 0.6f, 0.35f, 0.15f};
+  // Points smaller than this aren't drawn.  Star sizes come from their
+  // magnitudes (5 - magnitude, at least 1), so this is a magnitude cutoff.
+  // The sizes are whole numbers, leaving only 2 and 3 worth using: 1 drops
+  // nothing, and 4 would drop the planets, which are size 3.  Levels 1 and 2
+  // share 2, so that the second magnitude stars outlining the constellations
+  // only go at the last level; level 2 sheds its extra work elsewhere.
+  private static final int[] MIN_POINT_SIZE = {0, 2, 2, 3};
+  private static final int[] SKY_BOX_BANDS = {8, 6, 4, 3};
+  // How far, in pixels, tessellated circles may stray from the true curve.
+  private static final float[] LINE_TOLERANCE_PIXELS = {1f, 1.5f, 2f, 3f};
+
+  public static final long DEFAULT_FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+
+  // Frames to judge a downgrade / an upgrade on.
+  private static final int DOWNGRADE_WINDOW = 30;
+  private static final int UPGRADE_WINDOW = 120;
+  private static final float DOWNGRADE_INTERVAL_RATIO = 1.25f;
+  private static final float UPGRADE_INTERVAL_RATIO = 1.1f;
+  private static final float UPGRADE_BUSY_RATIO = 0.5f;
+
+  // Intervals longer than this mean the renderer was idle (on demand), not slow.
+  private static final long IDLE_GAP_NANOS = 100_000_000L;
+
+  private final long frameBudgetNanos;
+  private int level = 0;
+  private long lastFrameStartNanos = -1;
+  private int samples = 0;
+  // Sums over the most recent DOWNGRADE_WINDOW and UPGRADE_WINDOW samples.
+  private final long[] intervals = new long[UPGRADE_WINDOW];
+  private final long[] busyTimes = new long[UPGRADE_WINDOW];
+  private long recentIntervalSum = 0;
+  private long intervalSum = 0;
+  private long busySum = 0;
+  private long decisionIntervalNanos = 0;
+
+  public QualityController() {
+    this(DEFAULT_FRAME_BUDGET_NANOS);
+  }
+
+  public QualityController(long frameBudgetNanos) {
+    this.frameBudgetNanos = frameBudgetNanos;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public float getLabelDensity() {
+    return LABEL_DENSITY[level];
+  }
+
+  public int getMinPointSize() {
+    return MIN_POINT_SIZE[level];
+  }
+
+  public int getSkyBoxBands() {
+    return SKY_BOX_BANDS[level];
+  }
+
+  public float getLineTolerancePixels() {
+    return LINE_TOLERANCE_PIXELS[level];
+  }
+
+  /** The mean frame interval that led to the last change of level. */
+  public long getDecisionIntervalNanos() {
+    return decisionIntervalNanos;
+  }
+
+  /**
+   * Records a frame drawn straight after the last, as when rendering
+   * continuously.  See {@link #onFrame(long, long, boolean)}.
+   */
+  public boolean onFrame(long startNanos, long busyNanos) {
+    return onFrame(startNanos, busyNanos, true);
+  }
+
+  /**
+   * Records a frame which started drawing at startNanos and kept the GL
+   * thread busy for busyNanos.  backToBack says whether it had already been
+   * asked for when the frame before it finished.  Returns true if the level
+   * changed.
+   */
+  public boolean onFrame(long startNanos, long busyNanos, boolean backToBack) {
+    long interval = lastFrameStartNanos < 0 ? -1 : startNanos - lastFrameStartNanos;
+    lastFrameStartNanos = startNanos;
+    if (!backToBack) {
+      interval = busyNanos;
+    } else if (interval < 0 || interval > IDLE_GAP_NANOS) {
+      return false;
+    }
+
+    int slot = samples % UPGRADE_WINDOW;
+    if (samples >= UPGRADE_WINDOW) {
+      intervalSum -= intervals[slot];
+      busySum -= busyTimes[slot];
+    }
+    if (samples >= DOWNGRADE_WINDOW) {
+      recentIntervalSum -= intervals[(samples - DOWNGRADE_WINDOW) % UPGRADE_WINDOW];
+    }
+    intervals[slot] = interval;
+    busyTimes[slot] = busyNanos;
+    intervalSum += interval;
+    busySum += busyNanos;
+    recentIntervalSum += interval;
+    samples++;
+
+    if (level < MAX_LEVEL && samples >= DOWNGRADE_WINDOW
+        && recentIntervalSum > DOWNGRADE_INTERVAL_RATIO * frameBudgetNanos * DOWNGRADE_WINDOW) {
+      decisionIntervalNanos = recentIntervalSum / DOWNGRADE_WINDOW;
+      setLevel(level + 1);
+      return true;
+    }
+    if (level > 0 && samples >= UPGRADE_WINDOW
+        && intervalSum <= UPGRADE_INTERVAL_RATIO * frameBudgetNanos * UPGRADE_WINDOW
+        && busySum < UPGRADE_BUSY_RATIO * frameBudgetNanos * UPGRADE_WINDOW) {
+      decisionIntervalNanos = intervalSum / UPGRADE_WINDOW;
+      setLevel(level - 1);
+      return true;
+    }
+    return false;
+  }
+
+  private void setLevel(int newLevel) {
+    level = newLevel;
+    samples = 0;
+    intervalSum = 0;
+    busySum = 0;
+    recentIntervalSum = 0;
+  }
+}
@@ -15,9 +15,11 @@
 package com.google.android.stardroid.renderer;
 
 import android.opengl.GLSurfaceView;
+import android.view.Choreographer;
 
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Allows the rest of the program to communicate with the SkyRenderer by queueing
@@ -65,6 +67,26 @@ public class RendererController extends RendererControllerBase {
   }
 
   private final EventQueuer mQueuer;
+  private final GLSurfaceView mView;
+  private boolean mRenderOnDemand = false;
+  private boolean mResumed = false;
+
+  // Set while a tick is waiting on the GL thread, so a stalled GL thread doesn't pile them up.
+  private final AtomicBoolean mTickPending = new AtomicBoolean(false);
+  private final Runnable mRunTick = new Runnable() {
+    public void run() {
+      mTickPending.set(false);
+      mRenderer.onTick();
+    }
+  };
+  private final Choreographer.FrameCallback mTicker = new Choreographer.FrameCallback() {
+    public void doFrame(long frameTimeNanos) {
+      if (mTickPending.compareAndSet(false, true)) {
+        mView.queueEvent(mRunTick);
+      }
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  };
 
   @Override
   protected EventQueuer getQueuer() {
@@ -74,6 +96,48 @@ public class RendererController extends RendererControllerBase {
   public RendererController(SkyRenderer renderer, final GLSurfaceView view) {
     super(renderer);
     mQueuer = view::queueEvent;
+    mView = view;
+    renderer.setRenderRequester(view::requestRender);
+  }
+
+  /**
+   * Sets whether the view is only redrawn when something visible changes, rather than
+   * continuously.  Must be called on the UI thread.
+   */
+  public void setRenderOnDemand(final boolean onDemand) {
+    mRenderOnDemand = onDemand;
+    String msg = "Setting render on demand: " + onDemand;
+    queueRunnable(msg, CommandType.View, new Runnable() { public void run() {
+      mRenderer.setRenderOnDemand(onDemand);
+    }});
+    mView.setRenderMode(
+        onDemand ? GLSurfaceView.RENDERMODE_WHEN_DIRTY : GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+    updateTicker();
+  }
+
+  /** Must be called from the activity's onResume, after the view's. */
+  public void onResume() {
+    mResumed = true;
+    updateTicker();
+  }
+
+  /** Must be called from the activity's onPause. */
+  public void onPause() {
+    mResumed = false;
+    updateTicker();
+  }
+
+  public FrameStats getFrameStats() {
+    return mRenderer.getFrameStats();
+  }
+
+  // In on-demand mode the update closures are run once per display frame from here.
+  private void updateTicker() {
+    Choreographer choreographer = Choreographer.getInstance();
+    choreographer.removeFrameCallback(mTicker);
+    if (mRenderOnDemand && mResumed) {
+      choreographer.postFrameCallback(mTicker);
+    }
   }
 
   @Override
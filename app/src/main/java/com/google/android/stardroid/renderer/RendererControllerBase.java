@@ -19,10 +19,12 @@ import com.google.android.stardroid.renderables.ImagePrimitive;
 import com.google.android.stardroid.renderables.LinePrimitive;
 import com.google.android.stardroid.renderables.PointPrimitive;
 import com.google.android.stardroid.renderables.TextPrimitive;
+import com.google.android.stardroid.renderer.util.BufferCache;
 
 import android.os.ConditionVariable;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -55,6 +57,45 @@ public abstract class RendererControllerBase {
         final List<E> objects,
         final EnumSet<RendererObjectManager.UpdateType> updateType,
         RendererControllerBase controller);
+
+    /**
+     * Queues the given changes to the objects.  The manager only looks at
+     * the objects the changes name, so the list must still be the one it
+     * was last given.
+     */
+    public abstract void queueChanges(
+        final List<E> objects,
+        final ChangeSet changes,
+        RendererControllerBase controller);
+  }
+
+  /**
+   * Base class for the managers whose built buffers can be kept in a
+   * {@link BufferCache}: points, lines and labels.
+   */
+  public static abstract class CachedRenderManager<E> extends RenderManager<E> {
+    private final BufferCacheable mCacheable;
+
+    private <M extends RendererObjectManager & BufferCacheable> CachedRenderManager(M mgr) {
+      super(mgr);
+      mCacheable = mgr;
+    }
+
+    /**
+     * Queues buffers read from a cache to replace the objects, in place of
+     * queueObjects.
+     */
+    public void queueCachedBuffers(final BufferCache.Reader cached,
+                                   RendererControllerBase controller) {
+      String msg = "Reading cached buffers for manager " + mManager;
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        try {
+          mCacheable.readBuffers(cached);
+        } catch (IOException e) {
+          Log.e("RendererController", "Couldn't read cached buffers", e);
+        }
+      }});
+    }
   }
 
   // TODO(brent): collapse these into a single class?
@@ -62,7 +103,7 @@ public abstract class RendererControllerBase {
   /**
    * Class for managing a set of point objects.
    */
-  public static class PointManager extends RenderManager<PointPrimitive> {
+  public static class PointManager extends CachedRenderManager<PointPrimitive> {
     private PointManager(PointObjectManager manager) {
       super(manager);
     }
@@ -76,12 +117,21 @@ public abstract class RendererControllerBase {
         ((PointObjectManager) mManager).updateObjects(points, updateType);
       }});
     }
+
+    @Override
+    public void queueChanges(final List<PointPrimitive> points, final ChangeSet changes,
+                             RendererControllerBase controller) {
+      String msg = "Changing point objects";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((PointObjectManager) mManager).applyChanges(points, changes);
+      }});
+    }
   }
 
   /**
    * Class for managing a set of polyline objects.
    */
-  public static class LineManager extends RenderManager<LinePrimitive> {
+  public static class LineManager extends CachedRenderManager<LinePrimitive> {
     private LineManager(PolyLineObjectManager manager) {
       super(manager);
     }
@@ -95,12 +145,21 @@ public abstract class RendererControllerBase {
         ((PolyLineObjectManager) mManager).updateObjects(lines, updateType);
       }});
     }
+
+    @Override
+    public void queueChanges(final List<LinePrimitive> lines, final ChangeSet changes,
+                             RendererControllerBase controller) {
+      String msg = "Changing line objects";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((PolyLineObjectManager) mManager).applyChanges(lines, changes);
+      }});
+    }
   }
 
   /**
    * Class for managing a set of text label objects.
    */
-  public static class LabelManager extends RenderManager<TextPrimitive> {
+  public static class LabelManager extends CachedRenderManager<TextPrimitive> {
     private LabelManager(LabelObjectManager manager) {
       super(manager);
     }
@@ -114,6 +173,15 @@ public abstract class RendererControllerBase {
         ((LabelObjectManager) mManager).updateObjects(labels, updateType);
       }});
     }
+
+    @Override
+    public void queueChanges(final List<TextPrimitive> labels, final ChangeSet changes,
+                             RendererControllerBase controller) {
+      String msg = "Changing label objects";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((LabelObjectManager) mManager).applyChanges(labels, changes);
+      }});
+    }
   }
 
   /**
@@ -133,6 +201,15 @@ public abstract class RendererControllerBase {
         ((ImageObjectManager) mManager).updateObjects(images, updateType);
       }});
     }
+
+    @Override
+    public void queueChanges(final List<ImagePrimitive> images, final ChangeSet changes,
+                             RendererControllerBase controller) {
+      String msg = "Changing image objects";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((ImageObjectManager) mManager).applyChanges(images, changes);
+      }});
+    }
   }
 
   protected interface EventQueuer {
@@ -215,7 +292,7 @@ public abstract class RendererControllerBase {
   public void queueSetViewOrientation(final float dirX, final float dirY, final float dirZ,
                                       final float upX, final float upY, final float upZ) {
     final String msg = "Setting view orientation";
-    queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+    queueRunnable(msg, CommandType.View, new Runnable() { public void run() {
     mRenderer.setViewOrientation(dirX, dirY, dirZ, upX, upY, upZ);
     }});
   }
@@ -255,6 +332,11 @@ public abstract class RendererControllerBase {
     });
   }
 
+  public void setTickStartClosure(final Runnable runnable) {
+    final String msg = "Setting tick start callback";
+    queueRunnable(msg, CommandType.Data, () -> mRenderer.setTickStartClosure(runnable));
+  }
+
   /**
    * Must be called once to register an object manager to the renderer.
    * @param rom
@@ -266,6 +348,22 @@ public abstract class RendererControllerBase {
     }});
   }
 
+  /**
+   * Queues writing the managers' buffers to the cache, once they're built.
+   * Nothing is written while a manager has objects it can't cache, such as
+   * moved points.
+   */
+  public void queueSaveToCache(final BufferCache cache, CachedRenderManager<?>... managers) {
+    final BufferCacheable[] objectManagers = new BufferCacheable[managers.length];
+    for (int i = 0; i < managers.length; i++) {
+      objectManagers[i] = managers[i].mCacheable;
+    }
+    String msg = "Saving buffers to cache";
+    queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+      mRenderer.saveToCache(cache, objectManagers);
+    }});
+  }
+
   public void waitUntilFinished() {
     final ConditionVariable cv = new ConditionVariable();
     String msg = "Waiting until operations have finished";
@@ -278,7 +376,20 @@ public abstract class RendererControllerBase {
   protected void queueRunnable(String msg, final CommandType type, final Runnable r) {
     EventQueuer queuer = getQueuer();
     String fullMessage = toString() + " - " + msg;
-    RendererControllerBase.queueRunnable(queuer, fullMessage, type, r);
+    if (type == CommandType.Data) {
+      // Data commands change what's drawn, so the renderer needs a new frame.  View commands
+      // arrive every frame; the renderer decides for itself whether they change anything.
+      RendererControllerBase.queueRunnable(queuer, fullMessage, type, new Runnable() {
+        public void run() {
+          long startNanos = System.nanoTime();
+          r.run();
+          mRenderer.getFrameStats().glThreadBusy(System.nanoTime() - startNanos);
+          mRenderer.invalidate();
+        }
+      });
+    } else {
+      RendererControllerBase.queueRunnable(queuer, fullMessage, type, r);
+    }
   }
 
   protected static void queueRunnable(EventQueuer queuer, final String msg,
@@ -16,6 +16,7 @@ package com.google.android.stardroid.renderer;
 
 import android.util.Log;
 
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TextureManager;
 
 import java.util.EnumSet;
@@ -60,7 +61,12 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
 
   final void draw(GL10 gl) {
     if (mEnabled && mRenderState.getRadiusOfView() <= mMaxRadiusOfView) {
-      drawInternal(gl);
+      ShaderPrograms shaders = mRenderState.getShaderPrograms();
+      if (shaders != null) {
+        drawWithShaders(gl, shaders);
+      } else {
+        drawInternal(gl);
+      }
     }
   }
   final void setRenderState(RenderStateInterface state) {
@@ -73,6 +79,9 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
 
   interface UpdateListener {
     void queueForReload(RendererObjectManager rom, boolean fullReload);
+
+    // May be called from any thread.
+    void requestRedraw();
   }
 
   final void setUpdateListener(UpdateListener listener) {
@@ -84,6 +93,15 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
     mListener.queueForReload(this, fullReload);
   }
 
+  // Asks for a frame to be drawn, for instance when buffers finish building in the
+  // background.  May be called from any thread.
+  protected final void requestRedraw() {
+    UpdateListener listener = mListener;
+    if (listener != null) {
+      listener.requestRedraw();
+    }
+  }
+
   protected void logUpdateMismatch(String managerType, int expectedLength, int actualLength,
                                    EnumSet<RendererObjectManager.UpdateType> type) {
     Log.e("ImageObjectManager",
@@ -109,9 +127,13 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
 
   protected abstract void drawInternal(GL10 gl);
 
+  // Draws with the OpenGL ES 2.0 backend, which has no fixed function pipeline.  The GL10 is
+  // only good for the calls the two APIs share, such as binding textures.
+  protected abstract void drawWithShaders(GL10 gl, ShaderPrograms shaders);
+
   private boolean mEnabled = true;
   private RenderStateInterface mRenderState = null;
-  private UpdateListener mListener = null;
+  private volatile UpdateListener mListener = null;
   private float mMaxRadiusOfView = 360;  // in degrees
   private int mLayer;
   private int mIndex;
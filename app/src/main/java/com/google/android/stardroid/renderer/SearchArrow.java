@@ -18,11 +18,16 @@ import static com.google.android.stardroid.math.MathUtilsKt.PI;
 import static com.google.android.stardroid.math.MathUtilsKt.TWO_PI;
 
 import android.content.res.Resources;
+import android.opengl.GLES20;
 
 import com.google.android.stardroid.R;
 import com.google.android.stardroid.math.MathUtils;
+import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.SearchHelper;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
 import com.google.android.stardroid.renderer.util.TexturedQuad;
@@ -45,17 +50,25 @@ public class SearchArrow {
   private float mCircleSizeFactor = 1;
   private float mArrowSizeFactor = 1;
   private float mFullCircleScaleFactor = 1;
+  // Set by aim(): the angle to point the arrow at, and how far the target is.
+  private float mAngle = 0;
+  private float mDistance = 0;
   
   private TextureReference mArrowTex = null;
   private TextureReference mCircleTex = null;
   
   public void reloadTextures(GL10 gl, Resources res, TextureManager textureManager) {
-    gl.glEnable(GL10.GL_TEXTURE_2D);
+    boolean fixedFunction = !GLBuffer.useGles20();
+    if (fixedFunction) {
+      gl.glEnable(GL10.GL_TEXTURE_2D);
+    }
     
     mArrowTex = textureManager.getTextureFromResource(gl, R.drawable.arrow);    
     mCircleTex = textureManager.getTextureFromResource(gl, R.drawable.arrowcircle);
     
-    gl.glDisable(GL10.GL_TEXTURE_2D);
+    if (fixedFunction) {
+      gl.glDisable(GL10.GL_TEXTURE_2D);
+    }
   }
   
   public void resize(GL10 gl, int screenWidth, int screenHeight, float fullCircleSize) {
@@ -77,37 +90,9 @@ public class SearchArrow {
   
   public void draw(GL10 gl, Vector3 lookDir, Vector3 upDir, SearchHelper searchHelper,
                    boolean nightVisionMode) {
-    float lookPhi = MathUtils.acos(lookDir.y);
-    float lookTheta = MathUtils.atan2(lookDir.z, lookDir.x);
-    
-    // Positive diffPhi means you need to look up.
-    float diffPhi = lookPhi - mTargetPhi;
-    
-    // Positive diffTheta means you need to look right.
-    float diffTheta = lookTheta - mTargetTheta;
-    
-    // diffTheta could potentially be in the range from (-2*Pi, 2*Pi), but we need it
-    // in the range (-Pi, Pi).
-    if (diffTheta > PI) {
-      diffTheta -= TWO_PI;
-    } else if (diffTheta < -PI) {
-      diffTheta += TWO_PI;
-    }
-    
-    // The image I'm using is an arrow pointing right, so an angle of 0 corresponds to that. 
-    // This is why we're taking arctan(diffPhi / diffTheta), because diffTheta corresponds to
-    // the amount we need to rotate in the xz plane and diffPhi in the up direction.
-    float angle = MathUtils.atan2(diffPhi, diffTheta);
-    
-    // Need to add on the camera roll, which is the amount you need to rotate the vector (0, 1, 0)
-    // about the look direction in order to get it in the same plane as the up direction.
-    float roll = angleBetweenVectorsWithRespectToAxis(new Vector3(0, 1, 0), upDir, lookDir);
-    
-    angle += roll;
-    
-    // Distance is a normalized value of the distance.
-    float distance = 1.0f / (1.414f * PI) *
-        MathUtils.sqrt(diffTheta * diffTheta + diffPhi * diffPhi);
+    aim(lookDir, upDir);
+    float angle = mAngle;
+    float distance = mDistance;
    
     gl.glEnable(GL10.GL_BLEND);
     gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
@@ -168,6 +153,96 @@ public class SearchArrow {
     gl.glDisable(GL10.GL_BLEND);
   }
   
+  /**
+   * Draws with OpenGL ES 2.0, where projection is the transformation the
+   * overlays are drawn in.
+   */
+  public void drawWithShaders(GL10 gl, ShaderPrograms shaders, Matrix4x4 projection,
+                              Vector3 lookDir, Vector3 upDir, SearchHelper searchHelper,
+                              boolean nightVisionMode) {
+    aim(lookDir, upDir);
+
+    GLES20Calls.glEnable(GLES20.GL_BLEND);
+    GLES20Calls.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+    // The colors are already red in night vision mode.
+    shaders.useTextured(false);
+    Matrix4x4 rotated = projection.times(
+        Matrix4x4.createRotation(mAngle, new Vector3(0, 0, -1)));
+
+    // 0 means the circle is not expanded at all.  1 means fully expanded.
+    float expandFactor = searchHelper.getTransitionFactor();
+
+    if (expandFactor == 0) {
+      float redFactor, blueFactor;
+      if (nightVisionMode) {
+        redFactor = 0.6f;
+        blueFactor = 0;
+      } else {
+        redFactor = 1.0f - mDistance;
+        blueFactor = mDistance;
+      }
+      shaders.setBlendColor(redFactor, 0.0f, blueFactor);
+
+      float circleScale = mCircleSizeFactor;
+      shaders.setTransform(rotated.times(
+          Matrix4x4.createScaling(circleScale, circleScale, circleScale)).getFloatArray());
+      mCircleQuad.drawWithShaders(gl);
+
+      float arrowScale = mArrowSizeFactor;
+      shaders.setTransform(rotated
+          .times(Matrix4x4.createTranslation(mArrowOffset * 0.5f, 0, 0))
+          .times(Matrix4x4.createScaling(arrowScale, arrowScale, arrowScale)).getFloatArray());
+      mArrowQuad.drawWithShaders(gl);
+    } else {
+      shaders.setColor(1, 1, 1, 0.7f);
+      shaders.setBlendColor(1, nightVisionMode ? 0 : 0.5f, 0);
+
+      float circleScale = mFullCircleScaleFactor * expandFactor +
+          mCircleSizeFactor * (1 - expandFactor);
+      shaders.setTransform(rotated.times(
+          Matrix4x4.createScaling(circleScale, circleScale, circleScale)).getFloatArray());
+      mCircleQuad.drawWithShaders(gl);
+    }
+
+    GLES20Calls.glDisable(GLES20.GL_BLEND);
+  }
+
+  // Works out which way to point the arrow, and how far the target is.
+  private void aim(Vector3 lookDir, Vector3 upDir) {
+    float lookPhi = MathUtils.acos(lookDir.y);
+    float lookTheta = MathUtils.atan2(lookDir.z, lookDir.x);
+    
+    // Positive diffPhi means you need to look up.
+    float diffPhi = lookPhi - mTargetPhi;
+    
+    // Positive diffTheta means you need to look right.
+    float diffTheta = lookTheta - mTargetTheta;
+    
+    // diffTheta could potentially be in the range from (-2*Pi, 2*Pi), but we need it
+    // in the range (-Pi, Pi).
+    if (diffTheta > PI) {
+      diffTheta -= TWO_PI;
+    } else if (diffTheta < -PI) {
+      diffTheta += TWO_PI;
+    }
+    
+    // The image I'm using is an arrow pointing right, so an angle of 0 corresponds to that. 
+    // This is why we're taking arctan(diffPhi / diffTheta), because diffTheta corresponds to
+    // the amount we need to rotate in the xz plane and diffPhi in the up direction.
+    float angle = MathUtils.atan2(diffPhi, diffTheta);
+    
+    // Need to add on the camera roll, which is the amount you need to rotate the vector (0, 1, 0)
+    // about the look direction in order to get it in the same plane as the up direction.
+    float roll = angleBetweenVectorsWithRespectToAxis(new Vector3(0, 1, 0), upDir, lookDir);
+    
+    mAngle = angle + roll;
+    
+    // Distance is a normalized value of the distance.
+    mDistance = 1.0f / (1.414f * PI) *
+        MathUtils.sqrt(diffTheta * diffTheta + diffPhi * diffPhi);
+  }
+
   public void setTarget(Vector3 position) {
     position = position.normalizedCopy();
     mTargetPhi = MathUtils.acos(position.y);
@@ -17,12 +17,16 @@ package com.google.android.stardroid.renderer;
 import static com.google.android.stardroid.math.MathUtilsKt.RADIANS_TO_DEGREES;
 import static com.google.android.stardroid.math.MathUtilsKt.TWO_PI;
 
+import android.opengl.GLES20;
 import android.util.Log;
 
 import com.google.android.stardroid.math.MathUtils;
+import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
 import com.google.android.stardroid.renderer.util.ColorBuffer;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
 import com.google.android.stardroid.renderer.util.IndexBuffer;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.VertexBuffer;
 
@@ -32,9 +36,25 @@ public class SkyBox extends RendererObjectManager {
   
   public SkyBox(int layer, TextureManager textureManager) {
     super(layer, textureManager);
-    
-    int numVertices = NUM_VERTEX_BANDS * NUM_STEPS_IN_BAND;
-    int numIndices = (NUM_VERTEX_BANDS-1) * NUM_STEPS_IN_BAND * 6;
+    buildGeometry(NUM_VERTEX_BANDS);
+  }
+
+  /**
+   * Sets how many bands of vertices the gradient is built from; fewer is
+   * cheaper but the gradient is coarser.  Must be called on the GL thread.
+   */
+  public void setNumBands(int numBands) {
+    if (numBands == mNumBands) {
+      return;
+    }
+    // The buffers are replaced, so they'll be uploaded again when next drawn.
+    buildGeometry(numBands);
+  }
+
+  private void buildGeometry(int numBands) {
+    mNumBands = numBands;
+    int numVertices = numBands * NUM_STEPS_IN_BAND;
+    int numIndices = (numBands-1) * NUM_STEPS_IN_BAND * 6;
     mVertexBuffer.reset(numVertices);
     mColorBuffer.reset(numVertices);
     mIndexBuffer.reset(numIndices);
@@ -50,12 +70,12 @@ public class SkyBox extends RendererObjectManager {
       angleInBand += dAngle;
     }
     
-    float bandStep = 2.0f / (NUM_VERTEX_BANDS-1) + EPSILON;
+    float bandStep = 2.0f / (numBands-1) + EPSILON;
     
     VertexBuffer vb = mVertexBuffer;
     ColorBuffer cb = mColorBuffer;
     float bandPos = 1;
-    for (int band = 0; band < NUM_VERTEX_BANDS; band++, bandPos -= bandStep) {
+    for (int band = 0; band < numBands; band++, bandPos -= bandStep) {
       int color;
       if (bandPos > 0) {
         // TODO(jpowell): This isn't really intensity, name it more appropriately.
@@ -81,7 +101,7 @@ public class SkyBox extends RendererObjectManager {
     // Set the indices for the first band.
     short topBandStart = 0;
     short bottomBandStart = NUM_STEPS_IN_BAND;
-    for (short triangleBand = 0; triangleBand < NUM_VERTEX_BANDS-1; triangleBand++) {
+    for (short triangleBand = 0; triangleBand < numBands-1; triangleBand++) {
       for (short offsetFromStart = 0; offsetFromStart < NUM_STEPS_IN_BAND-1; offsetFromStart++) {
         // Draw one quad as two triangles.
         short topLeft = (short)(topBandStart + offsetFromStart);
@@ -163,7 +183,35 @@ public class SkyBox extends RendererObjectManager {
     
     gl.glPopMatrix();
   }
+
+  @Override
+  protected void drawWithShaders(GL10 gl, ShaderPrograms shaders) {
+    if (getRenderState().getNightVisionMode()) {
+      return;
+    }
+
+    GLES20Calls.glEnable(GLES20.GL_CULL_FACE);
+    GLES20Calls.glFrontFace(GLES20.GL_CW);
+    GLES20Calls.glCullFace(GLES20.GL_BACK);
+
+    shaders.useColored(false, false);
+
+    // Rotate the sky box to the position of the sun.
+    Vector3 cp = new Vector3(0, 1, 0).times(mSunPos);
+    Matrix4x4 transform = getRenderState().getTransformToDeviceMatrix();
+    if (cp.getLength2() > 0) {
+      cp = cp.normalizedCopy();
+      transform = transform.times(Matrix4x4.createRotation(MathUtils.acos(mSunPos.y), cp));
+    }
+    shaders.setTransform(transform.getFloatArray());
+
+    mVertexBuffer.setAttribute(ShaderPrograms.POSITION);
+    mColorBuffer.setAttribute(ShaderPrograms.COLOR);
+
+    mIndexBuffer.draw(GLES20.GL_TRIANGLES);
+  }
   
+  // The default number of bands.
   private static final short NUM_VERTEX_BANDS = 8;
   // This number MUST be even
   private static final short NUM_STEPS_IN_BAND = 10;
@@ -176,4 +224,5 @@ public class SkyBox extends RendererObjectManager {
   ColorBuffer mColorBuffer = new ColorBuffer(true);
   IndexBuffer mIndexBuffer = new IndexBuffer(true);
   Vector3 mSunPos = new Vector3(0, 1, 0);
+  private int mNumBands;
 }
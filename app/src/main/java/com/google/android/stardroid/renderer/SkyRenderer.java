@@ -14,22 +14,33 @@
 
 package com.google.android.stardroid.renderer;
 
+import static com.google.android.stardroid.math.MathUtilsKt.DEGREES_TO_RADIANS;
+
 import android.content.res.Resources;
+import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLU;
+import android.os.Debug;
 import android.util.Log;
 
 import com.google.android.stardroid.math.MathUtils;
 import com.google.android.stardroid.math.Matrix4x4;
 import com.google.android.stardroid.math.Vector3;
+import com.google.android.stardroid.renderer.util.BufferCache;
 import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.GLES20Calls;
+import com.google.android.stardroid.renderer.util.GLStateCache;
+import com.google.android.stardroid.renderer.util.ShaderPrograms;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TextureManager;
+import com.google.android.stardroid.renderer.util.VertexBuilders;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -43,6 +54,11 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
 
   private RenderState mRenderState = new RenderState();
 
+  // Whether to draw with the OpenGL ES 2.0 shaders rather than the fixed function pipeline.
+  private final boolean mUseGles20;
+  // Told, on the GL thread, if the shaders can't be built, so that GL10 can be used instead.
+  private volatile Runnable mGles20FailureListener = null;
+
   private Matrix4x4 mProjectionMatrix;
   private Matrix4x4 mViewMatrix;
 
@@ -52,11 +68,45 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
   private boolean mMustUpdateProjection = true;
 
   private Set<Runnable> mUpdateClosures = new HashSet<>();
+  // Run before the update closures on each tick, to capture what they share.
+  private Runnable mTickStartClosure = null;
+
+  // In on-demand mode frames are only drawn when something visible has changed, and the update
+  // closures are run by onTick() rather than by each frame.
+  private boolean mRenderOnDemand = false;
+  private volatile Runnable mRenderRequester = null;
+  private boolean mFrameRequested = false;
+  private long mFramesDrawnAtLastTick = 0;
+  private boolean mFramePendingAtLastFrameEnd = false;
+  private final FrameStats mFrameStats = new FrameStats();
+  // Drops the managers' redundant state changes, and counts the calls made.  Not used with
+  // OpenGL ES 2.0, which is drawn through GLES20 rather than the GL10 we're given.
+  private final GLStateCache mGLState = new GLStateCache();
+  // glGetError can stall the pipeline, so it's only called every so many frames, unless
+  // debug logging is on for SkyRenderer.
+  private static final int ERROR_CHECK_INTERVAL = 120;
+  private final boolean mCheckErrorsEveryFrame = Log.isLoggable("SkyRenderer", Log.DEBUG);
+  private final QualityController mQualityController;
+  // When the surface was created or changed, until its first frame is drawn, else -1.
+  private long mSurfaceReadyNanos = -1;
+  private boolean mSurfaceKeptContext = false;
+
+  // The view as of the last frame drawn, to tell whether a new one is worth drawing.
+  private final Vector3 mDrawnDir = new Vector3(0, 0, 0);
+  private final Vector3 mDrawnUp = new Vector3(0, 0, 0);
+
+  // Fraction of a pixel the view must move by before it's redrawn.
+  private static final float REDRAW_THRESHOLD_PIXELS = 0.5f;
 
   private RendererObjectManager.UpdateListener mUpdateListener =
       new RendererObjectManager.UpdateListener() {
         public void queueForReload(RendererObjectManager rom, boolean fullReload) {
           mManagersToReload.add(new ManagerReloadData(rom, fullReload));
+          invalidate();
+        }
+
+        public void requestRedraw() {
+          requestRenderFromAnyThread();
         }
       };
 
@@ -78,16 +128,46 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
   // the last frame.
   private ArrayList<ManagerReloadData> mManagersToReload = new ArrayList<>();
 
+  private static class CacheSave {
+    CacheSave(BufferCache cache, BufferCacheable[] managers) {
+      this.cache = cache;
+      this.managers = managers;
+    }
+    final BufferCache cache;
+    final BufferCacheable[] managers;
+  }
+  // Caches waiting for their managers to finish building, which is checked after each frame.
+  private final ArrayList<CacheSave> mCacheSaves = new ArrayList<>();
+
   // Maps an integer indicating render order to a list of objects at that level.  The managers
   // will be rendered in order, with the lowest number coming first.
   private TreeMap<Integer, Set<RendererObjectManager>> mLayersToManagersMap = null;
 
   public SkyRenderer(Resources res) {
+    this(res, false);
+  }
+
+  /**
+   * If useGles20, the view must have been set up for an OpenGL ES 2.0 context.  Only one
+   * backend can be used at a time, since the buffers are built for it.
+   */
+  public SkyRenderer(Resources res, boolean useGles20) {
+    this(res, useGles20, new QualityController());
+  }
+
+  // Tests pass a controller which won't change the quality under them.
+  SkyRenderer(Resources res, boolean useGles20, QualityController qualityController) {
+    mUseGles20 = useGles20;
+    mQualityController = qualityController;
+    GLBuffer.setUseGles20(useGles20);
+    mFrameStats.setBackend(useGles20 ? "GLES 2.0" : "GL10");
     mRenderState.setResources(res);
 
     mLayersToManagersMap = new TreeMap<Integer, Set<RendererObjectManager>>();
 
-    mTextureManager = new TextureManager(res);
+    mTextureManager = new TextureManager(res, ImageObjectManager.ATLAS_IMAGES);
+    // Images which weren't decoded yet were skipped; draw again once they are.
+    mTextureManager.getImageCache().setOnDecodedListener(this::requestRenderFromAnyThread);
 
     // The skybox should go behind everything.
     mSkyBox = new SkyBox(Integer.MIN_VALUE, mTextureManager);
@@ -103,6 +183,17 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
 
   // Returns true if the buffers should be swapped, false otherwise.
   public void onDrawFrame(GL10 gl) {
+    long startNanos = System.nanoTime();
+    long startCpuNanos = Debug.threadCpuTimeNanos();
+    mFrameRequested = false;
+    if (mUseGles20 && mRenderState.getShaderPrograms() == null) {
+      // Nothing can be drawn until the GL10 backend takes over.
+      gl.glClear(GL10.GL_COLOR_BUFFER_BIT);
+      return;
+    }
+    gl = wrap(gl);
+    mGLState.resetCounts();
+
     // Initialize any of the unloaded managers.
     for (ManagerReloadData data : mManagersToReload) {
       data.manager.reload(gl, data.fullReload);
@@ -125,16 +216,142 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
         rom.draw(gl);
       }
     }
-    checkForErrors(gl);
+    if (mCheckErrorsEveryFrame || mFrameStats.getFramesDrawn() % ERROR_CHECK_INTERVAL == 0) {
+      checkForErrors(gl);
+    }
+
+    mDrawnDir.assign(mRenderState.getLookDir());
+    mDrawnUp.assign(mRenderState.getUpDir());
 
     // Queue updates for the next frame.
-    for (Runnable update : mUpdateClosures) {
-      update.run();
+    if (!mRenderOnDemand) {
+      runUpdateClosures();
+    }
+    mFrameStats.frameDrawn(Debug.threadCpuTimeNanos() - startCpuNanos);
+    mFrameStats.glThreadBusy(System.nanoTime() - startNanos);
+    if (!mUseGles20) {
+      mFrameStats.glCalls(mGLState.getCallsIssued(), mGLState.getCallsSkipped());
+    }
+    if (mSurfaceReadyNanos >= 0) {
+      long nanos = System.nanoTime() - mSurfaceReadyNanos;
+      mFrameStats.firstFrameOnSurface(nanos, mSurfaceKeptContext);
+      Log.i("SkyRenderer", "First frame " + nanos / 1000 + "us after the surface, "
+          + (mSurfaceKeptContext ? "context kept" : "new context"));
+      mSurfaceReadyNanos = -1;
+    }
+
+    if (!mCacheSaves.isEmpty()) {
+      writeCacheSaves();
+    }
+
+    // Drawing on demand, only a frame asked for while the last was drawn followed it straight on.
+    boolean backToBack = !mRenderOnDemand || mFramePendingAtLastFrameEnd;
+    mFramePendingAtLastFrameEnd = mFrameRequested;
+    if (mQualityController.onFrame(startNanos, System.nanoTime() - startNanos, backToBack)) {
+      mFrameStats.qualityChanged(mQualityController.getLevel(),
+          mQualityController.getDecisionIntervalNanos());
+      Log.i("SkyRenderer", "Rendering quality: " + mFrameStats.getLastQualityDecision());
+      applyQualityLevel();
+    }
+  }
+
+  // Calls to the GL go through the state cache, except with OpenGL ES 2.0.
+  private GL10 wrap(GL10 gl) {
+    return mUseGles20 ? gl : mGLState.wrap(gl);
+  }
+
+  // Passes the quality controller's knobs on to the managers.
+  private void applyQualityLevel() {
+    mRenderState.setLabelDensity(mQualityController.getLabelDensity());
+    mRenderState.setMinPointSize(mQualityController.getMinPointSize());
+    mRenderState.setLineTolerancePixels(mQualityController.getLineTolerancePixels());
+    mSkyBox.setNumBands(mQualityController.getSkyBoxBands());
+    invalidate();
+  }
+
+  /**
+   * Sets whether frames are only drawn when something visible changes.  In that mode
+   * {@link #onTick} must be called once per display frame on the GL thread, and the requester
+   * set with {@link #setRenderRequester} is used to ask for frames.
+   */
+  public void setRenderOnDemand(boolean onDemand) {
+    mRenderOnDemand = onDemand;
+    invalidate();
+  }
+
+  /**
+   * Sets what to call to have a frame drawn, normally {@link GLSurfaceView#requestRender}.
+   * Must be safe to call from the GL thread.
+   */
+  public void setRenderRequester(Runnable requester) {
+    mRenderRequester = requester;
+  }
+
+  /**
+   * Asks for a frame to be drawn because something visible has changed.  Does nothing
+   * when rendering continuously.
+   */
+  public void invalidate() {
+    Runnable requester = mRenderRequester;
+    if (mRenderOnDemand && !mFrameRequested && requester != null) {
+      mFrameRequested = true;
+      requester.run();
+    }
+  }
+
+  // Unlike invalidate(), safe off the GL thread.  Asks even if a frame has already been
+  // requested, but the view coalesces them.
+  private void requestRenderFromAnyThread() {
+    Runnable requester = mRenderRequester;
+    if (requester != null) {
+      requester.run();
     }
   }
 
+  /**
+   * Called once per display frame in on-demand mode, instead of the frame itself running the
+   * update closures.  Whatever they change will invalidate the view as it is applied.
+   */
+  public void onTick() {
+    if (!mRenderOnDemand) {
+      return;
+    }
+    // Nothing drawn or asked for since the last tick means a frame we didn't need.
+    if (mFrameStats.getFramesDrawn() == mFramesDrawnAtLastTick && !mFrameRequested) {
+      mFrameStats.frameSkipped();
+    }
+    mFramesDrawnAtLastTick = mFrameStats.getFramesDrawn();
+
+    runUpdateClosures();
+    if (mOverlayManager.isAnimating()) {
+      invalidate();
+    }
+  }
+
+  public FrameStats getFrameStats() {
+    return mFrameStats;
+  }
+
+  /** Sets what to call if the OpenGL ES 2.0 shaders can't be built. */
+  public void setGles20FailureListener(Runnable listener) {
+    mGles20FailureListener = listener;
+  }
+
+  // With the view preserving the context on pause, this is only called when the context is new,
+  // after which everything must be uploaded again.  The managers keep what they upload, so they
+  // needn't build or decode it again.
   public void onSurfaceCreated(GL10 gl, EGLConfig config) {
     Log.d("SkyRenderer", "surfaceCreated");
+    mSurfaceReadyNanos = System.nanoTime();
+    mSurfaceKeptContext = false;
+
+    if (mUseGles20) {
+      onGles20SurfaceCreated(gl);
+      return;
+    }
+    // A new context starts with its own state.
+    mGLState.invalidate();
+    gl = wrap(gl);
 
     gl.glEnable(GL10.GL_DITHER);
 
@@ -192,8 +409,40 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     }
   }
 
+  private void onGles20SurfaceCreated(GL10 gl) {
+    GLES20Calls.glEnable(GLES20.GL_DITHER);
+    GLES20Calls.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+    GLES20Calls.glEnable(GLES20.GL_CULL_FACE);
+    GLES20Calls.glDisable(GLES20.GL_DEPTH_TEST);
+
+    // The programs and textures went with the old surface.
+    mTextureManager.reset();
+    ShaderPrograms shaders = ShaderPrograms.create();
+    mRenderState.setShaderPrograms(shaders);
+    if (shaders == null) {
+      Log.e("SkyRenderer", "Couldn't build the shaders");
+      Runnable listener = mGles20FailureListener;
+      if (listener != null) {
+        listener.run();
+      }
+      return;
+    }
+    // Buffer objects are part of OpenGL ES 2.0.
+    GLBuffer.setCanUseVBO(true);
+
+    for (RendererObjectManager rom : mAllManagers) {
+      rom.reload(gl, true);
+    }
+  }
+
   public void onSurfaceChanged(GL10 gl, int width, int height) {
     Log.d("SkyRenderer", "Starting sizeChanged, size = (" + width + ", " + height + ")");
+    if (mSurfaceReadyNanos < 0) {
+      // A resumed surface with the context it had before.
+      mSurfaceReadyNanos = System.nanoTime();
+      mSurfaceKeptContext = true;
+    }
+    gl = wrap(gl);
 
     mRenderState.setScreenSize(width, height);
     mOverlayManager.resize(gl, width, height);
@@ -211,6 +460,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
 
   public void setRadiusOfView(float degrees) {
     // Log.d("SkyRenderer", "setRadiusOfView(" + degrees + ")");
+    if (degrees != mRenderState.getRadiusOfView()) {
+      invalidate();
+    }
     mRenderState.setRadiusOfView(degrees);
     mMustUpdateProjection = true;
   }
@@ -219,6 +471,23 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     mUpdateClosures.add(update);
   }
 
+  /**
+   * Sets a closure to run once per tick before any of the update closures, such as one
+   * that reads the clock, so that they all see the same state.
+   */
+  public void setTickStartClosure(Runnable tickStart) {
+    mTickStartClosure = tickStart;
+  }
+
+  private void runUpdateClosures() {
+    if (mTickStartClosure != null) {
+      mTickStartClosure.run();
+    }
+    for (Runnable update : mUpdateClosures) {
+      update.run();
+    }
+  }
+
   // Sets up from the perspective of the viewer.
   // ie, the zenith in celestial coordinates.
   public void setViewerUpDirection(Vector3 up) {
@@ -232,6 +501,7 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
 
     // It needs to be reloaded before we try to draw it.
     mManagersToReload.add(new ManagerReloadData(m, true));
+    invalidate();
 
     // Add it to the appropriate layer.
     Set<RendererObjectManager> managers = mLayersToManagersMap.get(m.getLayer());
@@ -242,6 +512,40 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     managers.add(m);
   }
 
+  /**
+   * Writes the managers' buffers to the cache once they're all built, which
+   * may be a few frames away.  The file is written on a worker.
+   */
+  void saveToCache(BufferCache cache, BufferCacheable... managers) {
+    mCacheSaves.add(new CacheSave(cache, managers));
+    invalidate();
+  }
+
+  private void writeCacheSaves() {
+    for (Iterator<CacheSave> it = mCacheSaves.iterator(); it.hasNext(); ) {
+      CacheSave save = it.next();
+      boolean built = true;
+      for (BufferCacheable manager : save.managers) {
+        built &= manager.canWriteBuffers();
+      }
+      if (!built) {
+        continue;
+      }
+      it.remove();
+      BufferCache.Writer out = save.cache.write();
+      for (BufferCacheable manager : save.managers) {
+        manager.writeBuffers(out);
+      }
+      VertexBuilders.getExecutor().execute(() -> {
+        try {
+          out.commit();
+        } catch (IOException e) {
+          Log.w("SkyRenderer", "Couldn't write the buffer cache", e);
+        }
+      });
+    }
+  }
+
   public void removeObjectManager(RendererObjectManager m) {
     mAllManagers.remove(m);
 
@@ -249,6 +553,7 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     // managers shouldn't ever be null, so don't bother checking.  Let it crash if it is so we
     // know there's a bug.
     managers.remove(m);
+    invalidate();
   }
 
   public void enableSkyGradient(Vector3 sunPosition) {
@@ -269,6 +574,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
   }
 
   public void setNightVisionMode(boolean enabled) {
+    if (enabled != mRenderState.getNightVisionMode()) {
+      invalidate();
+    }
     mRenderState.setNightVisionMode(enabled);
   }
 
@@ -280,6 +588,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     final float PI_OVER_TWO = (float)Math.PI / 2.0f;
 
     float newAngle = Math.round(angleInRadians * TWO_OVER_PI) * PI_OVER_TWO;
+    if (newAngle != mRenderState.getUpAngle()) {
+      invalidate();
+    }
 
     mRenderState.setUpAngle(newAngle);
   }
@@ -307,8 +618,17 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     upY *= oneOverUpLen;
     upZ *= oneOverUpLen;
 
-    mRenderState.setLookDir(new Vector3(dirX, dirY, dirZ));
-    mRenderState.setUpDir(new Vector3(upX, upY, upZ));
+    Vector3 lookDir = new Vector3(dirX, dirY, dirZ);
+    Vector3 upDir = new Vector3(upX, upY, upZ);
+    float pixelRadians = mRenderState.getRadiusOfView() * 2 * DEGREES_TO_RADIANS
+        / Math.max(mRenderState.getScreenWidth(), mRenderState.getScreenHeight());
+    if (!mFrameRequested
+        && viewMovedVisibly(mDrawnDir, mDrawnUp, lookDir, upDir, pixelRadians)) {
+      invalidate();
+    }
+
+    mRenderState.setLookDir(lookDir);
+    mRenderState.setUpDir(upDir);
 
     mMustUpdateView = true;
 
@@ -316,6 +636,25 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
                                        new Vector3(upX, upY, upZ));
   }
 
+  /**
+   * Whether the view has turned from the one drawn by enough to show on screen, given the
+   * angle a pixel covers.  The unit vectors' squared distances apart, which for small turns are
+   * the angles squared, are compared rather than their dot products: zoomed in, the cosine of
+   * half a pixel rounds to exactly one in a float, so any noise at all would look like a turn.
+   */
+  static boolean viewMovedVisibly(Vector3 drawnDir, Vector3 drawnUp, Vector3 dir, Vector3 up,
+                                  float pixelRadians) {
+    float threshold = REDRAW_THRESHOLD_PIXELS * pixelRadians;
+    return squaredDistance(dir, drawnDir) + squaredDistance(up, drawnUp) > threshold * threshold;
+  }
+
+  private static float squaredDistance(Vector3 a, Vector3 b) {
+    float dx = a.x - b.x;
+    float dy = a.y - b.y;
+    float dz = a.z - b.z;
+    return dx * dx + dy * dy + dz * dz;
+  }
+
   protected int getWidth() { return mRenderState.getScreenWidth(); }
   protected int getHeight() { return mRenderState.getScreenHeight(); }
 
@@ -345,6 +684,10 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     Vector3 right = lookDir.times(upDir);
 
     mViewMatrix = Matrix4x4.createView(lookDir, upDir, right);
+    if (mUseGles20) {
+      // The shaders are given the combined transform instead.
+      return;
+    }
 
     gl.glMatrixMode(GL10.GL_MODELVIEW);
     gl.glLoadMatrixf(mViewMatrix.getFloatArray(), 0);
@@ -355,6 +698,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
         mRenderState.getScreenWidth(),
         mRenderState.getScreenHeight(),
         mRenderState.getRadiusOfView() * 3.141593f / 360.0f);
+    if (mUseGles20) {
+      return;
+    }
 
     gl.glMatrixMode(GL10.GL_PROJECTION);
     gl.glLoadMatrixf(mProjectionMatrix.getFloatArray(), 0);
@@ -431,6 +777,11 @@ interface RenderStateInterface {
   Resources getResources();
   boolean getNightVisionMode();
   SkyRegionMap.ActiveRegionData getActiveSkyRegions();
+  // Null unless drawing with the OpenGL ES 2.0 backend.
+  ShaderPrograms getShaderPrograms();
+  float getLabelDensity();
+  int getMinPointSize();
+  float getLineTolerancePixels();
 }
 
 // TODO(jpowell): RenderState is a bad name.  This class is a grab-bag of
@@ -451,6 +802,10 @@ class RenderState implements RenderStateInterface {
   public Resources getResources() { return mRes; }
   public boolean getNightVisionMode() { return mNightVisionMode; }
   public SkyRegionMap.ActiveRegionData getActiveSkyRegions() { return mActiveSkyRegionSet; }
+  public ShaderPrograms getShaderPrograms() { return mShaderPrograms; }
+  public float getLabelDensity() { return mLabelDensity; }
+  public int getMinPointSize() { return mMinPointSize; }
+  public float getLineTolerancePixels() { return mLineTolerancePixels; }
 
   public void setCameraPos(Vector3 pos) { mCameraPos = pos.copyForJ(); }
   public void setLookDir(Vector3 dir) { mLookDir = dir.copyForJ(); }
@@ -475,6 +830,10 @@ class RenderState implements RenderStateInterface {
   public void setActiveSkyRegions(SkyRegionMap.ActiveRegionData set) {
     mActiveSkyRegionSet = set;
   }
+  public void setShaderPrograms(ShaderPrograms shaders) { mShaderPrograms = shaders; }
+  public void setLabelDensity(float density) { mLabelDensity = density; }
+  public void setMinPointSize(int size) { mMinPointSize = size; }
+  public void setLineTolerancePixels(float pixels) { mLineTolerancePixels = pixels; }
 
   private Vector3 mCameraPos = new Vector3(0, 0, 0);
   private Vector3 mLookDir = new Vector3(1, 0, 0);
@@ -490,4 +849,8 @@ class RenderState implements RenderStateInterface {
   private Resources mRes;
   private boolean mNightVisionMode = false;
   private SkyRegionMap.ActiveRegionData mActiveSkyRegionSet = null;
+  private ShaderPrograms mShaderPrograms = null;
+  private float mLabelDensity = 1;
+  private int mMinPointSize = 0;
+  private float mLineTolerancePixels = 1;
 }
@@ -0,0 +1,193 @@
+package com.google.android.stardroid.renderer.util;
+
+import com.google.android.stardroid.math.Matrix4x4;
+import com.google.android.stardroid.math.Vector3;
+
+import java.util.Arrays;
+
+/**
+ * Culls and projects batches of points, held in parallel arrays, onto the
+ * screen.  Used for the labels every frame, and by anything else that needs to
+ * know where something is on the screen, such as the search overlay.
+ *
+ * <p>Each batch is projected in a loop with no branches or allocation, which
+ * the JIT can vectorize, before the points which were culled are dropped.
+ * The results of the batches since the last {@link #clear} are kept, with the
+ * ids that were given for the points, in arrays reused from frame to frame.
+ *
+ * <p>Not thread safe.
+ */
+public final class BatchProjector {
+  private final float[] mMatrix = new float[16];
+  // Points whose dot product with the look direction is below the minimum are culled.
+  private float mLookX = 0;
+  private float mLookY = 0;
+  private float mLookZ = 0;
+  private float mMinDot = -2;
+  // Each point is moved by its offset times this before being projected.
+  private float mOffsetX = 0;
+  private float mOffsetY = 0;
+  private float mOffsetZ = 0;
+
+  // Per point scratch for the batch being projected.
+  private float[] mDot = new float[0];
+  private float[] mProjectedX = new float[0];
+  private float[] mProjectedY = new float[0];
+
+  // The points which survived culling.
+  private int mSize = 0;
+  private int[] mIds = new int[0];
+  private float[] mScreenX = new float[0];
+  private float[] mScreenY = new float[0];
+
+  public BatchProjector() {
+    System.arraycopy(Matrix4x4.createIdentity().getFloatArray(), 0, mMatrix, 0, 16);
+  }
+
+  /** Sets the perspective transformation, such as the render state's transform to screen. */
+  public void setTransform(Matrix4x4 transform) {
+    System.arraycopy(transform.getFloatArray(), 0, mMatrix, 0, 16);
+  }
+
+  /**
+   * Sets points to be culled if their dot product with the look direction is
+   * less than minDot.  A minDot of less than -1 culls nothing.
+   */
+  public void setCulling(Vector3 lookDir, float minDot) {
+    mLookX = lookDir.x;
+    mLookY = lookDir.y;
+    mLookZ = lookDir.z;
+    mMinDot = minDot;
+  }
+
+  /** Sets the direction in which points are moved by their offsets before projection. */
+  public void setOffsetDirection(Vector3 direction) {
+    mOffsetX = direction.x;
+    mOffsetY = direction.y;
+    mOffsetZ = direction.z;
+  }
+
+  /** Forgets the results of the previous batches. */
+  public void clear() {
+    mSize = 0;
+  }
+
+  /**
+   * Projects the first count points of the arrays, and adds those which aren't
+   * culled to the results.  The offsets may be null.  Culling uses the points'
+   * positions before they're offset.
+   *
+   * @return the number of points added
+   */
+  public int project(int[] ids, float[] xs, float[] ys, float[] zs, float[] offsets, int count) {
+    if (mDot.length < count) {
+      int size = Math.max(count, 2 * mDot.length);
+      mDot = new float[size];
+      mProjectedX = new float[size];
+      mProjectedY = new float[size];
+    }
+    if (offsets == null) {
+      projectBatch(xs, ys, zs, count);
+    } else {
+      projectBatch(xs, ys, zs, offsets, count);
+    }
+
+    // Compact the survivors into the results.
+    ensureResultCapacity(mSize + count);
+    int start = mSize;
+    for (int i = 0; i < count; i++) {
+      if (mDot[i] >= mMinDot) {
+        mIds[mSize] = ids[i];
+        mScreenX[mSize] = mProjectedX[i];
+        mScreenY[mSize] = mProjectedY[i];
+        mSize++;
+      }
+    }
+    return mSize - start;
+  }
+
+  private void projectBatch(float[] xs, float[] ys, float[] zs, float[] offsets, int count) {
+    final float[] m = mMatrix;
+    final float m0 = m[0], m1 = m[1], m3 = m[3];
+    final float m4 = m[4], m5 = m[5], m7 = m[7];
+    final float m8 = m[8], m9 = m[9], m11 = m[11];
+    final float m12 = m[12], m13 = m[13], m15 = m[15];
+    final float lx = mLookX, ly = mLookY, lz = mLookZ;
+    final float ox = mOffsetX, oy = mOffsetY, oz = mOffsetZ;
+    final float[] dot = mDot;
+    final float[] outX = mProjectedX;
+    final float[] outY = mProjectedY;
+    for (int i = 0; i < count; i++) {
+      float x = xs[i];
+      float y = ys[i];
+      float z = zs[i];
+      float offset = offsets[i];
+      dot[i] = lx * x + ly * y + lz * z;
+      x -= ox * offset;
+      y -= oy * offset;
+      z -= oz * offset;
+      float oneOverW = 1 / (m3 * x + m7 * y + m11 * z + m15);
+      outX[i] = (m0 * x + m4 * y + m8 * z + m12) * oneOverW;
+      outY[i] = (m1 * x + m5 * y + m9 * z + m13) * oneOverW;
+    }
+  }
+
+  private void projectBatch(float[] xs, float[] ys, float[] zs, int count) {
+    final float[] m = mMatrix;
+    final float m0 = m[0], m1 = m[1], m3 = m[3];
+    final float m4 = m[4], m5 = m[5], m7 = m[7];
+    final float m8 = m[8], m9 = m[9], m11 = m[11];
+    final float m12 = m[12], m13 = m[13], m15 = m[15];
+    final float lx = mLookX, ly = mLookY, lz = mLookZ;
+    final float[] dot = mDot;
+    final float[] outX = mProjectedX;
+    final float[] outY = mProjectedY;
+    for (int i = 0; i < count; i++) {
+      float x = xs[i];
+      float y = ys[i];
+      float z = zs[i];
+      dot[i] = lx * x + ly * y + lz * z;
+      float oneOverW = 1 / (m3 * x + m7 * y + m11 * z + m15);
+      outX[i] = (m0 * x + m4 * y + m8 * z + m12) * oneOverW;
+      outY[i] = (m1 * x + m5 * y + m9 * z + m13) * oneOverW;
+    }
+  }
+
+  /**
+   * Projects a single point without culling it or adding it to the results.
+   * Writes x and y, and the untransformed pseudo-depth z, to out.
+   */
+  public void projectPoint(float x, float y, float z, float[] out) {
+    final float[] m = mMatrix;
+    float oneOverW = 1 / (m[3] * x + m[7] * y + m[11] * z + m[15]);
+    out[0] = (m[0] * x + m[4] * y + m[8] * z + m[12]) * oneOverW;
+    out[1] = (m[1] * x + m[5] * y + m[9] * z + m[13]) * oneOverW;
+    out[2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+  }
+
+  /** The number of points in the results. */
+  public int size() {
+    return mSize;
+  }
+
+  public int getId(int n) {
+    return mIds[n];
+  }
+
+  public float getX(int n) {
+    return mScreenX[n];
+  }
+
+  public float getY(int n) {
+    return mScreenY[n];
+  }
+
+  private void ensureResultCapacity(int capacity) {
+    if (mIds.length < capacity) {
+      int size = Math.max(capacity, 2 * mIds.length);
+      mIds = Arrays.copyOf(mIds, size);
+      mScreenX = Arrays.copyOf(mScreenX, size);
+      mScreenY = Arrays.copyOf(mScreenY, size);
+    }
+  }
+}
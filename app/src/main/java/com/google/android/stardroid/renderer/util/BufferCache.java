@@ -0,0 +1,274 @@
+package com.google.android.stardroid.renderer.util;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file holding object managers' built buffers, so that the next run can
+ * draw them without building them again.  The file is mapped into memory
+ * in one go, and the buffers read from it are views of that memory, ready to
+ * upload as they are.
+ *
+ * <p>Everything is in the device's byte order and in the form the backend
+ * it was written for wants, so a file is only used by the same backend.  The
+ * key identifies what the buffers were built from; a file with any other
+ * key, or from another version of this format, is ignored.  Each manager
+ * writes a section of its own, tagged so that it can be found again.
+ */
+public class BufferCache {
+  private static final int MAGIC = 0x53444243;  // "SDBC"
+  // Increase whenever what any manager writes changes.
+  static final int VERSION = 1;
+  private static final int HEADER_SIZE = 20;
+
+  public static final int POINTS = 1;
+  public static final int LINES = 2;
+  public static final int LABELS = 3;
+
+  private final File mFile;
+  private final long mKey;
+
+  public BufferCache(File file, long key) {
+    mFile = file;
+    mKey = key;
+  }
+
+  /**
+   * Maps the file, returning null if there isn't one, or it was written with
+   * another key or version.
+   */
+  public Reader read() throws IOException {
+    if (!mFile.exists()) {
+      return null;
+    }
+    ByteBuffer data;
+    try (RandomAccessFile file = new RandomAccessFile(mFile, "r")) {
+      FileChannel channel = file.getChannel();
+      // The mapping stays valid once the file is closed.
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    data.order(ByteOrder.nativeOrder());
+    if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+        || data.getLong(8) != mKey) {
+      return null;
+    }
+    return new Reader(data, data.getInt(16) != 0);
+  }
+
+  /** Starts writing a new file, which replaces the old one when committed. */
+  public Writer write() {
+    return new Writer();
+  }
+
+  /** Reads the sections of a file, each with a reader of its own. */
+  public static class Reader {
+    private final ByteBuffer mData;
+    private final boolean mGles20;
+
+    private Reader(ByteBuffer data, boolean gles20) {
+      mData = data;
+      mGles20 = gles20;
+    }
+
+    /** Whether the buffers are in the form the current backend wants. */
+    public boolean matchesBackend() {
+      return mGles20 == GLBuffer.useGles20();
+    }
+
+    /**
+     * Returns a reader for the section with the given tag, positioned at its
+     * start, or null if there isn't one.
+     */
+    public Reader section(int tag) throws IOException {
+      int position = HEADER_SIZE;
+      while (position + 8 <= mData.limit()) {
+        int length = mData.getInt(position + 4);
+        if (length < 0 || position + 8 + length > mData.limit()) {
+          throw new IOException("Truncated buffer cache");
+        }
+        if (mData.getInt(position) == tag) {
+          ByteBuffer section = mData.duplicate().order(ByteOrder.nativeOrder());
+          section.position(position + 8);
+          section.limit(position + 8 + length);
+          return new Reader(section.slice().order(ByteOrder.nativeOrder()), mGles20);
+        }
+        position += 8 + length;
+      }
+      return null;
+    }
+
+    public int readInt() {
+      return mData.getInt();
+    }
+
+    public float readFloat() {
+      return mData.getFloat();
+    }
+
+    public boolean readBoolean() {
+      return mData.getInt() != 0;
+    }
+
+    public int[] readIntArray() {
+      int[] values = new int[mData.getInt()];
+      mData.asIntBuffer().get(values);
+      mData.position(mData.position() + 4 * values.length);
+      return values;
+    }
+
+    /** Returns a view of the next n ints. */
+    public IntBuffer readIntBuffer(int n) {
+      IntBuffer buffer = view(4 * n).asIntBuffer();
+      mData.position(mData.position() + 4 * n);
+      return buffer;
+    }
+
+    /** Returns a view of the next n shorts. */
+    public ShortBuffer readShortBuffer(int n) {
+      ShortBuffer buffer = view(2 * n).asShortBuffer();
+      mData.position(mData.position() + padded(2 * n));
+      return buffer;
+    }
+
+    public Bitmap readBitmap() {
+      int width = mData.getInt();
+      int height = mData.getInt();
+      Bitmap.Config config = Bitmap.Config.values()[mData.getInt()];
+      int size = mData.getInt();
+      Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+      bitmap.copyPixelsFromBuffer(view(size));
+      mData.position(mData.position() + padded(size));
+      return bitmap;
+    }
+
+    private ByteBuffer view(int size) {
+      ByteBuffer view = mData.duplicate();
+      view.limit(view.position() + size);
+      return view.slice().order(ByteOrder.nativeOrder());
+    }
+  }
+
+  /** Gathers the sections in memory, to be written out by commit. */
+  public class Writer {
+    private ByteBuffer mData = ByteBuffer.allocate(64 * 1024).order(ByteOrder.nativeOrder());
+    // Where the open section's length goes, or -1 if there isn't one.
+    private int mSectionStart = -1;
+
+    private Writer() {
+      mData.putInt(MAGIC);
+      mData.putInt(VERSION);
+      mData.putLong(mKey);
+      mData.putInt(GLBuffer.useGles20() ? 1 : 0);
+    }
+
+    /** Ends the last section, if any, and starts another. */
+    public void beginSection(int tag) {
+      endSection();
+      writeInt(tag);
+      mSectionStart = mData.position();
+      writeInt(0);
+    }
+
+    private void endSection() {
+      if (mSectionStart >= 0) {
+        mData.putInt(mSectionStart, mData.position() - mSectionStart - 4);
+        mSectionStart = -1;
+      }
+    }
+
+    public void writeInt(int value) {
+      ensureCapacity(4);
+      mData.putInt(value);
+    }
+
+    public void writeFloat(float value) {
+      ensureCapacity(4);
+      mData.putFloat(value);
+    }
+
+    public void writeBoolean(boolean value) {
+      writeInt(value ? 1 : 0);
+    }
+
+    public void writeIntArray(int[] values) {
+      writeInt(values.length);
+      ensureCapacity(4 * values.length);
+      mData.asIntBuffer().put(values);
+      mData.position(mData.position() + 4 * values.length);
+    }
+
+    /** Writes the first n ints of the buffer, which is left as it was. */
+    public void writeIntBuffer(IntBuffer values, int n) {
+      ensureCapacity(4 * n);
+      IntBuffer source = values.duplicate();
+      source.position(0);
+      source.limit(n);
+      mData.asIntBuffer().put(source);
+      mData.position(mData.position() + 4 * n);
+    }
+
+    /** Writes the first n shorts of the buffer, which is left as it was. */
+    public void writeShortBuffer(ShortBuffer values, int n) {
+      ensureCapacity(padded(2 * n));
+      ShortBuffer source = values.duplicate();
+      source.position(0);
+      source.limit(n);
+      mData.asShortBuffer().put(source);
+      mData.position(mData.position() + padded(2 * n));
+    }
+
+    public void writeBitmap(Bitmap bitmap) {
+      int size = bitmap.getByteCount();
+      writeInt(bitmap.getWidth());
+      writeInt(bitmap.getHeight());
+      writeInt(bitmap.getConfig().ordinal());
+      writeInt(size);
+      ensureCapacity(padded(size));
+      ByteBuffer pixels = mData.duplicate();
+      pixels.limit(pixels.position() + size);
+      bitmap.copyPixelsToBuffer(pixels);
+      mData.position(mData.position() + padded(size));
+    }
+
+    private void ensureCapacity(int size) {
+      if (mData.remaining() < size) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * mData.capacity(),
+            mData.position() + size)).order(ByteOrder.nativeOrder());
+        mData.flip();
+        bigger.put(mData);
+        mData = bigger;
+      }
+    }
+
+    /**
+     * Writes the file, replacing any there was.  Since this can be slow, it
+     * doesn't need to be on the thread which wrote the sections.
+     */
+    public void commit() throws IOException {
+      endSection();
+      File temp = new File(mFile.getPath() + ".tmp");
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+        out.write(mData.array(), 0, mData.position());
+      }
+      // Renaming is atomic, so a reader sees the old file or the whole new one.
+      if (!temp.renameTo(mFile)) {
+        temp.delete();
+        throw new IOException("Couldn't replace " + mFile);
+      }
+    }
+  }
+
+  // Everything starts on a four byte boundary, so that ints can be read in place.
+  private static int padded(int size) {
+    return (size + 3) & ~3;
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -73,10 +75,50 @@ public class ColorBuffer {
     }
   }
 
+  // Writes the colors to a cache.
+  public void write(BufferCache.Writer out) {
+    out.writeInt(mNumVertices);
+    if (mNumVertices > 0) {
+      out.writeIntBuffer(mColorBuffer, mNumVertices);
+    }
+  }
+
+  // Replaces the colors with those written to a cache, using its memory rather than a copy.
+  public void read(BufferCache.Reader in) {
+    mNumVertices = in.readInt();
+    if (mNumVertices > 0) {
+      mColorBuffer = in.readIntBuffer(mNumVertices);
+    }
+  }
+
+  // Sets the colors as the given attribute of the current GLES 2.0 program.
+  public void setAttribute(int location) {
+    if (mNumVertices == 0) {
+      return;
+    }
+    mColorBuffer.position(0);
+
+    if (mUseVBO) {
+      mGLBuffer.bind(mColorBuffer, 4 * mColorBuffer.capacity());
+      GLES20Calls.glVertexAttribPointer(location, 4, GLES20.GL_UNSIGNED_BYTE, true, 0, 0);
+    } else {
+      GLES20Calls.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+      GLES20Calls.glVertexAttribPointer(
+          location, 4, GLES20.GL_UNSIGNED_BYTE, true, 0, mColorBuffer);
+    }
+    GLES20Calls.glEnableVertexAttribArray(location);
+  }
+
   private void regenerateBuffer() {
     if (mNumVertices == 0) {
       return;
     }
+    // Client side buffers aren't kept by GL between draws, so can be reused.
+    if (!mUseVBO && mColorBuffer != null && !mColorBuffer.isReadOnly()
+        && mColorBuffer.capacity() >= mNumVertices) {
+      mColorBuffer.clear();
+      return;
+    }
 
     ByteBuffer bb = ByteBuffer.allocateDirect(4 * mNumVertices);
     bb.order(ByteOrder.nativeOrder());
@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
+
 import javax.microedition.khronos.opengles.GL10;
 
 public class ColoredQuad {
@@ -68,6 +70,26 @@ public class ColoredQuad {
     }    
   }
   
+  // Draws with the current OpenGL ES 2.0 program, which must be the colored one.
+  public void drawWithShaders() {
+    // Enable blending if alpha != 1.
+    if (mA != 1) {
+      GLES20Calls.glEnable(GLES20.GL_BLEND);
+      GLES20Calls.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    mPosition.setAttribute(ShaderPrograms.POSITION);
+    // Without a color array, every vertex gets this color.
+    GLES20Calls.glVertexAttrib4f(ShaderPrograms.COLOR, mR, mG, mB, mA);
+
+    GLES20Calls.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+    // Disable blending if alpha != 1.
+    if (mA != 1) {
+      GLES20Calls.glDisable(GLES20.GL_BLEND);
+    }
+  }
+
   private VertexBuffer mPosition = null;
   private float mR, mG, mB, mA;
 }
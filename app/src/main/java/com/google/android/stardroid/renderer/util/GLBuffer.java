@@ -14,8 +14,11 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
 import android.util.Log;
 
+import com.google.android.stardroid.util.FixedPoint;
+
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.Buffer;
@@ -35,6 +38,9 @@ public class GLBuffer {
   // this rather than a static constant.  I should refactor this accordingly
   // when I get a chance.
   private static boolean sCanUseVBO = false;
+  // Whether the buffers are for the OpenGL ES 2.0 backend, which takes float
+  // data and does night vision in its shaders, rather than the fixed function one.
+  private static boolean sUseGles20 = false;
 
   private Buffer mBuffer = null;
   private int mBufferSize = 0;
@@ -56,6 +62,19 @@ public class GLBuffer {
     return sCanUseVBO;
   }
 
+  public static void setUseGles20(boolean useGles20) {
+    sUseGles20 = useGles20;
+  }
+
+  public static boolean useGles20() {
+    return sUseGles20;
+  }
+
+  /** Encodes a coordinate as the backend wants it: floats for GLES 2.0, and fixed point otherwise. */
+  public static int encodeCoordinate(float value) {
+    return sUseGles20 ? Float.floatToRawIntBits(value) : FixedPoint.floatToFixedPoint(value);
+  }
+
   // Unset any GL buffer which is set on the device.  You need to call this if you want to render
   // without VBOs.  Otherwise it will try to use whatever buffer is currently set.
   public static void unbind(GL11 gl) {
@@ -65,6 +84,29 @@ public class GLBuffer {
     }
   }
 
+  /** As {@link #unbind(GL11)}, for the GLES 2.0 backend. */
+  public static void unbind() {
+    GLES20Calls.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    GLES20Calls.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+  }
+
+  /** As {@link #bind(GL11, Buffer, int)}, for the GLES 2.0 backend, which always has VBOs. */
+  public void bind(Buffer buffer, int bufferSize) {
+    if (buffer != mBuffer || bufferSize != mBufferSize) {
+      mBuffer = buffer;
+      mBufferSize = bufferSize;
+      if (mGLBufferID == -1) {
+        int[] buffers = new int[1];
+        GLES20Calls.glGenBuffers(1, buffers, 0);
+        mGLBufferID = buffers[0];
+      }
+      GLES20Calls.glBindBuffer(mBufferType, mGLBufferID);
+      GLES20Calls.glBufferData(mBufferType, bufferSize, buffer, GLES20.GL_STATIC_DRAW);
+    } else {
+      GLES20Calls.glBindBuffer(mBufferType, mGLBufferID);
+    }
+  }
+
   public void bind(GL11 gl, Buffer buffer, int bufferSize) {
     if (canUseVBO()) {
       maybeRegenerateBuffer(gl, buffer, bufferSize);
@@ -89,6 +131,12 @@ public class GLBuffer {
     mGLBufferID = -1;
   }
 
+  // Call this when the buffer's contents have changed in place, so that it's
+  // uploaded again next time it's bound.
+  public void invalidate() {
+    mBuffer = null;
+  }
+
   private void maybeRegenerateBuffer(GL11 gl, Buffer buffer, int bufferSize) {
     if (buffer != mBuffer || bufferSize != mBufferSize) {
       mBuffer = buffer;
@@ -0,0 +1,392 @@
+package com.google.android.stardroid.renderer.util;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES 2.0 functions the renderer calls.  Unlike the GL10 the fixed
+ * function backend is handed, {@link GLES20} is all static methods, so the
+ * renderer calls them through here instead, and tests can swap in
+ * {@link Functions} which record the calls rather than making them.  The
+ * constants are still GLES20's.
+ */
+public final class GLES20Calls {
+  /** The functions, with the same names and arguments as GLES20's. */
+  public interface Functions {
+    void glAttachShader(int program, int shader);
+    void glBindAttribLocation(int program, int index, String name);
+    void glBindBuffer(int target, int buffer);
+    void glBlendFunc(int sfactor, int dfactor);
+    void glBufferData(int target, int size, Buffer data, int usage);
+    void glClearColor(float red, float green, float blue, float alpha);
+    void glCompileShader(int shader);
+    int glCreateProgram();
+    int glCreateShader(int type);
+    void glCullFace(int mode);
+    void glDeleteProgram(int program);
+    void glDeleteShader(int shader);
+    void glDisable(int cap);
+    void glDisableVertexAttribArray(int index);
+    void glDrawArrays(int mode, int first, int count);
+    void glDrawElements(int mode, int count, int type, int offset);
+    void glDrawElements(int mode, int count, int type, Buffer indices);
+    void glEnable(int cap);
+    void glEnableVertexAttribArray(int index);
+    void glFrontFace(int mode);
+    void glGenBuffers(int n, int[] buffers, int offset);
+    String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type,
+                              int typeOffset);
+    String glGetProgramInfoLog(int program);
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+    String glGetShaderInfoLog(int shader);
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+    int glGetUniformLocation(int program, String name);
+    void glLinkProgram(int program);
+    void glShaderSource(int shader, String string);
+    void glTexParameteri(int target, int pname, int param);
+    void glUniform1f(int location, float x);
+    void glUniform1i(int location, int x);
+    void glUniform3f(int location, float x, float y, float z);
+    void glUniform4f(int location, float x, float y, float z, float w);
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                            int offset);
+    void glUseProgram(int program);
+    void glVertexAttrib4f(int index, float x, float y, float z, float w);
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                               int offset);
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                               Buffer ptr);
+  }
+
+  private static final Functions ANDROID = new Functions() {
+    public void glAttachShader(int program, int shader) {
+      GLES20.glAttachShader(program, shader);
+    }
+
+    public void glBindAttribLocation(int program, int index, String name) {
+      GLES20.glBindAttribLocation(program, index, name);
+    }
+
+    public void glBindBuffer(int target, int buffer) {
+      GLES20.glBindBuffer(target, buffer);
+    }
+
+    public void glBlendFunc(int sfactor, int dfactor) {
+      GLES20.glBlendFunc(sfactor, dfactor);
+    }
+
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+      GLES20.glBufferData(target, size, data, usage);
+    }
+
+    public void glClearColor(float red, float green, float blue, float alpha) {
+      GLES20.glClearColor(red, green, blue, alpha);
+    }
+
+    public void glCompileShader(int shader) {
+      GLES20.glCompileShader(shader);
+    }
+
+    public int glCreateProgram() {
+      return GLES20.glCreateProgram();
+    }
+
+    public int glCreateShader(int type) {
+      return GLES20.glCreateShader(type);
+    }
+
+    public void glCullFace(int mode) {
+      GLES20.glCullFace(mode);
+    }
+
+    public void glDeleteProgram(int program) {
+      GLES20.glDeleteProgram(program);
+    }
+
+    public void glDeleteShader(int shader) {
+      GLES20.glDeleteShader(shader);
+    }
+
+    public void glDisable(int cap) {
+      GLES20.glDisable(cap);
+    }
+
+    public void glDisableVertexAttribArray(int index) {
+      GLES20.glDisableVertexAttribArray(index);
+    }
+
+    public void glDrawArrays(int mode, int first, int count) {
+      GLES20.glDrawArrays(mode, first, count);
+    }
+
+    public void glDrawElements(int mode, int count, int type, int offset) {
+      GLES20.glDrawElements(mode, count, type, offset);
+    }
+
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+      GLES20.glDrawElements(mode, count, type, indices);
+    }
+
+    public void glEnable(int cap) {
+      GLES20.glEnable(cap);
+    }
+
+    public void glEnableVertexAttribArray(int index) {
+      GLES20.glEnableVertexAttribArray(index);
+    }
+
+    public void glFrontFace(int mode) {
+      GLES20.glFrontFace(mode);
+    }
+
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+      GLES20.glGenBuffers(n, buffers, offset);
+    }
+
+    public String glGetActiveUniform(int program, int index, int[] size, int sizeOffset,
+                                     int[] type, int typeOffset) {
+      return GLES20.glGetActiveUniform(program, index, size, sizeOffset, type, typeOffset);
+    }
+
+    public String glGetProgramInfoLog(int program) {
+      return GLES20.glGetProgramInfoLog(program);
+    }
+
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+      GLES20.glGetProgramiv(program, pname, params, offset);
+    }
+
+    public String glGetShaderInfoLog(int shader) {
+      return GLES20.glGetShaderInfoLog(shader);
+    }
+
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+      GLES20.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    public int glGetUniformLocation(int program, String name) {
+      return GLES20.glGetUniformLocation(program, name);
+    }
+
+    public void glLinkProgram(int program) {
+      GLES20.glLinkProgram(program);
+    }
+
+    public void glShaderSource(int shader, String string) {
+      GLES20.glShaderSource(shader, string);
+    }
+
+    public void glTexParameteri(int target, int pname, int param) {
+      GLES20.glTexParameteri(target, pname, param);
+    }
+
+    public void glUniform1f(int location, float x) {
+      GLES20.glUniform1f(location, x);
+    }
+
+    public void glUniform1i(int location, int x) {
+      GLES20.glUniform1i(location, x);
+    }
+
+    public void glUniform3f(int location, float x, float y, float z) {
+      GLES20.glUniform3f(location, x, y, z);
+    }
+
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+      GLES20.glUniform4f(location, x, y, z, w);
+    }
+
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                                   int offset) {
+      GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    public void glUseProgram(int program) {
+      GLES20.glUseProgram(program);
+    }
+
+    public void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+      GLES20.glVertexAttrib4f(index, x, y, z, w);
+    }
+
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, int offset) {
+      GLES20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, Buffer ptr) {
+      GLES20.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+  };
+
+  private static Functions sFunctions = ANDROID;
+
+  private GLES20Calls() {}
+
+  /** Makes the calls on the given functions, or on GLES20's again if null.  For tests. */
+  public static void setFunctions(Functions functions) {
+    sFunctions = functions == null ? ANDROID : functions;
+  }
+
+  public static void glAttachShader(int program, int shader) {
+    sFunctions.glAttachShader(program, shader);
+  }
+
+  public static void glBindAttribLocation(int program, int index, String name) {
+    sFunctions.glBindAttribLocation(program, index, name);
+  }
+
+  public static void glBindBuffer(int target, int buffer) {
+    sFunctions.glBindBuffer(target, buffer);
+  }
+
+  public static void glBlendFunc(int sfactor, int dfactor) {
+    sFunctions.glBlendFunc(sfactor, dfactor);
+  }
+
+  public static void glBufferData(int target, int size, Buffer data, int usage) {
+    sFunctions.glBufferData(target, size, data, usage);
+  }
+
+  public static void glClearColor(float red, float green, float blue, float alpha) {
+    sFunctions.glClearColor(red, green, blue, alpha);
+  }
+
+  public static void glCompileShader(int shader) {
+    sFunctions.glCompileShader(shader);
+  }
+
+  public static int glCreateProgram() {
+    return sFunctions.glCreateProgram();
+  }
+
+  public static int glCreateShader(int type) {
+    return sFunctions.glCreateShader(type);
+  }
+
+  public static void glCullFace(int mode) {
+    sFunctions.glCullFace(mode);
+  }
+
+  public static void glDeleteProgram(int program) {
+    sFunctions.glDeleteProgram(program);
+  }
+
+  public static void glDeleteShader(int shader) {
+    sFunctions.glDeleteShader(shader);
+  }
+
+  public static void glDisable(int cap) {
+    sFunctions.glDisable(cap);
+  }
+
+  public static void glDisableVertexAttribArray(int index) {
+    sFunctions.glDisableVertexAttribArray(index);
+  }
+
+  public static void glDrawArrays(int mode, int first, int count) {
+    sFunctions.glDrawArrays(mode, first, count);
+  }
+
+  public static void glDrawElements(int mode, int count, int type, int offset) {
+    sFunctions.glDrawElements(mode, count, type, offset);
+  }
+
+  public static void glDrawElements(int mode, int count, int type, Buffer indices) {
+    sFunctions.glDrawElements(mode, count, type, indices);
+  }
+
+  public static void glEnable(int cap) {
+    sFunctions.glEnable(cap);
+  }
+
+  public static void glEnableVertexAttribArray(int index) {
+    sFunctions.glEnableVertexAttribArray(index);
+  }
+
+  public static void glFrontFace(int mode) {
+    sFunctions.glFrontFace(mode);
+  }
+
+  public static void glGenBuffers(int n, int[] buffers, int offset) {
+    sFunctions.glGenBuffers(n, buffers, offset);
+  }
+
+  public static String glGetActiveUniform(int program, int index, int[] size, int sizeOffset,
+                                          int[] type, int typeOffset) {
+    return sFunctions.glGetActiveUniform(program, index, size, sizeOffset, type, typeOffset);
+  }
+
+  public static String glGetProgramInfoLog(int program) {
+    return sFunctions.glGetProgramInfoLog(program);
+  }
+
+  public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+    sFunctions.glGetProgramiv(program, pname, params, offset);
+  }
+
+  public static String glGetShaderInfoLog(int shader) {
+    return sFunctions.glGetShaderInfoLog(shader);
+  }
+
+  public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+    sFunctions.glGetShaderiv(shader, pname, params, offset);
+  }
+
+  public static int glGetUniformLocation(int program, String name) {
+    return sFunctions.glGetUniformLocation(program, name);
+  }
+
+  public static void glLinkProgram(int program) {
+    sFunctions.glLinkProgram(program);
+  }
+
+  public static void glShaderSource(int shader, String string) {
+    sFunctions.glShaderSource(shader, string);
+  }
+
+  public static void glTexParameteri(int target, int pname, int param) {
+    sFunctions.glTexParameteri(target, pname, param);
+  }
+
+  public static void glUniform1f(int location, float x) {
+    sFunctions.glUniform1f(location, x);
+  }
+
+  public static void glUniform1i(int location, int x) {
+    sFunctions.glUniform1i(location, x);
+  }
+
+  public static void glUniform3f(int location, float x, float y, float z) {
+    sFunctions.glUniform3f(location, x, y, z);
+  }
+
+  public static void glUniform4f(int location, float x, float y, float z, float w) {
+    sFunctions.glUniform4f(location, x, y, z, w);
+  }
+
+  public static void glUniformMatrix4fv(int location, int count, boolean transpose,
+                                        float[] value, int offset) {
+    sFunctions.glUniformMatrix4fv(location, count, transpose, value, offset);
+  }
+
+  public static void glUseProgram(int program) {
+    sFunctions.glUseProgram(program);
+  }
+
+  public static void glVertexAttrib4f(int index, float x, float y, float z, float w) {
+    sFunctions.glVertexAttrib4f(index, x, y, z, w);
+  }
+
+  public static void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                           int stride, int offset) {
+    sFunctions.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+  }
+
+  public static void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                           int stride, Buffer ptr) {
+    sFunctions.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+  }
+}
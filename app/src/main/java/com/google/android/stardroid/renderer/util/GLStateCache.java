@@ -0,0 +1,1396 @@
+package com.google.android.stardroid.renderer.util;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
+
+/**
+ * Wraps the GL the renderer is given, passing calls on but dropping those
+ * which would set state to what it already is: enabling what's enabled,
+ * binding what's bound and so on.  Each manager sets all the state it needs
+ * without knowing what the one before it left, so many of its calls would
+ * otherwise be redundant.
+ *
+ * <p>Only state set through the wrapper is known, and {@link #invalidate}
+ * must be called whenever it may have changed behind the wrapper's back, as
+ * when the surface is recreated.  The calls passed on and dropped are counted
+ * so that they can be reported per frame.
+ */
+public class GLStateCache implements GL11 {
+  private static final int UNKNOWN = -1;
+  private static final int DISABLED = 0;
+  private static final int ENABLED = 1;
+
+  // The capabilities and client states whose state is kept.  Calls for others are
+  // always passed on.
+  private static final int[] CAPS = {
+      GL_TEXTURE_2D, GL_BLEND, GL_ALPHA_TEST, GL_CULL_FACE, GL_DEPTH_TEST, GL_DITHER,
+  };
+  private static final int[] CLIENT_STATES = {
+      GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY, GL_NORMAL_ARRAY,
+  };
+
+  private GL10 mGl = null;
+  private GL11 mGl11 = null;
+
+  private final int[] mCapStates = new int[CAPS.length];
+  private final int[] mClientStates = new int[CLIENT_STATES.length];
+  private int mActiveTexture;
+  // The texture bound to GL_TEXTURE_2D, for texture unit 0 only.
+  private int mBoundTexture;
+  private int mTexEnvMode;
+  private int mBlendSrc;
+  private int mBlendDst;
+  private int mAlphaFunc;
+  private float mAlphaRef;
+  private int mFrontFace;
+  private int mCullFace;
+  private int mShadeModel;
+  private int mMatrixMode;
+  private int mArrayBuffer;
+  private int mElementArrayBuffer;
+
+  private int mCallsIssued = 0;
+  private int mCallsSkipped = 0;
+
+  public GLStateCache() {
+    invalidate();
+  }
+
+  /**
+   * Makes calls to this go to the given GL, which must be done in each of the
+   * renderer's callbacks before passing this on.  Returns this.
+   */
+  public GL10 wrap(GL10 gl) {
+    if (gl != mGl) {
+      mGl = gl;
+      mGl11 = gl instanceof GL11 ? (GL11) gl : null;
+      invalidate();
+    }
+    return this;
+  }
+
+  /** Forgets all of the state, so that the next call to set any of it is passed on. */
+  public void invalidate() {
+    Arrays.fill(mCapStates, UNKNOWN);
+    Arrays.fill(mClientStates, UNKNOWN);
+    // Nothing changes the active texture unit other than through this, and it
+    // starts as unit 0, so that much is always known.
+    mActiveTexture = GL_TEXTURE0;
+    mBoundTexture = UNKNOWN;
+    mTexEnvMode = UNKNOWN;
+    mBlendSrc = UNKNOWN;
+    mBlendDst = UNKNOWN;
+    mAlphaFunc = UNKNOWN;
+    mFrontFace = UNKNOWN;
+    mCullFace = UNKNOWN;
+    mShadeModel = UNKNOWN;
+    mMatrixMode = UNKNOWN;
+    mArrayBuffer = UNKNOWN;
+    mElementArrayBuffer = UNKNOWN;
+  }
+
+  /** The number of calls passed on since the counts were last reset. */
+  public int getCallsIssued() {
+    return mCallsIssued;
+  }
+
+  /** The number of calls dropped as redundant since the counts were last reset. */
+  public int getCallsSkipped() {
+    return mCallsSkipped;
+  }
+
+  public void resetCounts() {
+    mCallsIssued = 0;
+    mCallsSkipped = 0;
+  }
+
+  // Records the new state of a capability or client state, returning false if
+  // it's known to be in that state already.
+  private static boolean changeState(int[] keys, int[] states, int key, int state) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == key) {
+        if (states[i] == state) {
+          return false;
+        }
+        states[i] = state;
+        return true;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void glEnable(int cap) {
+    if (changeState(CAPS, mCapStates, cap, ENABLED)) {
+      mCallsIssued++;
+      mGl.glEnable(cap);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glDisable(int cap) {
+    if (changeState(CAPS, mCapStates, cap, DISABLED)) {
+      mCallsIssued++;
+      mGl.glDisable(cap);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glEnableClientState(int array) {
+    if (changeState(CLIENT_STATES, mClientStates, array, ENABLED)) {
+      mCallsIssued++;
+      mGl.glEnableClientState(array);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glDisableClientState(int array) {
+    if (changeState(CLIENT_STATES, mClientStates, array, DISABLED)) {
+      mCallsIssued++;
+      mGl.glDisableClientState(array);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glClientActiveTexture(int texture) {
+    // The texture coordinate array's state is per texture unit.
+    changeState(CLIENT_STATES, mClientStates, GL_TEXTURE_COORD_ARRAY, UNKNOWN);
+    mCallsIssued++;
+    mGl.glClientActiveTexture(texture);
+  }
+
+  @Override
+  public void glActiveTexture(int texture) {
+    if (texture == mActiveTexture) {
+      mCallsSkipped++;
+      return;
+    }
+    mActiveTexture = texture;
+    mCallsIssued++;
+    mGl.glActiveTexture(texture);
+  }
+
+  @Override
+  public void glBindTexture(int target, int texture) {
+    if (target == GL_TEXTURE_2D && mActiveTexture == GL_TEXTURE0) {
+      if (texture == mBoundTexture) {
+        mCallsSkipped++;
+        return;
+      }
+      mBoundTexture = texture;
+    }
+    mCallsIssued++;
+    mGl.glBindTexture(target, texture);
+  }
+
+  @Override
+  public void glDeleteTextures(int n, int[] textures, int offset) {
+    // Deleting the bound texture unbinds it.
+    mBoundTexture = UNKNOWN;
+    mCallsIssued++;
+    mGl.glDeleteTextures(n, textures, offset);
+  }
+
+  @Override
+  public void glDeleteTextures(int n, IntBuffer textures) {
+    mBoundTexture = UNKNOWN;
+    mCallsIssued++;
+    mGl.glDeleteTextures(n, textures);
+  }
+
+  // Records a new texture environment mode, returning false if it's known to be
+  // in that mode already.
+  private boolean changeTexEnvMode(int target, int pname, int mode) {
+    if (target != GL_TEXTURE_ENV || pname != GL_TEXTURE_ENV_MODE) {
+      return true;
+    }
+    if (mode == mTexEnvMode) {
+      return false;
+    }
+    mTexEnvMode = mode;
+    return true;
+  }
+
+  @Override
+  public void glTexEnvf(int target, int pname, float param) {
+    if (changeTexEnvMode(target, pname, (int) param)) {
+      mCallsIssued++;
+      mGl.glTexEnvf(target, pname, param);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glTexEnvx(int target, int pname, int param) {
+    if (changeTexEnvMode(target, pname, param)) {
+      mCallsIssued++;
+      mGl.glTexEnvx(target, pname, param);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  @Override
+  public void glTexEnvi(int target, int pname, int param) {
+    if (changeTexEnvMode(target, pname, param)) {
+      mCallsIssued++;
+      mGl11.glTexEnvi(target, pname, param);
+    } else {
+      mCallsSkipped++;
+    }
+  }
+
+  // The array forms aren't used to set the mode, but if they are it's forgotten.
+  @Override
+  public void glTexEnvfv(int target, int pname, float[] params, int offset) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl.glTexEnvfv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexEnvfv(int target, int pname, FloatBuffer params) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl.glTexEnvfv(target, pname, params);
+  }
+
+  @Override
+  public void glTexEnvxv(int target, int pname, int[] params, int offset) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl.glTexEnvxv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexEnvxv(int target, int pname, IntBuffer params) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl.glTexEnvxv(target, pname, params);
+  }
+
+  @Override
+  public void glTexEnviv(int target, int pname, int[] params, int offset) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl11.glTexEnviv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexEnviv(int target, int pname, IntBuffer params) {
+    forgetTexEnvMode(pname);
+    mCallsIssued++;
+    mGl11.glTexEnviv(target, pname, params);
+  }
+
+  private void forgetTexEnvMode(int pname) {
+    if (pname == GL_TEXTURE_ENV_MODE) {
+      mTexEnvMode = UNKNOWN;
+    }
+  }
+
+  @Override
+  public void glBlendFunc(int sfactor, int dfactor) {
+    if (sfactor == mBlendSrc && dfactor == mBlendDst) {
+      mCallsSkipped++;
+      return;
+    }
+    mBlendSrc = sfactor;
+    mBlendDst = dfactor;
+    mCallsIssued++;
+    mGl.glBlendFunc(sfactor, dfactor);
+  }
+
+  @Override
+  public void glAlphaFunc(int func, float ref) {
+    if (func == mAlphaFunc && ref == mAlphaRef) {
+      mCallsSkipped++;
+      return;
+    }
+    mAlphaFunc = func;
+    mAlphaRef = ref;
+    mCallsIssued++;
+    mGl.glAlphaFunc(func, ref);
+  }
+
+  @Override
+  public void glAlphaFuncx(int func, int ref) {
+    mAlphaFunc = UNKNOWN;
+    mCallsIssued++;
+    mGl.glAlphaFuncx(func, ref);
+  }
+
+  @Override
+  public void glFrontFace(int mode) {
+    if (mode == mFrontFace) {
+      mCallsSkipped++;
+      return;
+    }
+    mFrontFace = mode;
+    mCallsIssued++;
+    mGl.glFrontFace(mode);
+  }
+
+  @Override
+  public void glCullFace(int mode) {
+    if (mode == mCullFace) {
+      mCallsSkipped++;
+      return;
+    }
+    mCullFace = mode;
+    mCallsIssued++;
+    mGl.glCullFace(mode);
+  }
+
+  @Override
+  public void glShadeModel(int mode) {
+    if (mode == mShadeModel) {
+      mCallsSkipped++;
+      return;
+    }
+    mShadeModel = mode;
+    mCallsIssued++;
+    mGl.glShadeModel(mode);
+  }
+
+  @Override
+  public void glMatrixMode(int mode) {
+    if (mode == mMatrixMode) {
+      mCallsSkipped++;
+      return;
+    }
+    mMatrixMode = mode;
+    mCallsIssued++;
+    mGl.glMatrixMode(mode);
+  }
+
+  @Override
+  public void glBindBuffer(int target, int buffer) {
+    if (target == GL_ARRAY_BUFFER) {
+      if (buffer == mArrayBuffer) {
+        mCallsSkipped++;
+        return;
+      }
+      mArrayBuffer = buffer;
+    } else if (target == GL_ELEMENT_ARRAY_BUFFER) {
+      if (buffer == mElementArrayBuffer) {
+        mCallsSkipped++;
+        return;
+      }
+      mElementArrayBuffer = buffer;
+    }
+    mCallsIssued++;
+    mGl11.glBindBuffer(target, buffer);
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, int[] buffers, int offset) {
+    // Deleting a bound buffer unbinds it.
+    mArrayBuffer = UNKNOWN;
+    mElementArrayBuffer = UNKNOWN;
+    mCallsIssued++;
+    mGl11.glDeleteBuffers(n, buffers, offset);
+  }
+
+  @Override
+  public void glDeleteBuffers(int n, IntBuffer buffers) {
+    mArrayBuffer = UNKNOWN;
+    mElementArrayBuffer = UNKNOWN;
+    mCallsIssued++;
+    mGl11.glDeleteBuffers(n, buffers);
+  }
+
+  // Everything else is passed straight on.
+
+  @Override
+  public void glClear(int mask) {
+    mCallsIssued++;
+    mGl.glClear(mask);
+  }
+
+  @Override
+  public void glClearColor(float red, float green, float blue, float alpha) {
+    mCallsIssued++;
+    mGl.glClearColor(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glClearColorx(int red, int green, int blue, int alpha) {
+    mCallsIssued++;
+    mGl.glClearColorx(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glClearDepthf(float depth) {
+    mCallsIssued++;
+    mGl.glClearDepthf(depth);
+  }
+
+  @Override
+  public void glClearDepthx(int depth) {
+    mCallsIssued++;
+    mGl.glClearDepthx(depth);
+  }
+
+  @Override
+  public void glClearStencil(int s) {
+    mCallsIssued++;
+    mGl.glClearStencil(s);
+  }
+
+  @Override
+  public void glColor4f(float red, float green, float blue, float alpha) {
+    mCallsIssued++;
+    mGl.glColor4f(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glColor4x(int red, int green, int blue, int alpha) {
+    mCallsIssued++;
+    mGl.glColor4x(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+    mCallsIssued++;
+    mGl.glColorMask(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+    mCallsIssued++;
+    mGl.glColorPointer(size, type, stride, pointer);
+  }
+
+  @Override
+  public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+    mCallsIssued++;
+    mGl.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+  }
+
+  @Override
+  public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+    mCallsIssued++;
+    mGl.glCompressedTexSubImage2D(target, level, xoffset, yoffset, width, height, format, imageSize, data);
+  }
+
+  @Override
+  public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+    mCallsIssued++;
+    mGl.glCopyTexImage2D(target, level, internalformat, x, y, width, height, border);
+  }
+
+  @Override
+  public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+    mCallsIssued++;
+    mGl.glCopyTexSubImage2D(target, level, xoffset, yoffset, x, y, width, height);
+  }
+
+  @Override
+  public void glDepthFunc(int func) {
+    mCallsIssued++;
+    mGl.glDepthFunc(func);
+  }
+
+  @Override
+  public void glDepthMask(boolean flag) {
+    mCallsIssued++;
+    mGl.glDepthMask(flag);
+  }
+
+  @Override
+  public void glDepthRangef(float zNear, float zFar) {
+    mCallsIssued++;
+    mGl.glDepthRangef(zNear, zFar);
+  }
+
+  @Override
+  public void glDepthRangex(int zNear, int zFar) {
+    mCallsIssued++;
+    mGl.glDepthRangex(zNear, zFar);
+  }
+
+  @Override
+  public void glDrawArrays(int mode, int first, int count) {
+    mCallsIssued++;
+    mGl.glDrawArrays(mode, first, count);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, Buffer indices) {
+    mCallsIssued++;
+    mGl.glDrawElements(mode, count, type, indices);
+  }
+
+  @Override
+  public void glFinish() {
+    mCallsIssued++;
+    mGl.glFinish();
+  }
+
+  @Override
+  public void glFlush() {
+    mCallsIssued++;
+    mGl.glFlush();
+  }
+
+  @Override
+  public void glFogf(int pname, float param) {
+    mCallsIssued++;
+    mGl.glFogf(pname, param);
+  }
+
+  @Override
+  public void glFogfv(int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl.glFogfv(pname, params, offset);
+  }
+
+  @Override
+  public void glFogfv(int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl.glFogfv(pname, params);
+  }
+
+  @Override
+  public void glFogx(int pname, int param) {
+    mCallsIssued++;
+    mGl.glFogx(pname, param);
+  }
+
+  @Override
+  public void glFogxv(int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl.glFogxv(pname, params, offset);
+  }
+
+  @Override
+  public void glFogxv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl.glFogxv(pname, params);
+  }
+
+  @Override
+  public void glFrustumf(float left, float right, float bottom, float top, float zNear, float zFar) {
+    mCallsIssued++;
+    mGl.glFrustumf(left, right, bottom, top, zNear, zFar);
+  }
+
+  @Override
+  public void glFrustumx(int left, int right, int bottom, int top, int zNear, int zFar) {
+    mCallsIssued++;
+    mGl.glFrustumx(left, right, bottom, top, zNear, zFar);
+  }
+
+  @Override
+  public void glGenTextures(int n, int[] textures, int offset) {
+    mCallsIssued++;
+    mGl.glGenTextures(n, textures, offset);
+  }
+
+  @Override
+  public void glGenTextures(int n, IntBuffer textures) {
+    mCallsIssued++;
+    mGl.glGenTextures(n, textures);
+  }
+
+  @Override
+  public int glGetError() {
+    mCallsIssued++;
+    return mGl.glGetError();
+  }
+
+  @Override
+  public void glGetIntegerv(int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl.glGetIntegerv(pname, params, offset);
+  }
+
+  @Override
+  public void glGetIntegerv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl.glGetIntegerv(pname, params);
+  }
+
+  @Override
+  public String glGetString(int name) {
+    mCallsIssued++;
+    return mGl.glGetString(name);
+  }
+
+  @Override
+  public void glHint(int target, int mode) {
+    mCallsIssued++;
+    mGl.glHint(target, mode);
+  }
+
+  @Override
+  public void glLightModelf(int pname, float param) {
+    mCallsIssued++;
+    mGl.glLightModelf(pname, param);
+  }
+
+  @Override
+  public void glLightModelfv(int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl.glLightModelfv(pname, params, offset);
+  }
+
+  @Override
+  public void glLightModelfv(int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl.glLightModelfv(pname, params);
+  }
+
+  @Override
+  public void glLightModelx(int pname, int param) {
+    mCallsIssued++;
+    mGl.glLightModelx(pname, param);
+  }
+
+  @Override
+  public void glLightModelxv(int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl.glLightModelxv(pname, params, offset);
+  }
+
+  @Override
+  public void glLightModelxv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl.glLightModelxv(pname, params);
+  }
+
+  @Override
+  public void glLightf(int light, int pname, float param) {
+    mCallsIssued++;
+    mGl.glLightf(light, pname, param);
+  }
+
+  @Override
+  public void glLightfv(int light, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl.glLightfv(light, pname, params, offset);
+  }
+
+  @Override
+  public void glLightfv(int light, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl.glLightfv(light, pname, params);
+  }
+
+  @Override
+  public void glLightx(int light, int pname, int param) {
+    mCallsIssued++;
+    mGl.glLightx(light, pname, param);
+  }
+
+  @Override
+  public void glLightxv(int light, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl.glLightxv(light, pname, params, offset);
+  }
+
+  @Override
+  public void glLightxv(int light, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl.glLightxv(light, pname, params);
+  }
+
+  @Override
+  public void glLineWidth(float width) {
+    mCallsIssued++;
+    mGl.glLineWidth(width);
+  }
+
+  @Override
+  public void glLineWidthx(int width) {
+    mCallsIssued++;
+    mGl.glLineWidthx(width);
+  }
+
+  @Override
+  public void glLoadIdentity() {
+    mCallsIssued++;
+    mGl.glLoadIdentity();
+  }
+
+  @Override
+  public void glLoadMatrixf(float[] m, int offset) {
+    mCallsIssued++;
+    mGl.glLoadMatrixf(m, offset);
+  }
+
+  @Override
+  public void glLoadMatrixf(FloatBuffer m) {
+    mCallsIssued++;
+    mGl.glLoadMatrixf(m);
+  }
+
+  @Override
+  public void glLoadMatrixx(int[] m, int offset) {
+    mCallsIssued++;
+    mGl.glLoadMatrixx(m, offset);
+  }
+
+  @Override
+  public void glLoadMatrixx(IntBuffer m) {
+    mCallsIssued++;
+    mGl.glLoadMatrixx(m);
+  }
+
+  @Override
+  public void glLogicOp(int opcode) {
+    mCallsIssued++;
+    mGl.glLogicOp(opcode);
+  }
+
+  @Override
+  public void glMaterialf(int face, int pname, float param) {
+    mCallsIssued++;
+    mGl.glMaterialf(face, pname, param);
+  }
+
+  @Override
+  public void glMaterialfv(int face, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl.glMaterialfv(face, pname, params, offset);
+  }
+
+  @Override
+  public void glMaterialfv(int face, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl.glMaterialfv(face, pname, params);
+  }
+
+  @Override
+  public void glMaterialx(int face, int pname, int param) {
+    mCallsIssued++;
+    mGl.glMaterialx(face, pname, param);
+  }
+
+  @Override
+  public void glMaterialxv(int face, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl.glMaterialxv(face, pname, params, offset);
+  }
+
+  @Override
+  public void glMaterialxv(int face, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl.glMaterialxv(face, pname, params);
+  }
+
+  @Override
+  public void glMultMatrixf(float[] m, int offset) {
+    mCallsIssued++;
+    mGl.glMultMatrixf(m, offset);
+  }
+
+  @Override
+  public void glMultMatrixf(FloatBuffer m) {
+    mCallsIssued++;
+    mGl.glMultMatrixf(m);
+  }
+
+  @Override
+  public void glMultMatrixx(int[] m, int offset) {
+    mCallsIssued++;
+    mGl.glMultMatrixx(m, offset);
+  }
+
+  @Override
+  public void glMultMatrixx(IntBuffer m) {
+    mCallsIssued++;
+    mGl.glMultMatrixx(m);
+  }
+
+  @Override
+  public void glMultiTexCoord4f(int target, float s, float t, float r, float q) {
+    mCallsIssued++;
+    mGl.glMultiTexCoord4f(target, s, t, r, q);
+  }
+
+  @Override
+  public void glMultiTexCoord4x(int target, int s, int t, int r, int q) {
+    mCallsIssued++;
+    mGl.glMultiTexCoord4x(target, s, t, r, q);
+  }
+
+  @Override
+  public void glNormal3f(float nx, float ny, float nz) {
+    mCallsIssued++;
+    mGl.glNormal3f(nx, ny, nz);
+  }
+
+  @Override
+  public void glNormal3x(int nx, int ny, int nz) {
+    mCallsIssued++;
+    mGl.glNormal3x(nx, ny, nz);
+  }
+
+  @Override
+  public void glNormalPointer(int type, int stride, Buffer pointer) {
+    mCallsIssued++;
+    mGl.glNormalPointer(type, stride, pointer);
+  }
+
+  @Override
+  public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar) {
+    mCallsIssued++;
+    mGl.glOrthof(left, right, bottom, top, zNear, zFar);
+  }
+
+  @Override
+  public void glOrthox(int left, int right, int bottom, int top, int zNear, int zFar) {
+    mCallsIssued++;
+    mGl.glOrthox(left, right, bottom, top, zNear, zFar);
+  }
+
+  @Override
+  public void glPixelStorei(int pname, int param) {
+    mCallsIssued++;
+    mGl.glPixelStorei(pname, param);
+  }
+
+  @Override
+  public void glPointSize(float size) {
+    mCallsIssued++;
+    mGl.glPointSize(size);
+  }
+
+  @Override
+  public void glPointSizex(int size) {
+    mCallsIssued++;
+    mGl.glPointSizex(size);
+  }
+
+  @Override
+  public void glPolygonOffset(float factor, float units) {
+    mCallsIssued++;
+    mGl.glPolygonOffset(factor, units);
+  }
+
+  @Override
+  public void glPolygonOffsetx(int factor, int units) {
+    mCallsIssued++;
+    mGl.glPolygonOffsetx(factor, units);
+  }
+
+  @Override
+  public void glPopMatrix() {
+    mCallsIssued++;
+    mGl.glPopMatrix();
+  }
+
+  @Override
+  public void glPushMatrix() {
+    mCallsIssued++;
+    mGl.glPushMatrix();
+  }
+
+  @Override
+  public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+    mCallsIssued++;
+    mGl.glReadPixels(x, y, width, height, format, type, pixels);
+  }
+
+  @Override
+  public void glRotatef(float angle, float x, float y, float z) {
+    mCallsIssued++;
+    mGl.glRotatef(angle, x, y, z);
+  }
+
+  @Override
+  public void glRotatex(int angle, int x, int y, int z) {
+    mCallsIssued++;
+    mGl.glRotatex(angle, x, y, z);
+  }
+
+  @Override
+  public void glSampleCoverage(float value, boolean invert) {
+    mCallsIssued++;
+    mGl.glSampleCoverage(value, invert);
+  }
+
+  @Override
+  public void glSampleCoveragex(int value, boolean invert) {
+    mCallsIssued++;
+    mGl.glSampleCoveragex(value, invert);
+  }
+
+  @Override
+  public void glScalef(float x, float y, float z) {
+    mCallsIssued++;
+    mGl.glScalef(x, y, z);
+  }
+
+  @Override
+  public void glScalex(int x, int y, int z) {
+    mCallsIssued++;
+    mGl.glScalex(x, y, z);
+  }
+
+  @Override
+  public void glScissor(int x, int y, int width, int height) {
+    mCallsIssued++;
+    mGl.glScissor(x, y, width, height);
+  }
+
+  @Override
+  public void glStencilFunc(int func, int ref, int mask) {
+    mCallsIssued++;
+    mGl.glStencilFunc(func, ref, mask);
+  }
+
+  @Override
+  public void glStencilMask(int mask) {
+    mCallsIssued++;
+    mGl.glStencilMask(mask);
+  }
+
+  @Override
+  public void glStencilOp(int fail, int zfail, int zpass) {
+    mCallsIssued++;
+    mGl.glStencilOp(fail, zfail, zpass);
+  }
+
+  @Override
+  public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+    mCallsIssued++;
+    mGl.glTexCoordPointer(size, type, stride, pointer);
+  }
+
+  @Override
+  public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+    mCallsIssued++;
+    mGl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+  }
+
+  @Override
+  public void glTexParameterf(int target, int pname, float param) {
+    mCallsIssued++;
+    mGl.glTexParameterf(target, pname, param);
+  }
+
+  @Override
+  public void glTexParameterx(int target, int pname, int param) {
+    mCallsIssued++;
+    mGl.glTexParameterx(target, pname, param);
+  }
+
+  @Override
+  public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+    mCallsIssued++;
+    mGl.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, pixels);
+  }
+
+  @Override
+  public void glTranslatef(float x, float y, float z) {
+    mCallsIssued++;
+    mGl.glTranslatef(x, y, z);
+  }
+
+  @Override
+  public void glTranslatex(int x, int y, int z) {
+    mCallsIssued++;
+    mGl.glTranslatex(x, y, z);
+  }
+
+  @Override
+  public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+    mCallsIssued++;
+    mGl.glVertexPointer(size, type, stride, pointer);
+  }
+
+  @Override
+  public void glViewport(int x, int y, int width, int height) {
+    mCallsIssued++;
+    mGl.glViewport(x, y, width, height);
+  }
+
+  @Override
+  public void glGetPointerv(int pname, Buffer[] params) {
+    mCallsIssued++;
+    mGl11.glGetPointerv(pname, params);
+  }
+
+  @Override
+  public void glBufferData(int target, int size, Buffer data, int usage) {
+    mCallsIssued++;
+    mGl11.glBufferData(target, size, data, usage);
+  }
+
+  @Override
+  public void glBufferSubData(int target, int offset, int size, Buffer data) {
+    mCallsIssued++;
+    mGl11.glBufferSubData(target, offset, size, data);
+  }
+
+  @Override
+  public void glClipPlanef(int plane, float[] equation, int offset) {
+    mCallsIssued++;
+    mGl11.glClipPlanef(plane, equation, offset);
+  }
+
+  @Override
+  public void glClipPlanef(int plane, FloatBuffer equation) {
+    mCallsIssued++;
+    mGl11.glClipPlanef(plane, equation);
+  }
+
+  @Override
+  public void glClipPlanex(int plane, int[] equation, int offset) {
+    mCallsIssued++;
+    mGl11.glClipPlanex(plane, equation, offset);
+  }
+
+  @Override
+  public void glClipPlanex(int plane, IntBuffer equation) {
+    mCallsIssued++;
+    mGl11.glClipPlanex(plane, equation);
+  }
+
+  @Override
+  public void glColor4ub(byte red, byte green, byte blue, byte alpha) {
+    mCallsIssued++;
+    mGl11.glColor4ub(red, green, blue, alpha);
+  }
+
+  @Override
+  public void glColorPointer(int size, int type, int stride, int offset) {
+    mCallsIssued++;
+    mGl11.glColorPointer(size, type, stride, offset);
+  }
+
+  @Override
+  public void glDrawElements(int mode, int count, int type, int offset) {
+    mCallsIssued++;
+    mGl11.glDrawElements(mode, count, type, offset);
+  }
+
+  @Override
+  public void glGenBuffers(int n, int[] buffers, int offset) {
+    mCallsIssued++;
+    mGl11.glGenBuffers(n, buffers, offset);
+  }
+
+  @Override
+  public void glGenBuffers(int n, IntBuffer buffers) {
+    mCallsIssued++;
+    mGl11.glGenBuffers(n, buffers);
+  }
+
+  @Override
+  public void glGetBooleanv(int pname, boolean[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetBooleanv(pname, params, offset);
+  }
+
+  @Override
+  public void glGetBooleanv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetBooleanv(pname, params);
+  }
+
+  @Override
+  public void glGetBufferParameteriv(int target, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetBufferParameteriv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetBufferParameteriv(target, pname, params);
+  }
+
+  @Override
+  public void glGetClipPlanef(int pname, float[] eqn, int offset) {
+    mCallsIssued++;
+    mGl11.glGetClipPlanef(pname, eqn, offset);
+  }
+
+  @Override
+  public void glGetClipPlanef(int pname, FloatBuffer eqn) {
+    mCallsIssued++;
+    mGl11.glGetClipPlanef(pname, eqn);
+  }
+
+  @Override
+  public void glGetClipPlanex(int pname, int[] eqn, int offset) {
+    mCallsIssued++;
+    mGl11.glGetClipPlanex(pname, eqn, offset);
+  }
+
+  @Override
+  public void glGetClipPlanex(int pname, IntBuffer eqn) {
+    mCallsIssued++;
+    mGl11.glGetClipPlanex(pname, eqn);
+  }
+
+  @Override
+  public void glGetFixedv(int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetFixedv(pname, params, offset);
+  }
+
+  @Override
+  public void glGetFixedv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetFixedv(pname, params);
+  }
+
+  @Override
+  public void glGetFloatv(int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetFloatv(pname, params, offset);
+  }
+
+  @Override
+  public void glGetFloatv(int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetFloatv(pname, params);
+  }
+
+  @Override
+  public void glGetLightfv(int light, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetLightfv(light, pname, params, offset);
+  }
+
+  @Override
+  public void glGetLightfv(int light, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetLightfv(light, pname, params);
+  }
+
+  @Override
+  public void glGetLightxv(int light, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetLightxv(light, pname, params, offset);
+  }
+
+  @Override
+  public void glGetLightxv(int light, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetLightxv(light, pname, params);
+  }
+
+  @Override
+  public void glGetMaterialfv(int face, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetMaterialfv(face, pname, params, offset);
+  }
+
+  @Override
+  public void glGetMaterialfv(int face, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetMaterialfv(face, pname, params);
+  }
+
+  @Override
+  public void glGetMaterialxv(int face, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetMaterialxv(face, pname, params, offset);
+  }
+
+  @Override
+  public void glGetMaterialxv(int face, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetMaterialxv(face, pname, params);
+  }
+
+  @Override
+  public void glGetTexEnviv(int env, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetTexEnviv(env, pname, params, offset);
+  }
+
+  @Override
+  public void glGetTexEnviv(int env, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetTexEnviv(env, pname, params);
+  }
+
+  @Override
+  public void glGetTexEnvxv(int env, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetTexEnvxv(env, pname, params, offset);
+  }
+
+  @Override
+  public void glGetTexEnvxv(int env, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetTexEnvxv(env, pname, params);
+  }
+
+  @Override
+  public void glGetTexParameterfv(int target, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetTexParameterfv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetTexParameterfv(target, pname, params);
+  }
+
+  @Override
+  public void glGetTexParameteriv(int target, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetTexParameteriv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetTexParameteriv(target, pname, params);
+  }
+
+  @Override
+  public void glGetTexParameterxv(int target, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glGetTexParameterxv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glGetTexParameterxv(int target, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glGetTexParameterxv(target, pname, params);
+  }
+
+  @Override
+  public boolean glIsBuffer(int buffer) {
+    mCallsIssued++;
+    return mGl11.glIsBuffer(buffer);
+  }
+
+  @Override
+  public boolean glIsEnabled(int cap) {
+    mCallsIssued++;
+    return mGl11.glIsEnabled(cap);
+  }
+
+  @Override
+  public boolean glIsTexture(int texture) {
+    mCallsIssued++;
+    return mGl11.glIsTexture(texture);
+  }
+
+  @Override
+  public void glNormalPointer(int type, int stride, int offset) {
+    mCallsIssued++;
+    mGl11.glNormalPointer(type, stride, offset);
+  }
+
+  @Override
+  public void glPointParameterf(int pname, float param) {
+    mCallsIssued++;
+    mGl11.glPointParameterf(pname, param);
+  }
+
+  @Override
+  public void glPointParameterfv(int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glPointParameterfv(pname, params, offset);
+  }
+
+  @Override
+  public void glPointParameterfv(int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glPointParameterfv(pname, params);
+  }
+
+  @Override
+  public void glPointParameterx(int pname, int param) {
+    mCallsIssued++;
+    mGl11.glPointParameterx(pname, param);
+  }
+
+  @Override
+  public void glPointParameterxv(int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glPointParameterxv(pname, params, offset);
+  }
+
+  @Override
+  public void glPointParameterxv(int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glPointParameterxv(pname, params);
+  }
+
+  @Override
+  public void glPointSizePointerOES(int type, int stride, Buffer pointer) {
+    mCallsIssued++;
+    mGl11.glPointSizePointerOES(type, stride, pointer);
+  }
+
+  @Override
+  public void glTexCoordPointer(int size, int type, int stride, int offset) {
+    mCallsIssued++;
+    mGl11.glTexCoordPointer(size, type, stride, offset);
+  }
+
+  @Override
+  public void glTexParameterfv(int target, int pname, float[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glTexParameterfv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+    mCallsIssued++;
+    mGl11.glTexParameterfv(target, pname, params);
+  }
+
+  @Override
+  public void glTexParameteri(int target, int pname, int param) {
+    mCallsIssued++;
+    mGl11.glTexParameteri(target, pname, param);
+  }
+
+  @Override
+  public void glTexParameteriv(int target, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glTexParameteriv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexParameteriv(int target, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glTexParameteriv(target, pname, params);
+  }
+
+  @Override
+  public void glTexParameterxv(int target, int pname, int[] params, int offset) {
+    mCallsIssued++;
+    mGl11.glTexParameterxv(target, pname, params, offset);
+  }
+
+  @Override
+  public void glTexParameterxv(int target, int pname, IntBuffer params) {
+    mCallsIssued++;
+    mGl11.glTexParameterxv(target, pname, params);
+  }
+
+  @Override
+  public void glVertexPointer(int size, int type, int stride, int offset) {
+    mCallsIssued++;
+    mGl11.glVertexPointer(size, type, stride, offset);
+  }
+}
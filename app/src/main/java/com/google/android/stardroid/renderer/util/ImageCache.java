@@ -0,0 +1,119 @@
+package com.google.android.stardroid.renderer.util;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes image resources on a background thread and keeps the results in an
+ * LRU cache bounded by the bitmaps' total size.  Evicted bitmaps are simply
+ * decoded again if needed; once uploaded, the GL textures don't depend on them.
+ *
+ * <p>Thread safe.
+ */
+public class ImageCache {
+  private static final String TAG = "ImageCache";
+
+  private final Resources mRes;
+  private final LruCache<Integer, Bitmap> mBitmaps;
+  private final Set<Integer> mDecoding = new HashSet<>();
+  private final ExecutorService mDecoder = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "ImageDecoder");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private volatile Runnable mOnDecoded = null;
+
+  public ImageCache(Resources res, int maxBytes) {
+    mRes = res;
+    mBitmaps = new LruCache<Integer, Bitmap>(maxBytes) {
+      @Override
+      protected int sizeOf(Integer key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * Sets something to run, on the decoding thread, whenever an image
+   * finishes decoding.  Used to get the renderer to retry.
+   */
+  public void setOnDecodedListener(Runnable listener) {
+    mOnDecoded = listener;
+  }
+
+  /** Starts decoding the image in the background if it isn't already cached. */
+  public void prefetch(final int resourceId) {
+    synchronized (this) {
+      if (mBitmaps.get(resourceId) != null || !mDecoding.add(resourceId)) {
+        return;
+      }
+    }
+    mDecoder.execute(() -> {
+      Bitmap bitmap = decode(resourceId);
+      synchronized (ImageCache.this) {
+        mDecoding.remove(resourceId);
+        if (bitmap != null) {
+          mBitmaps.put(resourceId, bitmap);
+        }
+      }
+      Runnable listener = mOnDecoded;
+      if (bitmap != null && listener != null) {
+        listener.run();
+      }
+    });
+  }
+
+  /**
+   * Returns the image if it has been decoded, or else starts decoding it and
+   * returns null.
+   */
+  public Bitmap getIfDecoded(int resourceId) {
+    Bitmap bitmap;
+    synchronized (this) {
+      bitmap = mBitmaps.get(resourceId);
+    }
+    if (bitmap == null) {
+      prefetch(resourceId);
+    }
+    return bitmap;
+  }
+
+  /** Returns the image, decoding it on this thread if necessary. */
+  public Bitmap get(int resourceId) {
+    Bitmap bitmap;
+    synchronized (this) {
+      bitmap = mBitmaps.get(resourceId);
+    }
+    if (bitmap == null) {
+      bitmap = decode(resourceId);
+      if (bitmap != null) {
+        synchronized (this) {
+          mBitmaps.put(resourceId, bitmap);
+        }
+      }
+    }
+    return bitmap;
+  }
+
+  public synchronized void clear() {
+    mBitmaps.evictAll();
+  }
+
+  private Bitmap decode(int resourceId) {
+    BitmapFactory.Options opts = new BitmapFactory.Options();
+    opts.inScaled = false;
+    Bitmap bitmap = BitmapFactory.decodeResource(mRes, resourceId, opts);
+    if (bitmap == null) {
+      Log.e(TAG, "Could not decode image " + resourceId);
+    }
+    return bitmap;
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
@@ -58,6 +60,12 @@ public class IndexBuffer {
     if (mNumIndices == 0) {
       return;
     }
+    // Client side buffers aren't kept by GL between draws, so can be reused.
+    if (!mUseVbo && mIndexBuffer != null && !mIndexBuffer.isReadOnly()
+        && mIndexBuffer.capacity() >= mNumIndices) {
+      mIndexBuffer.clear();
+      return;
+    }
 
     ByteBuffer bb = ByteBuffer.allocateDirect(2 * mNumIndices);
     bb.order(ByteOrder.nativeOrder());
@@ -66,22 +74,65 @@ public class IndexBuffer {
     mIndexBuffer = ib;
   }
 
+  // Writes the indices to a cache.
+  public void write(BufferCache.Writer out) {
+    out.writeInt(mNumIndices);
+    if (mNumIndices > 0) {
+      out.writeShortBuffer(mIndexBuffer, mNumIndices);
+    }
+  }
+
+  // Replaces the indices with those written to a cache, using its memory rather than a copy.
+  public void read(BufferCache.Reader in) {
+    mNumIndices = in.readInt();
+    if (mNumIndices > 0) {
+      mIndexBuffer = in.readShortBuffer(mNumIndices);
+    }
+  }
+
   public void addIndex(short index) {
     mIndexBuffer.put(index);
   }
 
   public void draw(GL10 gl, int primitiveType) {
-    if (mNumIndices == 0) {
+    draw(gl, primitiveType, mNumIndices);
+  }
+
+  // Draws only the first numIndices indices.
+  public void draw(GL10 gl, int primitiveType, int numIndices) {
+    numIndices = Math.min(numIndices, mNumIndices);
+    if (numIndices <= 0) {
       return;
     }
     mIndexBuffer.position(0);
     if (mUseVbo && GLBuffer.canUseVBO()) {
       GL11 gl11 = (GL11)gl;
       mGLBuffer.bind(gl11, mIndexBuffer, 2 * mIndexBuffer.capacity());
-      gl11.glDrawElements(primitiveType, size(), GL10.GL_UNSIGNED_SHORT, 0);
+      gl11.glDrawElements(primitiveType, numIndices, GL10.GL_UNSIGNED_SHORT, 0);
       GLBuffer.unbind(gl11);
     } else {
-      gl.glDrawElements(primitiveType, size(), GL10.GL_UNSIGNED_SHORT, mIndexBuffer);
+      gl.glDrawElements(primitiveType, numIndices, GL10.GL_UNSIGNED_SHORT, mIndexBuffer);
+    }
+  }
+
+  // Draws with the current GLES 2.0 program.
+  public void draw(int primitiveType) {
+    draw(primitiveType, mNumIndices);
+  }
+
+  public void draw(int primitiveType, int numIndices) {
+    numIndices = Math.min(numIndices, mNumIndices);
+    if (numIndices <= 0) {
+      return;
+    }
+    mIndexBuffer.position(0);
+    if (mUseVbo) {
+      mGLBuffer.bind(mIndexBuffer, 2 * mIndexBuffer.capacity());
+      GLES20Calls.glDrawElements(primitiveType, numIndices, GLES20.GL_UNSIGNED_SHORT, 0);
+      GLBuffer.unbind();
+    } else {
+      GLES20Calls.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+      GLES20Calls.glDrawElements(primitiveType, numIndices, GLES20.GL_UNSIGNED_SHORT, mIndexBuffer);
     }
   }
 
@@ -0,0 +1,118 @@
+package com.google.android.stardroid.renderer.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * A compressed texture, with its mipmaps, read from a KTX file such as the
+ * tools module's KtxTextureWriter produces.
+ */
+public class KtxTexture {
+  private static final byte[] KTX_IDENTIFIER = {
+      (byte) 0xAB, 0x4B, 0x54, 0x58, 0x20, 0x31, 0x31, (byte) 0xBB, 0x0D, 0x0A, 0x1A, 0x0A
+  };
+  private static final int ENDIANNESS = 0x04030201;
+
+  private final int mInternalFormat;
+  private final int mWidth;
+  private final int mHeight;
+  private final ByteBuffer[] mLevels;
+
+  private KtxTexture(int internalFormat, int width, int height, ByteBuffer[] levels) {
+    mInternalFormat = internalFormat;
+    mWidth = width;
+    mHeight = height;
+    mLevels = levels;
+  }
+
+  /**
+   * Reads a compressed 2D texture.  Throws an IOException if the file is
+   * malformed or isn't one.
+   */
+  public static KtxTexture read(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream);
+    byte[] identifier = new byte[KTX_IDENTIFIER.length];
+    in.readFully(identifier);
+    if (!Arrays.equals(identifier, KTX_IDENTIFIER)) {
+      throw new IOException("Not a KTX file");
+    }
+    byte[] headerBytes = new byte[13 * 4];
+    in.readFully(headerBytes);
+    ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+    if (header.getInt(0) != ENDIANNESS) {
+      header.order(ByteOrder.BIG_ENDIAN);
+    }
+    header.position(4);
+    int glType = header.getInt();
+    header.getInt();  // glTypeSize
+    header.getInt();  // glFormat
+    int internalFormat = header.getInt();
+    header.getInt();  // glBaseInternalFormat
+    int width = header.getInt();
+    int height = header.getInt();
+    int depth = header.getInt();
+    int arrayElements = header.getInt();
+    int faces = header.getInt();
+    int numLevels = Math.max(1, header.getInt());
+    int keyValueBytes = header.getInt();
+    if (glType != 0 || depth != 0 || arrayElements != 0 || faces != 1) {
+      throw new IOException("Not a compressed 2D texture");
+    }
+    in.skipBytes(keyValueBytes);
+
+    ByteBuffer[] levels = new ByteBuffer[numLevels];
+    byte[] sizeBytes = new byte[4];
+    for (int i = 0; i < numLevels; i++) {
+      in.readFully(sizeBytes);
+      int size = ByteBuffer.wrap(sizeBytes).order(header.order()).getInt();
+      byte[] data = new byte[size];
+      in.readFully(data);
+      // Each level is padded to a multiple of four bytes.
+      in.skipBytes(3 - (size + 3) % 4);
+      levels[i] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+      levels[i].put(data);
+      levels[i].position(0);
+    }
+    return new KtxTexture(internalFormat, width, height, levels);
+  }
+
+  public int getInternalFormat() {
+    return mInternalFormat;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getNumLevels() {
+    return mLevels.length;
+  }
+
+  /** The total size of the compressed data, which is what it takes on the GPU. */
+  public int getDataSize() {
+    int size = 0;
+    for (ByteBuffer level : mLevels) {
+      size += level.capacity();
+    }
+    return size;
+  }
+
+  /** Uploads all the levels to the currently bound texture. */
+  public void upload(GL10 gl) {
+    for (int i = 0; i < mLevels.length; i++) {
+      gl.glCompressedTexImage2D(GL10.GL_TEXTURE_2D, i, mInternalFormat,
+          Math.max(1, mWidth >> i), Math.max(1, mHeight >> i), 0,
+          mLevels[i].capacity(), mLevels[i]);
+    }
+  }
+}
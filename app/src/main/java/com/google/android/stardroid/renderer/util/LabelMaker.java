@@ -19,8 +19,8 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.opengl.GLUtils;
+import android.util.DisplayMetrics;
 
-import com.google.android.stardroid.util.FixedPoint;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -59,20 +59,20 @@ public class LabelMaker {
       
       int[] texCoords = new int[8];
       // lower left
-      texCoords[0] = FixedPoint.floatToFixedPoint(cropU * texelWidth);
-      texCoords[1] = FixedPoint.floatToFixedPoint(cropV * texelHeight);
+      texCoords[0] = GLBuffer.encodeCoordinate(cropU * texelWidth);
+      texCoords[1] = GLBuffer.encodeCoordinate(cropV * texelHeight);
 
       // upper left
-      texCoords[2] = FixedPoint.floatToFixedPoint(cropU * texelWidth);
-      texCoords[3] = FixedPoint.floatToFixedPoint((cropV + cropH) * texelHeight);
+      texCoords[2] = GLBuffer.encodeCoordinate(cropU * texelWidth);
+      texCoords[3] = GLBuffer.encodeCoordinate((cropV + cropH) * texelHeight);
       
       // lower right
-      texCoords[4] = FixedPoint.floatToFixedPoint((cropU + cropW) * texelWidth);
-      texCoords[5] = FixedPoint.floatToFixedPoint(cropV * texelHeight);
+      texCoords[4] = GLBuffer.encodeCoordinate((cropU + cropW) * texelWidth);
+      texCoords[5] = GLBuffer.encodeCoordinate(cropV * texelHeight);
       
       // upper right
-      texCoords[6] = FixedPoint.floatToFixedPoint((cropU + cropW) * texelWidth);
-      texCoords[7] = FixedPoint.floatToFixedPoint((cropV + cropH) * texelHeight);
+      texCoords[6] = GLBuffer.encodeCoordinate((cropU + cropW) * texelWidth);
+      texCoords[7] = GLBuffer.encodeCoordinate((cropV + cropH) * texelHeight);
       
       mTexCoords = ByteBuffer.allocateDirect(8*4).order(ByteOrder.nativeOrder()).asIntBuffer();
       mTexCoords.put(texCoords);
@@ -140,20 +140,7 @@ public class LabelMaker {
   public TextureReference initialize(GL10 gl, Paint textPaint, LabelData[] labels,
                                      Resources res, TextureManager textureManager) {
     mRes = res;
-    mTexture = textureManager.createTexture(gl);
-    mTexture.bind(gl);
-
-    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, 
-                       GL10.GL_NEAREST);
-    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, 
-                       GL10.GL_NEAREST);
-
-    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, 
-                       GL10.GL_CLAMP_TO_EDGE);
-    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, 
-                       GL10.GL_CLAMP_TO_EDGE);
-
-    gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_REPLACE);
+    createTexture(gl, textureManager);
     
     int minHeight = addLabelsInternal(gl, textPaint, false, labels);
     
@@ -174,6 +161,74 @@ public class LabelMaker {
     return mTexture;
   }
 
+  /**
+   * Call instead of initialize when the surface has been created again, to
+   * upload the labels already drawn rather than drawing them again.
+   */
+  public TextureReference reupload(GL10 gl, TextureManager textureManager) {
+    createTexture(gl, textureManager);
+    GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, mBitmap, 0);
+    return mTexture;
+  }
+
+  /**
+   * Writes the labels drawn by initialize, and where each of them is in the
+   * texture, to a cache.
+   */
+  public void write(LabelData[] labels, BufferCache.Writer out) {
+    out.writeInt(mStrikeWidth);
+    out.writeInt(mStrikeHeight);
+    for (LabelData label : labels) {
+      int[] crop = label.getCrop();
+      out.writeInt(label.getWidthInPixels());
+      out.writeInt(label.getHeightInPixels());
+      for (int i = 0; i < 4; i++) {
+        out.writeInt(crop[i]);
+      }
+    }
+    out.writeBitmap(mBitmap);
+  }
+
+  /**
+   * Reads labels written by write, setting where each is in the texture.
+   * The label maker returned needs only reupload to make the texture.
+   */
+  public static LabelMaker read(LabelData[] labels, BufferCache.Reader in) {
+    LabelMaker maker = new LabelMaker(true);
+    maker.mStrikeWidth = in.readInt();
+    maker.mStrikeHeight = in.readInt();
+    maker.mTexelWidth = (float) (1.0 / maker.mStrikeWidth);
+    maker.mTexelHeight = (float) (1.0 / maker.mStrikeHeight);
+    for (LabelData label : labels) {
+      int width = in.readInt();
+      int height = in.readInt();
+      label.setTextureData(width, height, in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                           maker.mTexelWidth, maker.mTexelHeight);
+    }
+    maker.mBitmap = in.readBitmap();
+    return maker;
+  }
+
+  private void createTexture(GL10 gl, TextureManager textureManager) {
+    mTexture = textureManager.createTexture(gl);
+    mTexture.bind(gl);
+
+    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, 
+                       GL10.GL_NEAREST);
+    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, 
+                       GL10.GL_NEAREST);
+
+    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, 
+                       GL10.GL_CLAMP_TO_EDGE);
+    gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, 
+                       GL10.GL_CLAMP_TO_EDGE);
+
+    // There's no texture environment with OpenGL ES 2.0.
+    if (!GLBuffer.useGles20()) {
+      gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_REPLACE);
+    }
+  }
+
   /**
    * Call when the surface has been destroyed
    */
@@ -181,6 +236,10 @@ public class LabelMaker {
     if (mTexture != null) {
       mTexture.delete(gl);
     }
+    if (mBitmap != null) {
+      mBitmap.recycle();
+      mBitmap = null;
+    }
   }
 
   /**
@@ -208,6 +267,10 @@ public class LabelMaker {
       // fit on the screen.  We should really split this up among multiple lines,
       // but just making the text smaller is much easier.
       
+      // The narrower side, so that labels fit whichever way the phone is held, and don't
+      // change when it's turned.
+      DisplayMetrics metrics = mRes.getDisplayMetrics();
+      int maxWidth = Math.min(metrics.widthPixels, metrics.heightPixels);
       int fontSize = label.getFontSize();
       do { 
         textPaint.setColor(0xff000000 | label.getColor());
@@ -224,7 +287,7 @@ public class LabelMaker {
         // If it's wider than the screen, try it again with a font size of 1
         // smaller.
         fontSize--;
-      } while (fontSize > 0 && width > mRes.getDisplayMetrics().widthPixels);
+      } while (fontSize > 0 && width > maxWidth);
   
       int nextU;
       
@@ -269,9 +332,7 @@ public class LabelMaker {
   private void endAdding(GL10 gl) {
     mTexture.bind(gl);
     GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, mBitmap, 0);
-    // Reclaim storage used by bitmap and canvas.
-    mBitmap.recycle();
-    mBitmap = null;
+    // The bitmap is kept in case the surface is lost and it must be uploaded again.
     mCanvas = null;
   }
 }
\ No newline at end of file
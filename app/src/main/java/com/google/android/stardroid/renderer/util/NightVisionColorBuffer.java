@@ -38,7 +38,8 @@ public class NightVisionColorBuffer {
   
   public void reset(int numVertices) {
     mNormalBuffer.reset(numVertices);
-    mRedBuffer.reset(numVertices);
+    // The GLES 2.0 shaders make their own red colors.
+    mRedBuffer.reset(GLBuffer.useGles20() ? 0 : numVertices);
   }
   
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
@@ -49,6 +50,9 @@ public class NightVisionColorBuffer {
   
   public void addColor(int a, int r, int g, int b) {
     mNormalBuffer.addColor(a, r, g, b);
+    if (GLBuffer.useGles20()) {
+      return;
+    }
     // I tried luminance here first, but many objects we care a lot about weren't very noticable because they were
     // bluish.  An average gets a better result.
     int avg = (r + g + b) / 3;
@@ -63,6 +67,18 @@ public class NightVisionColorBuffer {
     addColor(a, r, g, b);
   }
   
+  // Writes both sets of colors to a cache.
+  public void write(BufferCache.Writer out) {
+    mNormalBuffer.write(out);
+    mRedBuffer.write(out);
+  }
+
+  // Replaces both sets of colors with those written to a cache.
+  public void read(BufferCache.Reader in) {
+    mNormalBuffer.read(in);
+    mRedBuffer.read(in);
+  }
+
   public void set(GL10 gl, boolean nightVisionMode) {
     if (nightVisionMode) {
       mRedBuffer.set(gl);
@@ -71,6 +87,12 @@ public class NightVisionColorBuffer {
     }
   }
 
+  // Sets the colors as the given attribute of the current GLES 2.0 program,
+  // which applies night vision itself.
+  public void setAttribute(int location) {
+    mNormalBuffer.setAttribute(location);
+  }
+
   private ColorBuffer mNormalBuffer;
   private ColorBuffer mRedBuffer;
 }
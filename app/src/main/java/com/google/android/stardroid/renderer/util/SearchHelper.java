@@ -27,20 +27,23 @@ public class SearchHelper {
   public void setTarget(Vector3 target, String targetName) {
     mTargetName = targetName;
     mTarget = target.copyForJ();
-    mTransformedPosition = null;
+    mTransformed = false;
     mLastUpdateTime = System.currentTimeMillis();
     mTransitionFactor = targetInFocusRadiusImpl() ? 1 : 0;
   }
   
   public void setTransform(Matrix4x4 transformMatrix) {
     mTransformMatrix = transformMatrix;
-    mTransformedPosition = null;
+    mProjector.setTransform(transformMatrix);
+    mTransformed = false;
   }
   
   public Vector3 getTransformedPosition() {
-    if (mTransformedPosition == null && mTransformMatrix != null) {
+    if (!mTransformed && mTransformMatrix != null) {
       // Transform the label position by our transform matrix
-      mTransformedPosition = Matrix4x4.transformVector(mTransformMatrix, mTarget);
+      mProjector.projectPoint(mTarget.x, mTarget.y, mTarget.z, mProjected);
+      mTransformedPosition.assign(mProjected[0], mProjected[1], mProjected[2]);
+      mTransformed = true;
     }
     return mTransformedPosition;
   }
@@ -96,6 +99,9 @@ public class SearchHelper {
   
   private Vector3 mTarget = new Vector3(0, 0, 0);
   private Vector3 mTransformedPosition = new Vector3(0, 0, 0);
+  private boolean mTransformed = false;
+  private final BatchProjector mProjector = new BatchProjector();
+  private final float[] mProjected = new float[3];
   private float mHalfScreenWidth = 1;
   private float mHalfScreenHeight = 1;
   private Matrix4x4 mTransformMatrix = null;
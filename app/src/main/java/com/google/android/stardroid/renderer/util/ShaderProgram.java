@@ -0,0 +1,94 @@
+package com.google.android.stardroid.renderer.util;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A linked OpenGL ES 2.0 program, with the locations of its uniforms.  Like
+ * textures, programs are lost with the surface, so must be created again when
+ * it's recreated.
+ */
+public class ShaderProgram {
+  private static final String TAG = "ShaderProgram";
+
+  private final int mProgram;
+  private final Map<String, Integer> mUniforms = new HashMap<>();
+
+  private ShaderProgram(int program) {
+    mProgram = program;
+    int[] count = new int[1];
+    GLES20Calls.glGetProgramiv(program, GLES20.GL_ACTIVE_UNIFORMS, count, 0);
+    int[] size = new int[1];
+    int[] type = new int[1];
+    for (int i = 0; i < count[0]; i++) {
+      String name = GLES20Calls.glGetActiveUniform(program, i, size, 0, type, 0);
+      mUniforms.put(name, GLES20Calls.glGetUniformLocation(program, name));
+    }
+  }
+
+  /**
+   * Compiles and links a program, binding each of the attributes to its index
+   * in the array.  Returns null, having logged why, if it fails.
+   */
+  public static ShaderProgram create(String vertexSource, String fragmentSource,
+                                     String... attributes) {
+    int vertexShader = compile(GLES20.GL_VERTEX_SHADER, vertexSource);
+    int fragmentShader = compile(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+    if (vertexShader == 0 || fragmentShader == 0) {
+      GLES20Calls.glDeleteShader(vertexShader);
+      GLES20Calls.glDeleteShader(fragmentShader);
+      return null;
+    }
+
+    int program = GLES20Calls.glCreateProgram();
+    GLES20Calls.glAttachShader(program, vertexShader);
+    GLES20Calls.glAttachShader(program, fragmentShader);
+    for (int i = 0; i < attributes.length; i++) {
+      GLES20Calls.glBindAttribLocation(program, i, attributes[i]);
+    }
+    GLES20Calls.glLinkProgram(program);
+    // The program keeps them for as long as it needs them.
+    GLES20Calls.glDeleteShader(vertexShader);
+    GLES20Calls.glDeleteShader(fragmentShader);
+
+    int[] linked = new int[1];
+    GLES20Calls.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linked, 0);
+    if (linked[0] == 0) {
+      Log.e(TAG, "Couldn't link program: " + GLES20Calls.glGetProgramInfoLog(program));
+      GLES20Calls.glDeleteProgram(program);
+      return null;
+    }
+    return new ShaderProgram(program);
+  }
+
+  private static int compile(int type, String source) {
+    int shader = GLES20Calls.glCreateShader(type);
+    GLES20Calls.glShaderSource(shader, source);
+    GLES20Calls.glCompileShader(shader);
+    int[] compiled = new int[1];
+    GLES20Calls.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+    if (compiled[0] == 0) {
+      Log.e(TAG, "Couldn't compile shader: " + GLES20Calls.glGetShaderInfoLog(shader));
+      GLES20Calls.glDeleteShader(shader);
+      return 0;
+    }
+    return shader;
+  }
+
+  public void use() {
+    GLES20Calls.glUseProgram(mProgram);
+  }
+
+  /** The location of the named uniform, or -1, which GL ignores, if the program hasn't got it. */
+  public int getUniform(String name) {
+    Integer location = mUniforms.get(name);
+    return location == null ? -1 : location;
+  }
+
+  public void delete() {
+    GLES20Calls.glDeleteProgram(mProgram);
+  }
+}
@@ -0,0 +1,230 @@
+package com.google.android.stardroid.renderer.util;
+
+/**
+ * The shaders the OpenGL ES 2.0 backend draws with, standing in for the fixed
+ * function pipeline.  There are three programs: points drawn as sprites,
+ * triangles colored per vertex (lines and the sky gradient) and textured
+ * triangles in a single color (images, labels and the overlays).
+ *
+ * <p>Night vision is a uniform, so the buffers and textures only need the
+ * normal colors.  Every program takes its vertices from the same attribute
+ * locations, so buffers can be set without asking the program for them.
+ */
+public final class ShaderPrograms {
+  public static final int POSITION = 0;
+  public static final int COLOR = 1;
+  public static final int TEX_COORD = 2;
+  // Points take their size in pixels, and which of the texture's shapes they
+  // are, in place of texture coordinates.
+  public static final int SIZE_AND_SHAPE = 2;
+  private static final int NUM_ATTRIBUTES = 3;
+
+  private static final String NIGHT_VISION =
+      "uniform bool u_nightVision;\n"
+      // As NightVisionColorBuffer: red, as bright as the mean of the channels.
+      + "vec4 nightVision(vec4 color) {\n"
+      + "  if (u_nightVision) {\n"
+      + "    return vec4((color.r + color.g + color.b) / 3.0, 0.0, 0.0, color.a);\n"
+      + "  }\n"
+      + "  return color;\n"
+      + "}\n";
+
+  private static final String POINTS_VERTEX =
+      "uniform mat4 u_transform;\n"
+      + "uniform float u_pointScale;\n"
+      + "attribute vec4 a_position;\n"
+      + "attribute vec4 a_color;\n"
+      + "attribute vec2 a_sizeAndShape;\n"
+      + "varying vec4 v_color;\n"
+      + "varying float v_shape;\n"
+      + "void main() {\n"
+      + "  gl_Position = u_transform * a_position;\n"
+      + "  gl_PointSize = a_sizeAndShape.x * u_pointScale;\n"
+      + "  v_color = a_color;\n"
+      + "  v_shape = a_sizeAndShape.y;\n"
+      + "}\n";
+
+  private static final String POINTS_FRAGMENT =
+      "precision mediump float;\n"
+      + "uniform sampler2D u_texture;\n"
+      + "uniform float u_numShapes;\n"
+      + "varying vec4 v_color;\n"
+      + "varying float v_shape;\n"
+      + NIGHT_VISION
+      + "void main() {\n"
+      + "  vec2 texCoord = vec2((v_shape + gl_PointCoord.x) / u_numShapes, gl_PointCoord.y);\n"
+      + "  vec4 color = v_color * texture2D(u_texture, texCoord);\n"
+      + "  if (color.a <= 0.5) {\n"
+      + "    discard;\n"
+      + "  }\n"
+      + "  gl_FragColor = nightVision(color);\n"
+      + "}\n";
+
+  private static final String COLORED_VERTEX =
+      "uniform mat4 u_transform;\n"
+      + "attribute vec4 a_position;\n"
+      + "attribute vec4 a_color;\n"
+      + "attribute vec2 a_texCoord;\n"
+      + "varying vec4 v_color;\n"
+      + "varying vec2 v_texCoord;\n"
+      + "void main() {\n"
+      + "  gl_Position = u_transform * a_position;\n"
+      + "  v_color = a_color;\n"
+      + "  v_texCoord = a_texCoord;\n"
+      + "}\n";
+
+  private static final String COLORED_FRAGMENT =
+      "precision mediump float;\n"
+      + "uniform sampler2D u_texture;\n"
+      + "uniform bool u_textured;\n"
+      + "varying vec4 v_color;\n"
+      + "varying vec2 v_texCoord;\n"
+      + NIGHT_VISION
+      + "void main() {\n"
+      + "  vec4 color = v_color;\n"
+      + "  if (u_textured) {\n"
+      + "    color *= texture2D(u_texture, v_texCoord);\n"
+      + "  }\n"
+      + "  gl_FragColor = nightVision(color);\n"
+      + "}\n";
+
+  private static final String TEXTURED_VERTEX =
+      "uniform mat4 u_transform;\n"
+      + "attribute vec4 a_position;\n"
+      + "attribute vec2 a_texCoord;\n"
+      + "varying vec2 v_texCoord;\n"
+      + "void main() {\n"
+      + "  gl_Position = u_transform * a_position;\n"
+      + "  v_texCoord = a_texCoord;\n"
+      + "}\n";
+
+  // The texture modulates the color, as GL_MODULATE, unless blending, when it
+  // picks between the color and the blend color, as GL_BLEND.  Textures with
+  // only alpha leave the color's red, green and blue alone.
+  private static final String TEXTURED_FRAGMENT =
+      "precision mediump float;\n"
+      + "uniform sampler2D u_texture;\n"
+      + "uniform vec4 u_color;\n"
+      + "uniform bool u_alphaOnly;\n"
+      + "uniform bool u_blend;\n"
+      + "uniform vec3 u_blendColor;\n"
+      + "uniform float u_alphaThreshold;\n"
+      + "varying vec2 v_texCoord;\n"
+      + NIGHT_VISION
+      + "void main() {\n"
+      + "  vec4 texel = texture2D(u_texture, v_texCoord);\n"
+      + "  if (u_alphaOnly) {\n"
+      + "    texel.rgb = vec3(1.0);\n"
+      + "  }\n"
+      + "  vec3 rgb = u_blend ? mix(u_color.rgb, u_blendColor, texel.rgb) : u_color.rgb * texel.rgb;\n"
+      + "  vec4 color = vec4(rgb, u_color.a * texel.a);\n"
+      + "  if (color.a <= u_alphaThreshold) {\n"
+      + "    discard;\n"
+      + "  }\n"
+      + "  gl_FragColor = nightVision(color);\n"
+      + "}\n";
+
+  private final ShaderProgram mPoints;
+  private final ShaderProgram mColored;
+  private final ShaderProgram mTextured;
+  private ShaderProgram mCurrent = null;
+
+  private ShaderPrograms(ShaderProgram points, ShaderProgram colored, ShaderProgram textured) {
+    mPoints = points;
+    mColored = colored;
+    mTextured = textured;
+  }
+
+  /**
+   * Builds the programs, which must be done again whenever the surface is
+   * created.  Returns null if any of them fails.
+   */
+  public static ShaderPrograms create() {
+    ShaderProgram points = ShaderProgram.create(POINTS_VERTEX, POINTS_FRAGMENT,
+        "a_position", "a_color", "a_sizeAndShape");
+    ShaderProgram colored = ShaderProgram.create(COLORED_VERTEX, COLORED_FRAGMENT,
+        "a_position", "a_color", "a_texCoord");
+    ShaderProgram textured = ShaderProgram.create(TEXTURED_VERTEX, TEXTURED_FRAGMENT,
+        "a_position", "a_color", "a_texCoord");
+    if (points == null || colored == null || textured == null) {
+      for (ShaderProgram program : new ShaderProgram[] {points, colored, textured}) {
+        if (program != null) {
+          program.delete();
+        }
+      }
+      return null;
+    }
+    return new ShaderPrograms(points, colored, textured);
+  }
+
+  /**
+   * Switches to drawing points as sprites, cut from a texture with numShapes
+   * shapes side by side.  Their sizes are multiplied by pointScale to give
+   * pixels.
+   */
+  public void usePoints(float pointScale, int numShapes, boolean nightVision) {
+    use(mPoints, nightVision);
+    GLES20Calls.glUniform1f(mPoints.getUniform("u_pointScale"), pointScale);
+    GLES20Calls.glUniform1f(mPoints.getUniform("u_numShapes"), numShapes);
+  }
+
+  /**
+   * Switches to drawing triangles colored per vertex, and, if textured, by the
+   * bound texture.  Without a color array, the color set with
+   * glVertexAttrib4f is used.
+   */
+  public void useColored(boolean textured, boolean nightVision) {
+    use(mColored, nightVision);
+    GLES20Calls.glUniform1i(mColored.getUniform("u_textured"), textured ? 1 : 0);
+  }
+
+  /**
+   * Switches to drawing triangles with the bound texture, modulating a single
+   * color, which starts as white.
+   */
+  public void useTextured(boolean nightVision) {
+    use(mTextured, nightVision);
+    setColor(1, 1, 1, 1);
+    GLES20Calls.glUniform1i(mTextured.getUniform("u_blend"), 0);
+    GLES20Calls.glUniform1i(mTextured.getUniform("u_alphaOnly"), 0);
+    setAlphaTest(false);
+  }
+
+  private void use(ShaderProgram program, boolean nightVision) {
+    if (program != mCurrent) {
+      program.use();
+      mCurrent = program;
+    }
+    // Attributes the last user set and this one doesn't mustn't be read.
+    for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+      GLES20Calls.glDisableVertexAttribArray(i);
+    }
+    GLES20Calls.glUniform1i(program.getUniform("u_nightVision"), nightVision ? 1 : 0);
+  }
+
+  /** Sets the current program's transformation, a column major 4x4 matrix. */
+  public void setTransform(float[] matrix) {
+    GLES20Calls.glUniformMatrix4fv(mCurrent.getUniform("u_transform"), 1, false, matrix, 0);
+  }
+
+  /** Sets the color for textured drawing. */
+  public void setColor(float r, float g, float b, float a) {
+    GLES20Calls.glUniform4f(mTextured.getUniform("u_color"), r, g, b, a);
+  }
+
+  /** Makes textured drawing blend from the color to this one, as GL_BLEND. */
+  public void setBlendColor(float r, float g, float b) {
+    GLES20Calls.glUniform1i(mTextured.getUniform("u_blend"), 1);
+    GLES20Calls.glUniform3f(mTextured.getUniform("u_blendColor"), r, g, b);
+  }
+
+  /** Whether the texture has only alpha, like the labels', as opposed to color too. */
+  public void setAlphaOnlyTexture(boolean alphaOnly) {
+    GLES20Calls.glUniform1i(mTextured.getUniform("u_alphaOnly"), alphaOnly ? 1 : 0);
+  }
+
+  /** Whether textured drawing drops fragments with alpha of 0.5 or less, as the alpha test. */
+  public void setAlphaTest(boolean enabled) {
+    GLES20Calls.glUniform1f(mTextured.getUniform("u_alphaThreshold"), enabled ? 0.5f : -1);
+  }
+}
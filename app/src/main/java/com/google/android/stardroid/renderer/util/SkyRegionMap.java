@@ -24,6 +24,7 @@ import com.google.android.stardroid.math.Vector3;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -452,4 +453,9 @@ public class SkyRegionMap<RegionRenderingData> {
   public Collection<RegionRenderingData> getDataForAllRegions() {
     return mRegionData.values();
   }
+
+  // The IDs of the regions which have data, in order.
+  public Set<Integer> getRegions() {
+    return mRegionData.keySet();
+  }
 }
@@ -14,10 +14,9 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
 import android.util.Log;
 
-import com.google.android.stardroid.util.FixedPoint;
-
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -58,8 +57,15 @@ public class TexCoordBuffer {
   }
   
   public void addTexCoords(float u, float v) {
-    mTexCoordBuffer.put(FixedPoint.floatToFixedPoint(u));
-    mTexCoordBuffer.put(FixedPoint.floatToFixedPoint(v));
+    mTexCoordBuffer.put(GLBuffer.encodeCoordinate(u));
+    mTexCoordBuffer.put(GLBuffer.encodeCoordinate(v));
+  }
+  
+  // Overwrites the texture coordinates of a vertex which has already been added.
+  public void setTexCoords(int index, float u, float v) {
+    mTexCoordBuffer.put(2 * index, GLBuffer.encodeCoordinate(u));
+    mTexCoordBuffer.put(2 * index + 1, GLBuffer.encodeCoordinate(v));
+    mGLBuffer.invalidate();
   }
   
   public void set(GL10 gl) {
@@ -77,10 +83,49 @@ public class TexCoordBuffer {
     }
   }
   
+  // Writes the coordinates to a cache.
+  public void write(BufferCache.Writer out) {
+    out.writeInt(mNumVertices);
+    if (mNumVertices > 0) {
+      out.writeIntBuffer(mTexCoordBuffer, 2 * mNumVertices);
+    }
+  }
+
+  // Replaces the coordinates with those written to a cache, using its memory rather than a copy.
+  public void read(BufferCache.Reader in) {
+    mNumVertices = in.readInt();
+    if (mNumVertices > 0) {
+      mTexCoordBuffer = in.readIntBuffer(2 * mNumVertices);
+    }
+  }
+
+  // Sets the coordinates as the given attribute of the current GLES 2.0 program.
+  public void setAttribute(int location) {
+    if (mNumVertices == 0) {
+      return;
+    }
+    mTexCoordBuffer.position(0);
+
+    if (mUseVBO) {
+      mGLBuffer.bind(mTexCoordBuffer, 4 * mTexCoordBuffer.capacity());
+      GLES20Calls.glVertexAttribPointer(location, 2, GLES20.GL_FLOAT, false, 0, 0);
+    } else {
+      GLES20Calls.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+      GLES20Calls.glVertexAttribPointer(location, 2, GLES20.GL_FLOAT, false, 0, mTexCoordBuffer);
+    }
+    GLES20Calls.glEnableVertexAttribArray(location);
+  }
+
   private void regenerateBuffer() {
     if (mNumVertices == 0) {
       return;
     }
+    // Client side buffers aren't kept by GL between draws, so can be reused.
+    if (!mUseVBO && mTexCoordBuffer != null && !mTexCoordBuffer.isReadOnly()
+        && mTexCoordBuffer.capacity() >= 2 * mNumVertices) {
+      mTexCoordBuffer.clear();
+      return;
+    }
     
     ByteBuffer bb = ByteBuffer.allocateDirect(4 * 2 * mNumVertices);
     bb.order(ByteOrder.nativeOrder());
@@ -0,0 +1,170 @@
+package com.google.android.stardroid.renderer.util;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packs a fixed set of small image resources into one texture, so that
+ * anything drawn with them can share a single bind and draw call, and
+ * switching between them is just a matter of texture coordinates.
+ *
+ * <p>The layout comes from the images' sizes, which are read when the atlas
+ * is created; the pixels are only needed when the texture is first uploaded.
+ */
+public class TextureAtlas {
+  private static final String TAG = "TextureAtlas";
+  // Largest texture size every GLES 1 device supports.
+  private static final int MAX_SIZE = 1024;
+
+  private final int[] mResourceIds;
+  private final Map<Integer, Integer> mIndices = new HashMap<>();
+  private final Layout mLayout;
+
+  public TextureAtlas(Resources res, int[] resourceIds) {
+    int[] widths = new int[resourceIds.length];
+    int[] heights = new int[resourceIds.length];
+    for (int i = 0; i < resourceIds.length; i++) {
+      BitmapFactory.Options opts = new BitmapFactory.Options();
+      opts.inJustDecodeBounds = true;
+      opts.inScaled = false;
+      BitmapFactory.decodeResource(res, resourceIds[i], opts);
+      widths[i] = Math.max(opts.outWidth, 0);
+      heights[i] = Math.max(opts.outHeight, 0);
+    }
+    Layout layout = Layout.pack(widths, heights, MAX_SIZE);
+    if (layout == null) {
+      Log.e(TAG, "Images don't fit in a " + MAX_SIZE + " texture; not using an atlas");
+      mResourceIds = new int[0];
+      mLayout = Layout.pack(new int[0], new int[0], MAX_SIZE);
+      return;
+    }
+    mResourceIds = resourceIds.clone();
+    mLayout = layout;
+    for (int i = 0; i < resourceIds.length; i++) {
+      mIndices.put(resourceIds[i], i);
+    }
+  }
+
+  public boolean contains(int resourceId) {
+    return mIndices.containsKey(resourceId);
+  }
+
+  /** The width and height of the atlas texture. */
+  public int getSize() {
+    return mLayout.size;
+  }
+
+  /**
+   * Puts the texture coordinates of the image's corners, as {left, top, right,
+   * bottom}, into out.  The image must be in the atlas.
+   */
+  public void getTexCoords(int resourceId, float[] out) {
+    mLayout.getTexCoords(mIndices.get(resourceId), out);
+  }
+
+  /** Starts decoding all the images in the background. */
+  public void prefetch(ImageCache cache) {
+    for (int id : mResourceIds) {
+      cache.prefetch(id);
+    }
+  }
+
+  /**
+   * Draws all the images into a new bitmap, or returns null if some are still
+   * being decoded.
+   */
+  public Bitmap compose(ImageCache cache) {
+    Bitmap[] images = new Bitmap[mResourceIds.length];
+    boolean ready = true;
+    for (int i = 0; i < mResourceIds.length; i++) {
+      images[i] = cache.getIfDecoded(mResourceIds[i]);
+      ready &= images[i] != null;
+    }
+    if (!ready) {
+      return null;
+    }
+    Bitmap atlas = Bitmap.createBitmap(mLayout.size, mLayout.size, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(atlas);
+    for (int i = 0; i < images.length; i++) {
+      canvas.drawBitmap(images[i], mLayout.xs[i], mLayout.ys[i], null);
+    }
+    return atlas;
+  }
+
+  /** Where each image goes in the atlas. */
+  static class Layout {
+    // Transparent pixels between neighbouring images.
+    static final int PADDING = 1;
+
+    final int size;
+    final int[] xs;
+    final int[] ys;
+    final int[] widths;
+    final int[] heights;
+
+    private Layout(int size, int[] xs, int[] ys, int[] widths, int[] heights) {
+      this.size = size;
+      this.xs = xs;
+      this.ys = ys;
+      this.widths = widths;
+      this.heights = heights;
+    }
+
+    /**
+     * Packs the images onto shelves, tallest first, in the smallest power of
+     * two square that fits them.  Returns null if they don't fit in maxSize.
+     */
+    static Layout pack(int[] widths, int[] heights, int maxSize) {
+      Integer[] order = new Integer[widths.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> heights[b] - heights[a]);
+
+      int[] xs = new int[widths.length];
+      int[] ys = new int[widths.length];
+      for (int size = 1; size <= maxSize; size *= 2) {
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        boolean fits = true;
+        for (int i : order) {
+          int w = widths[i] + PADDING;
+          int h = heights[i] + PADDING;
+          if (x + w > size) {
+            x = 0;
+            y += shelfHeight;
+            shelfHeight = 0;
+          }
+          if (x + w > size || y + h > size) {
+            fits = false;
+            break;
+          }
+          xs[i] = x;
+          ys[i] = y;
+          x += w;
+          shelfHeight = Math.max(shelfHeight, h);
+        }
+        if (fits) {
+          return new Layout(size, xs, ys, widths.clone(), heights.clone());
+        }
+      }
+      return null;
+    }
+
+    void getTexCoords(int index, float[] out) {
+      // Inset by half a texel so that linear filtering never picks up a neighbour.
+      out[0] = (xs[index] + 0.5f) / size;
+      out[1] = (ys[index] + 0.5f) / size;
+      out[2] = (xs[index] + widths[index] - 0.5f) / size;
+      out[3] = (ys[index] + heights[index] - 0.5f) / size;
+    }
+  }
+}
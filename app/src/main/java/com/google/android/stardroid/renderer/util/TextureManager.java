@@ -16,16 +16,22 @@ package com.google.android.stardroid.renderer.util;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapFactory.Options;
 import android.opengl.GLUtils;
 import android.util.Log;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.microedition.khronos.opengles.GL10;
 
@@ -41,14 +47,73 @@ import javax.microedition.khronos.opengles.GL10;
  *
  */
 public final class TextureManager {
+  // Decoded bitmaps are only needed until they're uploaded, so this can be modest.
+  private static final int IMAGE_CACHE_BYTES = 8 * 1024 * 1024;
+  // Compressed versions of images, generated by the tools module's KtxTextureWriter.
+  private static final String COMPRESSED_TEXTURE_DIR = "textures/";
+  private static final String TAG = "TextureManager";
+
   private final Resources mRes;
+  private final ImageCache mImageCache;
   private Map<Integer, TextureData> mResourceIdToTextureMap = 
       new HashMap<Integer, TextureData>();
+  // Night vision versions of image textures.
+  private Map<Integer, TextureData> mResourceIdToRedTextureMap =
+      new HashMap<Integer, TextureData>();
   private ArrayList<TextureReferenceImpl> mAllTextures =
       new ArrayList<TextureReferenceImpl>();
-  
-  public TextureManager(Resources res) {
+  private final TextureAtlas mImageAtlas;
+  // Kept so the red version can be made without decoding everything again.
+  private Bitmap mAtlasBitmap = null;
+  private TextureReferenceImpl mAtlasTexture = null;
+  private TextureReferenceImpl mRedAtlasTexture = null;
+  // The compressed texture formats the current GL context supports.
+  private Set<Integer> mCompressedFormats = null;
+  // Compressed images read from the assets, kept so a new GL context can have them without
+  // reading them again.  Null for images without a compressed version.
+  private final Map<Integer, KtxTexture> mCompressedTextures = new HashMap<>();
+
+  public TextureManager(Resources res, int[] atlasImages) {
     mRes = res;
+    mImageCache = new ImageCache(res, IMAGE_CACHE_BYTES);
+    mImageAtlas = new TextureAtlas(res, atlasImages);
+    mImageAtlas.prefetch(mImageCache);
+  }
+
+  public ImageCache getImageCache() {
+    return mImageCache;
+  }
+
+  public TextureAtlas getImageAtlas() {
+    return mImageAtlas;
+  }
+
+  /**
+   * Returns the texture holding all the images in the atlas, or its red night
+   * vision version, or null if the images are still being decoded.  It lives
+   * until the next {@link #reset}.
+   */
+  public TextureReference getAtlasTexture(GL10 gl, boolean red) {
+    TextureReferenceImpl tex = red ? mRedAtlasTexture : mAtlasTexture;
+    if (tex != null) {
+      return tex;
+    }
+    if (mAtlasBitmap == null) {
+      mAtlasBitmap = mImageAtlas.compose(mImageCache);
+      if (mAtlasBitmap == null) {
+        return null;
+      }
+    }
+    tex = createTextureInternal(gl);
+    tex.bind(gl);
+    setImageTextureParameters(gl);
+    uploadImage(gl, mAtlasBitmap, red);
+    if (red) {
+      mRedAtlasTexture = tex;
+    } else {
+      mAtlasTexture = tex;
+    }
+    return tex;
   }
   
   public TextureReference createTexture(GL10 gl) {
@@ -76,8 +141,57 @@ public final class TextureManager {
     return tex;
   }
   
+  /**
+   * Returns the texture for an image resource, or its red night vision version,
+   * shared with anything else using the same image, and adds a reference to it.
+   * Returns null, without adding a reference, if the image is still being
+   * decoded in the background; call again later.
+   */
+  public TextureReference acquireImageTexture(GL10 gl, int resourceID, boolean red) {
+    Map<Integer, TextureData> map = red ? mResourceIdToRedTextureMap : mResourceIdToTextureMap;
+    TextureData texData = map.get(resourceID);
+    if (texData != null) {
+      texData.refCount++;
+      return texData.ref;
+    }
+    Bitmap bmp = mImageCache.getIfDecoded(resourceID);
+    if (bmp == null) {
+      return null;
+    }
+    TextureReferenceImpl tex = createTextureInternal(gl);
+    tex.bind(gl);
+    setImageTextureParameters(gl);
+    uploadImage(gl, bmp, red);
+    TextureData data = new TextureData();
+    data.ref = tex;
+    data.refCount = 1;
+    map.put(resourceID, data);
+    return tex;
+  }
+
+  /**
+   * Drops a reference taken by {@link #acquireImageTexture}, deleting the
+   * texture once nothing is using it.
+   */
+  public void releaseImageTexture(GL10 gl, int resourceID, boolean red) {
+    Map<Integer, TextureData> map = red ? mResourceIdToRedTextureMap : mResourceIdToTextureMap;
+    TextureData texData = map.get(resourceID);
+    if (texData == null) {
+      return;
+    }
+    if (--texData.refCount == 0) {
+      map.remove(resourceID);
+      texData.ref.delete(gl);
+      mAllTextures.remove(texData.ref);
+    }
+  }
+
   public void reset() {
     mResourceIdToTextureMap.clear();
+    mResourceIdToRedTextureMap.clear();
+    mAtlasTexture = null;
+    mRedAtlasTexture = null;
+    mCompressedFormats = null;
     for (TextureReferenceImpl ref : mAllTextures) {
       ref.invalidate();
     }
@@ -129,19 +243,105 @@ public final class TextureManager {
   private TextureReferenceImpl createTextureFromResource(GL10 gl, int resourceID) {
     // The texture hasn't been loaded yet, so load it.
     TextureReferenceImpl tex = createTextureInternal(gl);
-    Options opts = new Options();
-    opts.inScaled = false;
-    Bitmap bmp = BitmapFactory.decodeResource(mRes, resourceID, opts);
+    long start = System.nanoTime();
     tex.bind(gl);
+    KtxTexture compressed = readCompressedTexture(gl, resourceID);
+    int bytes;
+    if (compressed != null) {
+      setImageTextureParameters(gl);
+      if (compressed.getNumLevels() > 1) {
+        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER,
+            GL10.GL_LINEAR_MIPMAP_LINEAR);
+      }
+      compressed.upload(gl);
+      bytes = compressed.getDataSize();
+    } else {
+      // The bitmap is shared through the cache, so mustn't be recycled here.
+      Bitmap bmp = mImageCache.get(resourceID);
+      setImageTextureParameters(gl);
+      GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bmp, 0);
+      bytes = bmp.getByteCount();
+    }
+    Log.d(TAG, "Uploaded " + (compressed != null ? "compressed " : "")
+        + mRes.getResourceEntryName(resourceID) + ": " + bytes + " bytes in "
+        + (System.nanoTime() - start) / 1000 + "us");
+    return tex;
+  }
+
+  /**
+   * Reads the compressed version of an image from the assets, if there is one
+   * in a format this GL supports.
+   */
+  private KtxTexture readCompressedTexture(GL10 gl, int resourceID) {
+    if (mCompressedFormats == null) {
+      int[] numFormats = new int[1];
+      gl.glGetIntegerv(GL10.GL_NUM_COMPRESSED_TEXTURE_FORMATS, numFormats, 0);
+      int[] formats = new int[numFormats[0]];
+      if (formats.length > 0) {
+        gl.glGetIntegerv(GL10.GL_COMPRESSED_TEXTURE_FORMATS, formats, 0);
+      }
+      mCompressedFormats = new HashSet<>();
+      for (int format : formats) {
+        mCompressedFormats.add(format);
+      }
+    }
+    if (!mCompressedTextures.containsKey(resourceID)) {
+      mCompressedTextures.put(resourceID, readCompressedAsset(resourceID));
+    }
+    KtxTexture texture = mCompressedTextures.get(resourceID);
+    return texture != null && mCompressedFormats.contains(texture.getInternalFormat())
+        ? texture : null;
+  }
+
+  private KtxTexture readCompressedAsset(int resourceID) {
+    String path = COMPRESSED_TEXTURE_DIR + mRes.getResourceEntryName(resourceID) + ".ktx";
+    try (InputStream in = mRes.getAssets().open(path)) {
+      return KtxTexture.read(in);
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      Log.w(TAG, "Couldn't read " + path, e);
+      return null;
+    }
+  }
+
+  private static void setImageTextureParameters(GL10 gl) {
     gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
     gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
     gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
     gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-    
-    GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bmp, 0);
-    
-    bmp.recycle();
-    return tex;
+  }
+
+  private static void uploadImage(GL10 gl, Bitmap bmp, boolean red) {
+    if (red) {
+      gl.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GL10.GL_RGBA, bmp.getWidth(), bmp.getHeight(),
+          0, GL10.GL_RGBA, GL10.GL_UNSIGNED_BYTE, createRedImage(bmp));
+    } else {
+      GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bmp, 0);
+    }
+  }
+
+  // A red version of the image, its brightness the mean of the channels, for night vision.
+  private static IntBuffer createRedImage(Bitmap bmp) {
+    int width = bmp.getWidth();
+    int height = bmp.getHeight();
+    int numPixels = width * height;
+    int[] pixels = new int[numPixels];
+    bmp.getPixels(pixels, 0, width, 0, 0, width, height);
+
+    ByteBuffer redPixelsBB = ByteBuffer.allocateDirect(4 * numPixels);
+    IntBuffer redPixels = redPixelsBB.order(ByteOrder.nativeOrder()).asIntBuffer();
+    for (int j = 0; j < numPixels; j++) {
+      int r = pixels[j] & 0xff;
+      int g = (pixels[j] >> 8) & 0xff;
+      int b = (pixels[j] >> 16) & 0xff;
+      int alphaMask = pixels[j] & 0xff000000;
+
+      redPixels.put(alphaMask | ((r + g + b) / 3));
+    }
+
+    redPixels.position(0);
+    return redPixels;
   }
   
   private TextureReferenceImpl createTextureInternal(GL10 gl) {
@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
+
 import javax.microedition.khronos.opengles.GL10;
 
 /**
@@ -92,4 +94,14 @@ public class TexturedQuad {
 
     gl.glDisable(GL10.GL_TEXTURE_2D);
   }
+
+  // Draws with the current OpenGL ES 2.0 program, which must be the textured one.
+  public void drawWithShaders(GL10 gl) {
+    mTexture.bind(gl);
+
+    mPosition.setAttribute(ShaderPrograms.POSITION);
+    mTexCoords.setAttribute(ShaderPrograms.TEX_COORD);
+
+    GLES20Calls.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+  }
 }
@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import android.opengl.GLES20;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -22,7 +24,6 @@ import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 
 import com.google.android.stardroid.math.Vector3;
-import com.google.android.stardroid.util.FixedPoint;
 
 public class VertexBuffer {
 
@@ -65,9 +66,17 @@ public class VertexBuffer {
   }
 
   public void addPoint(float x, float y, float z) {
-    mPositionBuffer.put(FixedPoint.floatToFixedPoint(x));
-    mPositionBuffer.put(FixedPoint.floatToFixedPoint(y));
-    mPositionBuffer.put(FixedPoint.floatToFixedPoint(z));
+    mPositionBuffer.put(GLBuffer.encodeCoordinate(x));
+    mPositionBuffer.put(GLBuffer.encodeCoordinate(y));
+    mPositionBuffer.put(GLBuffer.encodeCoordinate(z));
+  }
+
+  // Overwrites a vertex which has already been added.
+  public void setPoint(int index, float x, float y, float z) {
+    mPositionBuffer.put(3 * index, GLBuffer.encodeCoordinate(x));
+    mPositionBuffer.put(3 * index + 1, GLBuffer.encodeCoordinate(y));
+    mPositionBuffer.put(3 * index + 2, GLBuffer.encodeCoordinate(z));
+    mGLBuffer.invalidate();
   }
 
   public void set(GL10 gl) {
@@ -86,10 +95,50 @@ public class VertexBuffer {
     }
   }
 
+  // Writes the positions to a cache.
+  public void write(BufferCache.Writer out) {
+    out.writeInt(mNumVertices);
+    if (mNumVertices > 0) {
+      out.writeIntBuffer(mPositionBuffer, 3 * mNumVertices);
+    }
+  }
+
+  // Replaces the positions with those written to a cache, using its memory rather than a copy.
+  public void read(BufferCache.Reader in) {
+    mNumVertices = in.readInt();
+    if (mNumVertices > 0) {
+      mPositionBuffer = in.readIntBuffer(3 * mNumVertices);
+    }
+  }
+
+  // Sets the positions as the given attribute of the current GLES 2.0 program.
+  public void setAttribute(int location) {
+    if (mNumVertices == 0) {
+      return;
+    }
+
+    mPositionBuffer.position(0);
+
+    if (mUseVBO) {
+      mGLBuffer.bind(mPositionBuffer, 4 * mPositionBuffer.capacity());
+      GLES20Calls.glVertexAttribPointer(location, 3, GLES20.GL_FLOAT, false, 0, 0);
+    } else {
+      GLES20Calls.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+      GLES20Calls.glVertexAttribPointer(location, 3, GLES20.GL_FLOAT, false, 0, mPositionBuffer);
+    }
+    GLES20Calls.glEnableVertexAttribArray(location);
+  }
+
   private void regenerateBuffer() {
     if (mNumVertices == 0) {
       return;
     }
+    // Client side buffers aren't kept by GL between draws, so can be reused.
+    if (!mUseVBO && mPositionBuffer != null && !mPositionBuffer.isReadOnly()
+        && mPositionBuffer.capacity() >= 3 * mNumVertices) {
+      mPositionBuffer.clear();
+      return;
+    }
 
     ByteBuffer bb = ByteBuffer.allocateDirect(4 * 3 * mNumVertices);
     bb.order(ByteOrder.nativeOrder());
@@ -0,0 +1,34 @@
+package com.google.android.stardroid.renderer.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The worker threads on which managers build their vertex data, so that big
+ * rebuilds, such as a layer being reset, don't hold up the GL thread.  That's
+ * left with swapping in the finished buffers and uploading them.
+ *
+ * <p>Work for separate sky regions can be submitted separately to be built in
+ * parallel.  Tasks mustn't block waiting on each other.
+ */
+public final class VertexBuilders {
+  // Leave a core for the GL and UI threads.
+  private static final int NUM_THREADS =
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  private static final AtomicInteger sThreadCount = new AtomicInteger();
+
+  private static final ExecutorService sExecutor =
+      Executors.newFixedThreadPool(NUM_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "VertexBuilder" + sThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private VertexBuilders() {}
+
+  public static Executor getExecutor() {
+    return sExecutor;
+  }
+}
@@ -0,0 +1,384 @@
+package com.google.android.stardroid.sensors;
+
+import com.google.android.stardroid.math.MathUtils;
+
+/**
+ * Estimates the phone's orientation as a unit quaternion by fusing the
+ * gyroscope, accelerometer and magnetometer, or by smoothing the platform's
+ * rotation vector.
+ *
+ * <p>The quaternion uses the same convention as Android's rotation vector: it
+ * rotates vectors from the phone frame into the world frame (x East, y North,
+ * z Up), so {@link #getRotationVector} can be handed straight to
+ * {@link com.google.android.stardroid.control.AstronomerModel#setPhoneSensorValues(float[])}.
+ *
+ * <p>This is a complementary filter.  Gyroscope readings are integrated to
+ * follow fast movements, and each accelerometer/magnetometer (or rotation
+ * vector) reading pulls the estimate towards that absolute orientation by
+ * slerping a fraction dt / (timeConstant + dt) of the way.  Without a
+ * gyroscope this reduces to exponential smoothing in orientation space, so the
+ * time constant trades latency (large values lag) against jitter (small
+ * values pass sensor noise straight through).  A time constant of zero
+ * tracks the absolute readings exactly.
+ *
+ * <p>The filter can also extrapolate its estimate a short way into the future
+ * using the latest angular velocity (see {@link #predict}), to hide the time
+ * between a sensor reading and the frame that shows it reaching the screen.
+ *
+ * <p>No objects are allocated after construction.  Not thread safe: feed it
+ * from a single thread.
+ */
+public class OrientationFilter {
+  private static final float NANOS_TO_SECONDS = 1e-9f;
+  /** Gaps longer than this are treated as a restart rather than integrated over. */
+  private static final float MAX_GYRO_INTERVAL_SECONDS = 0.5f;
+  /**
+   * Accelerometer magnitudes outside this fraction of g mean the phone is
+   * being shaken; with a gyro to fall back on we skip those corrections.
+   */
+  private static final float ACCELERATION_GATE = 0.25f;
+  private static final float STANDARD_GRAVITY = 9.80665f;
+  /** Predictions are never extrapolated further than this. */
+  public static final long MAX_PREDICTION_NANOS = 100_000_000L;
+  /** Angular velocities older than this (relative to the estimate) aren't used to predict. */
+  private static final long MAX_ANGULAR_VELOCITY_AGE_NANOS = 100_000_000L;
+
+  private float timeConstantSeconds;
+
+  // Current estimate, (w, x, y, z).
+  private float qw = 1, qx = 0, qy = 0, qz = 0;
+  private boolean hasOrientation = false;
+
+  private final float[] lastMagneticField = new float[3];
+  private boolean hasMagneticField = false;
+  private long lastGyroTimestamp = 0;
+  private long lastCorrectionTimestamp = 0;
+  private boolean gyroActive = false;
+  // Time of the reading the current estimate reflects.
+  private long estimateTimestamp = 0;
+
+  // Latest angular velocity in the phone's frame (rad/s) and when it was measured.
+  private float angularVelocityX, angularVelocityY, angularVelocityZ;
+  private long angularVelocityTimestamp = 0;
+  private boolean hasAngularVelocity = false;
+
+  // Output of rotate().
+  private float rw, rx, ry, rz;
+
+  // Scratch for the absolute orientation derived from accel + mag.
+  private float mw, mx, my, mz;
+
+  public OrientationFilter(float timeConstantSeconds) {
+    setTimeConstant(timeConstantSeconds);
+  }
+
+  /**
+   * Sets how quickly the estimate converges on absolute readings, in seconds.
+   */
+  public void setTimeConstant(float timeConstantSeconds) {
+    if (timeConstantSeconds < 0) {
+      throw new IllegalArgumentException("Negative time constant: " + timeConstantSeconds);
+    }
+    this.timeConstantSeconds = timeConstantSeconds;
+  }
+
+  public float getTimeConstant() {
+    return timeConstantSeconds;
+  }
+
+  /** Forgets all state, e.g. when the sensors are re-registered. */
+  public void reset() {
+    qw = 1;
+    qx = qy = qz = 0;
+    hasOrientation = false;
+    hasMagneticField = false;
+    gyroActive = false;
+    lastGyroTimestamp = 0;
+    lastCorrectionTimestamp = 0;
+    estimateTimestamp = 0;
+    hasAngularVelocity = false;
+  }
+
+  /** Returns true once there's been enough input to estimate an orientation. */
+  public boolean hasOrientation() {
+    return hasOrientation;
+  }
+
+  /**
+   * Integrates a gyroscope reading (rad/s about the phone's axes).
+   */
+  public void onGyroscope(float wx, float wy, float wz, long timestampNanos) {
+    long previous = lastGyroTimestamp;
+    lastGyroTimestamp = timestampNanos;
+    gyroActive = true;
+    onAngularVelocity(wx, wy, wz, timestampNanos);
+    if (previous == 0 || !hasOrientation) {
+      return;
+    }
+    float dt = (timestampNanos - previous) * NANOS_TO_SECONDS;
+    if (dt <= 0 || dt > MAX_GYRO_INTERVAL_SECONDS) {
+      return;
+    }
+    rotate(wx, wy, wz, dt);
+    set(rw, rx, ry, rz);
+    estimateTimestamp = timestampNanos;
+  }
+
+  /**
+   * Records the phone's angular velocity (rad/s about its axes) for use by
+   * {@link #predict}, without integrating it into the estimate.  For when the
+   * orientation itself comes from the rotation vector sensor.
+   */
+  public void onAngularVelocity(float wx, float wy, float wz, long timestampNanos) {
+    angularVelocityX = wx;
+    angularVelocityY = wy;
+    angularVelocityZ = wz;
+    angularVelocityTimestamp = timestampNanos;
+    hasAngularVelocity = true;
+  }
+
+  /**
+   * Rotates the estimate by the given body-frame angular velocity for dt
+   * seconds, i.e. q * exp(w dt / 2), storing the result in (rw, rx, ry, rz).
+   */
+  private void rotate(float wx, float wy, float wz, float dt) {
+    float omega = MathUtils.sqrt(wx * wx + wy * wy + wz * wz);
+    if (omega < 1e-9f) {
+      rw = qw;
+      rx = qx;
+      ry = qy;
+      rz = qz;
+      return;
+    }
+    float halfAngle = 0.5f * omega * dt;
+    float s = MathUtils.sin(halfAngle) / omega;
+    float dw = MathUtils.cos(halfAngle);
+    float dx = wx * s;
+    float dy = wy * s;
+    float dz = wz * s;
+    rw = qw * dw - qx * dx - qy * dy - qz * dz;
+    rx = qw * dx + qx * dw + qy * dz - qz * dy;
+    ry = qw * dy - qx * dz + qy * dw + qz * dx;
+    rz = qw * dz + qx * dy - qy * dx + qz * dw;
+  }
+
+  /**
+   * Writes into out, as a rotation vector (x, y, z, w), the estimate
+   * extrapolated to the given time assuming the phone keeps turning at the
+   * last measured angular velocity.  The extrapolation is capped at
+   * {@link #MAX_PREDICTION_NANOS}; without a recent angular velocity this is
+   * the same as {@link #getRotationVector}.
+   */
+  public void predict(long targetNanos, float[] out) {
+    long ahead = Math.min(targetNanos - estimateTimestamp, MAX_PREDICTION_NANOS);
+    if (!hasAngularVelocity || ahead <= 0
+        || Math.abs(estimateTimestamp - angularVelocityTimestamp) > MAX_ANGULAR_VELOCITY_AGE_NANOS) {
+      getRotationVector(out);
+      return;
+    }
+    rotate(angularVelocityX, angularVelocityY, angularVelocityZ, ahead * NANOS_TO_SECONDS);
+    float norm = MathUtils.sqrt(rw * rw + rx * rx + ry * ry + rz * rz);
+    out[0] = rx / norm;
+    out[1] = ry / norm;
+    out[2] = rz / norm;
+    out[3] = rw / norm;
+  }
+
+  /** Returns the time of the reading that the current estimate reflects. */
+  public long getEstimateTimestamp() {
+    return estimateTimestamp;
+  }
+
+  /** Records a magnetometer reading; it is used with the next accelerometer reading. */
+  public void onMagneticField(float x, float y, float z, long timestampNanos) {
+    lastMagneticField[0] = x;
+    lastMagneticField[1] = y;
+    lastMagneticField[2] = z;
+    hasMagneticField = true;
+  }
+
+  /**
+   * Corrects the estimate towards the orientation implied by this
+   * accelerometer reading (which points up when the phone is at rest) and
+   * the last magnetometer reading.
+   */
+  public void onAccelerometer(float ax, float ay, float az, long timestampNanos) {
+    if (!hasMagneticField) {
+      return;
+    }
+    if (gyroActive && hasOrientation) {
+      float g = MathUtils.sqrt(ax * ax + ay * ay + az * az);
+      if (MathUtils.abs(g - STANDARD_GRAVITY) > ACCELERATION_GATE * STANDARD_GRAVITY) {
+        return;
+      }
+    }
+    if (!orientationFromAccelerationAndMagneticField(ax, ay, az,
+        lastMagneticField[0], lastMagneticField[1], lastMagneticField[2])) {
+      return;
+    }
+    correctTowards(mw, mx, my, mz, timestampNanos);
+  }
+
+  /**
+   * Corrects the estimate towards a reading from the rotation vector sensor,
+   * whose values are (x, y, z[, w[, accuracy]]).
+   */
+  public void onRotationVector(float[] values, long timestampNanos) {
+    float x = values[0];
+    float y = values[1];
+    float z = values[2];
+    float w;
+    if (values.length >= 4) {
+      w = values[3];
+    } else {
+      float w2 = 1 - x * x - y * y - z * z;
+      w = w2 > 0 ? MathUtils.sqrt(w2) : 0;
+    }
+    correctTowards(w, x, y, z, timestampNanos);
+  }
+
+  private void correctTowards(float w, float x, float y, float z, long timestampNanos) {
+    if (timestampNanos > estimateTimestamp) {
+      estimateTimestamp = timestampNanos;
+    }
+    if (!hasOrientation) {
+      set(w, x, y, z);
+      hasOrientation = true;
+      lastCorrectionTimestamp = timestampNanos;
+      return;
+    }
+    float dt = (timestampNanos - lastCorrectionTimestamp) * NANOS_TO_SECONDS;
+    lastCorrectionTimestamp = timestampNanos;
+    float alpha;
+    if (timeConstantSeconds == 0 || dt > MAX_GYRO_INTERVAL_SECONDS) {
+      alpha = 1;
+    } else if (dt <= 0) {
+      return;
+    } else {
+      alpha = dt / (timeConstantSeconds + dt);
+    }
+    slerpTowards(w, x, y, z, alpha);
+  }
+
+  /** Moves the estimate a fraction t of the way along the shortest arc to (w, x, y, z). */
+  private void slerpTowards(float w, float x, float y, float z, float t) {
+    float dot = qw * w + qx * x + qy * y + qz * z;
+    // q and -q are the same rotation; take the short way round.
+    if (dot < 0) {
+      dot = -dot;
+      w = -w;
+      x = -x;
+      y = -y;
+      z = -z;
+    }
+    float a;
+    float b;
+    if (dot > 0.9995f) {
+      // Nearly parallel: linear interpolation is accurate and avoids dividing by ~0.
+      a = 1 - t;
+      b = t;
+    } else {
+      float theta = MathUtils.acos(dot);
+      float sinTheta = MathUtils.sin(theta);
+      a = MathUtils.sin((1 - t) * theta) / sinTheta;
+      b = MathUtils.sin(t * theta) / sinTheta;
+    }
+    set(a * qw + b * w, a * qx + b * x, a * qy + b * y, a * qz + b * z);
+  }
+
+  /**
+   * Computes the absolute orientation from the up and magnetic field vectors,
+   * as {@link android.hardware.SensorManager#getRotationMatrix} does, and
+   * stores it in (mw, mx, my, mz).  Returns false if the inputs are degenerate
+   * (e.g. free fall, or the field parallel to gravity).
+   */
+  private boolean orientationFromAccelerationAndMagneticField(
+      float ax, float ay, float az, float ex, float ey, float ez) {
+    // East = M x A
+    float hx = ey * az - ez * ay;
+    float hy = ez * ax - ex * az;
+    float hz = ex * ay - ey * ax;
+    float normH = MathUtils.sqrt(hx * hx + hy * hy + hz * hz);
+    float normA = MathUtils.sqrt(ax * ax + ay * ay + az * az);
+    if (normH < 0.1f || normA < 0.1f) {
+      return false;
+    }
+    hx /= normH;
+    hy /= normH;
+    hz /= normH;
+    ax /= normA;
+    ay /= normA;
+    az /= normA;
+    // North = A x East
+    float nx = ay * hz - az * hy;
+    float ny = az * hx - ax * hz;
+    float nz = ax * hy - ay * hx;
+    // The rows of the phone-to-world rotation matrix are East, North and Up
+    // expressed in phone coordinates.  Convert that matrix to a quaternion.
+    float r00 = hx, r01 = hy, r02 = hz;
+    float r10 = nx, r11 = ny, r12 = nz;
+    float r20 = ax, r21 = ay, r22 = az;
+    float trace = r00 + r11 + r22;
+    if (trace > 0) {
+      float s = 0.5f / MathUtils.sqrt(trace + 1);
+      mw = 0.25f / s;
+      mx = (r21 - r12) * s;
+      my = (r02 - r20) * s;
+      mz = (r10 - r01) * s;
+    } else if (r00 > r11 && r00 > r22) {
+      float s = 2 * MathUtils.sqrt(1 + r00 - r11 - r22);
+      mw = (r21 - r12) / s;
+      mx = 0.25f * s;
+      my = (r01 + r10) / s;
+      mz = (r02 + r20) / s;
+    } else if (r11 > r22) {
+      float s = 2 * MathUtils.sqrt(1 + r11 - r00 - r22);
+      mw = (r02 - r20) / s;
+      mx = (r01 + r10) / s;
+      my = 0.25f * s;
+      mz = (r12 + r21) / s;
+    } else {
+      float s = 2 * MathUtils.sqrt(1 + r22 - r00 - r11);
+      mw = (r10 - r01) / s;
+      mx = (r02 + r20) / s;
+      my = (r12 + r21) / s;
+      mz = 0.25f * s;
+    }
+    return true;
+  }
+
+  private void set(float w, float x, float y, float z) {
+    float norm = MathUtils.sqrt(w * w + x * x + y * y + z * z);
+    qw = w / norm;
+    qx = x / norm;
+    qy = y / norm;
+    qz = z / norm;
+  }
+
+  /**
+   * Writes the estimate into out as a rotation vector, (x, y, z, w), the
+   * layout used by {@link android.hardware.Sensor#TYPE_ROTATION_VECTOR}.
+   */
+  public void getRotationVector(float[] out) {
+    out[0] = qx;
+    out[1] = qy;
+    out[2] = qz;
+    out[3] = qw;
+  }
+
+  public float getW() {
+    return qw;
+  }
+
+  public float getX() {
+    return qx;
+  }
+
+  public float getY() {
+    return qy;
+  }
+
+  public float getZ() {
+    return qz;
+  }
+}
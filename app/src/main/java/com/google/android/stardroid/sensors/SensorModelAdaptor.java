@@ -3,25 +3,135 @@ package com.google.android.stardroid.sensors;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.util.Log;
 
 import com.google.android.stardroid.control.AstronomerModel;
+import com.google.android.stardroid.util.MiscUtil;
 
+import java.io.IOException;
+
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /**
- * Connects the rotation vector to the model code.
+ * Connects the orientation sensors to the model code.  Events from the rotation
+ * vector sensor, or from the gyroscope, accelerometer and magnetometer, are
+ * fused by an {@link OrientationFilter} and the result passed to the model as
+ * a rotation vector.  Optionally the orientation is extrapolated a little way
+ * ahead using the gyroscope, so that the sky doesn't trail behind the phone.
  */
 public class SensorModelAdaptor implements SensorEventListener {
+  private static final String TAG = MiscUtil.getTag(SensorModelAdaptor.class);
   private AstronomerModel model;
+  private final OrientationFilter filter = new OrientationFilter(0);
+  private final float[] rotationVector = new float[4];
+  private boolean usingGyroscope = false;
+  private boolean reverseMagneticZaxis = false;
+  private long predictionHorizonNanos = 0;
+  @Nullable private SensorTrace.Writer traceWriter;
 
   @Inject
   SensorModelAdaptor(AstronomerModel model) {
     this.model = model;
   }
 
+  /**
+   * Sets the filter's time constant; see {@link OrientationFilter#setTimeConstant}.
+   */
+  public void setTimeConstant(float seconds) {
+    filter.setTimeConstant(seconds);
+  }
+
+  /**
+   * Whether gyroscope events should be fused with the accelerometer and
+   * magnetometer.  If so, the model is only updated on gyroscope events, with
+   * the other sensors acting as corrections.  Otherwise any gyroscope events
+   * are only used for prediction.
+   */
+  public void setUsingGyroscope(boolean usingGyroscope) {
+    this.usingGyroscope = usingGyroscope;
+  }
+
+  /**
+   * How far ahead of each reading to extrapolate the orientation, to make up
+   * for the time it takes to reach the screen.  Zero disables prediction.
+   * Only has an effect if gyroscope events are delivered.
+   */
+  public void setPredictionHorizon(long nanos) {
+    predictionHorizonNanos = Math.max(0, Math.min(nanos, OrientationFilter.MAX_PREDICTION_NANOS));
+  }
+
+  /**
+   * Some phones report the magnetic field's z component with the wrong sign.
+   */
+  public void setReverseMagneticZaxis(boolean reverseMagneticZaxis) {
+    this.reverseMagneticZaxis = reverseMagneticZaxis;
+  }
+
+  public void reset() {
+    filter.reset();
+  }
+
+  /**
+   * If not null, every event received is also written to the given trace.
+   * Must be set on the thread the events are delivered on.
+   */
+  public void setTraceWriter(@Nullable SensorTrace.Writer traceWriter) {
+    this.traceWriter = traceWriter;
+  }
+
   @Override
   public void onSensorChanged(SensorEvent event) {
-    // do something with the model
+    onSensorChanged(event.sensor.getType(), event.values, event.timestamp);
+  }
+
+  /**
+   * Handles a reading.  Split out from {@link #onSensorChanged(SensorEvent)} as
+   * SensorEvents can't be constructed outside the framework.
+   */
+  public void onSensorChanged(int sensorType, float[] values, long timestampNanos) {
+    if (traceWriter != null) {
+      try {
+        traceWriter.writeSensorEvent(sensorType, timestampNanos, values);
+      } catch (IOException e) {
+        Log.e(TAG, "Failed to record sensor trace, stopping", e);
+        traceWriter = null;
+      }
+    }
+    boolean updateModel;
+    switch (sensorType) {
+      case Sensor.TYPE_ROTATION_VECTOR:
+        filter.onRotationVector(values, timestampNanos);
+        updateModel = true;
+        break;
+      case Sensor.TYPE_GYROSCOPE:
+        if (usingGyroscope) {
+          filter.onGyroscope(values[0], values[1], values[2], timestampNanos);
+        } else {
+          filter.onAngularVelocity(values[0], values[1], values[2], timestampNanos);
+        }
+        updateModel = usingGyroscope;
+        break;
+      case Sensor.TYPE_ACCELEROMETER:
+        filter.onAccelerometer(values[0], values[1], values[2], timestampNanos);
+        updateModel = !usingGyroscope;
+        break;
+      case Sensor.TYPE_MAGNETIC_FIELD:
+        filter.onMagneticField(values[0], values[1],
+            reverseMagneticZaxis ? -values[2] : values[2], timestampNanos);
+        updateModel = false;
+        break;
+      default:
+        return;
+    }
+    if (updateModel && filter.hasOrientation()) {
+      if (predictionHorizonNanos > 0) {
+        filter.predict(filter.getEstimateTimestamp() + predictionHorizonNanos, rotationVector);
+      } else {
+        filter.getRotationVector(rotationVector);
+      }
+      model.setPhoneSensorValues(rotationVector);
+    }
   }
 
   @Override
@@ -0,0 +1,217 @@
+package com.google.android.stardroid.sensors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact binary log of raw sensor events, so that sensor processing can be
+ * replayed and measured off the device.
+ *
+ * <p>The file starts with {@link #MAGIC} and {@link #VERSION}.  Each record is
+ * then a kind byte, the record's timestamp as a zigzag varint delta (in
+ * nanoseconds, on the {@link android.hardware.SensorEvent#timestamp} time
+ * base) from the previous record, and a kind-specific payload.  The deltas
+ * are signed because events from batched or different sensors can arrive out
+ * of order.
+ * <ul>
+ *   <li>{@link #KIND_SENSOR}: sensor type (varint), value count (byte), floats
+ *   <li>{@link #KIND_LOCATION}: latitude, longitude (floats, degrees)
+ *   <li>{@link #KIND_TIME}: wall clock time (long, millis since the epoch)
+ *   <li>{@link #KIND_REFERENCE}: a reference orientation quaternion
+ *   (x, y, z, w floats) to measure errors against, e.g. the ground truth of
+ *   a synthetic trace
+ * </ul>
+ */
+public final class SensorTrace {
+  public static final int MAGIC = 0x534d5452;  // "SMTR"
+  // Version 1 had unsigned deltas, which lost the times of events out of order.
+  public static final int VERSION = 2;
+
+  public static final int KIND_SENSOR = 1;
+  public static final int KIND_LOCATION = 2;
+  public static final int KIND_TIME = 3;
+  public static final int KIND_REFERENCE = 4;
+
+  /** The most values we'll record for one event; rotation vectors have 5. */
+  public static final int MAX_VALUES = 16;
+
+  private SensorTrace() {}
+
+  /**
+   * One record read from a trace.  The reader reuses a single instance, so
+   * copy anything that must outlive the next call to {@link Reader#next}.
+   */
+  public static final class Record {
+    public int kind;
+    public long timestampNanos;
+    /** The sensor type for {@link #KIND_SENSOR} records. */
+    public int sensorType;
+    /** The number of valid entries in {@link #values}. */
+    public int numValues;
+    /**
+     * Sensor values; latitude and longitude for locations; x, y, z, w for
+     * references.
+     */
+    public final float[] values = new float[MAX_VALUES];
+    /** Millis since the epoch for {@link #KIND_TIME} records. */
+    public long epochMillis;
+  }
+
+  /** Writes a trace.  Not thread safe. */
+  public static final class Writer implements Closeable {
+    private final DataOutputStream out;
+    private long lastTimestamp = 0;
+
+    public Writer(OutputStream stream) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(stream));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+    }
+
+    public void writeSensorEvent(int sensorType, long timestampNanos, float[] values)
+        throws IOException {
+      int n = Math.min(values.length, MAX_VALUES);
+      writeHeader(KIND_SENSOR, timestampNanos);
+      writeVarint(sensorType);
+      out.writeByte(n);
+      for (int i = 0; i < n; ++i) {
+        out.writeFloat(values[i]);
+      }
+    }
+
+    public void writeLocation(long timestampNanos, float latitude, float longitude)
+        throws IOException {
+      writeHeader(KIND_LOCATION, timestampNanos);
+      out.writeFloat(latitude);
+      out.writeFloat(longitude);
+    }
+
+    public void writeTime(long timestampNanos, long epochMillis) throws IOException {
+      writeHeader(KIND_TIME, timestampNanos);
+      out.writeLong(epochMillis);
+    }
+
+    public void writeReference(long timestampNanos, float x, float y, float z, float w)
+        throws IOException {
+      writeHeader(KIND_REFERENCE, timestampNanos);
+      out.writeFloat(x);
+      out.writeFloat(y);
+      out.writeFloat(z);
+      out.writeFloat(w);
+    }
+
+    private void writeHeader(int kind, long timestampNanos) throws IOException {
+      long delta = timestampNanos - lastTimestamp;
+      lastTimestamp = timestampNanos;
+      out.writeByte(kind);
+      // Zigzag encoding keeps small negative deltas small.
+      writeVarint((delta << 1) ^ (delta >> 63));
+    }
+
+    private void writeVarint(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        out.writeByte((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      out.writeByte((int) value);
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /** Reads a trace written by {@link Writer}. */
+  public static final class Reader implements Closeable {
+    private final DataInputStream in;
+    private final Record record = new Record();
+    private long lastTimestamp = 0;
+
+    public Reader(InputStream stream) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(stream));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a sensor trace");
+      }
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported sensor trace version " + version);
+      }
+    }
+
+    /**
+     * Returns the next record, or null at the end of the trace.
+     */
+    public Record next() throws IOException {
+      int kind = in.read();
+      if (kind < 0) {
+        return null;
+      }
+      try {
+        record.kind = kind;
+        long zigzag = readVarint();
+        lastTimestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+        record.timestampNanos = lastTimestamp;
+        switch (kind) {
+          case KIND_SENSOR:
+            record.sensorType = (int) readVarint();
+            record.numValues = in.readUnsignedByte();
+            if (record.numValues > MAX_VALUES) {
+              throw new IOException("Too many values: " + record.numValues);
+            }
+            readFloats(record.numValues);
+            break;
+          case KIND_LOCATION:
+            readFloats(2);
+            break;
+          case KIND_TIME:
+            record.epochMillis = in.readLong();
+            break;
+          case KIND_REFERENCE:
+            readFloats(4);
+            break;
+          default:
+            throw new IOException("Unknown record kind " + kind);
+        }
+      } catch (EOFException e) {
+        throw new IOException("Truncated sensor trace", e);
+      }
+      return record;
+    }
+
+    private void readFloats(int n) throws IOException {
+      record.numValues = n;
+      for (int i = 0; i < n; ++i) {
+        record.values[i] = in.readFloat();
+      }
+    }
+
+    private long readVarint() throws IOException {
+      long result = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = in.readUnsignedByte();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.google.android.stardroid.space
 import java.util.*
 
 import com.google.android.stardroid.base.TimeConstants
+import com.google.android.stardroid.control.TimeSnapshot
 import com.google.android.stardroid.math.*
 import kotlin.math.acos
 import kotlin.math.cos
@@ -16,6 +17,9 @@ import kotlin.math.sin
 abstract class CelestialObject {
     abstract fun getRaDec(date : Date) : RaDec
 
+    /** Gets the position at a snapshot's time, reusing the values derived from it. */
+    open fun getRaDec(time : TimeSnapshot) : RaDec = getRaDec(time.date)
+
     /**
      * Enum that identifies whether we are interested in rise or set time.
      */
@@ -1,6 +1,7 @@
 package com.google.android.stardroid.space
 
 import com.google.android.stardroid.R
+import com.google.android.stardroid.control.TimeSnapshot
 import com.google.android.stardroid.ephemeris.SolarSystemBody
 import com.google.android.stardroid.math.*
 import com.google.android.stardroid.math.MathUtils.asin
@@ -13,7 +14,11 @@ import java.util.*
  * A likely temporary class to represent the Moon.
  */
 class Moon : EarthOrbitingObject(SolarSystemBody.Moon) {
-    override fun getRaDec(date: Date): RaDec {
+    override fun getRaDec(date: Date) = getRaDec(julianDay(date))
+
+    override fun getRaDec(time: TimeSnapshot) = getRaDec(time.julianDay)
+
+    private fun getRaDec(julianDay: Double): RaDec {
         /**
          * Calculate the geocentric right ascension and declination of the moon using
          * an approximation as described on page D22 of the 2008 Astronomical Almanac
@@ -25,7 +30,7 @@ class Moon : EarthOrbitingObject(SolarSystemBody.Moon) {
          * is valid, but it should be valid through at least 2009.
          */
         // First, calculate the number of Julian centuries from J2000.0.
-        val t = ((julianDay(date) - 2451545.0f) / 36525.0f).toFloat()
+        val t = ((julianDay - 2451545.0f) / 36525.0f).toFloat()
         // Second, calculate the approximate geocentric orbital elements.
         val lambda = (218.32f + 481267.881f * t + (6.29f
                 * sin((135.0f + 477198.87f * t) * DEGREES_TO_RADIANS)) - 1.27f
@@ -12,7 +12,7 @@ import java.util.*
 class Sun : SunOrbitingObject(SolarSystemBody.Sun) {
     override val bodySize = -0.83f
 
-    override fun getMyHeliocentricCoordinates(date: Date) =
+    override fun getMyHeliocentricCoordinates(julianCenturies: Double) =
         Vector3(0.0f, 0.0f, 0.0f)
 
     // TODO(serafini): For now, return semi-reasonable values for the Sun and
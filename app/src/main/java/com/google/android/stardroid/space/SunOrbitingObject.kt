@@ -1,26 +1,32 @@
 package com.google.android.stardroid.space
 
+import com.google.android.stardroid.control.TimeSnapshot
 import com.google.android.stardroid.ephemeris.SolarSystemBody
 import com.google.android.stardroid.math.RaDec
 import com.google.android.stardroid.math.convertToEquatorialCoordinates
 import com.google.android.stardroid.math.heliocentricCoordinatesFromOrbitalElements
+import com.google.android.stardroid.math.julianCenturies
 import java.util.*
 
 /**
  * An object that orbits the sun.
  */
 open class SunOrbitingObject(solarSystemBody : SolarSystemBody) : SolarSystemObject(solarSystemBody) {
-    override fun getRaDec(date: Date): RaDec {
-        val earthCoords =
-            heliocentricCoordinatesFromOrbitalElements(SolarSystemBody.Earth.getOrbitalElements(date))
-        val myCoords = getMyHeliocentricCoordinates(date)
+    override fun getRaDec(date: Date) = getRaDec(julianCenturies(date))
+
+    override fun getRaDec(time: TimeSnapshot) = getRaDec(time.julianCenturies)
+
+    private fun getRaDec(julianCenturies: Double): RaDec {
+        val earthCoords = heliocentricCoordinatesFromOrbitalElements(
+            SolarSystemBody.Earth.getOrbitalElements(julianCenturies))
+        val myCoords = getMyHeliocentricCoordinates(julianCenturies)
         myCoords -= earthCoords
         val equ = convertToEquatorialCoordinates(myCoords)
         return RaDec.fromGeocentricCoords(equ)
     }
 
-    protected open fun getMyHeliocentricCoordinates(date: Date) =
-        heliocentricCoordinatesFromOrbitalElements(solarSystemBody.getOrbitalElements(date))
+    protected open fun getMyHeliocentricCoordinates(julianCenturies: Double) =
+        heliocentricCoordinatesFromOrbitalElements(solarSystemBody.getOrbitalElements(julianCenturies))
 
     /////////////////////
 
@@ -1,5 +1,6 @@
 package com.google.android.stardroid.space
 
+import com.google.android.stardroid.control.TimeSnapshot
 import com.google.android.stardroid.ephemeris.SolarSystemBody
 import com.google.android.stardroid.math.RaDec
 import java.util.*
@@ -42,4 +43,9 @@ class Universe {
     fun getRaDec(solarSystemBody: SolarSystemBody, datetime: Date): RaDec {
         return solarSystemObjectMap.get(solarSystemBody)!!.getRaDec(datetime)
     }
+
+    /** Gets the location of a planet at a snapshot's time. */
+    fun getRaDec(solarSystemBody: SolarSystemBody, time: TimeSnapshot): RaDec {
+        return solarSystemObjectMap.get(solarSystemBody)!!.getRaDec(time)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.google.android.stardroid.base;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for the FloatKeyedTopK class.
+ */
+public class FloatKeyedTopKTest extends TestCase {
+  private FloatKeyedTopK topK;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    topK = new FloatKeyedTopK(10);
+  }
+
+  public void testAdd() {
+    assertTrue(topK.isEmpty());
+    for (int i = 0; i < 10; i++) {
+      assertFalse(topK.isFull());
+      assertTrue(topK.add(i, 100 + i));
+      assertEquals(i + 1, topK.size());
+    }
+    assertEquals(0f, topK.peekKey());
+    assertEquals(100, topK.peekValue());
+    assertTrue(topK.isFull());
+
+    // Full, so a lesser or equal key is rejected.
+    assertFalse(topK.add(-1, 99));
+    assertFalse(topK.add(0, 99));
+    assertEquals(100, topK.peekValue());
+    assertEquals(10, topK.size());
+
+    assertTrue(topK.add(10, 110));
+    assertEquals(1f, topK.peekKey());
+    assertEquals(101, topK.peekValue());
+
+    assertTrue(topK.add(5, 105));
+    assertEquals(2f, topK.peekKey());
+    assertEquals(10, topK.size());
+  }
+
+  public void testNaNIsRejected() {
+    assertFalse(topK.wouldAccept(Float.NaN));
+    assertFalse(topK.add(Float.NaN, 1));
+    assertTrue(topK.isEmpty());
+  }
+
+  public void testWouldAccept() {
+    for (int i = 0; i < 10; i++) {
+      assertTrue(topK.wouldAccept(-1000));
+      topK.add(i, i);
+    }
+    assertFalse(topK.wouldAccept(0));
+    assertTrue(topK.wouldAccept(0.5f));
+  }
+
+  public void testPollReturnsAscendingKeys() {
+    float[] keys = {3, -2, 7.5f, 1, 0, 9, 4};
+    for (int i = 0; i < keys.length; i++) {
+      topK.add(keys[i], i);
+    }
+    assertEquals(1, topK.poll());
+    assertEquals(4, topK.poll());
+    assertEquals(3, topK.poll());
+    assertEquals(0, topK.poll());
+    assertEquals(6, topK.poll());
+    assertEquals(2, topK.poll());
+    assertEquals(5, topK.poll());
+    assertTrue(topK.isEmpty());
+  }
+
+  public void testDrainDescending() {
+    for (int i = 0; i < 25; i++) {
+      topK.add((i * 7) % 25, i);
+    }
+    int[] out = new int[10];
+    assertEquals(10, topK.drainDescending(out));
+    assertTrue(topK.isEmpty());
+    for (int i = 0; i < 10; i++) {
+      // Key (i * 7) % 25 == 24 - i for the i-th largest.
+      assertEquals(24 - i, (out[i] * 7) % 25);
+    }
+  }
+
+  public void testClear() {
+    topK.add(1, 1);
+    topK.clear();
+    assertTrue(topK.isEmpty());
+    assertTrue(topK.add(-5, 2));
+    assertEquals(2, topK.peekValue());
+  }
+
+  public void testMatchesSort() {
+    Random random = new Random(42);
+    float[] keys = new float[1000];
+    FloatKeyedTopK large = new FloatKeyedTopK(50);
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextFloat();
+      large.add(keys[i], i);
+    }
+    int[] out = new int[50];
+    large.drainDescending(out);
+    float[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < out.length; i++) {
+      assertEquals(sorted[sorted.length - 1 - i], keys[out[i]]);
+    }
+  }
+}
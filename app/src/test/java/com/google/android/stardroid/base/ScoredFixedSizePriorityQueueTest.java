@@ -0,0 +1,129 @@
+package com.google.android.stardroid.base;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for the ScoredFixedSizePriorityQueue class.  These mirror
+ * {@link FixedSizePriorityQueueTest} to check the two classes behave the same.
+ */
+public class ScoredFixedSizePriorityQueueTest extends TestCase {
+  ScoredFixedSizePriorityQueue<Integer> queue;
+  Filter<Integer> evenFilter;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    queue = new ScoredFixedSizePriorityQueue<Integer>(10,
+        new ScoredFixedSizePriorityQueue.Scorer<Integer>() {
+          public float score(Integer object) {
+            return object.floatValue();
+          }
+        });
+
+    evenFilter = new Filter<Integer>() {
+      public boolean accept(Integer object) {
+        return (object.intValue() % 2) == 0;
+      }
+    };
+  }
+
+  public void testAdd_noFilter() {
+    assertEquals(null, queue.getFilter());
+
+    assertEquals(0, queue.size());
+    for (int i=0; i<10; i++) {
+      assertFalse(queue.isFull());
+      assertTrue(queue.add(i));
+      assertEquals(i+1, queue.size());
+    }
+    assertEquals(0, queue.peek().intValue());
+    assertTrue(queue.isFull());
+
+    // Queue is full, should not be able to add a new lesser value
+    assertFalse(queue.add(-1));
+    assertEquals(0, queue.peek().intValue());
+    assertEquals(10, queue.size());
+    assertFalse(queue.isEmpty());
+    assertTrue(queue.isFull());
+
+    assertTrue(queue.add(10));
+    assertEquals(1, queue.peek().intValue());
+    assertEquals(10, queue.size());
+
+    assertTrue(queue.add(5));
+    assertEquals(2, queue.peek().intValue());
+    assertEquals(10, queue.size());
+  }
+
+  public void testAdd_filter() {
+    queue.setFilter(evenFilter);
+
+    Integer[] numbers = {6, 8, 10, 12, 14, 16, 18, 20, 22};
+    assertTrue(queue.addAll(Arrays.asList(numbers)));
+    assertEquals(6, queue.peek().intValue());
+    assertEquals(9, queue.size());
+
+    assertFalse(queue.add(5));
+    assertEquals(6, queue.peek().intValue());
+    assertEquals(9, queue.size());
+
+    assertTrue(queue.add(4));
+    assertEquals(4, queue.peek().intValue());
+    assertEquals(10, queue.size());
+
+    assertFalse(queue.add(2));
+    assertEquals(4, queue.peek().intValue());
+    assertEquals(10, queue.size());
+  }
+
+  public void testAddAll_noFilter() {
+    Integer[] numbers = {2, 3, 4, 5, 10, 12, 18, 20};
+    assertTrue(queue.addAll(Arrays.asList(numbers)));
+    assertEquals(2, queue.peek().intValue());
+    assertEquals(8, queue.size());
+
+    Integer[] moreNumbers = {1, 7, 9};
+    assertTrue(queue.addAll(Arrays.asList(moreNumbers)));
+    assertEquals(2, queue.peek().intValue());
+    assertTrue(queue.isFull());
+
+    Integer[] evenMoreNumbers = {0, 1, 0};
+    assertFalse(queue.addAll(Arrays.asList(evenMoreNumbers)));
+    assertEquals(2, queue.peek().intValue());
+    assertEquals(10, queue.size());
+  }
+
+  public void testPollAndDrain() {
+    assertNull(queue.peek());
+    assertNull(queue.poll());
+
+    Integer[] numbers = {14, 3, 8, 27, 1, 19, 5, 11, 2, 30, 6, 22};
+    queue.addAll(Arrays.asList(numbers));
+    assertEquals(3, queue.poll().intValue());
+    assertEquals(9, queue.size());
+
+    // Freed slots must be reusable.
+    assertTrue(queue.add(40));
+    assertTrue(queue.isFull());
+
+    Integer[] out = new Integer[10];
+    assertEquals(10, queue.drainDescending(out));
+    assertTrue(queue.isEmpty());
+    Integer[] expected = {40, 30, 27, 22, 19, 14, 11, 8, 6, 5};
+    assertTrue(Arrays.equals(expected, out));
+  }
+
+  public void testClear() {
+    Integer[] numbers = {2, 4, 6, 8, 10, 12, 14, 16, 18, 20};
+    queue.addAll(Arrays.asList(numbers));
+    queue.clear();
+    assertTrue(queue.isEmpty());
+    for (int i = 0; i < 10; i++) {
+      assertTrue(queue.add(-i));
+    }
+    assertEquals(-9, queue.peek().intValue());
+  }
+}
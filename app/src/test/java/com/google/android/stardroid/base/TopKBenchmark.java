@@ -0,0 +1,118 @@
+package com.google.android.stardroid.base;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Compares {@link FixedSizePriorityQueue} with {@link ScoredFixedSizePriorityQueue}
+ * and the raw {@link FloatKeyedTopK} when selecting the best k of 100k scored
+ * candidates.  This is not a unit test; run it on a desktop JVM with
+ * <pre>
+ *   java -cp ... com.google.android.stardroid.base.TopKBenchmark
+ * </pre>
+ */
+public class TopKBenchmark {
+  private static final int NUM_CANDIDATES = 100000;
+  private static final int K = 100;
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int TIMED_ROUNDS = 50;
+
+  /** Stand-in for a search candidate, e.g. a star with its angular distance. */
+  private static class Candidate {
+    final int id;
+    final float distance;
+
+    Candidate(int id, float distance) {
+      this.id = id;
+      this.distance = distance;
+    }
+  }
+
+  private interface Selector {
+    int select();
+  }
+
+  public static void main(String[] args) {
+    Random random = new Random(1234);
+    final Candidate[] candidates = new Candidate[NUM_CANDIDATES];
+    final float[] distances = new float[NUM_CANDIDATES];
+    for (int i = 0; i < NUM_CANDIDATES; i++) {
+      distances[i] = random.nextFloat() * 180f;
+      candidates[i] = new Candidate(i, distances[i]);
+    }
+
+    // Closest first, so the lowest priority element is the furthest away.
+    final Comparator<Candidate> comparator = new Comparator<Candidate>() {
+      public int compare(Candidate a, Candidate b) {
+        return Float.compare(b.distance, a.distance);
+      }
+    };
+    final ScoredFixedSizePriorityQueue.Scorer<Candidate> scorer =
+        new ScoredFixedSizePriorityQueue.Scorer<Candidate>() {
+          public float score(Candidate c) {
+            return -c.distance;
+          }
+        };
+
+    run("FixedSizePriorityQueue", new Selector() {
+      public int select() {
+        FixedSizePriorityQueue<Candidate> queue =
+            new FixedSizePriorityQueue<Candidate>(K, comparator);
+        for (Candidate c : candidates) {
+          queue.add(c);
+        }
+        return queue.peek().id;
+      }
+    });
+
+    final ScoredFixedSizePriorityQueue<Candidate> scored =
+        new ScoredFixedSizePriorityQueue<Candidate>(K, scorer);
+    run("ScoredFixedSizePriorityQueue", new Selector() {
+      public int select() {
+        scored.clear();
+        for (Candidate c : candidates) {
+          scored.add(c);
+        }
+        return scored.peek().id;
+      }
+    });
+
+    final FloatKeyedTopK topK = new FloatKeyedTopK(K);
+    run("FloatKeyedTopK", new Selector() {
+      public int select() {
+        topK.clear();
+        for (int i = 0; i < distances.length; i++) {
+          topK.add(-distances[i], i);
+        }
+        return topK.peekValue();
+      }
+    });
+  }
+
+  private static void run(String name, Selector selector) {
+    int sink = 0;
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      sink += selector.select();
+    }
+    long bytesBefore = allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMED_ROUNDS; i++) {
+      sink += selector.select();
+    }
+    long elapsed = System.nanoTime() - start;
+    long bytes = allocatedBytes() - bytesBefore;
+    System.out.printf("%-30s %8.3f ms/round %10d bytes/round (checksum %d)%n",
+        name, elapsed / 1e6 / TIMED_ROUNDS, bytesBefore < 0 ? -1 : bytes / TIMED_ROUNDS, sink);
+  }
+
+  // Returns -1 if the JVM cannot report per-thread allocation.
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+          Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,73 @@
+package com.google.android.stardroid.control
+
+import com.google.android.stardroid.math.LatLong
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class CachedMagneticDeclinationCalculatorTest {
+    private val year = 365L * 24 * 60 * 60 * 1000
+
+    @Test
+    fun testInterpolatesSmoothFieldsExactly() {
+        // Bilinear interpolation is exact for a field linear in latitude and longitude.
+        val calculator = CachedMagneticDeclinationCalculator { lat, long, _ -> 0.1f * lat - 0.05f * long }
+        calculator.setLocationAndTime(LatLong(37.4f, -122.1f), 0L)
+        assertThat(calculator.declination).isWithin(1e-3f).of(0.1f * 37.4f + 0.05f * 122.1f)
+    }
+
+    @Test
+    fun testReturnsZeroUntilSet() {
+        val calculator = CachedMagneticDeclinationCalculator { _, _, _ -> 10f }
+        assertThat(calculator.declination).isEqualTo(0f)
+    }
+
+    @Test
+    fun testNearbyPlacesAndTimesReuseTheModel() {
+        val calculator = CachedMagneticDeclinationCalculator { lat, _, _ -> lat / 10 }
+        calculator.setLocationAndTime(LatLong(51.1f, -0.3f), 0L)
+        assertThat(calculator.modelEvaluations).isEqualTo(4)
+        // Same grid cell, a few days later.
+        calculator.setLocationAndTime(LatLong(51.9f, -0.1f), 3L * 24 * 60 * 60 * 1000)
+        assertThat(calculator.modelEvaluations).isEqualTo(4)
+        // The next cell east shares two corners.
+        calculator.setLocationAndTime(LatLong(51.5f, 1f), 0L)
+        assertThat(calculator.modelEvaluations).isEqualTo(6)
+    }
+
+    @Test
+    fun testTimeTravelBackAndForthReusesTheModel() {
+        val calculator = CachedMagneticDeclinationCalculator { _, _, time -> time.toFloat() / year }
+        val location = LatLong(40f, 20f)
+        for (pass in 0 until 3) {
+            for (y in 0 until 50) {
+                calculator.setLocationAndTime(location, y * year)
+                assertThat(calculator.declination).isWithin(0.1f).of(y.toFloat())
+            }
+        }
+        assertThat(calculator.modelEvaluations).isEqualTo(50 * 4)
+    }
+
+    @Test
+    fun testCacheIsBounded() {
+        var evaluations = 0
+        val calculator = CachedMagneticDeclinationCalculator { _, _, _ -> evaluations++; 0f }
+        val location = LatLong(0f, 0f)
+        for (month in 0 until CachedMagneticDeclinationCalculator.MAX_CACHED_CORNERS) {
+            calculator.setLocationAndTime(location, month * CachedMagneticDeclinationCalculator.TIME_STEP_MILLIS)
+        }
+        // The first month's corners have been evicted.
+        val before = evaluations
+        calculator.setLocationAndTime(location, 0L)
+        assertThat(evaluations).isEqualTo(before + 4)
+    }
+
+    @Test
+    fun testWrapsAroundTheDateLineAndPoles() {
+        // Declination swinging through 180 degrees between corners, as near the magnetic poles.
+        val calculator = CachedMagneticDeclinationCalculator { _, long, _ -> if (long < 179f) 179f else -179f }
+        calculator.setLocationAndTime(LatLong(80.5f, 179f), 0L)
+        assertThat(Math.abs(calculator.declination)).isGreaterThan(178f)
+        calculator.setLocationAndTime(LatLong(90f, -179.5f), 0L)
+        assertThat(Math.abs(calculator.declination)).isGreaterThan(178f)
+    }
+}
@@ -0,0 +1,58 @@
+package com.google.android.stardroid.control
+
+import com.google.android.stardroid.control.AstronomerModel.Pointing
+import com.google.android.stardroid.math.Vector3
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
+
+class PublishedPointingTest {
+    @Test
+    fun testReadReturnsLastPublished() {
+        val published = PublishedPointing()
+        published.publish(Pointing(Vector3(1f, 2f, 3f), Vector3(4f, 5f, 6f)), Vector3(7f, 8f, 9f))
+        val pointing = Pointing()
+        published.readPointing(pointing)
+        assertThat(pointing.lineOfSight).isEqualTo(Vector3(1f, 2f, 3f))
+        assertThat(pointing.perpendicular).isEqualTo(Vector3(4f, 5f, 6f))
+        val up = Vector3.unitX()
+        published.readPhoneUp(up)
+        assertThat(up).isEqualTo(Vector3(7f, 8f, 9f))
+    }
+
+    @Test
+    fun testConcurrentReadsAreNeverTorn() {
+        val published = PublishedPointing()
+        published.publish(Pointing(Vector3(-1f, -1f, -1f), Vector3(-1f, -1f, -1f)), Vector3.unitZ())
+        val done = AtomicBoolean(false)
+        val writer = Thread {
+            val pointing = Pointing()
+            val up = Vector3.unitZ()
+            var i = 0f
+            while (!done.get()) {
+                // Every component of a given publication has the same value.
+                pointing.updateLineOfSight(i, i, i)
+                pointing.updatePerpendicular(i, i, i)
+                up.assign(i, i, i)
+                published.publish(pointing, up)
+                i++
+            }
+        }
+        writer.start()
+        val pointing = Pointing()
+        try {
+            for (n in 0 until 200000) {
+                published.readPointing(pointing)
+                val x = pointing.lineOfSightX
+                assertThat(pointing.lineOfSightY).isEqualTo(x)
+                assertThat(pointing.lineOfSightZ).isEqualTo(x)
+                assertThat(pointing.perpendicularX).isEqualTo(x)
+                assertThat(pointing.perpendicularY).isEqualTo(x)
+                assertThat(pointing.perpendicularZ).isEqualTo(x)
+            }
+        } finally {
+            done.set(true)
+            writer.join()
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.google.android.stardroid.control
+
+import com.google.android.stardroid.ephemeris.SolarSystemBody
+import com.google.android.stardroid.math.LatLong
+import com.google.android.stardroid.math.calculateRADecOfZenith
+import com.google.android.stardroid.math.getGeocentricCoords
+import com.google.android.stardroid.math.julianCenturies
+import com.google.android.stardroid.math.julianDay
+import com.google.android.stardroid.math.meanSiderealTime
+import com.google.android.stardroid.space.Universe
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.*
+
+class TimeSnapshotTest {
+    private var now = 1_000_000_000_000L
+
+    private fun newModel(): AstronomerModel {
+        val model = AstronomerModelImpl(ZeroMagneticDeclinationCalculator())
+        model.setClock { now }
+        return model
+    }
+
+    @Test
+    fun testDerivedValuesMatchTheDate() {
+        val snapshot = TimeSnapshot(now, -122f)
+        val date = Date(now)
+        assertThat(snapshot.date).isEqualTo(date)
+        assertThat(snapshot.julianDay).isEqualTo(julianDay(date))
+        assertThat(snapshot.julianCenturies).isEqualTo(julianCenturies(date))
+        assertThat(snapshot.localSiderealTime).isEqualTo(meanSiderealTime(date, -122f))
+    }
+
+    @Test
+    fun testSnapshotOnlyChangesWhenCaptured() {
+        val model = newModel()
+        val snapshot = model.timeSnapshot
+        assertThat(snapshot.millis).isEqualTo(now)
+
+        now += 1000
+        // Everything reading the time during the frame sees the same instant.
+        assertThat(model.timeSnapshot).isSameInstanceAs(snapshot)
+        assertThat(model.timeMillis).isEqualTo(now)
+
+        model.captureTimeSnapshot()
+        assertThat(model.timeSnapshot.millis).isEqualTo(now)
+    }
+
+    @Test
+    fun testMovingRecapturesSiderealTime() {
+        val model = newModel()
+        model.location = LatLong(51.5f, -0.1f)
+        val greenwich = model.timeSnapshot.localSiderealTime
+        model.location = LatLong(40.7f, -74f)
+        assertThat(model.timeSnapshot.localSiderealTime).isNotEqualTo(greenwich)
+    }
+
+    @Test
+    fun testZenithIsForTheSnapshotsTime() {
+        val model = newModel()
+        val location = LatLong(51.5f, -0.1f)
+        model.location = location
+        val zenith = model.zenith
+
+        // Hours later the sky has turned, but not for the frame still being drawn.
+        now += 3 * 3600 * 1000
+        assertThat(model.zenith.distanceFrom(zenith)).isEqualTo(0f)
+
+        model.captureTimeSnapshot()
+        val expected = getGeocentricCoords(calculateRADecOfZenith(Date(now), location))
+        assertThat(model.zenith.distanceFrom(expected)).isWithin(1e-5f).of(0f)
+    }
+
+    @Test
+    fun testPositionsFromTheSnapshotMatchTheDate() {
+        val universe = Universe()
+        val snapshot = TimeSnapshot(now, 0f)
+        for (body in SolarSystemBody.values()) {
+            val fromSnapshot = universe.getRaDec(body, snapshot)
+            val fromDate = universe.getRaDec(body, snapshot.date)
+            assertThat(fromSnapshot.ra).isEqualTo(fromDate.ra)
+            assertThat(fromSnapshot.dec).isEqualTo(fromDate.dec)
+        }
+    }
+}
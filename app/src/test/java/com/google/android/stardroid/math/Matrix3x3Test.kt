@@ -81,6 +81,31 @@ class Matrix3x3Test {
         Vector3Subject.assertThat(Vector3(10f, 19f, 20f)).isWithin(TOL).of(m1 * v2)
     }
 
+    @Test
+    fun testAssignProduct() {
+        val m1 = Matrix3x3(1f, 2f, 4f, -1f, -3f, 5f, 3f, 2f, 6f)
+        val m2 = Matrix3x3(3f, -1f, 4f, 0f, 2f, 1f, 2f, -1f, 2f)
+        val product = Matrix3x3(11f, -1f, 14f, 7f, -10f, 3f, 21f, -5f, 26f)
+        val m = Matrix3x3.identity.copy()
+        m.assignProduct(m1, m2)
+        Matrix3x3Subject.assertThat(m).isWithin(TOL).of(product)
+        // The result can be one of the operands.
+        m1.assignProduct(m1, m2)
+        Matrix3x3Subject.assertThat(m1).isWithin(TOL).of(product)
+    }
+
+    @Test
+    fun testAssignFromVectors() {
+        val v1 = Vector3(1f, 2f, 3f)
+        val v2 = Vector3(4f, 5f, 6f)
+        val v3 = Vector3(7f, 8f, 9f)
+        val m = Matrix3x3.identity.copy()
+        m.assign(v1, v2, v3)
+        Matrix3x3Subject.assertThat(m).isWithin(TOL).of(Matrix3x3(v1, v2, v3))
+        m.assign(v1, v2, v3, false)
+        Matrix3x3Subject.assertThat(m).isWithin(TOL).of(Matrix3x3(v1, v2, v3, false))
+    }
+
     @Test
     fun testTranspose() {
         val m = Matrix3x3(
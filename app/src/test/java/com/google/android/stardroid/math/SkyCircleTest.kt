@@ -0,0 +1,90 @@
+package com.google.android.stardroid.math
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+private const val TOL = 1e-5f
+
+class SkyCircleTest {
+    @Test
+    fun testPointsLieOnTheCircle() {
+        val axis = Vector3(1f, 1f, 0f).normalizedCopy()
+        val circle = SkyCircle(axis, 0.5f, Vector3.unitZ())
+        val point = Vector3.zero()
+        for (i in 0 until 10) {
+            circle.pointAt(i * 0.7f, point)
+            assertThat(point.length).isWithin(TOL).of(1f)
+            assertThat(point dot axis).isWithin(TOL).of(MathUtils.cos(0.5f))
+        }
+        circle.pointAt(0f, point)
+        // The circle starts at the point nearest the reference.
+        assertThat(point.z).isWithin(TOL).of(MathUtils.sin(0.5f))
+    }
+
+    @Test
+    fun testChordsAreWithinTolerance() {
+        val axis = Vector3.unitZ()
+        val angularRadius = 1.2f
+        val circle = SkyCircle(axis, angularRadius, Vector3.unitX())
+        val maxError = 0.001f
+        val points = SkyCircle.Polylines()
+        circle.tessellate(Vector3.unitX(), PI, maxError, points)
+
+        assertThat(points.numRuns).isEqualTo(1)
+        val center = axis * MathUtils.cos(angularRadius)
+        val coords = points.coords
+        for (i in 0 until points.numPoints - 1) {
+            val mid = Vector3(
+                (coords[3 * i] + coords[3 * i + 3]) / 2,
+                (coords[3 * i + 1] + coords[3 * i + 4]) / 2,
+                (coords[3 * i + 2] + coords[3 * i + 5]) / 2)
+            val sagitta = MathUtils.sin(angularRadius) - (mid - center).length
+            assertThat(sagitta).isAtMost(maxError)
+        }
+    }
+
+    @Test
+    fun testNarrowViewNeedsFewerPoints() {
+        val circle = SkyCircle(Vector3.unitZ(), PI / 2, Vector3.unitX())
+        val whole = SkyCircle.Polylines()
+        circle.tessellate(Vector3.unitX(), PI, 0.0005f, whole)
+        val visible = SkyCircle.Polylines()
+        circle.tessellate(Vector3.unitX(), 0.1f, 0.0005f, visible)
+
+        assertThat(visible.numRuns).isEqualTo(1)
+        assertThat(visible.numPoints * 10).isLessThan(whole.numPoints)
+        // The visible run still reaches the edges of the view.
+        val coords = visible.coords
+        val last = visible.numPoints - 1
+        assertThat(Vector3(coords[0], coords[1], coords[2]) dot Vector3.unitX())
+            .isLessThan(MathUtils.cos(0.1f))
+        assertThat(Vector3(coords[3 * last], coords[3 * last + 1], coords[3 * last + 2])
+                dot Vector3.unitX()).isLessThan(MathUtils.cos(0.1f))
+    }
+
+    @Test
+    fun testArcOutOfViewHasNoPoints() {
+        // A line of right ascension 0, from the north pole through +x to the south pole.
+        val arc = SkyCircle(Vector3.unitY(), PI / 2, Vector3.unitZ(), PI)
+        val points = SkyCircle.Polylines()
+        arc.tessellate(Vector3(-1f, 0f, 0f), 0.5f, 0.001f, points)
+        assertThat(points.numRuns).isEqualTo(0)
+
+        // Though the rest of its great circle is in view.
+        val circle = SkyCircle(Vector3.unitY(), PI / 2, Vector3.unitZ())
+        circle.tessellate(Vector3(-1f, 0f, 0f), 0.5f, 0.001f, points)
+        assertThat(points.numRuns).isEqualTo(1)
+    }
+
+    @Test
+    fun testWiderToleranceNeedsFewerSegments() {
+        val circle = SkyCircle(Vector3.unitZ(), PI / 2, Vector3.unitX())
+        val points = SkyCircle.Polylines()
+        circle.tessellate(Vector3.unitX(), PI, 0.0005f, points)
+        val fine = points.numSegments
+        circle.tessellate(Vector3.unitX(), PI, 0.005f, points)
+        val coarse = points.numSegments
+        assertThat(coarse).isLessThan(fine)
+        assertThat(circle.angleStep(0.005f)).isGreaterThan(circle.angleStep(0.0005f))
+    }
+}
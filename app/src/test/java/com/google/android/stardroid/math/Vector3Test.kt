@@ -107,6 +107,29 @@ class Vector3Test {
         assertThat(v2 dot v3).isWithin(TOL).of(0f)
     }
 
+    @Test
+    fun testAssignCross() {
+        val v1 = Vector3(1f, 2f, 3f)
+        val v2 = Vector3(-1f, 3f, -3f)
+        val v3 = Vector3.zero()
+        v3.assignCross(v1, v2)
+        Vector3Subject.assertThat(v3).isWithin(TOL).of(v1 * v2)
+        // The result can be one of the operands.
+        v1.assignCross(v1, v2)
+        Vector3Subject.assertThat(v1).isWithin(TOL).of(v3)
+    }
+
+    @Test
+    fun testAssignProduct() {
+        val m = Matrix3x3(1f, 2f, 4f, -1f, -3f, 5f, 3f, 2f, 6f)
+        val v = Vector3(0f, -1f, 2f)
+        val result = Vector3.zero()
+        result.assignProduct(m, v)
+        Vector3Subject.assertThat(result).isWithin(TOL).of(Vector3(6f, 13f, 10f))
+        v.assignProduct(m, v)
+        Vector3Subject.assertThat(v).isWithin(TOL).of(Vector3(6f, 13f, 10f))
+    }
+
     @Test
     fun testDistanceFrom() {
         val v1 = Vector3(1f, 2f, 5f)
@@ -0,0 +1,126 @@
+package com.google.android.stardroid.renderables.proto
+
+import android.content.res.Resources
+import com.google.android.stardroid.R
+import com.google.android.stardroid.renderables.AstronomicalRenderable
+import com.google.android.stardroid.renderables.PointPrimitive
+import com.google.android.stardroid.source.proto.SourceProto
+import com.google.common.truth.Truth.assertThat
+import com.google.protobuf.InvalidProtocolBufferException
+import org.junit.Assert.assertThrows
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.anyString
+import org.mockito.Mockito.eq
+import org.mockito.Mockito.mock
+
+class ProtobufSourceDecoderTest {
+    private val resources = mock(Resources::class.java)
+    private val decoder = ProtobufSourceDecoder(resources)
+
+    @Before
+    fun setUp() {
+        `when`(resources.getIdentifier(eq("polaris"), eq("string"), anyString())).thenReturn(1)
+        `when`(resources.getIdentifier(eq("north_star"), eq("string"), anyString())).thenReturn(2)
+        `when`(resources.getString(1)).thenReturn("Polaris")
+        `when`(resources.getString(2)).thenReturn("North Star")
+        `when`(resources.getString(R.string.missing_label)).thenReturn("?")
+    }
+
+    private fun coords(ra: Float, dec: Float) = SourceProto.GeocentricCoordinatesProto.newBuilder()
+        .setRightAscension(ra).setDeclination(dec)
+
+    private fun decode(vararg sources: SourceProto.AstronomicalSourceProto.Builder) =
+        ArrayList<AstronomicalRenderable>().also { decoded ->
+            val proto = SourceProto.AstronomicalSourcesProto.newBuilder()
+            sources.forEach { proto.addSource(it) }
+            decoder.decode(proto.build().toByteArray(), decoded)
+        }
+
+    @Test
+    fun testDecodesEveryField() {
+        val source = SourceProto.AstronomicalSourceProto.newBuilder()
+            .addNameStrIds("polaris")
+            .addNameStrIds("north_star")
+            .setSearchLocation(coords(37.9f, 89.3f))
+            .setLevel(2f)
+            .addPoint(SourceProto.PointElementProto.newBuilder()
+                .setLocation(coords(37.9f, 89.3f)).setColor(0xff00ff00.toInt()).setSize(5)
+                .setShape(SourceProto.Shape.SPIRAL_GALAXY))
+            .addLabel(SourceProto.LabelElementProto.newBuilder()
+                .setLocation(coords(37.9f, 89.3f)).setColor(0xff0000ff.toInt())
+                .setStringsStrId("polaris").setFontSize(20).setOffset(0.05f))
+            .addLine(SourceProto.LineElementProto.newBuilder()
+                .setColor(0xffff0000.toInt()).setLineWidth(2.5f)
+                .addVertex(coords(0f, 0f)).addVertex(coords(10f, 20f)))
+
+        val decoded = decode(source).single()
+
+        assertThat(decoded.names).containsExactly("Polaris", "North Star").inOrder()
+        assertThat(decoded.searchLocation.z).isWithin(1e-6f)
+            .of(Math.sin(Math.toRadians(89.3)).toFloat())
+        val point = decoded.points.single()
+        assertThat(point.color).isEqualTo(0xff00ff00.toInt())
+        assertThat(point.size).isEqualTo(5)
+        assertThat(point.pointShape).isEqualTo(PointPrimitive.Shape.SPIRAL_GALAXY)
+        val label = decoded.labels.single()
+        assertThat(label.text).isEqualTo("Polaris")
+        assertThat(label.color).isEqualTo(0xff0000ff.toInt())
+        assertThat(label.fontSize).isEqualTo(20)
+        assertThat(label.offset).isEqualTo(0.05f)
+        // Brighter objects' labels win.
+        assertThat(label.priority).isEqualTo(5)
+        val line = decoded.lines.single()
+        assertThat(line.color).isEqualTo(0xffff0000.toInt())
+        assertThat(line.lineWidth).isEqualTo(2.5f)
+        assertThat(line.vertices).hasSize(2)
+        assertThat(line.vertices[1].z).isWithin(1e-6f)
+            .of(Math.sin(Math.toRadians(20.0)).toFloat())
+    }
+
+    @Test
+    fun testMissingFieldsTakeTheProtoDefaults() {
+        val source = SourceProto.AstronomicalSourceProto.newBuilder()
+            .addPoint(SourceProto.PointElementProto.newBuilder())
+            .addLabel(SourceProto.LabelElementProto.newBuilder().setStringsStrId("unknown"))
+            .addLine(SourceProto.LineElementProto.newBuilder())
+        val defaults = source.build()
+
+        val decoded = decode(source).single()
+
+        assertThat(decoded.names).isEmpty()
+        val point = decoded.points.single()
+        assertThat(point.color).isEqualTo(defaults.getPoint(0).color)
+        assertThat(point.size).isEqualTo(defaults.getPoint(0).size)
+        assertThat(point.pointShape).isEqualTo(PointPrimitive.Shape.CIRCLE)
+        val label = decoded.labels.single()
+        assertThat(label.text).isEqualTo("?")
+        assertThat(label.fontSize).isEqualTo(defaults.getLabel(0).fontSize)
+        assertThat(label.offset).isEqualTo(defaults.getLabel(0).offset)
+        assertThat(decoded.lines.single().lineWidth).isEqualTo(defaults.getLine(0).lineWidth)
+    }
+
+    @Test
+    fun testKeepsTheSourcesInOrder() {
+        val decoded = decode(
+            SourceProto.AstronomicalSourceProto.newBuilder().addNameStrIds("polaris"),
+            SourceProto.AstronomicalSourceProto.newBuilder(),
+            SourceProto.AstronomicalSourceProto.newBuilder().addNameStrIds("north_star"))
+
+        assertThat(decoded.map { it.names }).containsExactly(
+            listOf("Polaris"), emptyList<String>(), listOf("North Star")).inOrder()
+        assertThat(decoded[1].points).isEmpty()
+        assertThat(decoded[1].labels).isEmpty()
+    }
+
+    @Test
+    fun testRejectsTruncatedData() {
+        val data = SourceProto.AstronomicalSourcesProto.newBuilder()
+            .addSource(SourceProto.AstronomicalSourceProto.newBuilder().addNameStrIds("polaris"))
+            .build().toByteArray()
+        assertThrows(InvalidProtocolBufferException::class.java) {
+            decoder.decode(data.copyOf(data.size - 1), ArrayList())
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.renderer.ChangeSet.Change
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class ChangeSetTest {
+    @Test
+    fun testCommandsAreKeptInOrder() {
+        val changes = ChangeSet()
+        changes.add(Change.MOVED, 7)
+        changes.add(Change.IMAGE_CHANGED, 100000)
+        changes.add(Change.RECOLORED, 0)
+
+        assertThat(changes.size()).isEqualTo(3)
+        assertThat(changes.getChange(0)).isEqualTo(Change.MOVED)
+        assertThat(changes.getIndex(0)).isEqualTo(7)
+        assertThat(changes.getChange(1)).isEqualTo(Change.IMAGE_CHANGED)
+        assertThat(changes.getIndex(1)).isEqualTo(100000)
+        assertThat(changes.getChange(2)).isEqualTo(Change.RECOLORED)
+        assertThat(changes.getIndex(2)).isEqualTo(0)
+    }
+
+    @Test
+    fun testIndicesAreSortedWithoutRepeats() {
+        val changes = ChangeSet()
+        changes.addRange(Change.MOVED, 5, 8)
+        changes.add(Change.RECOLORED, 6)
+        changes.add(Change.RECOLORED, 2)
+        changes.add(Change.IMAGE_CHANGED, 3)
+
+        assertThat(changes.getIndices(Change.MOVED, Change.RECOLORED).toList())
+            .containsExactly(2, 5, 6, 7).inOrder()
+        assertThat(changes.getIndices(Change.IMAGE_CHANGED).toList()).containsExactly(3)
+    }
+
+    @Test
+    fun testAddAllShiftsIndices() {
+        val renderableChanges = ChangeSet()
+        renderableChanges.add(Change.MOVED, 0)
+        renderableChanges.add(Change.MOVED, 1)
+        val layerChanges = ChangeSet()
+        layerChanges.addAll(renderableChanges, 40)
+
+        assertThat(layerChanges.getIndices(Change.MOVED).toList()).containsExactly(40, 41)
+        assertThat(layerChanges.changesSize()).isFalse()
+        layerChanges.add(Change.REMOVED, 3)
+        assertThat(layerChanges.changesSize()).isTrue()
+        layerChanges.clear()
+        assertThat(layerChanges.isEmpty).isTrue()
+        assertThat(layerChanges.contains(Change.REMOVED)).isFalse()
+    }
+}
@@ -0,0 +1,80 @@
+package com.google.android.stardroid.renderer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class LabelDeclutterTest {
+    private fun LabelDeclutterer.acceptedIds() = (0 until resolve()).map { getAcceptedId(it) }
+
+    @Test
+    fun testOverlappingLabelsGoToTheHigherPriority() {
+        val declutterer = LabelDeclutterer()
+        declutterer.begin(480, 800)
+        declutterer.add(0, 100f, 100f, 60f, 16f, 1)
+        declutterer.add(1, 120f, 105f, 60f, 16f, 3)
+        declutterer.add(2, 300f, 100f, 60f, 16f, 1)
+        assertThat(declutterer.acceptedIds()).containsExactly(1, 2).inOrder()
+    }
+
+    @Test
+    fun testLabelsSpanningCellsStillCollide() {
+        val declutterer = LabelDeclutterer()
+        declutterer.begin(480, 800)
+        // Much wider than a grid cell, and overlapping only at the far ends.
+        declutterer.add(0, 100f, 100f, 200f, 16f, 2)
+        declutterer.add(1, 290f, 110f, 200f, 16f, 1)
+        assertThat(declutterer.acceptedIds()).containsExactly(0)
+    }
+
+    @Test
+    fun testEqualPrioritiesKeepWhatWasShown() {
+        val declutterer = LabelDeclutterer()
+        declutterer.begin(480, 800)
+        declutterer.add(5, 100f, 100f, 60f, 16f, 1)
+        assertThat(declutterer.acceptedIds()).containsExactly(5)
+
+        // A label with a lower id moving into the way doesn't displace it...
+        declutterer.begin(480, 800)
+        declutterer.add(2, 110f, 100f, 60f, 16f, 1)
+        declutterer.add(5, 100f, 100f, 60f, 16f, 1)
+        assertThat(declutterer.acceptedIds()).containsExactly(5)
+
+        // ...unless the ids have been reassigned.
+        declutterer.forget()
+        declutterer.begin(480, 800)
+        declutterer.add(2, 110f, 100f, 60f, 16f, 1)
+        declutterer.add(5, 100f, 100f, 60f, 16f, 1)
+        assertThat(declutterer.acceptedIds()).containsExactly(2)
+    }
+
+    @Test
+    fun testAcceptedLabelsNeverOverlap() {
+        val declutterer = LabelDeclutterer()
+        val random = Random(7)
+        declutterer.begin(1080, 1920)
+        val boxes = HashMap<Int, FloatArray>()
+        repeat(NUM_LABELS) {
+            val box = floatArrayOf(
+                random.nextFloat() * 1080, random.nextFloat() * 1920,
+                40f + random.nextFloat() * 80, 20f)
+            boxes[it] = box
+            declutterer.add(it, box[0], box[1], box[2], box[3], random.nextInt(6))
+        }
+        val accepted = declutterer.acceptedIds()
+        assertThat(accepted).isNotEmpty()
+        for (a in accepted) {
+            for (b in accepted) {
+                if (a == b) continue
+                val (ax, ay, aw, ah) = boxes[a]!!.toList()
+                val (bx, by, bw, bh) = boxes[b]!!.toList()
+                val overlaps = Math.abs(ax - bx) < (aw + bw) / 2 && Math.abs(ay - by) < (ah + bh) / 2
+                assertThat(overlaps).isFalse()
+            }
+        }
+    }
+
+    companion object {
+        private const val NUM_LABELS = 2000
+    }
+}
@@ -0,0 +1,186 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.math.getGeocentricCoords
+import com.google.android.stardroid.renderables.PointPrimitive
+import com.google.android.stardroid.renderer.util.BufferCache
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.ArrayDeque
+import java.util.EnumSet
+import java.util.concurrent.Executor
+import kotlin.random.Random
+
+class PointObjectManagerTest {
+    private val white = 0xffffffff.toInt()
+    private val reset = EnumSet.of(RendererObjectManager.UpdateType.Reset)
+    private val positions = EnumSet.of(RendererObjectManager.UpdateType.UpdatePositions)
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    /** A field of stars followed by a few planets. */
+    private fun points(): MutableList<PointPrimitive> {
+        val random = Random(42)
+        val points = ArrayList<PointPrimitive>()
+        repeat(NUM_STARS) {
+            points.add(PointPrimitive(
+                random.nextFloat() * 360, random.nextFloat() * 180 - 90, white, 1 + random.nextInt(4)))
+        }
+        repeat(NUM_PLANETS) {
+            points.add(PointPrimitive(getGeocentricCoords(it * 40f, 0f), white, 3))
+        }
+        return points
+    }
+
+    private fun movePlanet(points: MutableList<PointPrimitive>, planet: Int, ra: Float) {
+        points[NUM_STARS + planet] = PointPrimitive(getGeocentricCoords(ra, 0f), white, 3)
+    }
+
+    // Builds on the calling thread, so the tests can count what was built straight away.
+    private fun newManager(executor: Executor = Executor { it.run() }) =
+        PointObjectManager(0, null, executor)
+
+    /** Holds on to the workers' tasks until told to run them. */
+    private class DeferredExecutor : Executor {
+        private val tasks = ArrayDeque<Runnable>()
+        override fun execute(task: Runnable) {
+            tasks.add(task)
+        }
+
+        fun runAll() {
+            while (tasks.isNotEmpty()) tasks.poll().run()
+        }
+    }
+
+    private fun moved(vararg indices: Int) = ChangeSet().apply {
+        for (i in indices) add(ChangeSet.Change.MOVED, i)
+    }
+
+    @Test
+    fun testPlanetUpdateOnlyRebuildsMovedPoints() {
+        val manager = newManager()
+        val points = points()
+        manager.updateObjects(points, reset)
+        assertThat(manager.mNumVerticesBuilt.get()).isEqualTo(4 * (NUM_STARS + NUM_PLANETS))
+
+        // The first time a planet moves it leaves the static buffers, which are rebuilt once.
+        movePlanet(points, 2, 81f)
+        manager.applyChanges(points, moved(NUM_STARS + 2))
+
+        // After that, moving it only touches its own vertices, however many stars there are.
+        val before = manager.mNumVerticesBuilt.get()
+        movePlanet(points, 2, 82f)
+        manager.applyChanges(points, moved(NUM_STARS + 2))
+        assertThat(manager.mNumVerticesBuilt.get() - before).isEqualTo(4)
+    }
+
+    @Test
+    fun testFullUpdateRebuildsEverything() {
+        val manager = newManager()
+        val points = points()
+        manager.updateObjects(points, reset)
+        val before = manager.mNumVerticesBuilt.get()
+        movePlanet(points, 0, 1f)
+        manager.updateObjects(points, positions)
+        assertThat(manager.mNumVerticesBuilt.get() - before).isEqualTo(4 * (NUM_STARS + NUM_PLANETS))
+    }
+
+    @Test
+    fun testAddingPointsRebuildsEverything() {
+        val manager = newManager()
+        val points = points()
+        manager.updateObjects(points, reset)
+        val before = manager.mNumVerticesBuilt.get()
+        points.add(PointPrimitive(getGeocentricCoords(10f, 10f), white, 3))
+        manager.applyChanges(points, ChangeSet().apply { add(ChangeSet.Change.ADDED, points.size - 1) })
+        assertThat(manager.mNumVerticesBuilt.get() - before).isEqualTo(4 * points.size)
+    }
+
+    @Test
+    fun testResetReturnsMovedPointsToStaticBuffers() {
+        val manager = newManager()
+        val points = points()
+        manager.updateObjects(points, reset)
+        manager.applyChanges(points, moved(NUM_STARS, NUM_STARS + 1))
+        manager.updateObjects(points, reset)
+
+        val before = manager.mNumVerticesBuilt.get()
+        manager.applyChanges(points, moved(NUM_STARS))
+        // Moving again after a reset has to take the planet out of the static buffers again.
+        assertThat(manager.mNumVerticesBuilt.get() - before).isEqualTo(4 * (NUM_STARS + NUM_PLANETS))
+    }
+
+    @Test
+    fun testResetIsBuiltOnTheWorkers() {
+        val executor = DeferredExecutor()
+        val manager = newManager(executor)
+        manager.updateObjects(points(), reset)
+        // Nothing is built on the GL thread, which can carry on drawing the old points.
+        assertThat(manager.mNumVerticesBuilt.get()).isEqualTo(0)
+        manager.installFinishedBuilds()
+        assertThat(manager.hasPendingBuilds()).isTrue()
+
+        executor.runAll()
+        assertThat(manager.mNumVerticesBuilt.get()).isEqualTo(4 * (NUM_STARS + NUM_PLANETS))
+        manager.installFinishedBuilds()
+        assertThat(manager.hasPendingBuilds()).isFalse()
+    }
+
+    @Test
+    fun testChangesWaitForAPendingReset() {
+        val executor = DeferredExecutor()
+        val manager = newManager(executor)
+        val points = points()
+        manager.updateObjects(points, reset)
+        executor.runAll()
+        manager.installFinishedBuilds()
+
+        // A planet leaving the static regions needs them rebuilt, and a later move
+        // has to be swapped in after them rather than before.
+        manager.applyChanges(points, moved(NUM_STARS))
+        manager.applyChanges(points, moved(NUM_STARS))
+        assertThat(manager.hasPendingBuilds()).isTrue()
+        executor.runAll()
+        manager.installFinishedBuilds()
+        assertThat(manager.hasPendingBuilds()).isFalse()
+
+        // Now it's dynamic, moving it is done straight away.
+        val before = manager.mNumVerticesBuilt.get()
+        manager.applyChanges(points, moved(NUM_STARS))
+        assertThat(manager.hasPendingBuilds()).isFalse()
+        assertThat(manager.mNumVerticesBuilt.get() - before).isEqualTo(4)
+    }
+
+    @Test
+    fun testBuffersReadFromTheCacheAreWrittenBackUnchanged() {
+        val manager = newManager()
+        manager.updateObjects(points().subList(0, NUM_STARS), reset)
+        assertThat(manager.canWriteBuffers()).isTrue()
+        val written = folder.newFile()
+        BufferCache(written, 1).write().apply { manager.writeBuffers(this) }.commit()
+
+        // Read back, the points need no building.
+        val cached = newManager()
+        cached.readBuffers(BufferCache(written, 1).read()!!)
+        assertThat(cached.mNumVerticesBuilt.get()).isEqualTo(0)
+        val rewritten = folder.newFile()
+        BufferCache(rewritten, 1).write().apply { cached.writeBuffers(this) }.commit()
+        assertThat(rewritten.readBytes()).isEqualTo(written.readBytes())
+    }
+
+    @Test
+    fun testMovedPointsAreNotCached() {
+        val manager = newManager()
+        val points = points()
+        manager.updateObjects(points, reset)
+        manager.applyChanges(points, moved(NUM_STARS))
+        assertThat(manager.canWriteBuffers()).isFalse()
+    }
+
+    companion object {
+        private const val NUM_STARS = 2000
+        private const val NUM_PLANETS = 9
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.math.getGeocentricCoords
+import com.google.android.stardroid.renderables.LinePrimitive
+import com.google.android.stardroid.renderer.util.BufferCache
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.EnumSet
+import kotlin.random.Random
+
+class PolyLineObjectManagerTest {
+    private val white = 0xffffffff.toInt()
+    private val reset = EnumSet.of(RendererObjectManager.UpdateType.Reset)
+    private val positions = EnumSet.of(RendererObjectManager.UpdateType.UpdatePositions)
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    /** Short constellation-like lines scattered over the sky, plus a horizon-like line at the end. */
+    private fun lines(horizonTilt: Float): MutableList<LinePrimitive> {
+        val random = Random(42)
+        val lines = ArrayList<LinePrimitive>()
+        repeat(300) {
+            val ra = random.nextFloat() * 360
+            val dec = random.nextFloat() * 170 - 85
+            lines.add(LinePrimitive(white, listOf(
+                getGeocentricCoords(ra, dec), getGeocentricCoords(ra + 3, dec + 2)), 1.5f))
+        }
+        lines.add(LinePrimitive(white, (0..4).map { getGeocentricCoords(it * 10f, horizonTilt) }, 1.5f))
+        return lines
+    }
+
+    @Test
+    fun testUnchangedLinesAreNotRebuilt() {
+        val manager = PolyLineObjectManager(0, null)
+        manager.updateObjects(lines(0f), reset)
+        assertThat(manager.mNumSegmentsBuilt).isEqualTo(304)
+        manager.updateObjects(lines(0f), positions)
+        assertThat(manager.mNumSegmentsBuilt).isEqualTo(304)
+    }
+
+    @Test
+    fun testMovingOneLineOnlyRebuildsItsRegions() {
+        val manager = PolyLineObjectManager(0, null)
+        manager.updateObjects(lines(0f), reset)
+        manager.updateObjects(lines(1f), positions)
+        val rebuilt = manager.mNumSegmentsBuilt - 304
+        assertThat(rebuilt).isAtLeast(4)
+        assertThat(rebuilt).isLessThan(100)
+    }
+
+    @Test
+    fun testResetRebuildsEverything() {
+        val manager = PolyLineObjectManager(0, null)
+        manager.updateObjects(lines(0f), reset)
+        manager.updateObjects(lines(0f), reset)
+        assertThat(manager.mNumSegmentsBuilt).isEqualTo(608)
+    }
+
+    @Test
+    fun testBuffersReadFromTheCacheAreWrittenBackUnchanged() {
+        val manager = PolyLineObjectManager(0, null)
+        manager.updateObjects(lines(0f), reset)
+        assertThat(manager.canWriteBuffers()).isTrue()
+        val written = folder.newFile()
+        BufferCache(written, 1).write().apply { manager.writeBuffers(this) }.commit()
+
+        val cached = PolyLineObjectManager(0, null)
+        cached.readBuffers(BufferCache(written, 1).read()!!)
+        assertThat(cached.mNumSegmentsBuilt).isEqualTo(0)
+        val rewritten = folder.newFile()
+        BufferCache(rewritten, 1).write().apply { cached.writeBuffers(this) }.commit()
+        assertThat(rewritten.readBytes()).isEqualTo(written.readBytes())
+
+        // Without the lines, an update starts again from scratch.
+        cached.updateObjects(lines(0f), positions)
+        assertThat(cached.mNumSegmentsBuilt).isEqualTo(304)
+    }
+}
@@ -0,0 +1,99 @@
+package com.google.android.stardroid.renderer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class QualityControllerTest {
+    private val budget = QualityController.DEFAULT_FRAME_BUDGET_NANOS
+    private var now = 0L
+
+    // The first frame has nothing to measure an interval from.
+    private fun newController() = QualityController().also { it.onFrame(now, 0) }
+
+    /** Feeds n frames at the given interval and busy time, returning how many changed the level. */
+    private fun QualityController.frames(
+        n: Int, interval: Long, busy: Long = interval / 4, backToBack: Boolean = true): Int {
+        var changes = 0
+        repeat(n) {
+            now += interval
+            if (onFrame(now, busy, backToBack)) changes++
+        }
+        return changes
+    }
+
+    @Test
+    fun testStaysAtFullQualityOnBudget() {
+        val controller = newController()
+        controller.frames(1000, budget)
+        assertThat(controller.level).isEqualTo(0)
+        assertThat(controller.labelDensity).isEqualTo(1f)
+        assertThat(controller.minPointSize).isEqualTo(0)
+    }
+
+    @Test
+    fun testDegradesOneLevelPerWindowWhenSlow() {
+        val controller = newController()
+        assertThat(controller.frames(30, budget * 2)).isEqualTo(1)
+        assertThat(controller.level).isEqualTo(1)
+        assertThat(controller.decisionIntervalNanos).isEqualTo(budget * 2)
+        assertThat(controller.labelDensity).isLessThan(1f)
+        controller.frames(1000, budget * 2)
+        assertThat(controller.level).isEqualTo(QualityController.MAX_LEVEL)
+    }
+
+    @Test
+    fun testHysteresisHoldsLevelInBetween() {
+        val controller = newController()
+        controller.frames(30, budget * 2)
+        // A little over budget: not slow enough to degrade further, nor fast enough to recover.
+        assertThat(controller.frames(1000, budget * 115 / 100)).isEqualTo(0)
+        assertThat(controller.level).isEqualTo(1)
+    }
+
+    @Test
+    fun testRecoversOnlyWhenIdleForALongWindow() {
+        val controller = newController()
+        controller.frames(30, budget * 2)
+        // On budget, but the GL thread is busy the whole frame.
+        assertThat(controller.frames(500, budget, busy = budget)).isEqualTo(0)
+        assertThat(controller.frames(200, budget)).isEqualTo(1)
+        assertThat(controller.level).isEqualTo(0)
+    }
+
+    @Test
+    fun testNeverRecoversFromAShortWindow() {
+        val controller = newController()
+        controller.frames(30, budget * 2)
+        assertThat(controller.frames(119, budget)).isEqualTo(0)
+        assertThat(controller.frames(1, budget)).isEqualTo(1)
+    }
+
+    @Test
+    fun testIdleGapsAreIgnored() {
+        val controller = newController()
+        // On demand rendering: a frame every second isn't a slow frame rate.
+        controller.frames(100, 1_000_000_000L)
+        assertThat(controller.level).isEqualTo(0)
+    }
+
+    @Test
+    fun testOnDemandFramesAreJudgedByTheirBusyTime() {
+        val controller = newController()
+        // Frames as the sensors ask for them: slower than the budget, but each drawn quickly.
+        assertThat(controller.frames(1000, 40_000_000L, busy = budget / 10, backToBack = false))
+            .isEqualTo(0)
+        assertThat(controller.level).isEqualTo(0)
+        // And a device really too slow for them still sheds detail.
+        assertThat(controller.frames(30, 40_000_000L, busy = budget * 2, backToBack = false))
+            .isEqualTo(1)
+    }
+
+    @Test
+    fun testRecoversWhileDrawingOnDemand() {
+        val controller = newController()
+        controller.frames(30, budget * 2)
+        assertThat(controller.frames(120, 40_000_000L, busy = budget / 10, backToBack = false))
+            .isEqualTo(1)
+        assertThat(controller.level).isEqualTo(0)
+    }
+}
@@ -0,0 +1,120 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.math.getGeocentricCoords
+import com.google.android.stardroid.renderables.LinePrimitive
+import com.google.android.stardroid.renderables.PointPrimitive
+import com.google.android.stardroid.renderables.TextPrimitive
+import com.google.android.stardroid.renderer.util.BufferCache
+import com.google.android.stardroid.renderer.util.GLES20Calls
+import com.google.android.stardroid.renderer.util.RecordingGL
+import org.robolectric.RuntimeEnvironment
+import java.lang.management.ManagementFactory
+import java.util.EnumSet
+import java.util.concurrent.TimeUnit
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.random.Random
+
+/**
+ * A sky of stars, lines and labels drawn by a [SkyRenderer] into a
+ * [RecordingGL], with what each frame submitted.  Needs Robolectric for the
+ * resources and bitmaps.  With useGles20, the recording's functions must
+ * already have been given to [GLES20Calls.setFunctions].
+ */
+class RecordedSky(
+    val recording: RecordingGL = RecordingGL(), private val useGles20: Boolean = false) {
+    private val white = 0xffffffff.toInt()
+    private val reset = EnumSet.of(RendererObjectManager.UpdateType.Reset)
+    private val threads = ManagementFactory.getThreadMXBean()
+    var renderer = newRenderer()
+        private set
+    val points: PointObjectManager
+    val lines: PolyLineObjectManager
+    val labels: LabelObjectManager
+    private val managers: List<BufferCacheable>
+
+    class Frame(
+        val draws: Int, val vertices: Int, val stateChanges: Int, val uploadedBytes: Long,
+        val cpuNanos: Long)
+
+    init {
+        lookAt(0f)
+
+        val random = Random(42)
+        points = renderer.createPointManager(0)
+        renderer.addObjectManager(points)
+        points.updateObjects(List(NUM_STARS) {
+            PointPrimitive(random.nextFloat() * 360, random.nextFloat() * 180 - 90, white,
+                1 + random.nextInt(4))
+        }, reset)
+        lines = renderer.createPolyLineManager(1)
+        renderer.addObjectManager(lines)
+        lines.updateObjects(List(NUM_LINES) {
+            val ra = random.nextFloat() * 360
+            val dec = random.nextFloat() * 170 - 85
+            LinePrimitive(white, listOf(
+                getGeocentricCoords(ra, dec), getGeocentricCoords(ra + 3, dec + 2)), 1.5f)
+        }, reset)
+        labels = renderer.createLabelManager(2)
+        renderer.addObjectManager(labels)
+        labels.updateObjects(List(NUM_LABELS) {
+            TextPrimitive(random.nextFloat() * 360, random.nextFloat() * 180 - 90, "Star $it", white)
+        }, reset)
+        managers = listOf(points, lines, labels)
+
+        // The points are built on the workers, and swapped in when a frame finds them done.
+        renderer.onDrawFrame(recording.gl)
+        while (points.hasPendingBuilds()) {
+            Thread.sleep(1)
+            renderer.onDrawFrame(recording.gl)
+        }
+    }
+
+    // A second's budget never runs out, so the quality stays put.
+    private fun newRenderer() = SkyRenderer(RuntimeEnvironment.application.resources, useGles20,
+        QualityController(TimeUnit.SECONDS.toNanos(1))).apply {
+        onSurfaceCreated(recording.gl, null)
+        onSurfaceChanged(recording.gl, WIDTH, HEIGHT)
+        setRadiusOfView(45f)
+    }
+
+    /** Replaces the renderer with a new one, with no managers, looking at the same place. */
+    fun restart() {
+        renderer = newRenderer()
+        lookAt(0f)
+    }
+
+    /** Saves the stars, lines and labels to the cache, as the app does when it's stopped. */
+    fun saveToCache(cache: BufferCache) {
+        renderer.saveToCache(cache, *managers.toTypedArray())
+    }
+
+    /** Looks at the horizon, the given number of degrees round from the x axis. */
+    fun lookAt(degrees: Float) {
+        val radians = Math.toRadians(degrees.toDouble())
+        renderer.setViewOrientation(
+            cos(radians).toFloat(), sin(radians).toFloat(), 0f, 0f, 0f, 1f)
+    }
+
+    fun drawFrame(): Frame {
+        recording.reset()
+        val startCpuNanos = threads.currentThreadCpuTime
+        renderer.onDrawFrame(recording.gl)
+        return Frame(recording.draws.size, recording.vertices, recording.stateChanges,
+            recording.uploadedBytes, threads.currentThreadCpuTime - startCpuNanos)
+    }
+
+    /** Turns once round the horizon over the given number of frames. */
+    fun pan(frames: Int): List<Frame> = List(frames) {
+        lookAt(it * 360f / frames)
+        drawFrame()
+    }
+
+    companion object {
+        const val WIDTH = 1080
+        const val HEIGHT = 1920
+        const val NUM_STARS = 5000
+        const val NUM_LINES = 300
+        const val NUM_LABELS = 100
+    }
+}
@@ -0,0 +1,87 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.renderer.util.GLBuffer
+import com.google.android.stardroid.renderer.util.GLES20Calls
+import com.google.android.stardroid.renderer.util.RecordingGL
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Reports what panning once round a [RecordedSky] costs a frame with each
+ * backend: the CPU time on the GL thread, and the draws, vertices and state
+ * changes submitted.  Also reports how soon a resumed surface gets its first
+ * frame, with the GL context kept and with a new one.  Robolectric is a lot
+ * slower than a phone, and the recording does none of a driver's work, so
+ * the times are only comparable between runs on the same machine, and
+ * nothing is checked.
+ * Run it with
+ * <pre>
+ *   ./gradlew :app:testDebugUnitTest --tests '*SkyRendererBenchmark'
+ * </pre>
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = android.app.Application::class)
+class SkyRendererBenchmark {
+    @After
+    fun tearDown() {
+        GLES20Calls.setFunctions(null)
+        GLBuffer.setUseGles20(false)
+    }
+
+    private fun report(backend: String, sky: RecordedSky) {
+        // Warm up, so that the class loading and first uploads aren't counted.
+        sky.pan(FRAMES)
+        val frames = sky.pan(FRAMES)
+        println(String.format(
+            "%s: %.3fms CPU, %.0f draws, %.0f vertices, %.0f state changes per frame",
+            backend, frames.map { it.cpuNanos }.average() / 1e6,
+            frames.map { it.draws }.average(), frames.map { it.vertices }.average(),
+            frames.map { it.stateChanges }.average()))
+    }
+
+    @Test
+    fun reportGl10FrameCosts() {
+        report("GL10", RecordedSky())
+    }
+
+    @Test
+    fun reportGles20FrameCosts() {
+        val recording = RecordingGL()
+        GLES20Calls.setFunctions(recording.gles20)
+        report("GLES 2.0", RecordedSky(recording, useGles20 = true))
+    }
+
+    private fun reportResume(how: String, sky: RecordedSky, resume: () -> Unit) {
+        val nanos = LongArray(RESUMES)
+        var uploadedBytes = 0L
+        for (i in 0 until RESUMES) {
+            resume()
+            uploadedBytes = sky.drawFrame().uploadedBytes
+            nanos[i] = sky.renderer.frameStats.surfaceToFirstFrameNanos
+        }
+        // The first few warm up.
+        println(String.format("Resume with %s: first frame after %.3fms, %d bytes uploaded",
+            how, nanos.drop(RESUMES / 4).average() / 1e6, uploadedBytes))
+    }
+
+    @Test
+    fun reportResumeCosts() {
+        val sky = RecordedSky()
+        val gl = sky.recording.gl
+        reportResume("the context kept", sky) {
+            sky.renderer.onSurfaceChanged(gl, RecordedSky.WIDTH, RecordedSky.HEIGHT)
+        }
+        reportResume("a new context", sky) {
+            sky.renderer.onSurfaceCreated(gl, null)
+            sky.renderer.onSurfaceChanged(gl, RecordedSky.WIDTH, RecordedSky.HEIGHT)
+        }
+    }
+
+    companion object {
+        private const val FRAMES = 90
+        private const val RESUMES = 20
+    }
+}
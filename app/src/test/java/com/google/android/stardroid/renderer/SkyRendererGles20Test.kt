@@ -0,0 +1,120 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.R
+import com.google.android.stardroid.math.Vector3
+import com.google.android.stardroid.renderables.ImagePrimitive
+import com.google.android.stardroid.renderer.RecordedSky.Companion.HEIGHT
+import com.google.android.stardroid.renderer.RecordedSky.Companion.WIDTH
+import com.google.android.stardroid.renderer.util.GLBuffer
+import com.google.android.stardroid.renderer.util.GLES20Calls
+import com.google.android.stardroid.renderer.util.RecordingGL
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.util.EnumSet
+import java.util.concurrent.TimeUnit
+
+/**
+ * Draws a [RecordedSky] with the OpenGL ES 2.0 backend, and checks each
+ * manager draws with the shaders rather than the fixed function calls.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = android.app.Application::class)
+class SkyRendererGles20Test {
+    private val recording = RecordingGL()
+
+    @Before
+    fun setUp() {
+        GLES20Calls.setFunctions(recording.gles20)
+    }
+
+    @After
+    fun tearDown() {
+        GLES20Calls.setFunctions(null)
+        GLBuffer.setUseGles20(false)
+    }
+
+    // Draws just the given manager, and checks it used the shaders to do it.
+    private fun assertDrawsWithShaders(manager: RendererObjectManager) {
+        recording.reset()
+        manager.draw(recording.gl)
+        assertThat(recording.draws).isNotEmpty()
+        assertThat(recording.count("glVertexAttribPointer")).isGreaterThan(0)
+        assertNoFixedFunctionCalls()
+    }
+
+    private fun assertNoFixedFunctionCalls() {
+        for (function in FIXED_FUNCTION_CALLS) {
+            assertWithMessage(function).that(recording.count(function)).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun testManagersDrawWithShaders() {
+        val sky = RecordedSky(recording, useGles20 = true)
+        val images = sky.renderer.createImageManager(3)
+        sky.renderer.addObjectManager(images)
+        images.updateObjects(List(10) {
+            ImagePrimitive(it * 2f - 10, 0f, RuntimeEnvironment.application.resources,
+                R.drawable.mars)
+        }, EnumSet.of(RendererObjectManager.UpdateType.Reset))
+        sky.drawFrame()
+
+        assertDrawsWithShaders(sky.points)
+        assertDrawsWithShaders(sky.lines)
+        assertDrawsWithShaders(sky.labels)
+        assertDrawsWithShaders(images)
+    }
+
+    @Test
+    fun testFramesDrawWithShaders() {
+        val sky = RecordedSky(recording, useGles20 = true)
+        sky.drawFrame()
+        val frame = sky.drawFrame()
+        assertThat(frame.draws).isGreaterThan(0)
+        assertNoFixedFunctionCalls()
+    }
+
+    @Test
+    fun testSkyGradientAndSearchOverlayDrawWithShaders() {
+        val sky = RecordedSky(recording, useGles20 = true)
+        val before = sky.drawFrame()
+        sky.renderer.enableSkyGradient(Vector3(1f, 0f, 0.2f))
+        sky.renderer.enableSearchOverlay(Vector3(0f, 1f, 0f), "Mars")
+        sky.drawFrame()
+        val after = sky.drawFrame()
+        assertThat(after.draws).isGreaterThan(before.draws)
+        assertNoFixedFunctionCalls()
+    }
+
+    @Test
+    fun testShadersThatDontBuildAreReported() {
+        recording.shadersCompile = false
+        val renderer = SkyRenderer(RuntimeEnvironment.application.resources, true,
+            QualityController(TimeUnit.SECONDS.toNanos(1)))
+        var failed = false
+        renderer.setGles20FailureListener { failed = true }
+        renderer.onSurfaceCreated(recording.gl, null)
+        renderer.onSurfaceChanged(recording.gl, WIDTH, HEIGHT)
+        assertThat(failed).isTrue()
+
+        recording.reset()
+        renderer.onDrawFrame(recording.gl)
+        assertThat(recording.draws).isEmpty()
+    }
+
+    companion object {
+        // GL10 calls which OpenGL ES 2.0 hasn't got.
+        private val FIXED_FUNCTION_CALLS = listOf(
+            "glEnableClientState", "glVertexPointer", "glColorPointer", "glTexCoordPointer",
+            "glMatrixMode", "glLoadMatrixf", "glLoadIdentity", "glPushMatrix", "glPopMatrix",
+            "glTexEnvf", "glTexEnvi", "glColor4f", "glColor4x", "glAlphaFunc", "glPointSize",
+            "glShadeModel")
+    }
+}
@@ -0,0 +1,134 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.renderer.RecordedSky.Companion.HEIGHT
+import com.google.android.stardroid.renderer.RecordedSky.Companion.NUM_LABELS
+import com.google.android.stardroid.renderer.RecordedSky.Companion.WIDTH
+import com.google.android.stardroid.renderer.util.BufferCache
+import com.google.common.truth.Truth.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Draws a [RecordedSky] over scripted camera paths, and checks what the
+ * renderer submits each frame.  How long the frames take is reported by
+ * [SkyRendererBenchmark] instead.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = android.app.Application::class)
+class SkyRendererSubmissionTest {
+    private lateinit var sky: RecordedSky
+    private val renderer get() = sky.renderer
+    private val recording get() = sky.recording
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Before
+    fun setUp() {
+        sky = RecordedSky()
+    }
+
+    private fun drawFrame() = sky.drawFrame()
+
+    private fun pan(frames: Int) = sky.pan(frames)
+
+    @Test
+    fun testSteadyViewResubmitsTheSameFrame() {
+        val first = drawFrame()
+        assertThat(first.draws).isGreaterThan(0)
+        repeat(10) {
+            val frame = drawFrame()
+            assertThat(frame.draws).isEqualTo(first.draws)
+            assertThat(frame.vertices).isEqualTo(first.vertices)
+            assertThat(frame.stateChanges).isEqualTo(first.stateChanges)
+            assertThat(frame.uploadedBytes).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun testPanningReusesUploadedBuffers() {
+        // The first time round, regions coming into view may upload their buffers.
+        pan(90)
+        val frames = pan(90)
+        for (frame in frames) {
+            assertThat(frame.uploadedBytes).isEqualTo(0)
+            // Drawing an object at a time would be thousands of calls.
+            assertThat(frame.draws).isAtMost(MAX_DRAWS_PER_FRAME)
+        }
+    }
+
+    @Test
+    fun testZoomingOutDrawsMoreOfTheSky() {
+        renderer.setRadiusOfView(10f)
+        drawFrame()
+        val narrow = drawFrame()
+        renderer.setRadiusOfView(90f)
+        drawFrame()
+        val wide = drawFrame()
+        assertThat(wide.vertices).isGreaterThan(narrow.vertices)
+        assertThat(wide.draws).isAtMost(MAX_DRAWS_PER_FRAME)
+    }
+
+    @Test
+    fun testResumeWithTheContextKeptUploadsNothing() {
+        drawFrame()
+        renderer.onSurfaceChanged(recording.gl, WIDTH, HEIGHT)
+        val frame = drawFrame()
+        assertThat(frame.uploadedBytes).isEqualTo(0)
+        assertThat(renderer.frameStats.surfaceKeptContext).isTrue()
+    }
+
+    @Test
+    fun testNewContextUploadsWithoutRebuilding() {
+        val before = drawFrame()
+        val verticesBuilt = sky.points.mNumVerticesBuilt.get()
+        renderer.onSurfaceCreated(recording.gl, null)
+        renderer.onSurfaceChanged(recording.gl, WIDTH, HEIGHT)
+        val after = drawFrame()
+        assertThat(sky.points.hasPendingBuilds()).isFalse()
+        assertThat(sky.points.mNumVerticesBuilt.get()).isEqualTo(verticesBuilt)
+        // What the managers kept goes up to the new context.
+        assertThat(after.uploadedBytes).isGreaterThan(0)
+        assertThat(after.draws).isEqualTo(before.draws)
+        assertThat(after.vertices).isEqualTo(before.vertices)
+        assertThat(renderer.frameStats.surfaceKeptContext).isFalse()
+        assertThat(renderer.frameStats.surfaceToFirstFrameNanos).isAtLeast(0)
+    }
+
+    @Test
+    fun testBuffersFromTheCacheDrawTheSameFrame() {
+        val before = drawFrame()
+        val cache = BufferCache(folder.newFile(), 1)
+        sky.saveToCache(cache)
+        drawFrame()
+        // The file is written on a worker.
+        var cached = cache.read()
+        while (cached == null) {
+            Thread.sleep(1)
+            cached = cache.read()
+        }
+
+        sky.restart()
+        val fromCache = listOf<BufferCacheable>(
+            renderer.createPointManager(0), renderer.createPolyLineManager(1),
+            renderer.createLabelManager(2))
+        for (manager in fromCache) {
+            renderer.addObjectManager(manager as RendererObjectManager)
+            manager.readBuffers(cached)
+        }
+        val after = drawFrame()
+        assertThat(fromCache.all { it.canWriteBuffers() }).isTrue()
+        assertThat(after.draws).isEqualTo(before.draws)
+        assertThat(after.vertices).isEqualTo(before.vertices)
+    }
+
+    companion object {
+        // A call per label, and a handful per sky region for the points and lines.
+        private const val MAX_DRAWS_PER_FRAME = NUM_LABELS + 150
+    }
+}
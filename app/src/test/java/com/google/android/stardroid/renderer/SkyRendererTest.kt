@@ -0,0 +1,48 @@
+package com.google.android.stardroid.renderer
+
+import com.google.android.stardroid.math.Vector3
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.random.Random
+
+class SkyRendererTest {
+    // The angle a pixel covers at a 10 degree radius on a 1920 pixel screen.
+    private val pixelRadians = Math.toRadians(20.0).toFloat() / 1920
+
+    private val drawnDir = Vector3(0.3f, 0.4f, 0.5f).normalizedCopy()
+    private val drawnUp = Vector3(-0.4f, 0.3f, 0f).normalizedCopy()
+
+    // Turns the look direction about the up vector.
+    private fun turned(radians: Double): Vector3 {
+        val side = drawnDir * drawnUp
+        return Vector3(
+            (drawnDir.x * cos(radians) + side.x * sin(radians)).toFloat(),
+            (drawnDir.y * cos(radians) + side.y * sin(radians)).toFloat(),
+            (drawnDir.z * cos(radians) + side.z * sin(radians)).toFloat())
+    }
+
+    @Test
+    fun testStillViewAtANarrowRadiusIsNotRedrawn() {
+        // A phone held still gives the same view each time, but normalized from different
+        // readings, so only the same to within rounding.
+        val random = Random(42)
+        repeat(1000) {
+            val reading = Vector3(
+                random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+            val dir = reading.normalizedCopy()
+            val sameDir = (reading * (1 + random.nextFloat())).normalizedCopy()
+            assertThat(SkyRenderer.viewMovedVisibly(dir, drawnUp, sameDir, drawnUp, pixelRadians))
+                .isFalse()
+        }
+        assertThat(SkyRenderer.viewMovedVisibly(
+            drawnDir, drawnUp, turned(0.1 * pixelRadians), drawnUp, pixelRadians)).isFalse()
+    }
+
+    @Test
+    fun testTurningByAPixelAtANarrowRadiusIsRedrawn() {
+        assertThat(SkyRenderer.viewMovedVisibly(
+            drawnDir, drawnUp, turned(pixelRadians.toDouble()), drawnUp, pixelRadians)).isTrue()
+    }
+}
@@ -0,0 +1,93 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.android.stardroid.math.Matrix4x4
+import com.google.android.stardroid.math.Vector3
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class BatchProjectorTest {
+    private val lookDir = Vector3(1f, 0f, 0f)
+    private val upDir = Vector3(0f, 0f, 1f)
+
+    private val transform = Matrix4x4.createPerspectiveProjection(480f, 800f, 0.5f) *
+            Matrix4x4.createView(lookDir, upDir, lookDir.times(upDir))
+
+    private fun randomPoints(count: Int): Array<Vector3> {
+        val random = Random(42)
+        return Array(count) {
+            Vector3(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1)
+                .apply { normalize() }
+        }
+    }
+
+    private fun BatchProjector.projectAll(points: Array<Vector3>, offsets: FloatArray?) =
+        project(IntArray(points.size) { it }, FloatArray(points.size) { points[it].x },
+            FloatArray(points.size) { points[it].y }, FloatArray(points.size) { points[it].z },
+            offsets, points.size)
+
+    @Test
+    fun testMatchesTransformVector() {
+        val points = randomPoints(100)
+        val projector = BatchProjector()
+        projector.setTransform(transform)
+        assertThat(projector.projectAll(points, null)).isEqualTo(points.size)
+
+        val out = FloatArray(3)
+        for (n in points.indices) {
+            val expected = Matrix4x4.transformVector(transform, points[n])
+            assertThat(projector.getId(n)).isEqualTo(n)
+            assertThat(projector.getX(n)).isWithin(1e-4f).of(expected.x)
+            assertThat(projector.getY(n)).isWithin(1e-4f).of(expected.y)
+
+            projector.projectPoint(points[n].x, points[n].y, points[n].z, out)
+            assertThat(out[0]).isWithin(1e-4f).of(expected.x)
+            assertThat(out[1]).isWithin(1e-4f).of(expected.y)
+            assertThat(out[2]).isWithin(1e-4f).of(expected.z)
+        }
+    }
+
+    @Test
+    fun testCullsPointsBehindTheLookDirection() {
+        val points = randomPoints(200)
+        val projector = BatchProjector()
+        projector.setTransform(transform)
+        projector.setCulling(lookDir, 0.5f)
+        val added = projector.projectAll(points, null)
+
+        val expected = points.indices.filter { points[it].dot(lookDir) >= 0.5f }
+        assertThat(added).isEqualTo(expected.size)
+        assertThat((0 until projector.size()).map { projector.getId(it) })
+            .containsExactlyElementsIn(expected).inOrder()
+    }
+
+    @Test
+    fun testOffsetsMoveThePointsBeforeProjecting() {
+        val points = randomPoints(50)
+        val offsets = FloatArray(points.size) { 0.01f * it }
+        val projector = BatchProjector()
+        projector.setTransform(transform)
+        projector.setOffsetDirection(upDir)
+        projector.projectAll(points, offsets)
+
+        for (n in points.indices) {
+            val p = points[n]
+            val expected = Matrix4x4.transformVector(
+                transform, Vector3(p.x - upDir.x * offsets[n], p.y - upDir.y * offsets[n],
+                    p.z - upDir.z * offsets[n]))
+            assertThat(projector.getX(n)).isWithin(1e-4f).of(expected.x)
+            assertThat(projector.getY(n)).isWithin(1e-4f).of(expected.y)
+        }
+    }
+
+    @Test
+    fun testBatchesAccumulateUntilCleared() {
+        val points = randomPoints(30)
+        val projector = BatchProjector()
+        projector.projectAll(points, null)
+        projector.projectAll(points, null)
+        assertThat(projector.size()).isEqualTo(60)
+        projector.clear()
+        assertThat(projector.size()).isEqualTo(0)
+    }
+}
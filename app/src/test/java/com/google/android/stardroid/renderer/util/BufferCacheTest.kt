@@ -0,0 +1,94 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import java.nio.ShortBuffer
+
+class BufferCacheTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun intBuffer(vararg values: Int): IntBuffer =
+        ByteBuffer.allocateDirect(4 * values.size).order(ByteOrder.nativeOrder()).asIntBuffer()
+            .put(values).also { it.position(0) }
+
+    private fun shortBuffer(vararg values: Short): ShortBuffer =
+        ByteBuffer.allocateDirect(2 * values.size).order(ByteOrder.nativeOrder()).asShortBuffer()
+            .put(values).also { it.position(0) }
+
+    private fun writeCache(cache: BufferCache) {
+        val out = cache.write()
+        out.beginSection(BufferCache.POINTS)
+        out.writeInt(42)
+        out.writeIntArray(intArrayOf(3, 2, 1))
+        // Only the first three indices, which leaves the section unaligned without padding.
+        out.writeShortBuffer(shortBuffer(0, 1, 2, 9), 3)
+        out.writeIntBuffer(intBuffer(7, 8, 9, 10), 3)
+        out.beginSection(BufferCache.LABELS)
+        out.writeFloat(1.5f)
+        out.writeBoolean(true)
+        out.commit()
+    }
+
+    @Test
+    fun testReadsWhatWasWritten() {
+        val cache = BufferCache(folder.newFile(), 1234)
+        writeCache(cache)
+
+        val reader = cache.read()!!
+        assertThat(reader.matchesBackend()).isTrue()
+        val points = reader.section(BufferCache.POINTS)!!
+        assertThat(points.readInt()).isEqualTo(42)
+        assertThat(points.readIntArray()).asList().containsExactly(3, 2, 1).inOrder()
+        val indices = points.readShortBuffer(3)
+        assertThat(indices.capacity()).isEqualTo(3)
+        assertThat(ShortArray(3).also { indices.get(it) }.asList()).containsExactly(0.toShort(), 1.toShort(), 2.toShort()).inOrder()
+        val ints = points.readIntBuffer(3)
+        assertThat(ints.capacity()).isEqualTo(3)
+        assertThat(IntArray(3).also { ints.get(it) }.asList()).containsExactly(7, 8, 9).inOrder()
+
+        val labels = reader.section(BufferCache.LABELS)!!
+        assertThat(labels.readFloat()).isEqualTo(1.5f)
+        assertThat(labels.readBoolean()).isTrue()
+        assertThat(reader.section(BufferCache.LINES)).isNull()
+    }
+
+    @Test
+    fun testBuffersAreViewsOfTheFile() {
+        val cache = BufferCache(folder.newFile(), 1234)
+        writeCache(cache)
+        val ints = cache.read()!!.section(BufferCache.POINTS)!!.apply {
+            readInt()
+            readIntArray()
+            readShortBuffer(3)
+        }.readIntBuffer(3)
+        assertThat(ints.isDirect).isTrue()
+        assertThat(ints.isReadOnly).isTrue()
+    }
+
+    @Test
+    fun testIgnoresMissingFilesAndOtherKeys() {
+        val file = folder.newFile()
+        file.delete()
+        assertThat(BufferCache(file, 1234).read()).isNull()
+        writeCache(BufferCache(file, 1234))
+        assertThat(BufferCache(file, 5678).read()).isNull()
+    }
+
+    @Test
+    fun testRejectsTruncatedFiles() {
+        val file = folder.newFile()
+        writeCache(BufferCache(file, 1234))
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 8) }
+        val reader = BufferCache(file, 1234).read()!!
+        assertThrows(IOException::class.java) { reader.section(BufferCache.LABELS) }
+    }
+}
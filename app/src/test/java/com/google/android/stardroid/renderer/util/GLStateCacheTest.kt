@@ -0,0 +1,85 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import javax.microedition.khronos.opengles.GL10
+import javax.microedition.khronos.opengles.GL11
+
+class GLStateCacheTest {
+    private val gl = mock(GL11::class.java)
+    private val cache = GLStateCache().apply { wrap(gl) }
+
+    @Test
+    fun testRedundantEnablesAreDropped() {
+        cache.glEnable(GL10.GL_BLEND)
+        cache.glEnable(GL10.GL_BLEND)
+        cache.glDisable(GL10.GL_BLEND)
+        cache.glDisable(GL10.GL_BLEND)
+        cache.glEnable(GL10.GL_BLEND)
+
+        verify(gl, times(2)).glEnable(GL10.GL_BLEND)
+        verify(gl, times(1)).glDisable(GL10.GL_BLEND)
+        assertThat(cache.callsIssued).isEqualTo(3)
+        assertThat(cache.callsSkipped).isEqualTo(2)
+    }
+
+    @Test
+    fun testUntrackedStateIsPassedOn() {
+        cache.glEnable(GL10.GL_LIGHTING)
+        cache.glEnable(GL10.GL_LIGHTING)
+
+        verify(gl, times(2)).glEnable(GL10.GL_LIGHTING)
+        assertThat(cache.callsSkipped).isEqualTo(0)
+    }
+
+    @Test
+    fun testRebindingTheBoundTextureIsDropped() {
+        cache.glBindTexture(GL10.GL_TEXTURE_2D, 3)
+        cache.glBindTexture(GL10.GL_TEXTURE_2D, 3)
+        cache.glBindTexture(GL10.GL_TEXTURE_2D, 4)
+        cache.glDeleteTextures(1, intArrayOf(4), 0)
+        cache.glBindTexture(GL10.GL_TEXTURE_2D, 4)
+
+        verify(gl, times(1)).glBindTexture(GL10.GL_TEXTURE_2D, 3)
+        verify(gl, times(2)).glBindTexture(GL10.GL_TEXTURE_2D, 4)
+    }
+
+    @Test
+    fun testOnlyTheTextureEnvironmentModeIsCached() {
+        cache.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE.toFloat())
+        cache.glTexEnvx(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE)
+        cache.glTexEnvfv(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_COLOR, FloatArray(4), 0)
+        cache.glTexEnvfv(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_COLOR, FloatArray(4), 0)
+
+        verify(gl, times(1)).glTexEnvf(
+            GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE.toFloat())
+        assertThat(cache.callsIssued).isEqualTo(3)
+        assertThat(cache.callsSkipped).isEqualTo(1)
+    }
+
+    @Test
+    fun testInvalidateForgetsState() {
+        cache.glEnableClientState(GL10.GL_VERTEX_ARRAY)
+        cache.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA)
+        cache.invalidate()
+        cache.glEnableClientState(GL10.GL_VERTEX_ARRAY)
+        cache.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA)
+
+        verify(gl, times(2)).glEnableClientState(GL10.GL_VERTEX_ARRAY)
+        verify(gl, times(2)).glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA)
+    }
+
+    @Test
+    fun testWrappingAnotherGlForgetsState() {
+        cache.glShadeModel(GL10.GL_FLAT)
+        val other = mock(GL11::class.java)
+        cache.wrap(other)
+        cache.glShadeModel(GL10.GL_FLAT)
+
+        verify(gl, times(1)).glShadeModel(GL10.GL_FLAT)
+        verify(other, times(1)).glShadeModel(GL10.GL_FLAT)
+    }
+}
@@ -0,0 +1,58 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class KtxTextureTest {
+    private val etc1 = 0x8D64
+
+    /** An 8x8 ETC1 texture with all its mipmaps, the levels filled with their index. */
+    private fun ktx(order: ByteOrder = ByteOrder.LITTLE_ENDIAN, keyValueBytes: Int = 0): ByteArray {
+        val levelSizes = intArrayOf(32, 8, 8, 8)
+        val buffer = ByteBuffer.allocate(256).order(order)
+        buffer.put(byteArrayOf(0xAB.toByte(), 0x4B, 0x54, 0x58, 0x20, 0x31, 0x31, 0xBB.toByte(), 0x0D, 0x0A, 0x1A, 0x0A))
+        for (field in intArrayOf(0x04030201, 0, 1, 0, etc1, 0x1907, 8, 8, 0, 0, 1, levelSizes.size, keyValueBytes)) {
+            buffer.putInt(field)
+        }
+        buffer.put(ByteArray(keyValueBytes))
+        levelSizes.forEachIndexed { level, size ->
+            buffer.putInt(size)
+            buffer.put(ByteArray(size) { level.toByte() })
+        }
+        return buffer.array().copyOf(buffer.position())
+    }
+
+    @Test
+    fun testReadsAllLevels() {
+        val texture = KtxTexture.read(ByteArrayInputStream(ktx()))
+        assertThat(texture.internalFormat).isEqualTo(etc1)
+        assertThat(texture.width).isEqualTo(8)
+        assertThat(texture.height).isEqualTo(8)
+        assertThat(texture.numLevels).isEqualTo(4)
+        assertThat(texture.dataSize).isEqualTo(56)
+    }
+
+    @Test
+    fun testReadsBigEndianFilesWithKeyValueData() {
+        val texture = KtxTexture.read(ByteArrayInputStream(ktx(ByteOrder.BIG_ENDIAN, keyValueBytes = 16)))
+        assertThat(texture.internalFormat).isEqualTo(etc1)
+        assertThat(texture.dataSize).isEqualTo(56)
+    }
+
+    @Test
+    fun testRejectsOtherFiles() {
+        val png = byteArrayOf(0x89.toByte(), 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A) + ByteArray(100)
+        assertThrows(IOException::class.java) { KtxTexture.read(ByteArrayInputStream(png)) }
+    }
+
+    @Test
+    fun testRejectsTruncatedFiles() {
+        val truncated = ktx().copyOf(100)
+        assertThrows(IOException::class.java) { KtxTexture.read(ByteArrayInputStream(truncated)) }
+    }
+}
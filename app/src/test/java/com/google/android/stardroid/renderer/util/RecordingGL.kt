@@ -0,0 +1,153 @@
+package com.google.android.stardroid.renderer.util
+
+import android.opengl.GLES20
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.DoubleBuffer
+import java.nio.IntBuffer
+import java.nio.LongBuffer
+import java.nio.ShortBuffer
+import javax.microedition.khronos.opengles.GL10
+import javax.microedition.khronos.opengles.GL11
+
+/**
+ * A GL which draws nothing, but counts what it's asked to do: draw calls and
+ * the vertices in them, state changes, and bytes uploaded to buffers and
+ * textures.  Lets what the renderer submits be tested and timed on a plain JVM.
+ * It records both backends: [gl] is handed to the renderer as its GL10, and
+ * [gles20] stands in for GLES20 once given to [GLES20Calls.setFunctions].
+ *
+ * Generated texture, buffer, shader and program names count up from 1,
+ * GL_EXTENSIONS and GL_COMPRESSED_TEXTURE_FORMATS are as given, shaders
+ * compile and link unless [shadersCompile] is false, and every other query
+ * answers zero.  Images uploaded with GLUtils go straight to the driver, so
+ * aren't seen.
+ */
+class RecordingGL(
+    private val extensions: String = "GL_OES_vertex_buffer_object",
+    private val compressedFormats: IntArray = IntArray(0)) {
+    private val proxy = Proxy.newProxyInstance(
+        RecordingGL::class.java.classLoader,
+        arrayOf(GL11::class.java, GLES20Calls.Functions::class.java),
+        InvocationHandler { proxy, method, args -> invoke(proxy, method, args ?: NO_ARGS) })
+    val gl: GL11 = proxy as GL11
+    val gles20: GLES20Calls.Functions = proxy as GLES20Calls.Functions
+
+    /** One draw call: its primitive type and how many vertices (or indices) it used. */
+    data class Draw(val mode: Int, val vertices: Int)
+
+    val draws = ArrayList<Draw>()
+    var shadersCompile = true
+    var calls = 0
+        private set
+    var stateChanges = 0
+        private set
+    var uploadedBytes = 0L
+        private set
+    private val counts = HashMap<String, Int>()
+    private var nextName = 1
+
+    val vertices: Int
+        get() = draws.sumOf { it.vertices }
+
+    /** How many times the named GL function was called. */
+    fun count(function: String) = counts[function] ?: 0
+
+    /** Forgets what has been recorded, but not the names already generated. */
+    fun reset() {
+        draws.clear()
+        calls = 0
+        stateChanges = 0
+        uploadedBytes = 0
+        counts.clear()
+    }
+
+    private fun invoke(proxy: Any, method: Method, args: Array<Any?>): Any? {
+        if (method.declaringClass == Any::class.java) {
+            return when (method.name) {
+                "equals" -> proxy === args[0]
+                "hashCode" -> System.identityHashCode(proxy)
+                else -> "RecordingGL"
+            }
+        }
+        val name = method.name
+        calls++
+        counts[name] = count(name) + 1
+        if (name in STATE_CHANGES) {
+            stateChanges++
+        }
+        when (name) {
+            "glDrawArrays" -> draws.add(Draw(args[0] as Int, args[2] as Int))
+            "glDrawElements" -> draws.add(Draw(args[0] as Int, args[1] as Int))
+            "glBufferData" -> uploadedBytes += args[1] as Int
+            "glBufferSubData" -> uploadedBytes += args[2] as Int
+            "glTexImage2D" -> uploadedBytes += bytes(args[8] as Buffer?)
+            "glTexSubImage2D" -> uploadedBytes += bytes(args[8] as Buffer?)
+            "glCompressedTexImage2D" -> uploadedBytes += args[6] as Int
+            "glGenTextures", "glGenBuffers" -> generateNames(args)
+            "glCreateShader", "glCreateProgram" -> return nextName++
+            "glGetShaderiv", "glGetProgramiv" -> (args[2] as IntArray)[args[3] as Int] =
+                if (shadersCompile && (args[1] == GLES20.GL_COMPILE_STATUS
+                        || args[1] == GLES20.GL_LINK_STATUS)) 1 else 0
+            "glGetString" -> return if (args[0] == GL10.GL_EXTENSIONS) extensions else ""
+            "glGetIntegerv" -> if (args[1] is IntArray) getIntegers(args)
+        }
+        return when (method.returnType) {
+            Integer.TYPE -> 0
+            java.lang.Boolean.TYPE -> false
+            java.lang.Float.TYPE -> 0f
+            else -> null
+        }
+    }
+
+    private fun getIntegers(args: Array<Any?>) {
+        val params = args[1] as IntArray
+        val offset = args[2] as Int
+        when (args[0]) {
+            GL10.GL_NUM_COMPRESSED_TEXTURE_FORMATS -> params[offset] = compressedFormats.size
+            GL10.GL_COMPRESSED_TEXTURE_FORMATS -> compressedFormats.copyInto(params, offset)
+        }
+    }
+
+    private fun generateNames(args: Array<Any?>) {
+        val n = args[0] as Int
+        when (val names = args[1]) {
+            is IntArray -> for (i in 0 until n) names[args[2] as Int + i] = nextName++
+            is IntBuffer -> for (i in 0 until n) names.put(names.position() + i, nextName++)
+        }
+    }
+
+    private fun bytes(buffer: Buffer?): Long {
+        val elementSize = when (buffer) {
+            null -> return 0
+            is ByteBuffer -> 1
+            is ShortBuffer, is CharBuffer -> 2
+            is LongBuffer, is DoubleBuffer -> 8
+            else -> 4
+        }
+        return buffer.remaining().toLong() * elementSize
+    }
+
+    companion object {
+        private val NO_ARGS = arrayOf<Any?>()
+
+        // Calls which only change how later draws are done.
+        private val STATE_CHANGES = setOf(
+            "glEnable", "glDisable", "glEnableClientState", "glDisableClientState",
+            "glActiveTexture", "glClientActiveTexture", "glBindTexture", "glBindBuffer",
+            "glTexEnvf", "glTexEnvx", "glTexEnvi", "glTexParameterf", "glTexParameterx",
+            "glTexParameteri", "glBlendFunc", "glAlphaFunc", "glAlphaFuncx", "glShadeModel",
+            "glCullFace", "glFrontFace", "glMatrixMode", "glLoadIdentity", "glLoadMatrixf",
+            "glLoadMatrixx", "glMultMatrixf", "glMultMatrixx", "glPushMatrix", "glPopMatrix",
+            "glTranslatef", "glTranslatex", "glRotatef", "glRotatex", "glScalef", "glScalex",
+            "glColor4f", "glColor4x", "glColor4ub", "glVertexPointer", "glColorPointer",
+            "glTexCoordPointer", "glNormalPointer", "glPointSize", "glLineWidth", "glViewport",
+            "glUseProgram", "glUniform1f", "glUniform1i", "glUniform3f", "glUniform4f",
+            "glUniformMatrix4fv", "glVertexAttribPointer", "glVertexAttrib4f",
+            "glEnableVertexAttribArray", "glDisableVertexAttribArray")
+    }
+}
@@ -0,0 +1,64 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Checks the programs are built through [GLES20Calls].  Whether the GLSL
+ * itself compiles can only be told on a device, by the instrumented
+ * ShaderProgramsTest.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = android.app.Application::class)
+class ShaderProgramsTest {
+    private val recording = RecordingGL()
+
+    @Before
+    fun setUp() {
+        GLES20Calls.setFunctions(recording.gles20)
+    }
+
+    @After
+    fun tearDown() {
+        GLES20Calls.setFunctions(null)
+    }
+
+    @Test
+    fun testEachProgramIsCompiledAndLinked() {
+        assertThat(ShaderPrograms.create()).isNotNull()
+        assertThat(recording.count("glCreateShader")).isEqualTo(6)
+        assertThat(recording.count("glCompileShader")).isEqualTo(6)
+        assertThat(recording.count("glCreateProgram")).isEqualTo(3)
+        assertThat(recording.count("glAttachShader")).isEqualTo(6)
+        assertThat(recording.count("glLinkProgram")).isEqualTo(3)
+        // The attributes are bound to the same locations in every program.
+        assertThat(recording.count("glBindAttribLocation")).isEqualTo(9)
+        // Once linked, the programs keep the shaders they need.
+        assertThat(recording.count("glDeleteShader")).isEqualTo(6)
+        assertThat(recording.count("glDeleteProgram")).isEqualTo(0)
+    }
+
+    @Test
+    fun testShadersWhichDontCompileGiveNoPrograms() {
+        recording.shadersCompile = false
+        assertThat(ShaderPrograms.create()).isNull()
+        assertThat(recording.count("glLinkProgram")).isEqualTo(0)
+    }
+
+    @Test
+    fun testProgramsAreOnlyUsedWhenTheyChange() {
+        val shaders = ShaderPrograms.create()!!
+        recording.reset()
+        shaders.usePoints(1f, 4, false)
+        shaders.useColored(false, false)
+        shaders.useTextured(false)
+        assertThat(recording.count("glUseProgram")).isEqualTo(3)
+        shaders.useTextured(true)
+        assertThat(recording.count("glUseProgram")).isEqualTo(3)
+    }
+}
@@ -0,0 +1,52 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class TextureAtlasTest {
+    // The sizes of the planet, moon, meteor and comet images.
+    private val widths = intArrayOf(1, 16, 16, 32, 32, 32, 32, 32, 32, 32, 100) + IntArray(11) { 64 }
+    private val heights = widths.clone()
+
+    @Test
+    fun testPacksIntoAPowerOfTwo() {
+        val layout = TextureAtlas.Layout.pack(widths, heights, 1024)!!
+        assertThat(layout.size).isEqualTo(512)
+        // Half the size would be too small for them at all.
+        assertThat(TextureAtlas.Layout.pack(widths, heights, 256)).isNull()
+    }
+
+    @Test
+    fun testImagesDontOverlap() {
+        val layout = TextureAtlas.Layout.pack(widths, heights, 1024)!!
+        for (i in widths.indices) {
+            assertThat(layout.xs[i] + widths[i]).isAtMost(layout.size)
+            assertThat(layout.ys[i] + heights[i]).isAtMost(layout.size)
+            for (j in 0 until i) {
+                val apart = layout.xs[i] >= layout.xs[j] + widths[j] + TextureAtlas.Layout.PADDING ||
+                    layout.xs[j] >= layout.xs[i] + widths[i] + TextureAtlas.Layout.PADDING ||
+                    layout.ys[i] >= layout.ys[j] + heights[j] + TextureAtlas.Layout.PADDING ||
+                    layout.ys[j] >= layout.ys[i] + heights[i] + TextureAtlas.Layout.PADDING
+                assertThat(apart).isTrue()
+            }
+        }
+    }
+
+    @Test
+    fun testTexCoordsStayInsideTheImage() {
+        val layout = TextureAtlas.Layout.pack(widths, heights, 1024)!!
+        val coords = FloatArray(4)
+        for (i in widths.indices) {
+            layout.getTexCoords(i, coords)
+            assertThat(coords[0] * layout.size).isGreaterThan(layout.xs[i].toFloat())
+            assertThat(coords[1] * layout.size).isGreaterThan(layout.ys[i].toFloat())
+            assertThat(coords[2] * layout.size).isLessThan((layout.xs[i] + widths[i]).toFloat())
+            assertThat(coords[3] * layout.size).isLessThan((layout.ys[i] + heights[i]).toFloat())
+        }
+    }
+
+    @Test
+    fun testGivesUpWhenTooBig() {
+        assertThat(TextureAtlas.Layout.pack(intArrayOf(600, 600), intArrayOf(600, 600), 1024)).isNull()
+    }
+}
@@ -0,0 +1,48 @@
+package com.google.android.stardroid.renderer.util
+
+import com.google.android.stardroid.R
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/** Checks which textures are uploaded from the compressed assets on a GL10 context. */
+@RunWith(RobolectricTestRunner::class)
+@Config(application = android.app.Application::class)
+class TextureManagerTest {
+    private val etc1 = 0x8D64
+    private val res = RuntimeEnvironment.application.resources
+
+    private fun upload(recording: RecordingGL, resourceID: Int) {
+        TextureManager(res, IntArray(0)).getTextureFromResource(recording.gl, resourceID)
+    }
+
+    @Test
+    fun testOpaqueTexturesAreUploadedCompressedWithEtc1() {
+        val recording = RecordingGL(compressedFormats = intArrayOf(etc1))
+        upload(recording, R.drawable.line)
+        // The 16x8 image and its mipmaps, rather than 512 bytes decoded.
+        assertThat(recording.count("glCompressedTexImage2D")).isEqualTo(5)
+        assertThat(recording.uploadedBytes).isEqualTo(104)
+        assertThat(recording.count("glTexImage2D")).isEqualTo(0)
+    }
+
+    @Test
+    fun testTexturesAreDecodedWithoutEtc1() {
+        val recording = RecordingGL()
+        upload(recording, R.drawable.line)
+        assertThat(recording.count("glCompressedTexImage2D")).isEqualTo(0)
+    }
+
+    @Test
+    fun testTexturesWithTransparencyAreDecoded() {
+        val recording = RecordingGL(compressedFormats = intArrayOf(etc1))
+        for (id in intArrayOf(R.drawable.stars_texture, R.drawable.arrow,
+                R.drawable.arrowcircle, R.drawable.crosshair)) {
+            upload(recording, id)
+        }
+        assertThat(recording.count("glCompressedTexImage2D")).isEqualTo(0)
+    }
+}
@@ -0,0 +1,223 @@
+package com.google.android.stardroid.sensors
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.*
+import kotlin.math.*
+
+/**
+ * Tests [OrientationFilter] against synthetic sensor traces where the true
+ * orientation is known.
+ */
+class OrientationFilterTest {
+    /** A phone-to-world quaternion (w, x, y, z). */
+    private data class Quaternion(val w: Float, val x: Float, val y: Float, val z: Float) {
+        /** Rotates a world-frame vector into the phone frame, i.e. applies R^T.  */
+        fun worldToPhone(v: FloatArray): FloatArray {
+            val r = matrix()
+            return floatArrayOf(
+                r[0] * v[0] + r[3] * v[1] + r[6] * v[2],
+                r[1] * v[0] + r[4] * v[1] + r[7] * v[2],
+                r[2] * v[0] + r[5] * v[1] + r[8] * v[2]
+            )
+        }
+
+        fun matrix() = floatArrayOf(
+            1 - 2 * (y * y + z * z), 2 * (x * y - z * w), 2 * (x * z + y * w),
+            2 * (x * y + z * w), 1 - 2 * (x * x + z * z), 2 * (y * z - x * w),
+            2 * (x * z - y * w), 2 * (y * z + x * w), 1 - 2 * (x * x + y * y)
+        )
+
+        fun angleTo(other: Quaternion): Float {
+            val dot = abs(w * other.w + x * other.x + y * other.y + z * other.z)
+            return 2 * acos(dot.coerceAtMost(1f))
+        }
+
+        companion object {
+            fun fromAxisAngle(ax: Float, ay: Float, az: Float, angle: Float): Quaternion {
+                val n = sqrt(ax * ax + ay * ay + az * az)
+                val s = sin(angle / 2) / n
+                return Quaternion(cos(angle / 2), ax * s, ay * s, az * s)
+            }
+        }
+    }
+
+    private fun OrientationFilter.estimate() = Quaternion(w, x, y, z)
+
+    /**
+     * Phone tilted 40 degrees towards the sky and rotating about the world's
+     * vertical at yawRate rad/s.
+     */
+    private fun truthAt(seconds: Float, yawRate: Float): Quaternion {
+        val tilt = Quaternion.fromAxisAngle(1f, 0f, 0f, 40f * PI.toFloat() / 180)
+        val yaw = Quaternion.fromAxisAngle(0f, 0f, 1f, yawRate * seconds)
+        // yaw * tilt
+        return Quaternion(
+            yaw.w * tilt.w - yaw.x * tilt.x - yaw.y * tilt.y - yaw.z * tilt.z,
+            yaw.w * tilt.x + yaw.x * tilt.w + yaw.y * tilt.z - yaw.z * tilt.y,
+            yaw.w * tilt.y - yaw.x * tilt.z + yaw.y * tilt.w + yaw.z * tilt.x,
+            yaw.w * tilt.z + yaw.x * tilt.y - yaw.y * tilt.x + yaw.z * tilt.w
+        )
+    }
+
+    private class TraceResult(val meanError: Float, val maxError: Float, val jitter: Float)
+
+    /**
+     * Replays a synthetic trace: gyro at 200Hz, accelerometer and magnetometer
+     * at 50Hz, with Gaussian noise.  Errors are measured after a one second
+     * settling period.  Jitter is the RMS change in the estimate's error
+     * between consecutive accelerometer samples.
+     */
+    private fun replay(
+        filter: OrientationFilter, yawRate: Float, useGyro: Boolean,
+        accelNoise: Float = 0f, magNoise: Float = 0f, gyroBias: Float = 0f
+    ): TraceResult {
+        val random = Random(1234)
+        val up = floatArrayOf(0f, 0f, 9.81f)
+        val field = floatArrayOf(0f, 22f, -40f)
+        var errorSum = 0f
+        var maxError = 0f
+        var samples = 0
+        var jitterSum = 0f
+        var lastError = Float.NaN
+        val durationNanos = 5_000_000_000L
+        val stepNanos = 5_000_000L
+        var t = 0L
+        while (t <= durationNanos) {
+            val seconds = t * 1e-9f
+            val truth = truthAt(seconds, yawRate)
+            if (useGyro) {
+                val omega = truth.worldToPhone(floatArrayOf(0f, 0f, yawRate))
+                filter.onGyroscope(omega[0] + gyroBias, omega[1], omega[2], t)
+            }
+            if (t % 20_000_000L == 0L) {
+                val m = truth.worldToPhone(field)
+                filter.onMagneticField(
+                    m[0] + magNoise * random.nextGaussian().toFloat(),
+                    m[1] + magNoise * random.nextGaussian().toFloat(),
+                    m[2] + magNoise * random.nextGaussian().toFloat(), t
+                )
+                val a = truth.worldToPhone(up)
+                filter.onAccelerometer(
+                    a[0] + accelNoise * random.nextGaussian().toFloat(),
+                    a[1] + accelNoise * random.nextGaussian().toFloat(),
+                    a[2] + accelNoise * random.nextGaussian().toFloat(), t
+                )
+                if (seconds > 1f) {
+                    val error = filter.estimate().angleTo(truth)
+                    errorSum += error
+                    maxError = max(maxError, error)
+                    if (!lastError.isNaN()) {
+                        jitterSum += (error - lastError) * (error - lastError)
+                    }
+                    lastError = error
+                    samples++
+                }
+            }
+            t += stepNanos
+        }
+        return TraceResult(errorSum / samples, maxError, sqrt(jitterSum / (samples - 1)))
+    }
+
+    @Test
+    fun testAccelerometerAndMagneticFieldGiveTrueOrientation() {
+        val filter = OrientationFilter(0f)
+        val result = replay(filter, yawRate = 0.3f, useGyro = false)
+        assertThat(result.maxError).isLessThan(1e-3f)
+    }
+
+    @Test
+    fun testRotationVectorPassesThroughWithZeroTimeConstant() {
+        val filter = OrientationFilter(0f)
+        val truth = truthAt(1.3f, 0.5f)
+        filter.onRotationVector(floatArrayOf(truth.x, truth.y, truth.z, truth.w), 1L)
+        assertThat(filter.estimate().angleTo(truth)).isLessThan(1e-3f)
+        val next = truthAt(2.1f, 0.5f)
+        // Rotation vector sensors may omit w.
+        val sign = if (next.w < 0) -1f else 1f
+        filter.onRotationVector(floatArrayOf(sign * next.x, sign * next.y, sign * next.z), 2L)
+        assertThat(filter.estimate().angleTo(next)).isLessThan(1e-3f)
+    }
+
+    @Test
+    fun testGyroscopeIntegration() {
+        val filter = OrientationFilter(0f)
+        val start = truthAt(0f, 1f)
+        filter.onRotationVector(floatArrayOf(start.x, start.y, start.z, start.w), 0L)
+        var t = 0L
+        while (t <= 2_000_000_000L) {
+            val omega = truthAt(t * 1e-9f, 1f).worldToPhone(floatArrayOf(0f, 0f, 1f))
+            filter.onGyroscope(omega[0], omega[1], omega[2], t)
+            t += 5_000_000L
+        }
+        assertThat(filter.estimate().angleTo(truthAt(2f, 1f))).isLessThan(0.01f)
+    }
+
+    @Test
+    fun testLongerTimeConstantReducesJitter() {
+        val jumpy = replay(OrientationFilter(0f), 0f, false, accelNoise = 0.3f, magNoise = 2f)
+        val smooth = replay(OrientationFilter(0.3f), 0f, false, accelNoise = 0.3f, magNoise = 2f)
+        assertThat(smooth.jitter).isLessThan(jumpy.jitter / 2)
+    }
+
+    @Test
+    fun testLongerTimeConstantLagsWithoutGyro() {
+        val quick = replay(OrientationFilter(0.05f), 0.5f, false)
+        val slow = replay(OrientationFilter(0.5f), 0.5f, false)
+        assertThat(slow.meanError).isGreaterThan(quick.meanError)
+    }
+
+    @Test
+    fun testGyroFusionTracksWithoutLag() {
+        // With a gyro even a long time constant keeps up with the motion...
+        val fused = replay(OrientationFilter(0.5f), 0.5f, true, accelNoise = 0.3f, magNoise = 2f)
+        val unfused = replay(OrientationFilter(0.5f), 0.5f, false, accelNoise = 0.3f, magNoise = 2f)
+        assertThat(fused.meanError).isLessThan(unfused.meanError / 4)
+        assertThat(fused.maxError).isLessThan(0.05f)
+    }
+
+    @Test
+    fun testGyroBiasIsCorrected() {
+        // ...and the accelerometer and magnetometer stop the gyro's bias accumulating.
+        val biasOnly = OrientationFilter(0f)
+        val start = truthAt(0f, 0f)
+        biasOnly.onRotationVector(floatArrayOf(start.x, start.y, start.z, start.w), 0L)
+        var t = 0L
+        while (t <= 5_000_000_000L) {
+            biasOnly.onGyroscope(0.05f, 0f, 0f, t)
+            t += 5_000_000L
+        }
+        val fused = replay(OrientationFilter(0.5f), 0f, true, gyroBias = 0.05f)
+        assertThat(biasOnly.estimate().angleTo(start)).isGreaterThan(0.2f)
+        assertThat(fused.maxError).isLessThan(0.05f)
+    }
+
+    @Test
+    fun testPredictionExtrapolatesWithAngularVelocity() {
+        val filter = OrientationFilter(0f)
+        val start = truthAt(0f, 1f)
+        filter.onRotationVector(floatArrayOf(start.x, start.y, start.z, start.w), 0L)
+        val omega = start.worldToPhone(floatArrayOf(0f, 0f, 1f))
+        filter.onAngularVelocity(omega[0], omega[1], omega[2], 0L)
+        val out = FloatArray(4)
+        filter.predict(50_000_000L, out)
+        val predicted = Quaternion(out[3], out[0], out[1], out[2])
+        assertThat(predicted.angleTo(truthAt(0.05f, 1f))).isLessThan(1e-3f)
+        // The filter's own estimate is untouched.
+        assertThat(filter.estimate().angleTo(start)).isLessThan(1e-3f)
+        // Never further ahead than the limit.
+        filter.predict(10_000_000_000L, out)
+        val capped = Quaternion(out[3], out[0], out[1], out[2])
+        val limit = OrientationFilter.MAX_PREDICTION_NANOS * 1e-9f
+        assertThat(capped.angleTo(truthAt(limit, 1f))).isLessThan(1e-3f)
+    }
+
+    @Test
+    fun testReset() {
+        val filter = OrientationFilter(0f)
+        filter.onRotationVector(floatArrayOf(0f, 0f, 0f, 1f), 0L)
+        assertThat(filter.hasOrientation()).isTrue()
+        filter.reset()
+        assertThat(filter.hasOrientation()).isFalse()
+    }
+}
@@ -0,0 +1,294 @@
+package com.google.android.stardroid.sensors
+
+import com.google.android.stardroid.control.AstronomerModel
+import com.google.android.stardroid.control.AstronomerModelImpl
+import com.google.android.stardroid.control.Clock
+import com.google.android.stardroid.control.ZeroMagneticDeclinationCalculator
+import com.google.android.stardroid.math.LatLong
+import com.google.android.stardroid.math.Vector3
+import java.io.FileInputStream
+import java.io.InputStream
+import java.lang.management.ManagementFactory
+import kotlin.math.abs
+import kotlin.math.acos
+import kotlin.math.max
+import kotlin.math.sqrt
+
+/**
+ * Replays a [SensorTrace] through [SensorModelAdaptor] into an
+ * [AstronomerModelImpl], exactly as the sensor thread would on a device, and
+ * reports what it cost and how accurate the resulting pointing was.
+ *
+ * The pointing error is measured against a second model fed with the trace's
+ * reference orientations if it has any, or else with the raw rotation vector
+ * events (i.e. the error is then the effect of the filtering alone).  The
+ * reference is taken [presentationDelayNanos] after each event, i.e. when the
+ * resulting frame would actually be on screen, and the error divided by the
+ * reference's angular speed gives the effective motion-to-photon latency.
+ *
+ * Run it over a trace pulled from a device with
+ * `java -cp ... com.google.android.stardroid.sensors.SensorTraceReplayerKt <file> [timeConstant]
+ * [predictionHorizonMillis] [presentationDelayMillis]`.
+ */
+class SensorTraceReplayer(
+    private val presentationDelayNanos: Long = 0L,
+    private val configure: (SensorModelAdaptor) -> Unit = {}
+) {
+    class Report(
+        val sensorEvents: Int,
+        val meanProcessingNanos: Double,
+        val p99ProcessingNanos: Long,
+        val maxProcessingNanos: Long,
+        /** -1 if the JVM can't measure allocations.  */
+        val allocatedBytesPerEvent: Double,
+        val measuredEvents: Int,
+        val meanErrorDegrees: Double,
+        val maxErrorDegrees: Double,
+        /**
+         * RMS difference between how far the pointing turned from one measured event to the
+         * next and how far the reference did: how much the view shakes beyond the real motion.
+         */
+        val jitterDegrees: Double,
+        /** Mean of error / angular speed while the phone was turning, NaN if it never did. */
+        val effectiveLatencyMillis: Double
+    ) {
+        override fun toString() = String.format(
+            "%d events: %.1f us mean, %.1f us p99, %.1f us max, %.1f bytes/event; " +
+                    "pointing error over %d events: %.3f deg mean, %.3f deg max, %.3f deg jitter; " +
+                    "effective latency %.1f ms",
+            sensorEvents, meanProcessingNanos / 1e3, p99ProcessingNanos / 1e3,
+            maxProcessingNanos / 1e3, allocatedBytesPerEvent, measuredEvents,
+            meanErrorDegrees, maxErrorDegrees, jitterDegrees, effectiveLatencyMillis
+        )
+    }
+
+    /** A copy of one trace record.  */
+    private class Event(
+        val kind: Int, val timestampNanos: Long, val sensorType: Int,
+        val values: FloatArray, val epochMillis: Long
+    )
+
+    /** The reference orientation over time, as rotation vectors (x, y, z, w).  */
+    private class ReferenceTimeline(private val times: LongArray, private val rotations: Array<FloatArray>) {
+        /**
+         * Interpolates the reference at the given time into out.  Returns false
+         * if the time is outside the trace.
+         */
+        fun at(timeNanos: Long, out: FloatArray): Boolean {
+            if (times.isEmpty() || timeNanos < times[0] || timeNanos > times[times.size - 1]) {
+                return false
+            }
+            var index = times.binarySearch(timeNanos)
+            if (index >= 0) {
+                System.arraycopy(rotations[index], 0, out, 0, 4)
+                return true
+            }
+            index = -index - 1
+            val a = rotations[index - 1]
+            val b = rotations[index]
+            val t = (timeNanos - times[index - 1]).toFloat() / (times[index] - times[index - 1])
+            // Normalized lerp is plenty between samples a few ms apart.
+            val sign = if (a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3] < 0) -1f else 1f
+            var norm = 0f
+            for (i in 0..3) {
+                out[i] = a[i] * (1 - t) + sign * b[i] * t
+                norm += out[i] * out[i]
+            }
+            norm = sqrt(norm)
+            for (i in 0..3) {
+                out[i] /= norm
+            }
+            return true
+        }
+
+        /** Angular speed of the reference around the given time in rad/s, or NaN.  */
+        fun angularSpeed(timeNanos: Long): Double {
+            val a = FloatArray(4)
+            val b = FloatArray(4)
+            val step = 10_000_000L
+            if (!at(timeNanos - step, a) || !at(timeNanos, b)) {
+                return Double.NaN
+            }
+            val dot = abs(a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3])
+            return 2 * acos(dot.coerceAtMost(1f).toDouble()) / (step * 1e-9)
+        }
+    }
+
+    /** Replays the clock recorded in the trace.  */
+    private class ReplayClock : Clock {
+        var baseEpochMillis = 0L
+        var baseNanos = 0L
+        var nowNanos = 0L
+        override fun getTimeInMillisSinceEpoch() =
+            baseEpochMillis + (nowNanos - baseNanos) / 1_000_000L
+    }
+
+    private fun load(input: InputStream): List<Event> {
+        val events = ArrayList<Event>()
+        SensorTrace.Reader(input).use { reader ->
+            while (true) {
+                val record = reader.next() ?: break
+                events.add(Event(
+                    record.kind, record.timestampNanos, record.sensorType,
+                    record.values.copyOf(record.numValues), record.epochMillis
+                ))
+            }
+        }
+        return events
+    }
+
+    private fun referenceTimeline(events: List<Event>): ReferenceTimeline {
+        var samples = events.filter { it.kind == SensorTrace.KIND_REFERENCE }
+        if (samples.isEmpty()) {
+            samples = events.filter {
+                it.kind == SensorTrace.KIND_SENSOR && it.sensorType == TYPE_ROTATION_VECTOR
+            }
+        }
+        val times = LongArray(samples.size) { samples[it].timestampNanos }
+        val rotations = Array(samples.size) { i ->
+            val v = samples[i].values
+            // Rotation vectors may omit w.
+            val w = if (v.size >= 4) v[3] else sqrt(max(0f, 1 - v[0] * v[0] - v[1] * v[1] - v[2] * v[2]))
+            floatArrayOf(v[0], v[1], v[2], w)
+        }
+        return ReferenceTimeline(times, rotations)
+    }
+
+    fun replay(input: InputStream): Report {
+        val events = load(input)
+        val timeline = referenceTimeline(events)
+        val clock = ReplayClock()
+        val model = newModel(clock)
+        val reference = newModel(clock)
+        val adaptor = SensorModelAdaptor(model)
+        configure(adaptor)
+
+        var timings = LongArray(1024)
+        var sensorEvents = 0
+        var allocated = 0L
+        var canMeasureAllocations = true
+        var errorSum = 0.0
+        var maxError = 0.0
+        var measuredEvents = 0
+        var latencySum = 0.0
+        var latencySamples = 0
+        var jitterSquaredSum = 0.0
+        var lastLineOfSight: Vector3? = null
+        var lastReferenceLineOfSight: Vector3? = null
+        val referenceRotation = FloatArray(4)
+
+        for (event in events) {
+            clock.nowNanos = event.timestampNanos
+            when (event.kind) {
+                SensorTrace.KIND_TIME -> {
+                    clock.baseNanos = event.timestampNanos
+                    clock.baseEpochMillis = event.epochMillis
+                    model.setClock(clock)
+                    reference.setClock(clock)
+                }
+                SensorTrace.KIND_LOCATION -> {
+                    val location = LatLong(event.values[0], event.values[1])
+                    model.location = location
+                    reference.location = location
+                }
+                SensorTrace.KIND_SENSOR -> {
+                    val values = event.values
+                    val allocatedBefore = allocatedBytes()
+                    val start = System.nanoTime()
+                    adaptor.onSensorChanged(event.sensorType, values, event.timestampNanos)
+                    val elapsed = System.nanoTime() - start
+                    val allocatedAfter = allocatedBytes()
+                    if (allocatedBefore < 0) {
+                        canMeasureAllocations = false
+                    } else {
+                        allocated += allocatedAfter - allocatedBefore
+                    }
+                    if (sensorEvents == timings.size) {
+                        timings = timings.copyOf(timings.size * 2)
+                    }
+                    timings[sensorEvents++] = elapsed
+
+                    val presentationTime = event.timestampNanos + presentationDelayNanos
+                    if (timeline.at(presentationTime, referenceRotation)) {
+                        reference.setPhoneSensorValues(referenceRotation)
+                        val lineOfSight = lineOfSight(model.pointing)
+                        val referenceLineOfSight = lineOfSight(reference.pointing)
+                        val error = angleDegrees(lineOfSight, referenceLineOfSight)
+                        if (lastLineOfSight != null && lastReferenceLineOfSight != null) {
+                            val jitter = angleDegrees(lastLineOfSight, lineOfSight) -
+                                    angleDegrees(lastReferenceLineOfSight, referenceLineOfSight)
+                            jitterSquaredSum += jitter * jitter
+                        }
+                        lastLineOfSight = lineOfSight
+                        lastReferenceLineOfSight = referenceLineOfSight
+                        errorSum += error
+                        maxError = max(maxError, error)
+                        measuredEvents++
+                        val speed = timeline.angularSpeed(presentationTime)
+                        if (speed > MIN_SPEED_FOR_LATENCY) {
+                            latencySum += Math.toRadians(error) / speed * 1e3
+                            latencySamples++
+                        }
+                    }
+                }
+            }
+        }
+
+        val sorted = timings.copyOf(sensorEvents).also { it.sort() }
+        return Report(
+            sensorEvents,
+            if (sensorEvents == 0) 0.0 else sorted.sum().toDouble() / sensorEvents,
+            if (sensorEvents == 0) 0 else sorted[((sensorEvents - 1) * 0.99).toInt()],
+            if (sensorEvents == 0) 0 else sorted[sensorEvents - 1],
+            if (!canMeasureAllocations || sensorEvents == 0) -1.0
+            else allocated.toDouble() / sensorEvents,
+            measuredEvents,
+            if (measuredEvents == 0) 0.0 else errorSum / measuredEvents,
+            maxError,
+            if (measuredEvents < 2) 0.0 else sqrt(jitterSquaredSum / (measuredEvents - 1)),
+            if (latencySamples == 0) Double.NaN else latencySum / latencySamples
+        )
+    }
+
+    private fun newModel(clock: Clock): AstronomerModel {
+        val model = AstronomerModelImpl(ZeroMagneticDeclinationCalculator())
+        model.setClock(clock)
+        return model
+    }
+
+    companion object {
+        // android.hardware.Sensor.TYPE_ROTATION_VECTOR
+        private const val TYPE_ROTATION_VECTOR = 11
+        // Below this (rad/s) the phone is effectively still and latency is meaningless.
+        private const val MIN_SPEED_FOR_LATENCY = 0.2
+
+        private fun lineOfSight(pointing: AstronomerModel.Pointing) =
+            Vector3(pointing.lineOfSightX, pointing.lineOfSightY, pointing.lineOfSightZ)
+
+        fun angleDegrees(u: Vector3, v: Vector3): Double {
+            val cos = (u dot v) / sqrt(u.length2 * v.length2)
+            return Math.toDegrees(acos(cos.coerceIn(-1f, 1f)).toDouble())
+        }
+
+        // Returns -1 if the JVM cannot report per-thread allocation.
+        private fun allocatedBytes(): Long {
+            val bean = ManagementFactory.getThreadMXBean()
+            return if (bean is com.sun.management.ThreadMXBean) {
+                bean.getThreadAllocatedBytes(Thread.currentThread().id)
+            } else -1
+        }
+    }
+}
+
+fun main(args: Array<String>) {
+    val timeConstant = if (args.size > 1) args[1].toFloat() else 0f
+    val horizonNanos = if (args.size > 2) args[2].toLong() * 1_000_000L else 0L
+    val delayNanos = if (args.size > 3) args[3].toLong() * 1_000_000L else 0L
+    val report = FileInputStream(args[0]).use {
+        SensorTraceReplayer(delayNanos) { adaptor ->
+            adaptor.setTimeConstant(timeConstant)
+            adaptor.setPredictionHorizon(horizonNanos)
+        }.replay(it)
+    }
+    println(report)
+}
@@ -0,0 +1,93 @@
+package com.google.android.stardroid.sensors
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.*
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Replays synthetic traces.  Needs Robolectric for SensorManager's rotation maths.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class SensorTraceReplayerTest {
+    /**
+     * Writes a trace of a phone sweeping round the horizon at 1 rad/s, with
+     * noisy rotation vector readings at 50Hz and the true orientation as the
+     * reference.  Optionally with exact gyroscope readings alongside.
+     */
+    private fun sweepTrace(noise: Float, withGyro: Boolean = false): ByteArray {
+        val random = Random(42)
+        val bytes = ByteArrayOutputStream()
+        SensorTrace.Writer(bytes).use { writer ->
+            writer.writeTime(0L, 1_600_000_000_000L)
+            writer.writeLocation(0L, 37.4f, -122.1f)
+            for (i in 0 until 250) {
+                val t = i * 20_000_000L
+                // Phone upright (rotated 90 degrees about x) then turned about the vertical.
+                val yaw = i * 0.02f
+                val w = cos(yaw / 2) * COS_45
+                val x = cos(yaw / 2) * COS_45
+                val y = sin(yaw / 2) * COS_45
+                val z = sin(yaw / 2) * COS_45
+                writer.writeReference(t, x, y, z, w)
+                val nx = x + noise * random.nextGaussian().toFloat()
+                val ny = y + noise * random.nextGaussian().toFloat()
+                val nz = z + noise * random.nextGaussian().toFloat()
+                val nw = w + noise * random.nextGaussian().toFloat()
+                val norm = sqrt(nx * nx + ny * ny + nz * nz + nw * nw)
+                writer.writeSensorEvent(
+                    11, t, floatArrayOf(nx / norm, ny / norm, nz / norm, nw / norm, 0f))
+                if (withGyro) {
+                    // The world's vertical is the upright phone's y axis.
+                    writer.writeSensorEvent(4, t, floatArrayOf(0f, 1f, 0f))
+                }
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    @Test
+    fun testReplayWithoutNoiseIsExact() {
+        val report = SensorTraceReplayer().replay(ByteArrayInputStream(sweepTrace(0f)))
+        assertThat(report.sensorEvents).isEqualTo(250)
+        assertThat(report.measuredEvents).isEqualTo(250)
+        assertThat(report.maxErrorDegrees).isLessThan(0.1)
+        assertThat(report.maxProcessingNanos).isGreaterThan(0L)
+    }
+
+    @Test
+    fun testSmoothingTradesErrorForJitter() {
+        val trace = sweepTrace(0.01f)
+        val raw = SensorTraceReplayer().replay(ByteArrayInputStream(trace))
+        val smoothed = SensorTraceReplayer { it.setTimeConstant(1f) }
+            .replay(ByteArrayInputStream(trace))
+        assertThat(raw.meanErrorDegrees).isGreaterThan(0.1)
+        // Smoothing steadies the view...
+        assertThat(smoothed.jitterDegrees).isLessThan(raw.jitterDegrees / 2)
+        // ...but a long time constant lags a moving phone badly.
+        assertThat(smoothed.meanErrorDegrees).isGreaterThan(raw.meanErrorDegrees)
+    }
+
+    @Test
+    fun testPredictionHidesPresentationLatency() {
+        val trace = sweepTrace(0f, withGyro = true)
+        val delay = 40_000_000L
+        val late = SensorTraceReplayer(delay).replay(ByteArrayInputStream(trace))
+        val predicted = SensorTraceReplayer(delay) { it.setPredictionHorizon(delay) }
+            .replay(ByteArrayInputStream(trace))
+        assertThat(late.effectiveLatencyMillis).isWithin(5.0).of(40.0)
+        assertThat(predicted.effectiveLatencyMillis).isLessThan(5.0)
+    }
+
+    companion object {
+        private val COS_45 = sqrt(0.5f)
+    }
+}
@@ -0,0 +1,112 @@
+package com.google.android.stardroid.sensors
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+
+class SensorTraceTest {
+    @Test
+    fun testRoundTrip() {
+        val bytes = ByteArrayOutputStream()
+        SensorTrace.Writer(bytes).use { writer ->
+            writer.writeTime(1_000L, 1_600_000_000_000L)
+            writer.writeLocation(1_000L, 51.5f, -0.1f)
+            writer.writeSensorEvent(11, 20_001_000L, floatArrayOf(0.1f, 0.2f, 0.3f, 0.9f, -1f))
+            writer.writeReference(20_001_000L, 0.1f, 0.2f, 0.3f, 0.9f)
+            writer.writeSensorEvent(4, 25_000_000L, floatArrayOf(1f, 2f, 3f))
+        }
+
+        SensorTrace.Reader(ByteArrayInputStream(bytes.toByteArray())).use { reader ->
+            var record = reader.next()!!
+            assertThat(record.kind).isEqualTo(SensorTrace.KIND_TIME)
+            assertThat(record.timestampNanos).isEqualTo(1_000L)
+            assertThat(record.epochMillis).isEqualTo(1_600_000_000_000L)
+
+            record = reader.next()!!
+            assertThat(record.kind).isEqualTo(SensorTrace.KIND_LOCATION)
+            assertThat(record.values.copyOf(record.numValues)).isEqualTo(floatArrayOf(51.5f, -0.1f))
+
+            record = reader.next()!!
+            assertThat(record.kind).isEqualTo(SensorTrace.KIND_SENSOR)
+            assertThat(record.sensorType).isEqualTo(11)
+            assertThat(record.timestampNanos).isEqualTo(20_001_000L)
+            assertThat(record.values.copyOf(record.numValues))
+                .isEqualTo(floatArrayOf(0.1f, 0.2f, 0.3f, 0.9f, -1f))
+
+            record = reader.next()!!
+            assertThat(record.kind).isEqualTo(SensorTrace.KIND_REFERENCE)
+            assertThat(record.values.copyOf(record.numValues))
+                .isEqualTo(floatArrayOf(0.1f, 0.2f, 0.3f, 0.9f))
+
+            record = reader.next()!!
+            assertThat(record.sensorType).isEqualTo(4)
+            assertThat(record.timestampNanos).isEqualTo(25_000_000L)
+
+            assertThat(reader.next()).isNull()
+        }
+    }
+
+    @Test
+    fun testEventsOutOfOrderKeepTheirTimes() {
+        // Batched sensors, or several at once, don't always deliver in timestamp order.
+        val timestamps = longArrayOf(
+            10_000_000L, 9_000_000L, 12_000_000L, 11_999_000L, 5L, Long.MAX_VALUE / 2, 0L)
+        val bytes = ByteArrayOutputStream()
+        SensorTrace.Writer(bytes).use { writer ->
+            timestamps.forEachIndexed { i, timestamp ->
+                writer.writeSensorEvent(i, timestamp, floatArrayOf(1f))
+            }
+        }
+
+        SensorTrace.Reader(ByteArrayInputStream(bytes.toByteArray())).use { reader ->
+            for ((i, timestamp) in timestamps.withIndex()) {
+                val record = reader.next()!!
+                assertThat(record.sensorType).isEqualTo(i)
+                assertThat(record.timestampNanos).isEqualTo(timestamp)
+            }
+            assertThat(reader.next()).isNull()
+        }
+    }
+
+    @Test
+    fun testCompact() {
+        val bytes = ByteArrayOutputStream()
+        SensorTrace.Writer(bytes).use { writer ->
+            for (i in 1..100) {
+                writer.writeSensorEvent(11, i * 5_000_000L, floatArrayOf(0f, 0f, 0f, 1f))
+            }
+        }
+        // Kind, 4 byte zigzag delta, type, count and 4 floats; plus the 5 byte header.
+        assertThat(bytes.size()).isEqualTo(5 + 100 * (1 + 4 + 1 + 1 + 16))
+    }
+
+    @Test
+    fun testRejectsOtherFiles() {
+        try {
+            SensorTrace.Reader(ByteArrayInputStream("not a trace".toByteArray()))
+            fail("Expected an IOException")
+        } catch (e: IOException) {
+            // Expected.
+        }
+    }
+
+    @Test
+    fun testTruncated() {
+        val bytes = ByteArrayOutputStream()
+        SensorTrace.Writer(bytes).use { writer ->
+            writer.writeSensorEvent(1, 1L, floatArrayOf(1f, 2f, 3f))
+        }
+        val truncated = bytes.toByteArray().copyOf(bytes.size() - 2)
+        SensorTrace.Reader(ByteArrayInputStream(truncated)).use { reader ->
+            try {
+                reader.next()
+                fail("Expected an IOException")
+            } catch (e: IOException) {
+                // Expected.
+            }
+        }
+    }
+}
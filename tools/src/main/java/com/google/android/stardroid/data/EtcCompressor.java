@@ -0,0 +1,177 @@
+package com.google.android.stardroid.data;
+
+/**
+ * Compresses 4x4 blocks of pixels to ETC1.  This is a straightforward search
+ * over both subblock orientations, both colour modes and all the modifier
+ * tables, which is plenty for our handful of small textures.
+ *
+ * <p>Pixels are ARGB ints, in column order: pixel (x, y) is at 4 * x + y.
+ */
+public class EtcCompressor {
+  private static final int[][] ETC1_MODIFIERS = {
+      {2, 8}, {5, 17}, {9, 29}, {13, 42}, {18, 60}, {24, 80}, {33, 106}, {47, 183}
+  };
+
+  private EtcCompressor() {}
+
+  /** Compresses the colour of 16 pixels to an ETC1 block. */
+  public static long compressEtc1Block(int[] pixels) {
+    long best = 0;
+    long bestError = Long.MAX_VALUE;
+    for (int flip = 0; flip < 2; flip++) {
+      boolean[] inFirst = new boolean[16];
+      for (int i = 0; i < 16; i++) {
+        int x = i / 4;
+        int y = i % 4;
+        inFirst[i] = flip == 0 ? x < 2 : y < 2;
+      }
+      float[] avg1 = average(pixels, inFirst, true);
+      float[] avg2 = average(pixels, inFirst, false);
+
+      // Individual mode: two 4 bit colours.
+      int[] c1 = quantize(avg1, 15);
+      int[] c2 = quantize(avg2, 15);
+      long block = ((long) c1[0] << 60) | ((long) c2[0] << 56)
+          | ((long) c1[1] << 52) | ((long) c2[1] << 48)
+          | ((long) c1[2] << 44) | ((long) c2[2] << 40)
+          | ((long) flip << 32);
+      long[] result = encodeSubblocks(pixels, inFirst, block, expand4(c1), expand4(c2));
+      if (result[1] < bestError) {
+        best = result[0];
+        bestError = result[1];
+      }
+
+      // Differential mode: a 5 bit colour and a 3 bit signed difference.
+      int[] d1 = quantize(avg1, 31);
+      int[] d2 = quantize(avg2, 31);
+      boolean representable = true;
+      for (int c = 0; c < 3; c++) {
+        int delta = d2[c] - d1[c];
+        representable &= delta >= -4 && delta <= 3;
+      }
+      if (representable) {
+        block = ((long) d1[0] << 59) | ((long) ((d2[0] - d1[0]) & 7) << 56)
+            | ((long) d1[1] << 51) | ((long) ((d2[1] - d1[1]) & 7) << 48)
+            | ((long) d1[2] << 43) | ((long) ((d2[2] - d1[2]) & 7) << 40)
+            | (1L << 33) | ((long) flip << 32);
+        result = encodeSubblocks(pixels, inFirst, block, expand5(d1), expand5(d2));
+        if (result[1] < bestError) {
+          best = result[0];
+          bestError = result[1];
+        }
+      }
+    }
+    return best;
+  }
+
+  // Picks the best table and modifiers for each subblock.  Returns the block
+  // and its error.
+  private static long[] encodeSubblocks(
+      int[] pixels, boolean[] inFirst, long block, int[] base1, int[] base2) {
+    long error = 0;
+    for (int subblock = 0; subblock < 2; subblock++) {
+      int[] base = subblock == 0 ? base1 : base2;
+      long bestBits = 0;
+      long bestError = Long.MAX_VALUE;
+      int bestTable = 0;
+      for (int table = 0; table < 8; table++) {
+        long bits = 0;
+        long tableError = 0;
+        for (int i = 0; i < 16; i++) {
+          if (inFirst[i] != (subblock == 0)) {
+            continue;
+          }
+          int bestIndex = 0;
+          long bestPixelError = Long.MAX_VALUE;
+          for (int index = 0; index < 4; index++) {
+            int modifier = ETC1_MODIFIERS[table][index & 1] * ((index & 2) == 0 ? 1 : -1);
+            long pixelError = colorError(pixels[i], base, modifier);
+            if (pixelError < bestPixelError) {
+              bestPixelError = pixelError;
+              bestIndex = index;
+            }
+          }
+          tableError += bestPixelError;
+          bits |= ((long) (bestIndex >> 1) << (16 + i)) | ((long) (bestIndex & 1) << i);
+        }
+        if (tableError < bestError) {
+          bestError = tableError;
+          bestBits = bits;
+          bestTable = table;
+        }
+      }
+      error += bestError;
+      block |= bestBits | ((long) bestTable << (subblock == 0 ? 37 : 34));
+    }
+    return new long[] {block, error};
+  }
+
+  private static long colorError(int pixel, int[] base, int modifier) {
+    // Fully transparent pixels can be any colour.
+    if ((pixel >>> 24) == 0) {
+      return 0;
+    }
+    long error = 0;
+    for (int c = 0; c < 3; c++) {
+      int value = clamp(base[c] + modifier);
+      int d = value - channel(pixel, c);
+      error += d * d;
+    }
+    return error;
+  }
+
+  // Mean colour of one subblock, ignoring transparent pixels if there are others.
+  private static float[] average(int[] pixels, boolean[] inFirst, boolean first) {
+    float[] sum = new float[3];
+    float[] opaqueSum = new float[3];
+    int count = 0;
+    int opaqueCount = 0;
+    for (int i = 0; i < 16; i++) {
+      if (inFirst[i] != first) {
+        continue;
+      }
+      boolean opaque = (pixels[i] >>> 24) != 0;
+      for (int c = 0; c < 3; c++) {
+        sum[c] += channel(pixels[i], c);
+        if (opaque) {
+          opaqueSum[c] += channel(pixels[i], c);
+        }
+      }
+      count++;
+      if (opaque) {
+        opaqueCount++;
+      }
+    }
+    float[] avg = new float[3];
+    for (int c = 0; c < 3; c++) {
+      avg[c] = opaqueCount > 0 ? opaqueSum[c] / opaqueCount : sum[c] / count;
+    }
+    return avg;
+  }
+
+  private static int[] quantize(float[] color, int max) {
+    int[] q = new int[3];
+    for (int c = 0; c < 3; c++) {
+      q[c] = Math.min(max, Math.max(0, Math.round(color[c] * max / 255f)));
+    }
+    return q;
+  }
+
+  private static int[] expand4(int[] c) {
+    return new int[] {c[0] * 17, c[1] * 17, c[2] * 17};
+  }
+
+  private static int[] expand5(int[] c) {
+    return new int[] {
+        (c[0] << 3) | (c[0] >> 2), (c[1] << 3) | (c[1] >> 2), (c[2] << 3) | (c[2] >> 2)};
+  }
+
+  // Channel 0 is red, 1 green, 2 blue.
+  private static int channel(int pixel, int c) {
+    return (pixel >> (16 - 8 * c)) & 0xff;
+  }
+
+  private static int clamp(int value) {
+    return Math.min(255, Math.max(0, value));
+  }
+}
@@ -0,0 +1,192 @@
+package com.google.android.stardroid.data;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Converts opaque images to ETC1 compressed KTX textures, with full mipmap
+ * chains, for the app to upload without decoding.
+ *
+ * <p>ETC1 has no alpha, and the formats which do (ETC2) need OpenGL ES 3.0,
+ * which the app never asks for.  The fixed function pipeline can't take the
+ * alpha from a second texture either, so images with any transparency are
+ * skipped, and the app goes on using the originals for them.  The app also
+ * falls back to the originals on devices without ETC1.
+ *
+ * <p>Every level is made by box filtering the one above, so images holding a
+ * sheet of separate cells would bleed into each other at the smaller levels.
+ * Only convert images which are a single picture.
+ *
+ * <p>Usage: KtxTextureWriter &lt;output dir&gt; &lt;image&gt;...
+ *
+ * <p>Writes &lt;output dir&gt;/&lt;image name&gt;.ktx for each opaque image and
+ * prints how much texture memory each takes uncompressed and compressed.
+ */
+public class KtxTextureWriter {
+  private static final byte[] KTX_IDENTIFIER = {
+      (byte) 0xAB, 0x4B, 0x54, 0x58, 0x20, 0x31, 0x31, (byte) 0xBB, 0x0D, 0x0A, 0x1A, 0x0A
+  };
+  private static final int GL_RGB = 0x1907;
+  private static final int GL_ETC1_RGB8_OES = 0x8D64;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Usage: KtxTextureWriter <output dir> <image>...");
+    }
+    File outputDir = new File(args[0]);
+    long totalUncompressed = 0;
+    long totalCompressed = 0;
+    for (int i = 1; i < args.length; i++) {
+      File input = new File(args[i]);
+      BufferedImage image = ImageIO.read(input);
+      if (image == null) {
+        throw new IOException("Can't read image " + input);
+      }
+      String name = input.getName().replaceFirst("\\.[^.]*$", "");
+      if (hasAlpha(image)) {
+        System.out.printf("%-20s has transparency, so is left uncompressed%n", name);
+        continue;
+      }
+      File output = new File(outputDir, name + ".ktx");
+      int compressed = write(image, output);
+      int uncompressed = 4 * image.getWidth() * image.getHeight();
+      System.out.printf("%-20s %4dx%-4d RGBA: %7d bytes, KTX with mipmaps: %7d bytes%n",
+          name, image.getWidth(), image.getHeight(), uncompressed, compressed);
+      totalUncompressed += uncompressed;
+      totalCompressed += compressed;
+    }
+    System.out.printf("Total RGBA: %d bytes, KTX with mipmaps: %d bytes%n",
+        totalUncompressed, totalCompressed);
+  }
+
+  private static boolean hasAlpha(BufferedImage image) {
+    int width = image.getWidth();
+    int[] pixels = image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+    for (int p : pixels) {
+      if ((p >>> 24) != 0xff) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the opaque image as an ETC1 KTX file, returning the size of the
+   * texture data.
+   */
+  public static int write(BufferedImage image, File output) throws IOException {
+    if (hasAlpha(image)) {
+      throw new IllegalArgumentException("ETC1 can't hold transparency");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+    List<byte[]> levels = new ArrayList<>();
+    while (true) {
+      levels.add(compress(pixels, width, height));
+      if (width == 1 && height == 1) {
+        break;
+      }
+      int newWidth = Math.max(1, width / 2);
+      int newHeight = Math.max(1, height / 2);
+      pixels = downsample(pixels, width, height, newWidth, newHeight);
+      width = newWidth;
+      height = newHeight;
+    }
+
+    int dataSize = 0;
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(output))) {
+      out.write(KTX_IDENTIFIER);
+      ByteBuffer header = ByteBuffer.allocate(13 * 4).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(0x04030201);
+      header.putInt(0);  // glType: compressed
+      header.putInt(1);  // glTypeSize
+      header.putInt(0);  // glFormat: compressed
+      header.putInt(GL_ETC1_RGB8_OES);
+      header.putInt(GL_RGB);
+      header.putInt(image.getWidth());
+      header.putInt(image.getHeight());
+      header.putInt(0);  // pixelDepth
+      header.putInt(0);  // numberOfArrayElements
+      header.putInt(1);  // numberOfFaces
+      header.putInt(levels.size());
+      header.putInt(0);  // bytesOfKeyValueData
+      out.write(header.array());
+      for (byte[] level : levels) {
+        ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        size.putInt(level.length);
+        out.write(size.array());
+        // Compressed blocks are always a multiple of 8 bytes, so need no padding.
+        out.write(level);
+        dataSize += level.length;
+      }
+    }
+    return dataSize;
+  }
+
+  private static byte[] compress(int[] pixels, int width, int height) {
+    int blocksWide = (width + 3) / 4;
+    int blocksHigh = (height + 3) / 4;
+    ByteBuffer out = ByteBuffer.allocate(blocksWide * blocksHigh * 8);
+    out.order(ByteOrder.BIG_ENDIAN);
+    int[] block = new int[16];
+    for (int by = 0; by < blocksHigh; by++) {
+      for (int bx = 0; bx < blocksWide; bx++) {
+        for (int x = 0; x < 4; x++) {
+          for (int y = 0; y < 4; y++) {
+            // Blocks hanging off the edge repeat the edge pixels.
+            int px = Math.min(4 * bx + x, width - 1);
+            int py = Math.min(4 * by + y, height - 1);
+            block[4 * x + y] = pixels[py * width + px];
+          }
+        }
+        out.putLong(EtcCompressor.compressEtc1Block(block));
+      }
+    }
+    return out.array();
+  }
+
+  // Box filters down to the new size, weighting colours by alpha so that
+  // transparent pixels don't darken the edges.
+  private static int[] downsample(int[] pixels, int width, int height, int newWidth, int newHeight) {
+    int[] result = new int[newWidth * newHeight];
+    int scaleX = width / newWidth;
+    int scaleY = height / newHeight;
+    for (int y = 0; y < newHeight; y++) {
+      for (int x = 0; x < newWidth; x++) {
+        long a = 0;
+        long r = 0;
+        long g = 0;
+        long b = 0;
+        for (int dy = 0; dy < scaleY; dy++) {
+          for (int dx = 0; dx < scaleX; dx++) {
+            int p = pixels[(y * scaleY + dy) * width + x * scaleX + dx];
+            int alpha = p >>> 24;
+            a += alpha;
+            r += alpha * ((p >> 16) & 0xff);
+            g += alpha * ((p >> 8) & 0xff);
+            b += alpha * (p & 0xff);
+          }
+        }
+        int n = scaleX * scaleY;
+        if (a == 0) {
+          result[y * newWidth + x] = 0;
+        } else {
+          result[y * newWidth + x] = (int) ((a + n / 2) / n) << 24
+              | (int) (r / a) << 16 | (int) (g / a) << 8 | (int) (b / a);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -8,12 +8,12 @@ import java.io.IOException;
  * Usage:
  *   java com.google.android.stardroid.data.Main <command> <args>
  *
- *   where command is one of GenStars, GenMessier, Binary
+ *   where command is one of GenStars, GenMessier, Binary, Ktx
  *   See the various writer classes for the args.
  */
 public class Main {
   private enum Command {
-    GenStars, GenMessier, Rewrite, Binary
+    GenStars, GenMessier, Rewrite, Binary, Ktx
   }
 
   public static void main(String[] in) throws IOException {
@@ -34,6 +34,9 @@ public class Main {
       case Binary:
         AsciiToBinaryProtoWriter.main(args);
         break;
+      case Ktx:
+        KtxTextureWriter.main(args);
+        break;
       default:
         throw new IllegalArgumentException("Unknown command");
     }
@@ -0,0 +1,16 @@
+#!/bin/bash
+
+ROOT=".."
+ROOT_APP="$ROOT/app"
+
+TOOL=build/install/datagen/bin/datagen
+
+IN_IMAGE_DIR=$ROOT_APP/src/main/res/drawable
+OUT_TEXTURE_DIR=$ROOT_APP/src/main/assets/textures
+
+# The opaque images the renderer uploads as textures by resource.  The others
+# (stars_texture, arrow, arrowcircle and crosshair) have transparency, which
+# ETC1 can't hold.
+mkdir -p $OUT_TEXTURE_DIR
+$TOOL Ktx $OUT_TEXTURE_DIR \
+  $IN_IMAGE_DIR/line.png